@@ -0,0 +1,115 @@
+package com.programthis.productcatalogservice.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Límite de concurrencia que se ajusta con la latencia medida (estilo Gradient2 de concurrency-limits):
+// si la latencia reciente supera a la de referencia el límite baja en proporción; si no, sube como mucho
+// sqrt(límite) por muestra. Un error (excepción o 5xx) recorta el límite un 10% (AIMD)
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_RTT_ALPHA = 0.1;    // ~10 muestras
+    private static final double LONG_RTT_ALPHA = 0.002;   // ~500 muestras
+    private static final double RTT_TOLERANCE = 1.5;      // latencia tolerada sobre la de referencia antes de bajar
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastRejectedAt; // System.nanoTime() del último rechazo por límite; 0 si nunca
+
+    // Se actualizan con el monitor del limitador; limit es volatile para que tryAcquire lo lea sin bloquear
+    private volatile double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.incrementAndGet();
+                lastRejectedAt = System.nanoTime();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    // inFlightAtStart permite no subir el límite cuando el grupo ni siquiera lo está usando
+    public void release(long rttNanos, int inFlightAtStart, boolean failed) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (failed) {
+                dropped.incrementAndGet();
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                return;
+            }
+            if (longRttNanos == 0) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+                return;
+            }
+            shortRttNanos += (rttNanos - shortRttNanos) * SHORT_RTT_ALPHA;
+            longRttNanos += (rttNanos - longRttNanos) * LONG_RTT_ALPHA;
+            // Tras una degradación larga la referencia se acerca a la latencia actual para poder recuperarse
+            if (longRttNanos / shortRttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+            if (inFlightAtStart < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / shortRttNanos));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    // Estar en el límite no basta para decir que el grupo va corto: solo lo está si ha tenido que rechazar algo
+    public boolean rejectedWithin(long windowNanos) {
+        long last = lastRejectedAt;
+        return last != 0 && System.nanoTime() - last < windowNanos;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(getLimit(), inFlight.get(), accepted.get(), rejected.get(), dropped.get(),
+                shortRttNanos / 1_000_000.0, longRttNanos / 1_000_000.0);
+    }
+
+    // --- DTOs ---
+    @lombok.Value
+    public static class Stats {
+        int limit;
+        int inFlight;
+        long accepted;
+        long rejected;
+        long dropped;
+        double recentLatencyMillis;
+        double baselineLatencyMillis;
+    }
+}
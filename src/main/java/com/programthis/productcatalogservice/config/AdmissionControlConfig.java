@@ -0,0 +1,37 @@
+package com.programthis.productcatalogservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+// Registra el control de admisión solo para /api/*; se puede desactivar con catalog.admission.enabled=false
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "catalog.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    // Los filtros que deban ejecutarse antes (p. ej. idempotencia) usan un orden menor
+    public static final int ADMISSION_FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 100;
+
+    @Bean
+    public AdmissionControlFilter admissionControlFilter(@Value("${catalog.admission.initial-limit:20}") int initialLimit,
+                                                         @Value("${catalog.admission.min-limit:2}") int minLimit,
+                                                         @Value("${catalog.admission.max-limit:200}") int maxLimit,
+                                                         @Value("${catalog.admission.retry-after:PT1S}") Duration retryAfter) {
+        return new AdmissionControlFilter(initialLimit, minLimit, maxLimit, retryAfter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilterRegistration(AdmissionControlFilter filter) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(ADMISSION_FILTER_ORDER);
+        return registration;
+    }
+}
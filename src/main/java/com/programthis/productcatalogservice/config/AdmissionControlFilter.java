@@ -0,0 +1,84 @@
+package com.programthis.productcatalogservice.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Control de admisión delante de la API: cada grupo de endpoints tiene un límite adaptativo de peticiones
+// simultáneas. Al superarlo se responde 503 + Retry-After al momento, en lugar de dejar que los hilos de Tomcat
+// se acumulen esperando a MySQL. Mientras un grupo más prioritario esté rechazando peticiones (en la última ventana
+// de Retry-After) los de detrás solo conservan su cuota garantizada, min-limit peticiones en curso; el resto se
+// rechaza para dejarle hueco. Que el grupo prioritario esté justo en su límite sin rechazar nada no quita nada a nadie
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final Map<EndpointGroup, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(EndpointGroup.class);
+    private final String retryAfterSeconds;
+    private final long sheddingWindowNanos;
+
+    public AdmissionControlFilter(int initialLimit, int minLimit, int maxLimit, Duration retryAfter) {
+        for (EndpointGroup group : EndpointGroup.values()) {
+            limiters.put(group, new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit));
+        }
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+        this.sheddingWindowNanos = Math.max(Duration.ofSeconds(1).toNanos(), retryAfter.toNanos());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        EndpointGroup group = EndpointGroup.classify(request);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        AdaptiveConcurrencyLimiter limiter = limiters.get(group);
+        if (shedForHigherPriority(group, limiter) || !limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return;
+        }
+        int inFlightAtStart = limiter.getInFlight();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, inFlightAtStart, failed);
+        }
+    }
+
+    private boolean shedForHigherPriority(EndpointGroup group, AdaptiveConcurrencyLimiter limiter) {
+        if (limiter.getInFlight() < limiter.getMinLimit()) {
+            return false; // cuota garantizada del grupo
+        }
+        for (EndpointGroup other : EndpointGroup.values()) {
+            if (other == group) {
+                return false;
+            }
+            if (limiters.get(other).rejectedWithin(sheddingWindowNanos)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<EndpointGroup, AdaptiveConcurrencyLimiter.Stats> getStats() {
+        Map<EndpointGroup, AdaptiveConcurrencyLimiter.Stats> stats = new EnumMap<>(EndpointGroup.class);
+        limiters.forEach((group, limiter) -> stats.put(group, limiter.getStats()));
+        return stats;
+    }
+
+    AdaptiveConcurrencyLimiter getLimiter(EndpointGroup group) {
+        return limiters.get(group);
+    }
+}
@@ -0,0 +1,47 @@
+package com.programthis.productcatalogservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+// Perfil "prod": tamaño del pool de conexiones según el servidor de base de datos y la concurrencia esperada
+// (ver application-prod.properties). Más conexiones que núcleos * 2 + discos solo añaden cambios de contexto en la
+// base de datos; con menos de las que se esperan a la vez, las peticiones esperan en el pool
+@Configuration
+@Profile("prod")
+public class ConnectionPoolConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolConfig.class);
+
+    // Estático: los post-procesadores se crean antes que el resto de beans de la configuración
+    @Bean
+    public static BeanPostProcessor connectionPoolSizer(Environment environment) {
+        int databaseCores = environment.getProperty("catalog.datasource.pool.database-cores", Integer.class,
+                Runtime.getRuntime().availableProcessors());
+        int spindles = environment.getProperty("catalog.datasource.pool.effective-spindles", Integer.class, 1);
+        int expectedConcurrency = environment.getProperty("catalog.datasource.pool.expected-concurrency", Integer.class, 50);
+        int size = poolSize(databaseCores, spindles, expectedConcurrency);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                // El pool arranca con la primera conexión, así que aún se puede cambiar su tamaño
+                if (bean instanceof HikariDataSource dataSource) {
+                    dataSource.setMaximumPoolSize(size);
+                    dataSource.setMinimumIdle(size);
+                    log.info("Pool de conexiones {}: {} conexiones ({} núcleos, {} discos, concurrencia esperada {})",
+                            beanName, size, databaseCores, spindles, expectedConcurrency);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static int poolSize(int databaseCores, int spindles, int expectedConcurrency) {
+        return Math.max(2, Math.min(expectedConcurrency, databaseCores * 2 + spindles));
+    }
+}
@@ -0,0 +1,41 @@
+package com.programthis.productcatalogservice.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.regex.Pattern;
+
+// Grupos de endpoints con límite de concurrencia propio, de mayor a menor prioridad.
+// Cuando un grupo prioritario está rechazando peticiones, los de detrás se recortan a su cuota garantizada
+public enum EndpointGroup {
+    STOCK,  // variaciones de stock y reservas: no deben quedarse sin hueco por culpa de la navegación
+    WRITE,  // altas, modificaciones y borrados del catálogo
+    READ,   // lecturas puntuales, búsquedas paginadas, sugerencias
+    BULK;   // listados completos sin paginar y exportaciones
+
+    private static final Pattern STOCK_PATH = Pattern.compile("^/api/products/[^/]+/(stock/adjustments|reservations(/.*)?)$");
+    private static final Pattern BULK_PATH = Pattern.compile("^/api/(products|categories|products/category/[^/]+|categories/stats|products/export)$");
+
+    // Devuelve null para rutas que no pasan por el control de admisión
+    public static EndpointGroup classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/query")) {
+            // POST pero solo lee: como mucho MAX_IDS IDs por lista y MAX_PRODUCTS_PER_CATEGORY productos por categoría
+            // (ver CatalogQueryService.productLimit)
+            return READ;
+        }
+        if (!path.startsWith("/api/products") && !path.startsWith("/api/categories")) {
+            return null;
+        }
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        if (STOCK_PATH.matcher(path).matches() && !read) {
+            return STOCK;
+        }
+        if (!read) {
+            return WRITE;
+        }
+        if ("HEAD".equals(request.getMethod()) && request.getParameter("name") != null) {
+            return READ; // HEAD /api/products?name=: comprobación de un nombre, no el listado
+        }
+        return BULK_PATH.matcher(path).matches() ? BULK : READ;
+    }
+}
@@ -0,0 +1,37 @@
+package com.programthis.productcatalogservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Registra el filtro de idempotencia para /api/*, antes del control de admisión; se puede desactivar con
+// catalog.idempotency.enabled=false
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "catalog.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyStore idempotencyStore(@Value("${catalog.idempotency.max-entries:10000}") int maxEntries,
+                                             @Value("${catalog.idempotency.ttl:PT24H}") Duration ttl,
+                                             @Value("${catalog.idempotency.in-flight-timeout:PT30S}") Duration inFlightTimeout) {
+        return new IdempotencyStore(maxEntries, ttl, inFlightTimeout);
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilterRegistration(IdempotencyStore store,
+                                                                                 @Value("${catalog.idempotency.max-body-size:64KB}") DataSize maxBodySize,
+                                                                                 @Value("${catalog.idempotency.max-request-size:64KB}") DataSize maxRequestSize) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(store, (int) maxBodySize.toBytes(), (int) maxRequestSize.toBytes()));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(AdmissionControlConfig.ADMISSION_FILTER_ORDER - 10);
+        return registration;
+    }
+}
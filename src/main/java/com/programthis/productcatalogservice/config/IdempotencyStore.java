@@ -0,0 +1,108 @@
+package com.programthis.productcatalogservice.config;
+
+import lombok.Value;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Respuestas ya enviadas y peticiones en curso por clave de idempotencia, en memoria de esta instancia.
+// Acotado en dos sentidos: cada entrada caduca (ttl para respuestas, in-flight-timeout para peticiones en curso, por
+// si una se queda colgada) y, al llegar a maxEntries, se descarta la más antigua.
+// Las entradas se guardan por orden de llegada; como el ttl es el mismo para todas, las caducadas están al principio
+public class IdempotencyStore {
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Duration inFlightTimeout;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(int maxEntries, Duration ttl, Duration inFlightTimeout) {
+        this(maxEntries, ttl, inFlightTimeout, Clock.systemUTC());
+    }
+
+    IdempotencyStore(int maxEntries, Duration ttl, Duration inFlightTimeout, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.inFlightTimeout = inFlightTimeout;
+        this.clock = clock;
+    }
+
+    // Marca la clave como en curso si no había nada; si no, devuelve lo que hay (en curso o completada)
+    public synchronized Entry begin(String key, String fingerprint) {
+        Instant now = clock.instant();
+        evictExpired(now);
+        Entry existing = entries.get(key);
+        if (existing != null && existing.expiresAt.isAfter(now)) {
+            return existing;
+        }
+        // Una caducada que evictExpired no alcanzó (ver abajo) se sustituye
+        entries.remove(key);
+        entries.put(key, new Entry(fingerprint, null, now.plus(inFlightTimeout)));
+        if (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return null;
+    }
+
+    // Se reinserta al final: su caducidad pasa a contar desde ahora
+    public synchronized void complete(String key, String fingerprint, StoredResponse response) {
+        entries.remove(key);
+        entries.put(key, new Entry(fingerprint, response, clock.instant().plus(ttl)));
+    }
+
+    // La petición no dejó una respuesta que repetir (error del servidor, respuesta demasiado grande...)
+    public synchronized void abandon(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isInFlight()) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        evictExpired(clock.instant());
+        return entries.size();
+    }
+
+    // Las marcas de peticiones en curso caducan antes que las respuestas: se saltan las que aún valen, pero el recorrido
+    // para en la primera respuesta vigente, así que alguna marca caducada puede quedar detrás hasta más tarde
+    private void evictExpired(Instant now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt.isAfter(now)) {
+                if (!entry.isInFlight()) {
+                    break;
+                }
+                continue;
+            }
+            iterator.remove();
+        }
+    }
+
+    // --- DTOs ---
+    @Value
+    public static class Entry {
+        String fingerprint; // hash de método, ruta y cuerpo de la primera petición
+        StoredResponse response; // null mientras la petición está en curso
+        Instant expiresAt;
+
+        public boolean isInFlight() {
+            return response == null;
+        }
+    }
+
+    @Value
+    public static class StoredResponse {
+        int status;
+        String contentType;
+        String location;
+        byte[] body;
+    }
+}
@@ -0,0 +1,30 @@
+package com.programthis.productcatalogservice.config;
+
+import com.programthis.productcatalogservice.service.InvalidationTransport;
+import com.programthis.productcatalogservice.service.UdpInvalidationTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.net.SocketException;
+import java.util.List;
+
+// Transporte del bus de invalidación (CacheInvalidationBus) cuando hay varias instancias: UDP salvo que se declare
+// otro InvalidationTransport. Se activa con catalog.invalidation.enabled=true
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "catalog.invalidation.enabled", havingValue = "true")
+public class InvalidationBusConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(InvalidationTransport.class)
+    public UdpInvalidationTransport udpInvalidationTransport(@Value("${catalog.invalidation.udp.bind:127.0.0.1:7611}") String bind,
+                                                             @Value("${catalog.invalidation.udp.peers:}") List<String> peers)
+            throws SocketException {
+        return new UdpInvalidationTransport(UdpInvalidationTransport.parseAddress(bind),
+                peers.stream().filter(peer -> !peer.isBlank()).map(UdpInvalidationTransport::parseAddress).toList());
+    }
+}
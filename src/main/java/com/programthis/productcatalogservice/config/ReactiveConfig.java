@@ -0,0 +1,18 @@
+package com.programthis.productcatalogservice.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// Con Tomcat en el classpath Spring Boot serviría WebFlux sobre servlets; la edición reactiva usa Netty,
+// que atiende todas las conexiones con un hilo de eventos por núcleo
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
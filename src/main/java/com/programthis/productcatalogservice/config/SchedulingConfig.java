@@ -0,0 +1,10 @@
+package com.programthis.productcatalogservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Activa las tareas @Scheduled (caducidad de reservas, volcados periódicos de stock...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
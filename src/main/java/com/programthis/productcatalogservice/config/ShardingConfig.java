@@ -0,0 +1,107 @@
+package com.programthis.productcatalogservice.config;
+
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.repository.ShardIdAllocator;
+import com.programthis.productcatalogservice.repository.ShardRoutingDataSource;
+import com.programthis.productcatalogservice.repository.ShardSchemaIntegrator;
+import com.programthis.productcatalogservice.repository.ShardedProductRepositoryInterceptor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sharding horizontal de products por categoría (perfil "sharding", ver application-sharding.properties).
+// El shard 0 es spring.datasource.*; los demás se declaran en catalog.sharding.additional-shards[n].url/username/password y todos
+// comparten spring.datasource.hikari.*. Las categorías se replican en todos los shards (CategoryShardReplicator)
+@Configuration
+@Profile("sharding")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties dataSourceProperties, Environment environment)
+            throws Exception {
+        Binder binder = Binder.get(environment);
+        List<DataSourceProperties> shardProperties = new ArrayList<>();
+        shardProperties.add(dataSourceProperties);
+        for (DataSourceProperties properties : binder.bind("catalog.sharding.additional-shards", Bindable.listOf(DataSourceProperties.class))
+                .orElse(List.of())) {
+            properties.afterPropertiesSet();
+            shardProperties.add(properties);
+        }
+        List<DataSource> shards = new ArrayList<>(shardProperties.size());
+        for (int shard = 0; shard < shardProperties.size(); shard++) {
+            HikariDataSource dataSource = shardProperties.get(shard).initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+            dataSource.setPoolName("shard-" + shard);
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // El DataSource que usan Hibernate y el resto del contexto: la conexión física (y con ella el shard) se elige en la
+    // primera sentencia de cada transacción, no al abrirla
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardRoutingDataSource shardRoutingDataSource) {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(new ShardSchemaIntegrator(shardRoutingDataSource)));
+    }
+
+    @Bean
+    public ShardIdAllocator shardIdAllocator(ShardRoutingDataSource shardRoutingDataSource,
+                                             @Value("${catalog.sharding.id-block-size:100}") int blockSize) {
+        return new ShardIdAllocator(shardRoutingDataSource, blockSize);
+    }
+
+    @Bean
+    public ShardedProductRepositoryInterceptor shardedProductRepositoryInterceptor(
+            ShardRoutingDataSource shardRoutingDataSource, ShardIdAllocator shardIdAllocator,
+            PlatformTransactionManager transactionManager, @Value("${catalog.sharding.scatter-threads:16}") int scatterThreads) {
+        return new ShardedProductRepositoryInterceptor(shardRoutingDataSource, shardIdAllocator, transactionManager,
+                scatterThreads);
+    }
+
+    // Envuelve el ProductRepository de Spring Data. Los post-procesadores se crean antes que el resto de beans, así que
+    // el interceptor (y con él el gestor de transacciones) se resuelve en la primera llamada
+    @Bean
+    public static BeanPostProcessor shardedProductRepositoryPostProcessor(
+            ObjectProvider<ShardedProductRepositoryInterceptor> interceptor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof ProductRepository)) {
+                    return bean;
+                }
+                ProxyFactory proxyFactory = new ProxyFactory();
+                proxyFactory.setTarget(bean);
+                proxyFactory.addInterface(ProductRepository.class);
+                proxyFactory.addAdvice((MethodInterceptor) invocation -> interceptor.getObject().invoke(invocation));
+                return proxyFactory.getProxy();
+            }
+        };
+    }
+}
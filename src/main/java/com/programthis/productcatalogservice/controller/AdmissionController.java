@@ -0,0 +1,34 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.config.AdaptiveConcurrencyLimiter.Stats;
+import com.programthis.productcatalogservice.config.AdmissionControlFilter;
+import com.programthis.productcatalogservice.config.EndpointGroup;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/admission")
+@Tag(name = "Admission Control", description = "Endpoints for inspecting concurrency limits and load shedding")
+public class AdmissionController {
+
+    @Autowired(required = false) // No existe si catalog.admission.enabled=false
+    private AdmissionControlFilter admissionControlFilter;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get limit, in-flight requests, rejections and latency per endpoint group")
+    public ResponseEntity<Map<EndpointGroup, Stats>> getStats() {
+        if (admissionControlFilter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(admissionControlFilter.getStats());
+    }
+}
@@ -0,0 +1,41 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.service.CatalogQueryService;
+import com.programthis.productcatalogservice.service.CatalogQueryService.CatalogQuery;
+import com.programthis.productcatalogservice.service.CatalogQueryService.QueryResult;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/query")
+@Tag(name = "Catalog Query", description = "Nested category and product reads in a single batched request")
+public class CatalogQueryController {
+
+    @Autowired
+    private CatalogQueryService catalogQueryService;
+
+    // Ejemplo: {"categories": {"ids": [1, 2], "products": {"limit": 5}}, "products": {"ids": [7, 9], "category": true}}
+    @PostMapping
+    @Operation(summary = "Read categories with their products and products with their category, resolved in batched queries")
+    public ResponseEntity<?> query(@RequestBody CatalogQuery query) {
+        QueryResult result;
+        try {
+            result = catalogQueryService.execute(query);
+        } catch (IllegalArgumentException e) {
+            // Solo los errores de la consulta son 400; un fallo de la base de datos sigue siendo un 500
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+        return ResponseEntity.ok(result);
+    }
+}
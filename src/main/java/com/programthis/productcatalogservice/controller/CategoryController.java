@@ -2,23 +2,31 @@ package com.programthis.productcatalogservice.controller;
 
 import com.programthis.productcatalogservice.model.Category;
 import com.programthis.productcatalogservice.service.CategoryService;
+import com.programthis.productcatalogservice.service.CategoryStatsService;
+import com.programthis.productcatalogservice.service.CategoryStatsService.CategoryStats;
+import com.programthis.productcatalogservice.service.DuplicateNameException;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/categories")
 @Tag(name = "Category Management", description = "Endpoints for managing categories")
 public class CategoryController {
@@ -26,6 +34,12 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private CategoryStatsService categoryStatsService;
+
+    @Autowired
+    private ProductSuggestionService productSuggestionService;
+
     @GetMapping
     @Operation(summary = "Get all categories")
     public CollectionModel<EntityModel<Category>> getAllCategories() {
@@ -37,35 +51,120 @@ public class CategoryController {
                 linkTo(methodOn(CategoryController.class).getAllCategories()).withSelfRel());
     }
 
+    // Variante sin enlaces HATEOAS (?links=none): se salta toEntityModel y devuelve las categorías tal cual
+    @GetMapping(params = {"links=none", "!fields"})
+    @Operation(summary = "Get all categories without hypermedia links")
+    public List<Category> getAllCategoriesWithoutLinks() {
+        return categoryService.getAllCategories();
+    }
+
+    // Lecturas parciales (?fields=id,name): solo se consultan y devuelven esos campos, sin enlaces
+    @GetMapping(params = "fields")
+    @Operation(summary = "Get all categories with only the requested fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllCategoryFields(@RequestParam String fields) {
+        try {
+            return ResponseEntity.ok(categoryService.getAllCategoryFields(fields));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get a category by its ID")
     public ResponseEntity<EntityModel<Category>> getCategoryById(@PathVariable Long id) {
         return categoryService.getCategoryById(id)
+                .map(category -> {
+                    productSuggestionService.recordCategoryView(id);
+                    return category;
+                })
                 .map(this::toEntityModel)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping(value = "/{id}", params = {"links=none", "!fields"})
+    @Operation(summary = "Get a category by its ID without hypermedia links")
+    public ResponseEntity<Category> getCategoryByIdWithoutLinks(@PathVariable Long id) {
+        return categoryService.getCategoryById(id)
+                .map(category -> {
+                    productSuggestionService.recordCategoryView(id);
+                    return ResponseEntity.ok(category);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}", params = "fields")
+    @Operation(summary = "Get a category by its ID with only the requested fields")
+    public ResponseEntity<Map<String, Object>> getCategoryFieldsById(@PathVariable Long id, @RequestParam String fields) {
+        try {
+            return categoryService.getCategoryFieldsById(id, fields)
+                    .map(category -> {
+                        productSuggestionService.recordCategoryView(id);
+                        return ResponseEntity.ok(category);
+                    })
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get product statistics for every category")
+    public List<CategoryStats> getAllCategoryStats() {
+        return categoryStatsService.getAllStats();
+    }
+
+    @GetMapping("/{id}/stats")
+    @Operation(summary = "Get product statistics for a category")
+    public ResponseEntity<CategoryStats> getCategoryStats(@PathVariable Long id) {
+        return categoryStatsService.getStats(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PostMapping
     @Operation(summary = "Create a new category")
     public ResponseEntity<EntityModel<Category>> createCategory(@RequestBody Category category) {
-        Category newCategory = categoryService.saveCategory(category);
-        return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(toEntityModel(newCategory));
+        try {
+            Category newCategory = categoryService.saveCategory(category);
+            return ResponseEntity
+                    .status(HttpStatus.CREATED)
+                    .body(toEntityModel(newCategory));
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @PutMapping("/{id}")
     @Operation(summary = "Update an existing category")
     public ResponseEntity<EntityModel<Category>> updateCategory(@PathVariable Long id, @RequestBody Category categoryDetails) {
-        return categoryService.getCategoryById(id)
-                .map(category -> {
-                    category.setName(categoryDetails.getName());
-                    category.setDescription(categoryDetails.getDescription());
-                    Category updatedCategory = categoryService.saveCategory(category);
-                    return ResponseEntity.ok(toEntityModel(updatedCategory));
-                })
-                .orElse(ResponseEntity.notFound().build());
+        try {
+            return categoryService.getCategoryById(id)
+                    .map(category -> {
+                        category.setName(categoryDetails.getName());
+                        category.setDescription(categoryDetails.getDescription());
+                        Category updatedCategory = categoryService.saveCategory(category);
+                        return ResponseEntity.ok(toEntityModel(updatedCategory));
+                    })
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update a category (JSON Merge Patch)")
+    public ResponseEntity<EntityModel<Category>> patchCategory(@PathVariable Long id, @RequestBody Map<String, Object> patch) {
+        try {
+            return categoryService.patchCategory(id, patch)
+                    .map(this::toEntityModel)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
     }
 
     @DeleteMapping("/{id}")
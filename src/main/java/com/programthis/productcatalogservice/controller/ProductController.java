@@ -1,26 +1,41 @@
 package com.programthis.productcatalogservice.controller;
 
 import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.DuplicateNameException;
 import com.programthis.productcatalogservice.service.ProductService;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.IndexStats;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.Suggestion;
+import com.programthis.productcatalogservice.service.RelatedProductsService;
+import com.programthis.productcatalogservice.service.RelatedProductsService.RelatedProduct;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.data.web.SortDefault;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/products")
 @Tag(name = "Product Management", description = "Endpoints for managing products")
 public class ProductController {
@@ -28,6 +43,12 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductSuggestionService productSuggestionService;
+
+    @Autowired
+    private RelatedProductsService relatedProductsService;
+
     @GetMapping
     @Operation(summary = "Get all products")
     public CollectionModel<EntityModel<Product>> getAllProducts() {
@@ -38,15 +59,144 @@ public class ProductController {
                 linkTo(methodOn(ProductController.class).getAllProducts()).withSelfRel());
     }
 
+    // Variante sin enlaces HATEOAS (?links=none): se salta toEntityModel y devuelve los productos tal cual
+    @GetMapping(params = {"links=none", "!fields"})
+    @Operation(summary = "Get all products without hypermedia links")
+    public List<Product> getAllProductsWithoutLinks() {
+        return productService.getAllProducts();
+    }
+
+    // Lecturas parciales (?fields=id,name,price): solo se consultan y devuelven esos campos, sin enlaces
+    @GetMapping(params = "fields")
+    @Operation(summary = "Get all products with only the requested fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllProductFields(@RequestParam String fields) {
+        try {
+            return ResponseEntity.ok(productService.getAllProductFields(fields));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    // Comprobación barata antes de dar de alta (p. ej. en las cargas de proveedores): 200 si el nombre está en uso, 404 si no
+    @RequestMapping(method = RequestMethod.HEAD, params = "name")
+    @Operation(summary = "Check whether a product name is already in use")
+    public ResponseEntity<Void> productNameExists(@RequestParam String name) {
+        return productService.productNameExists(name) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search products by category, price range, stock and name prefix")
+    public ResponseEntity<PagedModel<EntityModel<Product>>> searchProducts(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String namePrefix,
+            @SortDefault("id") Pageable pageable,
+            PagedResourcesAssembler<Product> pagedResourcesAssembler) {
+        try {
+            Page<Product> page = productService.searchProducts(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable);
+            return ResponseEntity.ok(pagedResourcesAssembler.toModel(page, this::toEntityModel));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping(value = "/search", params = {"links=none", "!fields"})
+    @Operation(summary = "Search products without hypermedia links")
+    public ResponseEntity<List<Product>> searchProductsWithoutLinks(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String namePrefix,
+            @SortDefault("id") Pageable pageable) {
+        try {
+            return ResponseEntity.ok(productService.searchProducts(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable)
+                    .getContent());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping(value = "/search", params = "fields")
+    @Operation(summary = "Search products returning only the requested fields")
+    public ResponseEntity<List<Map<String, Object>>> searchProductFields(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam String fields,
+            @SortDefault("id") Pageable pageable) {
+        try {
+            return ResponseEntity.ok(productService.searchProductFields(categoryId, minPrice, maxPrice, inStock, namePrefix, fields, pageable));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest product and category names starting with a prefix, most popular first")
+    public List<Suggestion> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return productSuggestionService.suggest(prefix, limit);
+    }
+
+    @GetMapping("/suggest/stats")
+    @Operation(summary = "Get size, memory footprint and latency of the suggestion index")
+    public IndexStats getSuggestionIndexStats() {
+        return productSuggestionService.getIndexStats();
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get a product by its ID")
     public ResponseEntity<EntityModel<Product>> getProductById(@PathVariable Long id) {
         return productService.getProductById(id)
+                .map(product -> {
+                    productSuggestionService.recordProductView(id);
+                    return product;
+                })
                 .map(this::toEntityModel)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping(value = "/{id}", params = {"links=none", "!fields"})
+    @Operation(summary = "Get a product by its ID without hypermedia links")
+    public ResponseEntity<Product> getProductByIdWithoutLinks(@PathVariable Long id) {
+        return productService.getProductById(id)
+                .map(product -> {
+                    productSuggestionService.recordProductView(id);
+                    return ResponseEntity.ok(product);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Sale del índice precalculado: no lee la categoría entera en cada visita a la ficha
+    @GetMapping("/{id}/related")
+    @Operation(summary = "Get products related to a product: same category, similar price and words in common")
+    public ResponseEntity<List<RelatedProduct>> getRelatedProducts(@PathVariable Long id,
+                                                                   @RequestParam(defaultValue = "10") int limit) {
+        return relatedProductsService.getRelated(id, limit)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}", params = "fields")
+    @Operation(summary = "Get a product by its ID with only the requested fields")
+    public ResponseEntity<Map<String, Object>> getProductFieldsById(@PathVariable Long id, @RequestParam String fields) {
+        try {
+            return productService.getProductFieldsById(id, fields)
+                    .map(product -> {
+                        productSuggestionService.recordProductView(id);
+                        return ResponseEntity.ok(product);
+                    })
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
     @PostMapping
     @Operation(summary = "Create a new product")
     public ResponseEntity<EntityModel<Product>> createProduct(@RequestBody ProductCreationRequest request) {
@@ -58,6 +208,8 @@ public class ProductController {
                     request.getStock(),
                     request.getCategoryId());
             return ResponseEntity.status(HttpStatus.CREATED).body(toEntityModel(newProduct));
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
@@ -71,6 +223,36 @@ public class ProductController {
                     .map(this::toEntityModel)
                     .map(ResponseEntity::ok)
                     .orElse(ResponseEntity.notFound().build());
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @PostMapping("/{id}/stock/adjustments")
+    @Operation(summary = "Add a relative change to the stock of a product (e.g. warehouse sync)")
+    public ResponseEntity<EntityModel<Product>> adjustStock(@PathVariable Long id, @RequestBody StockAdjustmentRequest request) {
+        try {
+            return productService.adjustStock(id, request.getDelta())
+                    .map(this::toEntityModel)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update a product (JSON Merge Patch)")
+    public ResponseEntity<EntityModel<Product>> patchProduct(@PathVariable Long id, @RequestBody Map<String, Object> patch) {
+        try {
+            return productService.patchProduct(id, patch)
+                    .map(this::toEntityModel)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
@@ -94,6 +276,22 @@ public class ProductController {
                 linkTo(methodOn(ProductController.class).getProductsByCategoryId(categoryId)).withSelfRel());
     }
 
+    @GetMapping(value = "/category/{categoryId}", params = {"links=none", "!fields"})
+    @Operation(summary = "Get all products for a given category ID without hypermedia links")
+    public List<Product> getProductsByCategoryIdWithoutLinks(@PathVariable Long categoryId) {
+        return productService.getProductsByCategoryId(categoryId);
+    }
+
+    @GetMapping(value = "/category/{categoryId}", params = "fields")
+    @Operation(summary = "Get all products for a given category ID with only the requested fields")
+    public ResponseEntity<List<Map<String, Object>>> getProductFieldsByCategoryId(@PathVariable Long categoryId, @RequestParam String fields) {
+        try {
+            return ResponseEntity.ok(productService.getProductFieldsByCategoryId(categoryId, fields));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
     // Helper para convertir Product a EntityModel
     private EntityModel<Product> toEntityModel(Product product) {
         return EntityModel.of(product,
@@ -121,4 +319,11 @@ public class ProductController {
         private Product productDetails;
         private Long categoryId;
     }
-}
\ No newline at end of file
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StockAdjustmentRequest {
+        private int delta;
+    }
+}
@@ -0,0 +1,42 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.service.CatalogExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.Instant;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/products")
+@Tag(name = "Catalog Export", description = "Columnar export of the catalog for analytics")
+public class ProductExportController {
+
+    // La siguiente exportación incremental se pide con ?since=<este valor>
+    public static final String WATERMARK_HEADER = "Catalog-Export-Watermark";
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    // Se escribe directamente en la respuesta según se lee el cursor: no hay Content-Length
+    @GetMapping(value = "/export", produces = CatalogExportService.MEDIA_TYPE)
+    @Operation(summary = "Export products with their category as an Arrow IPC stream, optionally only those changed or deleted since a watermark")
+    public void exportProducts(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+                               HttpServletResponse response) throws IOException {
+        Instant watermark = catalogExportService.newWatermark();
+        response.setContentType(CatalogExportService.MEDIA_TYPE);
+        response.setHeader(WATERMARK_HEADER, watermark.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.arrows\"");
+        catalogExportService.export(since, watermark, response.getOutputStream());
+    }
+}
@@ -0,0 +1,77 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.service.ReactiveCategoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// Edición reactiva de CategoryController (perfil "reactive")
+@RestController
+@RequestMapping("/api/categories")
+@Profile("reactive")
+@Tag(name = "Category Management (reactive)", description = "Non-blocking endpoints for managing categories")
+public class ReactiveCategoryController {
+
+    @Autowired
+    private ReactiveCategoryService categoryService;
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Stream all categories")
+    public Flux<Category> getAllCategories() {
+        return categoryService.getAllCategories();
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get a category by its ID")
+    public Mono<ResponseEntity<Category>> getCategoryById(@PathVariable Long id) {
+        return categoryService.getCategoryById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    @Operation(summary = "Create a new category")
+    public Mono<ResponseEntity<Category>> createCategory(@RequestBody Category category) {
+        return categoryService.saveCategory(category)
+                .map(newCategory -> ResponseEntity.status(HttpStatus.CREATED).body(newCategory));
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update an existing category")
+    public Mono<ResponseEntity<Category>> updateCategory(@PathVariable Long id, @RequestBody Category categoryDetails) {
+        return categoryService.getCategoryById(id)
+                .flatMap(category -> {
+                    category.setName(categoryDetails.getName());
+                    category.setDescription(categoryDetails.getDescription());
+                    return categoryService.saveCategory(category);
+                })
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update a category (JSON Merge Patch)")
+    public Mono<ResponseEntity<Category>> patchCategory(@PathVariable Long id, @RequestBody Map<String, Object> patch) {
+        return categoryService.patchCategory(id, patch)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete a category")
+    public Mono<ResponseEntity<Void>> deleteCategory(@PathVariable Long id) {
+        return categoryService.deleteCategory(id)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+}
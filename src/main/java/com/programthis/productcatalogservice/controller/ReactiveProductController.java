@@ -0,0 +1,135 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.controller.ProductController.ProductCreationRequest;
+import com.programthis.productcatalogservice.controller.ProductController.ProductUpdateRequest;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.ReactiveProductService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Edición reactiva de ProductController (perfil "reactive"). Las respuestas son JSON sin enlaces HAL;
+// los listados se pueden recibir por streaming como application/x-ndjson
+@RestController
+@RequestMapping("/api/products")
+@Profile("reactive")
+@Tag(name = "Product Management (reactive)", description = "Non-blocking endpoints for managing products")
+public class ReactiveProductController {
+
+    // Mismo tope que spring.data.web.pageable.max-page-size en la API bloqueante
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    @Autowired
+    private ReactiveProductService productService;
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Stream all products")
+    public Flux<Product> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Search products with optional filters, paging and sorting")
+    public ResponseEntity<Flux<Product>> searchProducts(@RequestParam(required = false) Long categoryId,
+                                                        @RequestParam(required = false) Double minPrice,
+                                                        @RequestParam(required = false) Double maxPrice,
+                                                        @RequestParam(required = false) Boolean inStock,
+                                                        @RequestParam(required = false) String namePrefix,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "50") int size,
+                                                        @RequestParam(defaultValue = "id") String sort) {
+        try {
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE), parseSort(sort));
+            return ResponseEntity.ok(productService.searchProducts(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream product changes as server-sent events")
+    public Flux<ServerSentEvent<ProductChangedEvent>> streamChanges() {
+        Flux<ServerSentEvent<ProductChangedEvent>> changes = productService.changes()
+                .map(event -> ServerSentEvent.builder(event).event("product-changed").build());
+        // El primer latido sale al momento para enviar las cabeceras; los siguientes mantienen viva la conexión en proxies
+        Flux<ServerSentEvent<ProductChangedEvent>> heartbeats = Flux.interval(Duration.ZERO, HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.<ProductChangedEvent>builder().comment("keep-alive").build());
+        return Flux.merge(changes, heartbeats);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get a product by its ID")
+    public Mono<ResponseEntity<Product>> getProductById(@PathVariable Long id) {
+        return productService.getProductById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/category/{categoryId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Stream the products of a category")
+    public Flux<Product> getProductsByCategoryId(@PathVariable Long categoryId) {
+        return productService.getProductsByCategoryId(categoryId);
+    }
+
+    @PostMapping
+    @Operation(summary = "Create a new product")
+    public Mono<ResponseEntity<Product>> createProduct(@RequestBody ProductCreationRequest request) {
+        return productService.createProduct(
+                        request.getName(),
+                        request.getDescription(),
+                        request.getPrice(),
+                        request.getStock(),
+                        request.getCategoryId())
+                .map(newProduct -> ResponseEntity.status(HttpStatus.CREATED).body(newProduct))
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update an existing product")
+    public Mono<ResponseEntity<Product>> updateProduct(@PathVariable Long id, @RequestBody ProductUpdateRequest request) {
+        return productService.updateProduct(id, request.getProductDetails(), request.getCategoryId())
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update a product (JSON Merge Patch)")
+    public Mono<ResponseEntity<Product>> patchProduct(@PathVariable Long id, @RequestBody Map<String, Object> patch) {
+        return productService.patchProduct(id, patch)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete a product")
+    public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable Long id) {
+        return productService.deleteProduct(id)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    // Formato de ?sort= igual que en Spring Data: "price,desc" o "name"
+    private static Sort parseSort(String sort) {
+        String[] parts = sort.split(",");
+        Sort.Direction direction = parts.length > 1 ? Sort.Direction.fromString(parts[1]) : Sort.Direction.ASC;
+        return Sort.by(direction, parts[0]);
+    }
+}
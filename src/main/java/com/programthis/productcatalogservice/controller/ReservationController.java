@@ -0,0 +1,72 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.service.InsufficientStockException;
+import com.programthis.productcatalogservice.service.InventoryReservationService;
+import com.programthis.productcatalogservice.service.InventoryReservationService.Availability;
+import com.programthis.productcatalogservice.service.InventoryReservationService.Reservation;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/products/{productId}")
+@Tag(name = "Inventory Reservations", description = "Endpoints for holding stock during checkout")
+public class ReservationController {
+
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @PostMapping("/reservations")
+    @Operation(summary = "Hold stock of a product for a limited time")
+    public ResponseEntity<Reservation> reserve(@PathVariable Long productId, @RequestBody ReservationRequest request) {
+        try {
+            return reservationService.reserve(productId, request.getQuantity())
+                    .map(reservation -> ResponseEntity.status(HttpStatus.CREATED).body(reservation))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @PostMapping("/reservations/{holdId}/confirm")
+    @Operation(summary = "Confirm a hold, turning it into a stock decrement")
+    public ResponseEntity<Reservation> confirm(@PathVariable Long productId, @PathVariable String holdId) {
+        return reservationService.confirm(productId, holdId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/reservations/{holdId}")
+    @Operation(summary = "Release a hold before it expires")
+    public ResponseEntity<Void> release(@PathVariable Long productId, @PathVariable String holdId) {
+        return reservationService.release(productId, holdId)
+                .map(reservation -> ResponseEntity.noContent().<Void>build())
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/availability")
+    @Operation(summary = "Get stock, held units and available units of a product")
+    public ResponseEntity<Availability> getAvailability(@PathVariable Long productId) {
+        return reservationService.getAvailability(productId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // --- DTOs ---
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReservationRequest {
+        private int quantity;
+    }
+}
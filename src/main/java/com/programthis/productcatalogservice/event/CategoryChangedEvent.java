@@ -0,0 +1,21 @@
+package com.programthis.productcatalogservice.event;
+
+import com.programthis.productcatalogservice.model.Category;
+import lombok.Value;
+
+// Lo publica CategoryService en cada escritura. Solo lleva el estado nuevo: quien necesite el anterior lo guarda por ID
+@Value
+public class CategoryChangedEvent {
+    Long categoryId;
+    String name;
+    String description;
+    boolean deleted; // al borrar una categoría sus productos se borran en cascada
+
+    public static CategoryChangedEvent saved(Category category) {
+        return new CategoryChangedEvent(category.getId(), category.getName(), category.getDescription(), false);
+    }
+
+    public static CategoryChangedEvent deleted(Long categoryId) {
+        return new CategoryChangedEvent(categoryId, null, null, true);
+    }
+}
@@ -0,0 +1,20 @@
+package com.programthis.productcatalogservice.event;
+
+import com.programthis.productcatalogservice.model.Category;
+import lombok.Value;
+
+// Copia inmutable de una categoría, sin la colección de productos (la usa CatalogCache)
+@Value
+public class CategorySnapshot {
+    Long id;
+    String name;
+    String description;
+
+    public static CategorySnapshot of(CategoryChangedEvent event) {
+        return new CategorySnapshot(event.getCategoryId(), event.getName(), event.getDescription());
+    }
+
+    public Category toCategory() {
+        return new Category(id, name, description);
+    }
+}
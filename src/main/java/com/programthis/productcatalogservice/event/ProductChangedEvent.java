@@ -0,0 +1,14 @@
+package com.programthis.productcatalogservice.event;
+
+import lombok.Value;
+
+// Lo publica ProductService en cada escritura para que los índices en memoria se actualicen de forma incremental
+@Value
+public class ProductChangedEvent {
+    ProductSnapshot before; // null cuando el producto se acaba de crear
+    ProductSnapshot after;  // null cuando el producto se ha borrado
+
+    public Long getProductId() {
+        return after != null ? after.getId() : before.getId();
+    }
+}
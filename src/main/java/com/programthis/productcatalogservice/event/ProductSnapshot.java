@@ -0,0 +1,23 @@
+package com.programthis.productcatalogservice.event;
+
+import com.programthis.productcatalogservice.model.Product;
+import lombok.Value;
+import lombok.With;
+
+// Copia inmutable del estado de un producto en un momento dado (la entidad se modifica in situ al actualizar)
+@Value
+public class ProductSnapshot {
+    Long id;
+    String name;
+    String description;
+    Double price;
+    @With
+    Integer stock;
+    Long categoryId;
+
+    public static ProductSnapshot of(Product product) {
+        return new ProductSnapshot(product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getStock(),
+                product.getCategory() != null ? product.getCategory().getId() : null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.programthis.productcatalogservice.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+
+// Registro de borrados de productos y categorías, escrito en la misma transacción que el borrado. CatalogCache y
+// CacheInvalidationBus lo leen desde un instante para quitar lo borrado sin recorrer todos los IDs de las tablas.
+// Con sharding cada fila queda en el shard donde estaba lo borrado
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "catalog_deletions", indexes = {
+        @Index(name = "idx_catalog_deletions_deleted_at", columnList = "deleted_at")
+})
+public class CatalogDeletion {
+
+    public enum Kind { PRODUCT, CATEGORY }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @CreationTimestamp
+    @Column(name = "deleted_at", nullable = false)
+    private Instant deletedAt;
+
+    public CatalogDeletion(Kind kind, Long entityId) {
+        this.kind = kind;
+        this.entityId = entityId;
+    }
+}
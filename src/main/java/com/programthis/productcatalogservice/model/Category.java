@@ -6,8 +6,11 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.hateoas.RepresentationModel;
 
+import java.time.Instant;
 import java.util.List;
 
 @EqualsAndHashCode(callSuper = true)
@@ -16,6 +19,7 @@ import java.util.List;
 @AllArgsConstructor
 @Entity
 @Table(name = "categories")
+@DynamicUpdate // Los UPDATE solo incluyen las columnas modificadas
 public class Category extends RepresentationModel<Category> {
 
     @Id
@@ -32,6 +36,12 @@ public class Category extends RepresentationModel<Category> {
     @OneToMany(mappedBy = "category", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Product> products;
 
+    // Lo pone Hibernate en cada INSERT/UPDATE; CatalogCache lo usa para pedir solo lo modificado desde su snapshot
+    @JsonIgnore
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public Category(Long id, String name) {
         this.id = id;
         this.name = name;
@@ -1,18 +1,31 @@
 package com.programthis.productcatalogservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.hateoas.RepresentationModel;
 
+import java.time.Instant;
+
 @EqualsAndHashCode(callSuper = true)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "products")
+// Índices compuestos para las combinaciones de filtros de /api/products/search
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_category_price", columnList = "category_id, price"),
+        @Index(name = "idx_products_category_stock", columnList = "category_id, stock"),
+        @Index(name = "idx_products_price", columnList = "price"),
+        @Index(name = "idx_products_stock_price", columnList = "stock, price"),
+        @Index(name = "idx_products_updated_at", columnList = "updated_at")
+})
+@DynamicUpdate // Los UPDATE solo incluyen las columnas modificadas
 public class Product extends RepresentationModel<Product> {
 
     @Id
@@ -34,4 +47,19 @@ public class Product extends RepresentationModel<Product> {
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
-}
\ No newline at end of file
+
+    // Lo pone Hibernate en cada INSERT/UPDATE; CatalogCache lo usa para pedir solo lo modificado desde su snapshot
+    @JsonIgnore
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    public Product(Long id, String name, String description, Double price, Integer stock, Category category) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.stock = stock;
+        this.category = category;
+    }
+}
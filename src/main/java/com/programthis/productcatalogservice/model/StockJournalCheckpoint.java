@@ -0,0 +1,27 @@
+package com.programthis.productcatalogservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Último lote del diario de stock (write-behind) aplicado en la base de datos. Se escribe en la misma transacción
+// que el UPDATE del lote: al arrancar, un segmento del diario con número de lote ya registrado no se vuelve a aplicar
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_journal_checkpoints")
+public class StockJournalCheckpoint {
+
+    // Identificador del diario (uno por instancia), generado la primera vez que se abre
+    @Id
+    @Column(name = "journal_id", length = 36)
+    private String journalId;
+
+    @Column(name = "last_sequence", nullable = false)
+    private Long lastSequence;
+}
@@ -0,0 +1,11 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.CatalogDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// Solo para escribir: las lecturas y la purga están en ProductRepository y CategoryRepository, que con sharding
+// consultan el shard donde se borró cada cosa
+@Repository
+public interface CatalogDeletionRepository extends JpaRepository<CatalogDeletion, Long> {
+}
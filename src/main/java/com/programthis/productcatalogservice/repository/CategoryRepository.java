@@ -1,11 +1,41 @@
 package com.programthis.productcatalogservice.repository;
 
+import com.programthis.productcatalogservice.event.CategorySnapshot;
 import com.programthis.productcatalogservice.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+
 @Repository // Indica que esta interfaz es un repositorio de Spring
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends JpaRepository<Category, Long>, CategoryRepositoryCustom {
     // JpaRepository ya te da métodos CRUD básicos para Category: save, findById, findAll, deleteById, etc.
     // Puedes añadir métodos personalizados si los necesitas, ej: Optional<Category> findByName(String name);
-}
\ No newline at end of file
+
+    // Confirmación de DuplicateNameGuard (ver ProductRepository)
+    boolean existsByName(String name);
+    boolean existsByNameAndIdNot(String name, Long id);
+
+    // Lo mínimo para el índice de autocompletado. Columnas: id, name
+    @Query("select c.id, c.name from Category c")
+    List<Object[]> findAllSuggestionRows();
+
+    // Carga y reconciliación de CatalogCache (ver ProductRepository)
+    @Query("select new com.programthis.productcatalogservice.event.CategorySnapshot(c.id, c.name, c.description) from Category c")
+    List<CategorySnapshot> findAllSnapshots();
+
+    @Query("select new com.programthis.productcatalogservice.event.CategorySnapshot(c.id, c.name, c.description) "
+            + "from Category c where c.updatedAt >= :since")
+    List<CategorySnapshot> findSnapshotsUpdatedSince(@Param("since") Instant since);
+
+    @Query("select c.id from Category c")
+    List<Long> findAllIds();
+
+    // Categorías borradas desde un instante (registro de borrados)
+    @Query("select d.entityId from CatalogDeletion d "
+            + "where d.kind = com.programthis.productcatalogservice.model.CatalogDeletion.Kind.CATEGORY and d.deletedAt >= :since")
+    List<Long> findIdsDeletedSince(@Param("since") Instant since);
+}
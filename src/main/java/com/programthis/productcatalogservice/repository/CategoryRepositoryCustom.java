@@ -0,0 +1,15 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+// Consultas de CategoryRepository que no se pueden expresar como métodos derivados
+public interface CategoryRepositoryCustom {
+
+    // Solo lee las columnas indicadas (por ejemplo "id", "name"); spec puede ser null
+    List<Map<String, Object>> findFields(List<String> paths, Specification<Category> spec, Pageable pageable);
+}
@@ -0,0 +1,22 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+// Implementación de CategoryRepositoryCustom; Spring Data la encuentra por el sufijo Impl
+class CategoryRepositoryImpl implements CategoryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFields(List<String> paths, Specification<Category> spec, Pageable pageable) {
+        return SparseFieldQueries.find(entityManager, Category.class, paths, spec, pageable);
+    }
+}
@@ -1,16 +1,121 @@
 package com.programthis.productcatalogservice.repository;
 
+import com.programthis.productcatalogservice.event.ProductSnapshot;
 import com.programthis.productcatalogservice.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import com.programthis.productcatalogservice.model.Category; // Importar Category
 
 @Repository // Indica que esta interfaz es un repositorio de Spring
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
     // Métodos CRUD básicos de JpaRepository
+
+    // Filas por viaje en las consultas que recorren todo el catálogo. Con useCursorFetch (perfil "prod") MySQL las
+    // entrega por tramos desde un cursor; sin él el driver lee el resultado completo y el valor no tiene efecto.
+    // La exportación (streamExportRows) no depende del perfil: en MySQL siempre lee fila a fila
+    String BULK_FETCH_SIZE = "1000";
+
+    // La categoría (EAGER) se lee en la misma consulta; si no, Hibernate lanza una consulta más por cada categoría distinta
+    @Override
+    @EntityGraph(attributePaths = "category")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BULK_FETCH_SIZE))
+    List<Product> findAll();
+
     // Puedes añadir métodos personalizados, por ejemplo, para buscar productos por categoría:
     List<Product> findByCategory(Category category);
     List<Product> findByCategoryId(Long categoryId); // Buscar por ID de categoría directamente
+
+    // Lecturas por lotes de POST /api/query: un IN por tipo de clave, con la categoría en la misma consulta
+    @EntityGraph(attributePaths = "category")
+    List<Product> findByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "category")
+    List<Product> findByCategoryIdInOrderByIdAsc(Collection<Long> categoryIds);
+
+    // IDs de los primeros limit productos (en orden de ID) de cada categoría: el recorte se hace en la consulta. Nativa
+    // porque Hibernate vuelve a traducir en cada llamada una HQL con tabla derivada
+    @Query(nativeQuery = true, value = "select r.id from (select p.id, row_number() over (partition by p.category_id "
+            + "order by p.id) as rn from products p where p.category_id in (:categoryIds)) r where r.rn <= :limit")
+    List<Long> findFirstIdsPerCategory(@Param("categoryIds") Collection<Long> categoryIds, @Param("limit") int limit);
+
+    // Confirmación de DuplicateNameGuard cuando el filtro de nombres no descarta el nombre (índice único de name)
+    boolean existsByName(String name);
+    boolean existsByNameAndIdNot(String name, Long id);
+
+    // Estado del producto tal y como está en la base de datos (no devuelve la entidad gestionada)
+    @Query("select new com.programthis.productcatalogservice.event.ProductSnapshot(p.id, p.name, p.description, p.price, p.stock, p.category.id) "
+            + "from Product p where p.id = :id")
+    Optional<ProductSnapshot> findSnapshotById(@Param("id") Long id);
+
+    // Igual que findSnapshotById pero para varios productos en una sola consulta
+    @Query("select new com.programthis.productcatalogservice.event.ProductSnapshot(p.id, p.name, p.description, p.price, p.stock, p.category.id) "
+            + "from Product p where p.id in :ids")
+    List<ProductSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Reconciliación de CatalogCache: lo modificado desde un instante (índice idx_products_updated_at)
+    @Query("select new com.programthis.productcatalogservice.event.ProductSnapshot(p.id, p.name, p.description, p.price, p.stock, p.category.id) "
+            + "from Product p where p.updatedAt >= :since")
+    List<ProductSnapshot> findSnapshotsUpdatedSince(@Param("since") Instant since);
+
+    // Carga completa de CatalogCache por tramos de ID (keyset: sin OFFSET, cada tramo parte de la clave primaria)
+    @Query("select new com.programthis.productcatalogservice.event.ProductSnapshot(p.id, p.name, p.description, p.price, p.stock, p.category.id) "
+            + "from Product p where p.id > :afterId order by p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BULK_FETCH_SIZE))
+    List<ProductSnapshot> findSnapshotsAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Productos borrados desde un instante (registro de borrados; con sharding, de todos los shards)
+    @Query("select d.entityId from CatalogDeletion d "
+            + "where d.kind = com.programthis.productcatalogservice.model.CatalogDeletion.Kind.PRODUCT and d.deletedAt >= :since")
+    List<Long> findIdsDeletedSince(@Param("since") Instant since);
+
+    // Purga del registro de borrados, de productos y de categorías (con sharding, en todos los shards)
+    @Modifying
+    @Transactional
+    @Query("delete from CatalogDeletion d where d.deletedAt < :before")
+    int deleteDeletionsBefore(@Param("before") Instant before);
+
+    // Alta con un ID ya asignado: con sharding los IDs los reparte ShardIdAllocator y no el AUTO_INCREMENT del shard
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into products (id, name, description, price, stock, category_id, updated_at) "
+            + "values (:id, :name, :description, :price, :stock, :categoryId, :updatedAt)")
+    void insertWithId(@Param("id") Long id, @Param("name") String name, @Param("description") String description,
+                      @Param("price") Double price, @Param("stock") Integer stock, @Param("categoryId") Long categoryId,
+                      @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Solo la clave primaria: para detectar borrados que el snapshot en disco no conoce
+    @Query("select p.id from Product p")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BULK_FETCH_SIZE))
+    List<Long> findAllIds();
+
+    // Lo mínimo para el índice de autocompletado. Columnas: id, name, categoryId
+    @Query("select p.id, p.name, p.category.id from Product p")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BULK_FETCH_SIZE))
+    List<Object[]> findAllSuggestionRows();
+
+    // Estadísticas de todas las categorías en una sola consulta agregada (las categorías sin productos salen con ceros)
+    // Columnas: categoryId, productCount, inStockCount, minPrice, maxPrice, totalStock
+    @Query("select c.id, count(p.id), coalesce(sum(case when p.stock > 0 then 1 else 0 end), 0), min(p.price), max(p.price), "
+            + "coalesce(sum(p.stock), 0) from Category c left join c.products p group by c.id")
+    List<Object[]> aggregateStatsByCategory();
+
+    // Rango de precios de una categoría; lo resuelve el índice (category_id, price) sin recorrer la tabla
+    // Columnas: minPrice, maxPrice
+    @Query("select min(p.price), max(p.price) from Product p where p.category.id = :categoryId")
+    List<Object[]> findPriceRangeByCategoryId(@Param("categoryId") Long categoryId);
 }
\ No newline at end of file
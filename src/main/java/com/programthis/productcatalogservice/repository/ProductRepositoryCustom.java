@@ -0,0 +1,38 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Product;
+import lombok.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Consultas de ProductRepository que no se pueden expresar como métodos derivados
+public interface ProductRepositoryCustom {
+
+    // Solo lee las columnas indicadas (por ejemplo "id", "price", "category.name"); spec puede ser null
+    List<Map<String, Object>> findFields(List<String> paths, Specification<Product> spec, Pageable pageable);
+
+    // Suma un delta al stock de varios productos con un único lote JDBC (stock = stock + ?), sin cargar las entidades.
+    // Debe llamarse dentro de una transacción
+    void adjustStock(Map<Long, Integer> deltas);
+
+    // Recorre los productos (modificados desde "since" si no es null) por orden de ID con un cursor JDBC, sin cargar
+    // entidades ni el resultado entero en memoria. Debe llamarse dentro de una transacción
+    void streamExportRows(Instant since, Consumer<ExportRow> consumer);
+
+    // --- DTOs ---
+    @Value
+    class ExportRow {
+        long id;
+        String name;
+        String description;
+        double price;
+        int stock;
+        long categoryId;
+        Instant updatedAt; // null en filas anteriores a la columna
+    }
+}
@@ -0,0 +1,79 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Implementación de ProductRepositoryCustom; Spring Data la encuentra por el sufijo Impl
+class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFields(List<String> paths, Specification<Product> spec, Pageable pageable) {
+        return SparseFieldQueries.find(entityManager, Product.class, paths, spec, pageable);
+    }
+
+    @Override
+    public void adjustStock(Map<Long, Integer> deltas) {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "update products set stock = stock + ?, updated_at = ? where id = ?")) {
+                // Fuera de Hibernate no hay @UpdateTimestamp: se pone a mano, en UTC como hibernate.jdbc.time_zone
+                LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+                for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+                    statement.setInt(1, delta.getValue());
+                    statement.setObject(2, now);
+                    statement.setLong(3, delta.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public void streamExportRows(Instant since, Consumer<ExportRow> consumer) {
+        String sql = "select id, name, description, price, stock, category_id, updated_at from products"
+                + (since != null ? " where updated_at >= ?" : "") + " order by id";
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                // En MySQL, Integer.MIN_VALUE hace que el driver entregue fila a fila sin cargar el resultado en memoria,
+                // con o sin useCursorFetch; la conexión queda ocupada hasta cerrar el ResultSet, y el consumidor no la usa
+                statement.setFetchSize(isMySql(connection) ? Integer.MIN_VALUE
+                        : Integer.parseInt(ProductRepository.BULK_FETCH_SIZE));
+                if (since != null) {
+                    statement.setObject(1, LocalDateTime.ofInstant(since, ZoneOffset.UTC));
+                }
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        LocalDateTime updatedAt = rows.getObject(7, LocalDateTime.class);
+                        consumer.accept(new ExportRow(rows.getLong(1), rows.getString(2), rows.getString(3),
+                                rows.getDouble(4), rows.getInt(5), rows.getLong(6),
+                                updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC) : null));
+                    }
+                }
+            }
+        });
+    }
+
+    private static boolean isMySql(Connection connection) throws SQLException {
+        return "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+}
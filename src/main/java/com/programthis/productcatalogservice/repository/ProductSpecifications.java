@@ -0,0 +1,45 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Product;
+import org.springframework.data.jpa.domain.Specification;
+
+// Filtros reutilizables para ProductRepository.findAll(Specification, ...).
+// Cada filtro se apoya en uno de los índices declarados en Product
+public final class ProductSpecifications {
+
+    private ProductSpecifications() {
+    }
+
+    public static Specification<Product> inCategory(Long categoryId) {
+        return (root, query, cb) -> cb.equal(root.get("category").get("id"), categoryId);
+    }
+
+    public static Specification<Product> priceAtLeast(Double minPrice) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+    }
+
+    public static Specification<Product> priceAtMost(Double maxPrice) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+    }
+
+    public static Specification<Product> inStock() {
+        return (root, query, cb) -> cb.greaterThan(root.get("stock"), 0);
+    }
+
+    // LIKE 'prefijo%' puede usar el índice único de name; se escapan los comodines del usuario
+    public static Specification<Product> nameStartsWith(String prefix) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(root.get("name"), pattern, '\\');
+    }
+
+    // Trae la categoría en el mismo SELECT (evita un SELECT por producto por el EAGER de category).
+    // No se aplica a la consulta de conteo de la paginación
+    public static Specification<Product> fetchCategory() {
+        return (root, query, cb) -> {
+            if (query.getResultType() == Product.class) {
+                root.fetch("category");
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Acceso no bloqueante a categories para la edición reactiva. Usa las mismas tablas que crea JPA y
+// devuelve el mismo modelo Category, rellenado a mano a partir de cada fila
+@Repository
+@Profile("reactive")
+public class ReactiveCategoryRepository {
+
+    private static final String SELECT_CATEGORIES = "select id, name, description from categories";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Flux<Category> findAll() {
+        return databaseClient.sql(SELECT_CATEGORIES + " order by id")
+                .map(ReactiveCategoryRepository::toCategory)
+                .all();
+    }
+
+    public Mono<Category> findById(Long id) {
+        return databaseClient.sql(SELECT_CATEGORIES + " where id = :id")
+                .bind("id", id)
+                .map(ReactiveCategoryRepository::toCategory)
+                .one();
+    }
+
+    public Mono<Category> save(Category category) {
+        if (category.getId() == null) {
+            return bindColumns(databaseClient.sql("insert into categories (name, description, updated_at) values (:name, :description, :updatedAt)"), category)
+                    .filter(statement -> statement.returnGeneratedValues("id"))
+                    .map(row -> row.get("id", Long.class))
+                    .one()
+                    .map(id -> new Category(id, category.getName(), category.getDescription()));
+        }
+        return bindColumns(databaseClient.sql("update categories set name = :name, description = :description, updated_at = :updatedAt where id = :id"), category)
+                .bind("id", category.getId())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(category);
+    }
+
+    // Borra también sus productos, igual que el CascadeType.ALL de la entidad
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("delete from products where category_id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .then(databaseClient.sql("delete from categories where id = :id")
+                        .bind("id", id)
+                        .fetch()
+                        .rowsUpdated());
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindColumns(DatabaseClient.GenericExecuteSpec spec, Category category) {
+        spec = ReactiveProductRepository.bindNullable(spec, "name", category.getName(), String.class);
+        spec = ReactiveProductRepository.bindNullable(spec, "description", category.getDescription(), String.class);
+        return ReactiveProductRepository.bindUpdatedAt(spec);
+    }
+
+    private static Category toCategory(Readable row) {
+        return new Category(row.get("id", Long.class), row.get("name", String.class), row.get("description", String.class));
+    }
+}
@@ -0,0 +1,154 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Acceso no bloqueante a products para la edición reactiva. Cada producto se lee con su categoría en un solo JOIN
+// (lo mismo que hace el fetch EAGER de JPA) y las filas se convierten al modelo compartido Product
+@Repository
+@Profile("reactive")
+public class ReactiveProductRepository {
+
+    private static final String SELECT_PRODUCTS = "select p.id, p.name, p.description, p.price, p.stock, "
+            + "c.id as category_id, c.name as category_name, c.description as category_description "
+            + "from products p join categories c on c.id = p.category_id";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Flux<Product> findAll() {
+        return databaseClient.sql(SELECT_PRODUCTS + " order by p.id")
+                .map(ReactiveProductRepository::toProduct)
+                .all();
+    }
+
+    public Mono<Product> findById(Long id) {
+        return databaseClient.sql(SELECT_PRODUCTS + " where p.id = :id")
+                .bind("id", id)
+                .map(ReactiveProductRepository::toProduct)
+                .one();
+    }
+
+    public Flux<Product> findByCategoryId(Long categoryId) {
+        return databaseClient.sql(SELECT_PRODUCTS + " where p.category_id = :categoryId order by p.id")
+                .bind("categoryId", categoryId)
+                .map(ReactiveProductRepository::toProduct)
+                .all();
+    }
+
+    // Mismos filtros que ProductSpecifications; el orden ya viene validado contra CatalogValidation.SORTABLE_PROPERTIES
+    public Flux<Product> search(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock, String namePrefix,
+                                Pageable pageable) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        if (categoryId != null) {
+            conditions.add("p.category_id = :categoryId");
+            parameters.put("categoryId", categoryId);
+        }
+        if (minPrice != null) {
+            conditions.add("p.price >= :minPrice");
+            parameters.put("minPrice", minPrice);
+        }
+        if (maxPrice != null) {
+            conditions.add("p.price <= :maxPrice");
+            parameters.put("maxPrice", maxPrice);
+        }
+        if (Boolean.TRUE.equals(inStock)) {
+            conditions.add("p.stock > 0");
+        }
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            // '!' como carácter de escape: la barra invertida se interpreta distinto en MySQL y en H2
+            conditions.add("p.name like :namePattern escape '!'");
+            parameters.put("namePattern", namePrefix.replaceAll("[!%_]", "!$0") + "%");
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_PRODUCTS);
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+        List<String> orderBy = new ArrayList<>();
+        for (Sort.Order order : pageable.getSortOr(Sort.by("id"))) {
+            orderBy.add("p." + order.getProperty() + (order.isAscending() ? " asc" : " desc"));
+        }
+        sql.append(" order by ").append(String.join(", ", orderBy));
+        if (pageable.isPaged()) {
+            sql.append(" limit :limit offset :offset");
+            parameters.put("limit", pageable.getPageSize());
+            parameters.put("offset", pageable.getOffset());
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec.map(ReactiveProductRepository::toProduct).all();
+    }
+
+    public Mono<Product> save(Product product) {
+        if (product.getId() == null) {
+            return bindColumns(databaseClient.sql("insert into products (name, description, price, stock, category_id, updated_at) "
+                    + "values (:name, :description, :price, :stock, :categoryId, :updatedAt)"), product)
+                    .filter(statement -> statement.returnGeneratedValues("id"))
+                    .map(row -> row.get("id", Long.class))
+                    .one()
+                    .map(id -> new Product(id, product.getName(), product.getDescription(), product.getPrice(),
+                            product.getStock(), product.getCategory()));
+        }
+        return bindColumns(databaseClient.sql("update products set name = :name, description = :description, price = :price, "
+                + "stock = :stock, category_id = :categoryId, updated_at = :updatedAt where id = :id"), product)
+                .bind("id", product.getId())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(product);
+    }
+
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("delete from products where id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // Un null no se puede pasar a bind(): las columnas NOT NULL lo rechazarán en la base de datos, como con JPA
+    private static DatabaseClient.GenericExecuteSpec bindColumns(DatabaseClient.GenericExecuteSpec spec, Product product) {
+        spec = bindNullable(spec, "name", product.getName(), String.class);
+        spec = bindNullable(spec, "description", product.getDescription(), String.class);
+        spec = bindNullable(spec, "price", product.getPrice(), Double.class);
+        spec = bindNullable(spec, "stock", product.getStock(), Integer.class);
+        spec = spec.bind("categoryId", product.getCategory().getId());
+        return bindUpdatedAt(spec);
+    }
+
+    // Mismo criterio que la edición JPA (hibernate.jdbc.time_zone=UTC) para que CatalogCache vea estas escrituras
+    static DatabaseClient.GenericExecuteSpec bindUpdatedAt(DatabaseClient.GenericExecuteSpec spec) {
+        return spec.bind("updatedAt", LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name, T value,
+                                                             Class<T> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+
+    private static Product toProduct(Readable row) {
+        Category category = new Category(row.get("category_id", Long.class), row.get("category_name", String.class),
+                row.get("category_description", String.class));
+        return new Product(row.get("id", Long.class), row.get("name", String.class), row.get("description", String.class),
+                row.get("price", Double.class), row.get("stock", Integer.class), category);
+    }
+}
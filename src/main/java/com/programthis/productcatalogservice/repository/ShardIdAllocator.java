@@ -0,0 +1,116 @@
+package com.programthis.productcatalogservice.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// IDs de products del perfil "sharding". No salen del AUTO_INCREMENT de cada shard: un producto que cambia de shard
+// conserva su ID y, en MySQL, insertarlo con un ID mayor que el contador del shard de destino lo arrastra hasta el
+// rango de otro shard, y desde ahí los dos repartirían los mismos IDs.
+// El asignador es global: la tabla product_id_blocks del shard 0 guarda, por shard, el siguiente ID libre de su rango
+// (así el ID sigue diciendo dónde se creó el producto, ver homeShard). Cada instancia reserva bloques de block-size
+// IDs con SELECT ... FOR UPDATE y los reparte en memoria (hi/lo); los que no llega a usar se pierden al parar
+public class ShardIdAllocator {
+
+    private final ShardRoutingDataSource shards;
+    private final int blockSize;
+    private final long[] next;
+    private final long[] limit;
+    private boolean tableReady;
+
+    public ShardIdAllocator(ShardRoutingDataSource shards, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("El bloque de IDs tiene que ser de al menos 1");
+        }
+        this.shards = shards;
+        this.blockSize = blockSize;
+        this.next = new long[shards.getShardCount()];
+        this.limit = new long[shards.getShardCount()];
+    }
+
+    public synchronized long nextId(int shard) {
+        if (next[shard] >= limit[shard]) {
+            next[shard] = reserveBlock(shard);
+            limit[shard] = next[shard] + blockSize;
+        }
+        return next[shard]++;
+    }
+
+    // Devuelve el primer ID del bloque reservado, en su propia transacción sobre el shard 0
+    private long reserveBlock(int shard) {
+        JdbcTemplate jdbc = new JdbcTemplate(shards.getShard(0));
+        if (!tableReady) {
+            jdbc.execute("create table if not exists product_id_blocks (shard int primary key, next_id bigint not null)");
+            tableReady = true;
+        }
+        Long first = jdbc.execute((ConnectionCallback<Long>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Long start = lockNextId(connection, shard);
+                if (start == null) {
+                    // Primera vez: se parte del mayor ID ya usado del rango en cualquier shard
+                    start = firstFreeId(shard);
+                    try (PreparedStatement insert = connection.prepareStatement(
+                            "insert into product_id_blocks (shard, next_id) values (?, ?)")) {
+                        insert.setInt(1, shard);
+                        insert.setLong(2, start);
+                        insert.executeUpdate();
+                    } catch (SQLException e) {
+                        // Otra instancia ha creado la fila a la vez: se usa la suya
+                        connection.rollback();
+                        start = lockNextId(connection, shard);
+                        if (start == null) {
+                            throw e;
+                        }
+                    }
+                }
+                try (PreparedStatement update = connection.prepareStatement(
+                        "update product_id_blocks set next_id = ? where shard = ?")) {
+                    update.setLong(1, start + blockSize);
+                    update.setInt(2, shard);
+                    update.executeUpdate();
+                }
+                connection.commit();
+                return start;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+        if (first + blockSize > ShardRoutingDataSource.firstId(shard + 1)) {
+            throw new IllegalStateException("Se ha agotado el rango de IDs del shard " + shard);
+        }
+        return first;
+    }
+
+    private static Long lockNextId(Connection connection, int shard) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "select next_id from product_id_blocks where shard = ? for update")) {
+            select.setInt(1, shard);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : null;
+            }
+        }
+    }
+
+    private long firstFreeId(int shard) {
+        long from = ShardRoutingDataSource.firstId(shard);
+        long to = ShardRoutingDataSource.firstId(shard + 1);
+        long free = from;
+        for (int other = 0; other < shards.getShardCount(); other++) {
+            Long max = new JdbcTemplate(shards.getShard(other))
+                    .queryForObject("select max(id) from products where id >= ? and id < ?", Long.class, from, to);
+            if (max != null && max >= free) {
+                free = max + 1;
+            }
+        }
+        return free;
+    }
+}
@@ -0,0 +1,128 @@
+package com.programthis.productcatalogservice.repository;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// DataSource del perfil "sharding": cada conexión sale del shard fijado en el hilo con onShard() (sin fijar, el 0).
+// Va detrás de un LazyConnectionDataSourceProxy, así que el shard se decide en la primera sentencia y no al abrir la
+// transacción; desde ese momento la transacción queda ligada a ese shard (boundShard()).
+// Reparto: un producto vive en el shard de su categoría (shardFor). Los IDs de cada shard salen de su propio rango
+// (firstId) a través de ShardIdAllocator, así que un ID es único entre shards y dice dónde se creó el producto (homeShard)
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    // 2^40 IDs por shard
+    static final int SHARD_ID_BITS = 40;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+    private static final Object BOUND_SHARD_KEY = new Object();
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Hace falta al menos un shard");
+        }
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    // Spring lo llama al cerrar el contexto (método close() de un @Bean): cierra los pools de cada shard
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public int shardFor(Long categoryId) {
+        return (int) Math.floorMod(categoryId, (long) shards.size());
+    }
+
+    // Shard en el que se generó el ID; -1 si el ID no es de ningún rango configurado
+    public int homeShard(Long id) {
+        long shard = id >>> SHARD_ID_BITS;
+        return shard < shards.size() ? (int) shard : -1;
+    }
+
+    public static long firstId(int shard) {
+        return ((long) shard << SHARD_ID_BITS) + 1;
+    }
+
+    public static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT_SHARD.set(previous);
+            } else {
+                CURRENT_SHARD.remove();
+            }
+        }
+    }
+
+    // Shard cuya conexión usa ya la transacción en curso; null si no hay transacción o aún no ha ejecutado nada
+    public static Integer boundShard() {
+        return (Integer) TransactionSynchronizationManager.getResource(BOUND_SHARD_KEY);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT_SHARD.get();
+        int resolved = shard != null ? shard : 0;
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(BOUND_SHARD_KEY)) {
+            TransactionSynchronizationManager.bindResource(BOUND_SHARD_KEY, resolved);
+            TransactionSynchronizationManager.registerSynchronization(new BoundShardSynchronization(resolved));
+        }
+        return resolved;
+    }
+
+    // Sigue a la transacción: se retira al suspenderla (REQUIRES_NEW) y al terminar
+    private static class BoundShardSynchronization implements TransactionSynchronization {
+
+        private final int shard;
+
+        BoundShardSynchronization(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BOUND_SHARD_KEY);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(BOUND_SHARD_KEY, shard);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BOUND_SHARD_KEY);
+        }
+    }
+}
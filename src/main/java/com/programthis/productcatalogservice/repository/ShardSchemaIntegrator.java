@@ -0,0 +1,38 @@
+package com.programthis.productcatalogservice.repository;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+
+import java.util.Map;
+
+// Hibernate solo aplica spring.jpa.hibernate.ddl-auto al shard 0 (el DataSource por defecto). Este Integrator repite
+// la misma acción en el resto de shards (los IDs de products no dependen del AUTO_INCREMENT: ver ShardIdAllocator).
+// Con create-drop, las tablas de los shards distintos del 0 no se borran al parar
+public class ShardSchemaIntegrator implements Integrator {
+
+    private final ShardRoutingDataSource shards;
+
+    public ShardSchemaIntegrator(ShardRoutingDataSource shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        Map<String, Object> settings = sessionFactory.getServiceRegistry().requireService(ConfigurationService.class).getSettings();
+        for (int shard = 1; shard < shards.getShardCount(); shard++) {
+            ShardRoutingDataSource.onShard(shard, () -> {
+                SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(), settings, action -> { });
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,636 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Reparte las llamadas a ProductRepository entre los shards (perfil "sharding"); ProductService no sabe de shards.
+//  - guardar o borrar un producto y las consultas por categoría van al shard de la categoría. Un producto nuevo se
+//    inserta con un ID de ShardIdAllocator, no del AUTO_INCREMENT del shard
+//  - las lecturas por ID prueban el shard de la transacción en curso y el del rango del ID antes que el resto
+//  - todo lo demás (listados, búsquedas, recuentos, variaciones de stock...) va a todos los shards en paralelo y se
+//    unen los resultados: listas ordenadas según el Sort (por ID si no hay), páginas recortadas, recuentos sumados.
+//    findBy(..., consulta fluida) hace lo mismo con cada operación final de la consulta
+// Un método del repositorio que no encaja en ninguna regla impide arrancar (checkRoutes)
+// Un shard distinto del de la transacción en curso se consulta en su propia transacción: una escritura que abarca
+// varios shards (variaciones de stock, cambio de categoría) no es atómica entre ellos
+public class ShardedProductRepositoryInterceptor implements MethodInterceptor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedProductRepositoryInterceptor.class);
+
+    private static final Set<String> BY_ID_METHODS = Set.of("findById", "findSnapshotById", "existsById",
+            "getReferenceById", "getById", "getOne");
+
+    private final ShardRoutingDataSource shards;
+    private final ShardIdAllocator idAllocator;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ExecutorService executor;
+
+    public ShardedProductRepositoryInterceptor(ShardRoutingDataSource shards, ShardIdAllocator idAllocator,
+                                              PlatformTransactionManager transactionManager, int scatterThreads) {
+        checkRoutes(ProductRepository.class);
+        this.shards = shards;
+        this.idAllocator = idAllocator;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Con la cola llena la consulta la hace el propio hilo que llama: nunca se rechaza
+        this.executor = new ThreadPoolExecutor(scatterThreads, scatterThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(scatterThreads * 16), runnable -> {
+                    Thread thread = new Thread(runnable, "shard-scatter-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class || name.equals("flush")) {
+            return invocation.proceed();
+        }
+        ProductRepository repository = (ProductRepository) invocation.getThis();
+        Object[] arguments = invocation.getArguments();
+
+        if (name.equals("save") || name.equals("saveAndFlush")) {
+            return save(repository, method, (Product) arguments[0]);
+        }
+        if (name.startsWith("saveAll")) {
+            List<Product> saved = new ArrayList<>();
+            for (Object product : (Iterable<?>) arguments[0]) {
+                saved.add(save(repository, ProductRepository.class.getMethod("save", Object.class), (Product) product));
+            }
+            return saved;
+        }
+        if (name.equals("insertWithId")) {
+            return onShard(shards.shardFor((Long) arguments[5]), true, () -> call(method, repository, arguments));
+        }
+        Long categoryId = categoryOf(name, arguments);
+        if (categoryId != null) {
+            return onShard(shards.shardFor(categoryId), isWrite(method), () -> call(method, repository, arguments));
+        }
+        if (BY_ID_METHODS.contains(name)) {
+            return findById(repository, method, arguments);
+        }
+        if (name.equals("findBy")) {
+            // findBy(criteria, Function<FetchableFluentQuery<S>, R>): el segundo argumento siempre es esa función, y
+            // S no importa porque la consulta fluida trabaja con Object y cada operación final convierte su resultado
+            @SuppressWarnings("unchecked")
+            Function<FetchableFluentQuery<Object>, ?> queryFunction = (Function<FetchableFluentQuery<Object>, ?>) arguments[1];
+            return queryFunction.apply(new ShardedFluentQuery<>(method, repository, arguments[0]));
+        }
+        if (name.equals("aggregateStatsByCategory")) {
+            return mergeCategoryStats(scatter(method, repository, arguments));
+        }
+        if (name.equals("streamExportRows")) {
+            // El consumidor no es thread-safe: un shard detrás de otro (cada uno en orden de ID)
+            for (int shard = 0; shard < shards.getShardCount(); shard++) {
+                onShard(shard, false, () -> call(method, repository, arguments));
+            }
+            return null;
+        }
+
+        Pageable pageable = argument(arguments, Pageable.class);
+        Sort sort = pageable != null ? pageable.getSort() : argument(arguments, Sort.class);
+        if (sort == null || sort.isUnsorted()) {
+            sort = Sort.by("id");
+        }
+        Object[] shardArguments = arguments;
+        List<String> addedPaths = List.of();
+        if (pageable != null && pageable.isPaged()) {
+            // Cada shard devuelve sus primeras offset + size filas; la página se recorta después de unirlas
+            shardArguments = replace(arguments, pageable,
+                    PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), pageable.getSort()));
+        }
+        if (name.equals("findFields")) {
+            // Para ordenar al unir hacen falta las columnas del Sort aunque no se hayan pedido en ?fields=
+            addedPaths = sortPathsMissingFrom(sort, castList(arguments[0]));
+            if (!addedPaths.isEmpty()) {
+                List<String> paths = new ArrayList<>(castList(arguments[0]));
+                paths.addAll(addedPaths);
+                shardArguments = shardArguments.clone();
+                shardArguments[0] = paths;
+            }
+        }
+        Object merged = merge(method.getReturnType(), scatter(method, repository, shardArguments), pageable, sort);
+        if (!addedPaths.isEmpty()) {
+            for (Object row : (List<?>) merged) {
+                addedPaths.forEach(((Map<?, ?>) row)::remove);
+            }
+        }
+        return merged;
+    }
+
+    // El producto se guarda en el shard de su categoría; si estaba en otro (ha cambiado de categoría) se mueve
+    private Product save(ProductRepository repository, Method method, Product product) {
+        int target = shards.shardFor(product.getCategory().getId());
+        Integer current = product.getId() != null ? locate(repository, product.getId(), target) : null;
+        if (current == null) {
+            // Nuevo (o con un ID que no existe, que JPA también daría de alta con un ID generado)
+            return insert(repository, product, target);
+        }
+        if (current != target) {
+            return move(repository, product, current, target);
+        }
+        return (Product) onShard(target, true, () -> call(method, repository, new Object[]{product}));
+    }
+
+    private Product insert(ProductRepository repository, Product product, int shard) {
+        long id = idAllocator.nextId(shard);
+        return onShard(shard, true, () -> {
+            repository.insertWithId(id, product.getName(), product.getDescription(), product.getPrice(),
+                    product.getStock(), product.getCategory().getId(), LocalDateTime.now(ZoneOffset.UTC));
+            return repository.findById(id).orElseThrow();
+        });
+    }
+
+    // Se conserva el ID: se inserta en el shard nuevo con JDBC y después se borra del anterior. El INSERT ya está
+    // confirmado, así que se deshace si el borrado falla o si la transacción en curso, que incluye el borrado, acaba
+    // en rollback: el producto no queda en los dos shards
+    private Product move(ProductRepository repository, Product product, int from, int to) {
+        JdbcTemplate target = new JdbcTemplate(shards.getShard(to));
+        target.update(
+                "insert into products (id, name, description, price, stock, category_id, updated_at) values (?, ?, ?, ?, ?, ?, ?)",
+                product.getId(), product.getName(), product.getDescription(), product.getPrice(), product.getStock(),
+                product.getCategory().getId(), LocalDateTime.now(ZoneOffset.UTC));
+        Runnable undoInsert = () -> target.update("delete from products where id = ?", product.getId());
+        boolean inCurrentTransaction = joinsCurrentTransaction(from);
+        try {
+            onShard(from, true, () -> {
+                repository.deleteById(product.getId());
+                repository.flush(); // el fallo tiene que saltar aquí y no en el commit
+                return null;
+            });
+        } catch (RuntimeException e) {
+            undo(undoInsert, product.getId(), from, to, e);
+            throw e;
+        }
+        if (inCurrentTransaction && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        undo(undoInsert, product.getId(), from, to, null);
+                    }
+                }
+            });
+        }
+        log.debug("Producto {} movido del shard {} al {}", product.getId(), from, to);
+        return product;
+    }
+
+    private static void undo(Runnable undoInsert, Long id, int from, int to, RuntimeException cause) {
+        try {
+            undoInsert.run();
+        } catch (RuntimeException e) {
+            if (cause != null) {
+                cause.addSuppressed(e);
+            }
+            log.error("El producto {} ha quedado en los shards {} y {}", id, from, to, e);
+        }
+    }
+
+    private Object findById(ProductRepository repository, Method method, Object[] arguments) {
+        Object result = null;
+        for (int shard : probeOrder((Long) arguments[0], null)) {
+            result = onShard(shard, false, () -> call(method, repository, arguments));
+            if (result instanceof Optional<?> optional ? optional.isPresent() : !Boolean.FALSE.equals(result)) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private Integer locate(ProductRepository repository, Long id, int preferred) {
+        for (int shard : probeOrder(id, preferred)) {
+            if (onShard(shard, false, () -> repository.findSnapshotById(id)).isPresent()) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    // Primero el shard de la transacción en curso, luego el preferido y el del rango del ID, y por último el resto
+    private Set<Integer> probeOrder(Long id, Integer preferred) {
+        Set<Integer> order = new LinkedHashSet<>();
+        Integer bound = ShardRoutingDataSource.boundShard();
+        if (bound != null) {
+            order.add(bound);
+        }
+        if (preferred != null) {
+            order.add(preferred);
+        }
+        int home = shards.homeShard(id);
+        if (home >= 0) {
+            order.add(home);
+        }
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            order.add(shard);
+        }
+        return order;
+    }
+
+    // Dentro de la transacción en curso si ya usa ese shard o aún no ha tocado ninguno; si no, en una transacción propia
+    private <T> T onShard(int shard, boolean write, Supplier<T> work) {
+        if (!joinsCurrentTransaction(shard)) {
+            return inOwnTransaction(shard, write, work);
+        }
+        Integer bound = ShardRoutingDataSource.boundShard();
+        return bound != null ? work.get() : ShardRoutingDataSource.onShard(shard, work);
+    }
+
+    private static boolean joinsCurrentTransaction(int shard) {
+        Integer bound = ShardRoutingDataSource.boundShard();
+        return bound != null ? bound == shard : TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    private <T> T inOwnTransaction(int shard, boolean write, Supplier<T> work) {
+        TransactionTemplate transaction = write ? writeTransaction : readTransaction;
+        return ShardRoutingDataSource.onShard(shard, () -> transaction.execute(status -> work.get()));
+    }
+
+    // Un resultado por shard, en orden de shard. El de la transacción en curso se consulta en ella; el resto en paralelo
+    private List<Object> scatter(Method method, ProductRepository repository, Object[] arguments) {
+        boolean write = isWrite(method);
+        int count = shards.getShardCount();
+        Integer bound = ShardRoutingDataSource.boundShard();
+        int local = bound != null ? bound : 0;
+        List<CompletableFuture<Object>> remote = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            remote.add(shard == local ? null : CompletableFuture.supplyAsync(
+                    () -> inOwnTransaction(target, write, () -> call(method, repository, arguments)), executor));
+        }
+        Object localResult = bound != null
+                ? call(method, repository, arguments)
+                : inOwnTransaction(local, write, () -> call(method, repository, arguments));
+        List<Object> results = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            try {
+                results.add(shard == local ? localResult : remote.get(shard).join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return results;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object merge(Class<?> type, List<Object> results, Pageable pageable, Sort sort) {
+        if (type == void.class) {
+            return null;
+        }
+        if (type == Optional.class) {
+            return results.stream().map(Optional.class::cast).filter(Optional::isPresent).findFirst().orElse(Optional.empty());
+        }
+        if (Page.class.isAssignableFrom(type)) {
+            long total = results.stream().mapToLong(page -> ((Page<?>) page).getTotalElements()).sum();
+            List<Object> content = new ArrayList<>();
+            results.forEach(page -> content.addAll(((Page<?>) page).getContent()));
+            return new PageImpl(sortAndSlice(content, sort, pageable), pageable, total);
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            List<Object> all = new ArrayList<>();
+            results.forEach(result -> all.addAll((Collection<?>) result));
+            return sortAndSlice(all, sort, pageable);
+        }
+        if (type == long.class || type == Long.class) {
+            return results.stream().mapToLong(count -> ((Number) count).longValue()).sum();
+        }
+        if (type == int.class || type == Integer.class) {
+            return results.stream().mapToInt(count -> ((Number) count).intValue()).sum();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return results.stream().anyMatch(Boolean.TRUE::equals);
+        }
+        throw new UnsupportedOperationException("Sin regla de sharding para resultados de tipo " + type.getName());
+    }
+
+    private static boolean isMergeable(Class<?> type) {
+        return type == void.class || type == Optional.class || Page.class.isAssignableFrom(type)
+                || Iterable.class.isAssignableFrom(type) || type == long.class || type == Long.class
+                || type == int.class || type == Integer.class || type == boolean.class || type == Boolean.class;
+    }
+
+    // Métodos sin regla: los que van a todos los shards y devuelven un tipo que merge no sabe unir. Se comprueba al
+    // arrancar para que un método nuevo del repositorio no falle solo cuando se llame
+    static void checkRoutes(Class<?> repositoryInterface) {
+        List<String> unrouted = Arrays.stream(repositoryInterface.getMethods())
+                .filter(method -> !method.isDefault() && !Modifier.isStatic(method.getModifiers()))
+                .filter(method -> !hasOwnRoute(method) && !isMergeable(method.getReturnType()))
+                .map(method -> method.getDeclaringClass().getSimpleName() + "." + method.getName())
+                .distinct()
+                .toList();
+        if (!unrouted.isEmpty()) {
+            throw new IllegalStateException("Métodos de " + repositoryInterface.getSimpleName()
+                    + " sin regla de sharding: " + unrouted);
+        }
+    }
+
+    // Los que no pasan por merge: van a un solo shard o tienen su propia forma de unir
+    private static boolean hasOwnRoute(Method method) {
+        String name = method.getName();
+        Class<?>[] parameters = method.getParameterTypes();
+        return name.equals("flush") || name.startsWith("save") || BY_ID_METHODS.contains(name)
+                || Set.of("findBy", "aggregateStatsByCategory", "streamExportRows", "insertWithId").contains(name)
+                || Arrays.stream(parameters).anyMatch(type -> type == Category.class)
+                || (name.contains("CategoryId") && parameters.length > 0 && parameters[0] == Long.class);
+    }
+
+    // Ordena una vez calculadas las claves de cada fila (no en cada comparación)
+    private static List<Object> sortAndSlice(List<Object> rows, Sort sort, Pageable pageable) {
+        List<Sort.Order> orders = sort.toList();
+        List<Map.Entry<Object[], Object>> keyed = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] key = new Object[orders.size()];
+            for (int i = 0; i < orders.size(); i++) {
+                key[i] = property(row, orders.get(i).getProperty());
+            }
+            keyed.add(Map.entry(key, row));
+        }
+        Comparator<Map.Entry<Object[], Object>> comparator = (left, right) -> 0;
+        for (int i = 0; i < orders.size(); i++) {
+            int index = i;
+            Comparator<Object> byValue = Comparator.nullsLast(ShardedProductRepositoryInterceptor::compareValues);
+            Comparator<Map.Entry<Object[], Object>> byKey = Comparator.comparing(entry -> entry.getKey()[index], byValue);
+            comparator = comparator.thenComparing(orders.get(i).isAscending() ? byKey : byKey.reversed());
+        }
+        keyed.sort(comparator);
+        long offset = pageable != null && pageable.isPaged() ? pageable.getOffset() : 0;
+        long limit = pageable != null && pageable.isPaged() ? pageable.getPageSize() : Long.MAX_VALUE;
+        return keyed.stream().skip(offset).limit(limit).map(Map.Entry::getValue).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object left, Object right) {
+        return left instanceof Comparable comparable && left.getClass().isInstance(right) ? comparable.compareTo(right) : 0;
+    }
+
+    // Valor de una propiedad en una entidad, una proyección o una fila de ?fields= (mapa, con anidados para "a.b")
+    private static Object property(Object row, String path) {
+        if (row instanceof Map<?, ?> map) {
+            Object value = map;
+            for (String attribute : path.split("\\.")) {
+                value = value instanceof Map<?, ?> nested ? nested.get(attribute) : null;
+            }
+            return value;
+        }
+        if (row == null || row instanceof Object[] || row instanceof Number || row instanceof CharSequence) {
+            return null;
+        }
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
+        return wrapper.isReadableProperty(path) ? wrapper.getPropertyValue(path) : null;
+    }
+
+    // Columnas: categoryId, productCount, inStockCount, minPrice, maxPrice, totalStock. Cada shard devuelve todas
+    // las categorías (están replicadas), así que se suman por categoría
+    private static List<Object[]> mergeCategoryStats(List<Object> results) {
+        Map<Long, Object[]> merged = new LinkedHashMap<>();
+        for (Object result : results) {
+            for (Object[] row : castList(result).stream().map(Object[].class::cast).toList()) {
+                Object[] total = merged.computeIfAbsent((Long) row[0], id -> new Object[]{id, 0L, 0L, null, null, 0L});
+                total[1] = (Long) total[1] + ((Number) row[1]).longValue();
+                total[2] = (Long) total[2] + ((Number) row[2]).longValue();
+                total[3] = row[3] == null ? total[3] : total[3] == null ? row[3] : Math.min((Double) total[3], (Double) row[3]);
+                total[4] = row[4] == null ? total[4] : total[4] == null ? row[4] : Math.max((Double) total[4], (Double) row[4]);
+                total[5] = (Long) total[5] + ((Number) row[5]).longValue();
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // ID de categoría que decide el shard: un argumento Category o Product (delete), o un Long en métodos "...CategoryId"
+    private static Long categoryOf(String name, Object[] arguments) {
+        for (Object argument : arguments) {
+            if (argument instanceof Category category) {
+                return category.getId();
+            }
+            if (argument instanceof Product product && product.getCategory() != null) {
+                return product.getCategory().getId();
+            }
+        }
+        if (name.contains("CategoryId") && arguments.length > 0 && arguments[0] instanceof Long categoryId) {
+            return categoryId;
+        }
+        return null;
+    }
+
+    private static boolean isWrite(Method method) {
+        String name = method.getName();
+        return method.getReturnType() == void.class || name.startsWith("save") || name.startsWith("delete")
+                || name.startsWith("adjust");
+    }
+
+    private static List<String> sortPathsMissingFrom(Sort sort, List<String> paths) {
+        return sort.stream().map(Sort.Order::getProperty).filter(property -> !paths.contains(property)).distinct().toList();
+    }
+
+    private static <T> T argument(Object[] arguments, Class<T> type) {
+        return Arrays.stream(arguments).filter(type::isInstance).map(type::cast).findFirst().orElse(null);
+    }
+
+    private static Object[] replace(Object[] arguments, Object from, Object to) {
+        Object[] replaced = arguments.clone();
+        for (int i = 0; i < replaced.length; i++) {
+            if (replaced[i] == from) {
+                replaced[i] = to;
+            }
+        }
+        return replaced;
+    }
+
+    // Consulta fluida de findBy sobre todos los shards: guarda sortBy, limit, as y project y, en la operación final,
+    // lanza la misma consulta en cada shard y une los resultados como el resto de listados
+    private class ShardedFluentQuery<T> implements FetchableFluentQuery<T> {
+
+        private final Method method;
+        private final ProductRepository repository;
+        private final Object criteria; // Specification o Example
+        private final Sort sort;
+        private final int limit; // 0: sin límite
+        private final Class<?> resultType;
+        private final Collection<String> properties;
+
+        ShardedFluentQuery(Method method, ProductRepository repository, Object criteria) {
+            this(method, repository, criteria, Sort.unsorted(), 0, null, null);
+        }
+
+        private ShardedFluentQuery(Method method, ProductRepository repository, Object criteria, Sort sort, int limit,
+                                   Class<?> resultType, Collection<String> properties) {
+            this.method = method;
+            this.repository = repository;
+            this.criteria = criteria;
+            this.sort = sort;
+            this.limit = limit;
+            this.resultType = resultType;
+            this.properties = properties;
+        }
+
+        @Override
+        public FetchableFluentQuery<T> sortBy(Sort sort) {
+            return new ShardedFluentQuery<>(method, repository, criteria, this.sort.and(sort), limit, resultType, properties);
+        }
+
+        @Override
+        public FetchableFluentQuery<T> limit(int limit) {
+            return new ShardedFluentQuery<>(method, repository, criteria, sort, limit, resultType, properties);
+        }
+
+        @Override
+        public <R> FetchableFluentQuery<R> as(Class<R> resultType) {
+            return new ShardedFluentQuery<>(method, repository, criteria, sort, limit, resultType, properties);
+        }
+
+        @Override
+        public FetchableFluentQuery<T> project(Collection<String> properties) {
+            return new ShardedFluentQuery<>(method, repository, criteria, sort, limit, resultType, properties);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T oneValue() {
+            List<Object> found = onEveryShard(sort, FetchableFluentQuery::oneValue).stream().filter(Objects::nonNull).toList();
+            if (found.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1, found.size());
+            }
+            return found.isEmpty() ? null : (T) found.get(0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T firstValue() {
+            List<Object> found = onEveryShard(sortOrId(), FetchableFluentQuery::firstValue).stream().filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            return found.isEmpty() ? null : (T) sortAndSlice(found, sortOrId(), PageRequest.of(0, 1)).get(0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<T> all() {
+            List<Object> merged = (List<Object>) merge(List.class, onEveryShard(sortOrId(), FetchableFluentQuery::all), null, sortOrId());
+            return (List<T>) (limit > 0 && merged.size() > limit ? merged.subList(0, limit) : merged);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Page<T> page(Pageable pageable) {
+            // Cada shard devuelve sus primeras offset + size filas en el orden de la página; se recorta al unirlas
+            Sort pageSort = pageable.getSort().isSorted() ? pageable.getSort() : sortOrId();
+            Pageable shardPageable = pageable.isPaged()
+                    ? PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), pageSort)
+                    : pageable;
+            return (Page<T>) merge(Page.class, onEveryShard(Sort.unsorted(), query -> query.page(shardPageable)),
+                    pageable, pageSort);
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return all().stream();
+        }
+
+        @Override
+        public long count() {
+            return (long) merge(long.class, onEveryShard(sort, FetchableFluentQuery::count), null, null);
+        }
+
+        @Override
+        public boolean exists() {
+            return (boolean) merge(boolean.class, onEveryShard(sort, FetchableFluentQuery::exists), null, null);
+        }
+
+        // Sin Sort los shards no devuelven un orden que se pueda unir: firstValue, all y page ordenan por ID
+        private Sort sortOrId() {
+            return sort.isSorted() ? sort : Sort.by("id");
+        }
+
+        private List<Object> onEveryShard(Sort shardSort, Function<FetchableFluentQuery<?>, Object> terminal) {
+            Function<FetchableFluentQuery<?>, Object> query = fluent -> {
+                FetchableFluentQuery<?> configured = fluent.sortBy(shardSort);
+                if (limit > 0) {
+                    configured = configured.limit(limit);
+                }
+                if (resultType != null) {
+                    configured = configured.as(resultType);
+                }
+                if (properties != null) {
+                    configured = configured.project(properties);
+                }
+                return terminal.apply(configured);
+            };
+            return scatter(method, repository, new Object[]{criteria, query});
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(Object list) {
+        return (List<T>) list;
+    }
+
+    private static Object call(Method method, Object target, Object[] arguments) {
+        try {
+            return AopUtils.invokeJoinpointUsingReflection(target, method, arguments);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.programthis.productcatalogservice.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Consultas que solo leen las columnas pedidas (?fields=) y devuelven cada fila como un mapa campo -> valor.
+// Una ruta con punto ("category.name") navega la relación con un JOIN y sale como objeto anidado
+final class SparseFieldQueries {
+
+    private SparseFieldQueries() {
+    }
+
+    static <T> List<Map<String, Object>> find(EntityManager entityManager, Class<T> type, List<String> paths,
+                                              Specification<T> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(type);
+
+        List<Selection<?>> selections = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            Path<?> expression = root;
+            for (String attribute : path.split("\\.")) {
+                expression = expression.get(attribute);
+            }
+            selections.add(expression.alias(path));
+        }
+        query.multiselect(selections);
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        List<Tuple> tuples = typedQuery.getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(toMap(tuple));
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(Tuple tuple) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (TupleElement<?> element : tuple.getElements()) {
+            String[] attributes = element.getAlias().split("\\.");
+            Map<String, Object> target = row;
+            for (int i = 0; i < attributes.length - 1; i++) {
+                target = (Map<String, Object>) target.computeIfAbsent(attributes[i], key -> new LinkedHashMap<>());
+            }
+            target.put(attributes[attributes.length - 1], tuple.get(element));
+        }
+        return row;
+    }
+}
@@ -0,0 +1,66 @@
+package com.programthis.productcatalogservice.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+// Al estilo de DataLoader: se piden claves sueltas (load) mientras se recorre la consulta y dispatch las resuelve todas
+// con una sola llamada por lotes. Lo ya resuelto (también lo que no existe) se recuerda y no se vuelve a pedir.
+// Vive lo que dura una petición: la memoización no se comparte entre peticiones ni entre hilos
+class BatchLoader<K, V> {
+
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final Map<K, Optional<V>> resolved = new HashMap<>();
+    private final Set<K> queued = new LinkedHashSet<>();
+    private int batches;
+
+    BatchLoader(Function<Set<K>, Map<K, V>> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    void load(K key) {
+        if (!resolved.containsKey(key)) {
+            queued.add(key);
+        }
+    }
+
+    void loadMany(Collection<K> keys) {
+        keys.forEach(this::load);
+    }
+
+    // Valor obtenido por otro camino (p. ej. los productos leídos al cargar su categoría)
+    void prime(K key, V value) {
+        resolved.putIfAbsent(key, Optional.of(value));
+        queued.remove(key);
+    }
+
+    void dispatch() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        Set<K> keys = new LinkedHashSet<>(queued);
+        queued.clear();
+        Map<K, V> values = batchFunction.apply(keys);
+        batches++;
+        for (K key : keys) {
+            resolved.put(key, Optional.ofNullable(values.get(key)));
+        }
+    }
+
+    // Solo para claves ya resueltas con dispatch
+    Optional<V> get(K key) {
+        Optional<V> value = resolved.get(key);
+        if (value == null) {
+            throw new IllegalStateException("Clave sin resolver: " + key);
+        }
+        return value;
+    }
+
+    int getBatches() {
+        return batches;
+    }
+}
@@ -0,0 +1,76 @@
+package com.programthis.productcatalogservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Filtro de Bloom: "no está" es seguro si se añadieron todas las claves; "puede estar" hay que confirmarlo.
+// No admite borrados (quitar una clave que no se sabe si se añadió apagaría bits de otras): lo que sobra se va
+// en la siguiente reconstrucción. Sin bloqueos: cada bit se pone con CAS
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    // Tamaño óptimo para "expectedKeys" claves con la tasa de falsos positivos indicada
+    BloomFilter(long expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        double m = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(m)));
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round(bitCount / (double) n * Math.log(2))));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    void add(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            long mask = 1L << (index & 63);
+            long word;
+            do {
+                word = bits.get(index >>> 6);
+            } while ((word & mask) == 0 && !bits.compareAndSet(index >>> 6, word, word | mask));
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            if ((bits.get(index >>> 6) & (1L << (index & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getMemoryBytes() {
+        return 8L * bits.length();
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    // Doble hash (Kirsch-Mitzenmacher): las k posiciones salen de las dos mitades de un único hash de 64 bits
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + i * h2, bitCount);
+    }
+
+    // FNV-1a sobre UTF-8 y el mezclador final de MurmurHash3 para repartir bien los bits
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,404 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bus de invalidación entre instancias: cada escritura local (eventos de ProductService/CategoryService) se apunta y,
+// cada batch-window, se envía a las demás instancias en mensajes que agrupan las claves modificadas (varias escrituras
+// del mismo producto en la ventana se quedan en una). Quien lo recibe relee esas filas de la base de datos y publica
+// los mismos eventos que una escritura local, así que CatalogCache y los índices en memoria se actualizan igual.
+// Cada entrada lleva la versión del emisor: una más antigua que la última aplicada de ese emisor (datagrama
+// desordenado o duplicado) se descarta. Como siempre se relee la base de datos, un mensaje nunca devuelve un valor
+// antiguo; la versión solo evita lecturas inútiles.
+// Staleness acotada: sin escrituras se envía un latido cada max-staleness/4. Un hueco en la secuencia de un emisor
+// que no se rellena o un emisor del que no llega nada en dos latidos provocan una resincronización (lo modificado en
+// la base de datos desde el último momento en que estaba al día, menos resync-margin, y lo apuntado en el registro de
+// borrados). Así una escritura en otra instancia se ve aquí en menos de max-staleness, salvo que la base de datos no
+// responda o el emisor quede aislado: un emisor callado se resincroniza una vez; lo que escriba mientras tanto se ve
+// por el hueco en su secuencia cuando se le vuelva a oír, o al olvidarlo si no vuelve
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "catalog.invalidation.enabled", havingValue = "true")
+public class CacheInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    // Un emisor del que no se sabe nada en este número de max-staleness se da por parado y se olvida
+    static final int PEER_EXPIRY_FACTOR = 12;
+
+    // Más mensajes perdidos seguidos que esto no se apuntan uno a uno: se resincroniza directamente
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    @Autowired
+    private InvalidationTransport transport;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${catalog.invalidation.max-staleness:PT5S}")
+    private Duration maxStaleness = Duration.ofSeconds(5);
+
+    // Cubre diferencias de reloj entre instancias (updated_at lo pone el reloj de quien escribe)
+    @Value("${catalog.invalidation.resync-margin:PT30S}")
+    private Duration resyncMargin = Duration.ofSeconds(30);
+
+    private Clock clock = Clock.systemUTC();
+
+    private final UUID instanceId = UUID.randomUUID();
+    private final AtomicLong versionClock = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<InvalidationMessage.Key, Long> pending = new LinkedHashMap<>();
+    private final Map<UUID, Peer> peers = new HashMap<>();
+    private final Map<InvalidationMessage.Key, AppliedVersion> appliedVersions = new ConcurrentHashMap<>();
+    // Las escrituras que aplica el propio bus no se vuelven a enviar
+    private final ThreadLocal<Boolean> applyingRemote = ThreadLocal.withInitial(() -> false);
+    private final Object applyLock = new Object();
+
+    private volatile Instant startedAt;
+    private volatile Instant lastSentAt;
+    private Instant lastCheckAt;
+    private Instant resyncFrom; // resincronización pendiente porque falló la anterior (protegido por peers)
+
+    @PostConstruct
+    void start() throws IOException {
+        startedAt = clock.instant();
+        lastSentAt = startedAt;
+        lastCheckAt = startedAt;
+        transport.start(this::receive);
+    }
+
+    // Lo pendiente se envía antes de que Spring cierre el transporte
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    public UUID getInstanceId() {
+        return instanceId;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!applyingRemote.get() && !catalogCache.isReconciling()) {
+            enqueue(InvalidationMessage.Kind.PRODUCT, event.getProductId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!applyingRemote.get() && !catalogCache.isReconciling()) {
+            enqueue(InvalidationMessage.Kind.CATEGORY, event.getCategoryId());
+        }
+    }
+
+    private void enqueue(InvalidationMessage.Kind kind, Long id) {
+        synchronized (pending) {
+            pending.put(new InvalidationMessage.Key(kind, id), versionClock.incrementAndGet());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.invalidation.batch-window:PT0.05S}")
+    public void tick() {
+        flush();
+        Instant now = clock.instant();
+        if (!now.isBefore(lastCheckAt.plus(heartbeatInterval()))) {
+            checkPeers(now);
+        }
+    }
+
+    // Envía lo pendiente en mensajes de hasta MAX_ENTRIES claves, o un latido vacío si toca y no hay nada
+    void flush() {
+        List<InvalidationMessage.Entry> entries = new ArrayList<>();
+        synchronized (pending) {
+            pending.forEach((key, version) -> entries.add(new InvalidationMessage.Entry(key.getKind(), key.getId(), version)));
+            pending.clear();
+        }
+        Instant now = clock.instant();
+        if (entries.isEmpty() && now.isBefore(lastSentAt.plus(heartbeatInterval()))) {
+            return;
+        }
+        int from = 0;
+        do {
+            List<InvalidationMessage.Entry> chunk = entries.subList(from, Math.min(from + InvalidationMessage.MAX_ENTRIES, entries.size()));
+            send(new InvalidationMessage(instanceId, sequence.incrementAndGet(), List.copyOf(chunk)));
+            from += InvalidationMessage.MAX_ENTRIES;
+        } while (from < entries.size());
+        lastSentAt = now;
+    }
+
+    private void send(InvalidationMessage message) {
+        try {
+            transport.send(message.encode());
+        } catch (IOException e) {
+            // La secuencia ya ha avanzado: los demás verán el hueco y resincronizarán
+            log.warn("No se pudo enviar el mensaje {} del bus de invalidación: {}", message.getSequence(), e.getMessage());
+        }
+    }
+
+    void receive(byte[] datagram) {
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.decode(datagram);
+        } catch (IOException e) {
+            log.debug("Se descarta un datagrama del bus de invalidación: {}", e.getMessage());
+            return;
+        }
+        if (message.getSenderId().equals(instanceId)) {
+            return;
+        }
+        trackSequence(message.getSenderId(), message.getSequence());
+        List<InvalidationMessage.Entry> fresh = message.getEntries().stream()
+                .filter(entry -> isNewer(message.getSenderId(), entry))
+                .toList();
+        if (!fresh.isEmpty()) {
+            apply(message.getSenderId(), fresh);
+        }
+    }
+
+    private boolean isNewer(UUID senderId, InvalidationMessage.Entry entry) {
+        AppliedVersion applied = appliedVersions.get(entry.getKey());
+        return applied == null || !applied.senderId.equals(senderId) || entry.getVersion() > applied.version;
+    }
+
+    private void trackSequence(UUID senderId, long messageSequence) {
+        Instant now = clock.instant();
+        synchronized (peers) {
+            Peer peer = peers.get(senderId);
+            if (peer == null) {
+                peer = new Peer(messageSequence, now);
+                peers.put(senderId, peer);
+                log.info("Nueva instancia en el bus de invalidación: {}", senderId);
+                if (messageSequence > 1) {
+                    // Escribió antes de que la oyéramos; lo anterior a nuestro arranque ya lo cargó CatalogCache
+                    peer.resyncFrom = startedAt;
+                }
+            } else if (messageSequence > peer.highestSequence) {
+                long gap = messageSequence - peer.highestSequence - 1;
+                if (gap > MAX_TRACKED_GAP) {
+                    peer.resyncFrom = min(peer.resyncFrom, peer.consistentAt);
+                } else {
+                    for (long missing = peer.highestSequence + 1; missing < messageSequence; missing++) {
+                        peer.missing.put(missing, now);
+                    }
+                }
+                peer.highestSequence = messageSequence;
+            } else {
+                peer.missing.remove(messageSequence); // llegó desordenado
+            }
+            peer.lastHeardAt = now;
+            peer.silent = false;
+            if (peer.missing.isEmpty()) {
+                peer.consistentAt = now;
+            }
+        }
+    }
+
+    // Un mensaje que sigue sin llegar en la comprobación siguiente a detectar su hueco se da por perdido
+    void checkPeers(Instant now) {
+        Instant previousCheckAt = lastCheckAt;
+        lastCheckAt = now;
+        Instant from;
+        synchronized (peers) {
+            from = resyncFrom;
+            Iterator<Map.Entry<UUID, Peer>> iterator = peers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, Peer> entry = iterator.next();
+                Peer peer = entry.getValue();
+                Duration silence = Duration.between(peer.lastHeardAt, now);
+                if (silence.compareTo(maxStaleness.multipliedBy(PEER_EXPIRY_FACTOR)) > 0) {
+                    log.info("Se olvida la instancia {} del bus de invalidación: sin mensajes desde {}", entry.getKey(), peer.lastHeardAt);
+                    iterator.remove();
+                    // Por si escribió aislada antes de pararse: ya no habrá hueco que lo delate
+                    from = min(from, peer.lastHeardAt);
+                    continue;
+                }
+                Instant peerFrom = peer.resyncFrom;
+                peer.resyncFrom = null;
+                if (peer.missing.values().stream().anyMatch(detectedAt -> detectedAt.isBefore(previousCheckAt))) {
+                    log.warn("Mensajes perdidos de la instancia {}: {}", entry.getKey(), peer.missing.keySet());
+                    peerFrom = min(peerFrom, peer.consistentAt);
+                    peer.missing.clear();
+                }
+                if (!peer.silent && silence.compareTo(heartbeatInterval().multipliedBy(2)) > 0) {
+                    // Puede estar parada o aislada: se resincroniza una vez, no en cada comprobación mientras calle
+                    peer.silent = true;
+                    peerFrom = min(peerFrom, peer.lastHeardAt);
+                }
+                from = min(from, peerFrom);
+            }
+        }
+        if (from != null) {
+            resync(from);
+        }
+    }
+
+    // Relee lo modificado y lo borrado desde "from" (menos el margen) y publica los cambios respecto a la caché. Los
+    // borrados salen del registro de borrados, sin recorrer todas las claves; uno anterior a su retención ya lo ha
+    // publicado CatalogCache.refresh
+    void resync(Instant from) {
+        if (!catalogCache.isLoaded()) {
+            return;
+        }
+        Instant since = from.minus(resyncMargin);
+        synchronized (applyLock) {
+            applyingRemote.set(true);
+            try {
+                for (CategorySnapshot category : categoryRepository.findSnapshotsUpdatedSince(since)) {
+                    publishCategory(category.getId(), category);
+                }
+                categoryRepository.findIdsDeletedSince(since).forEach(id -> publishCategory(id, null));
+
+                for (ProductSnapshot product : productRepository.findSnapshotsUpdatedSince(since)) {
+                    publishProduct(product.getId(), product);
+                }
+                productRepository.findIdsDeletedSince(since).forEach(id -> publishProduct(id, null));
+                synchronized (peers) {
+                    resyncFrom = null;
+                }
+                log.info("Caché resincronizada con la base de datos desde {}", since);
+            } catch (RuntimeException e) {
+                synchronized (peers) {
+                    resyncFrom = min(resyncFrom, from);
+                }
+                log.warn("No se pudo resincronizar la caché, se reintentará", e);
+            } finally {
+                applyingRemote.remove();
+            }
+        }
+    }
+
+    private void apply(UUID senderId, List<InvalidationMessage.Entry> entries) {
+        Map<InvalidationMessage.Kind, List<Long>> ids = entries.stream().collect(Collectors.groupingBy(
+                InvalidationMessage.Entry::getKind, Collectors.mapping(InvalidationMessage.Entry::getId, Collectors.toList())));
+        synchronized (applyLock) {
+            applyingRemote.set(true);
+            try {
+                // Primero las categorías: un producto nuevo puede ser de una categoría nueva
+                List<Long> categoryIds = ids.getOrDefault(InvalidationMessage.Kind.CATEGORY, List.of());
+                if (!categoryIds.isEmpty()) {
+                    Map<Long, CategorySnapshot> current = categoryRepository.findAllById(categoryIds).stream()
+                            .collect(Collectors.toMap(Category::getId,
+                                    category -> new CategorySnapshot(category.getId(), category.getName(), category.getDescription())));
+                    categoryIds.forEach(id -> publishCategory(id, current.get(id)));
+                }
+                List<Long> productIds = ids.getOrDefault(InvalidationMessage.Kind.PRODUCT, List.of());
+                if (!productIds.isEmpty()) {
+                    Map<Long, ProductSnapshot> current = productRepository.findSnapshotsByIdIn(productIds).stream()
+                            .collect(Collectors.toMap(ProductSnapshot::getId, Function.identity()));
+                    productIds.forEach(id -> publishProduct(id, current.get(id)));
+                }
+                entries.forEach(entry -> appliedVersions.put(entry.getKey(), new AppliedVersion(senderId, entry.getVersion())));
+            } catch (RuntimeException e) {
+                // Sin base de datos no se puede releer: se resincroniza en la próxima comprobación
+                synchronized (peers) {
+                    Peer peer = peers.get(senderId);
+                    if (peer != null) {
+                        peer.resyncFrom = min(peer.resyncFrom, peer.consistentAt);
+                    }
+                }
+                log.warn("No se pudieron aplicar {} invalidaciones, se resincronizará", entries.size(), e);
+            } finally {
+                applyingRemote.remove();
+            }
+        }
+    }
+
+    private void publishProduct(Long id, ProductSnapshot current) {
+        ProductSnapshot cached = catalogCache.getProduct(id).map(ProductSnapshot::of).orElse(null);
+        if (!Objects.equals(cached, current)) {
+            eventPublisher.publishEvent(new ProductChangedEvent(cached, current));
+        }
+    }
+
+    private void publishCategory(Long id, CategorySnapshot current) {
+        Optional<CategorySnapshot> cached = catalogCache.getCategory(id)
+                .map(category -> new CategorySnapshot(category.getId(), category.getName(), category.getDescription()));
+        if (current == null) {
+            if (cached.isPresent()) {
+                eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
+            }
+        } else if (!cached.equals(Optional.of(current))) {
+            eventPublisher.publishEvent(new CategoryChangedEvent(id, current.getName(), current.getDescription(), false));
+        }
+    }
+
+    private Duration heartbeatInterval() {
+        return maxStaleness.dividedBy(4);
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isBefore(b) ? a : b;
+    }
+
+    private static class Peer {
+        long highestSequence;
+        Instant lastHeardAt;
+        Instant consistentAt; // último momento sin mensajes pendientes de este emisor
+        Instant resyncFrom;
+        boolean silent; // ya se resincronizó por su silencio; se vuelve a false al oírla
+        final Map<Long, Instant> missing = new HashMap<>(); // secuencia -> cuándo se detectó el hueco
+
+        Peer(long highestSequence, Instant now) {
+            this.highestSequence = highestSequence;
+            this.lastHeardAt = now;
+            this.consistentAt = now;
+        }
+    }
+
+    private static class AppliedVersion {
+        final UUID senderId;
+        final long version;
+
+        AppliedVersion(UUID senderId, long version) {
+            this.senderId = senderId;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Copia en memoria de todo el catálogo (productos y categorías) para las lecturas por ID y para construir los
+// índices (estadísticas, sugerencias) sin recorrer las tablas. Al parar, y cada snapshot.interval, se guarda en un
+// fichero binario (CatalogSnapshotFile); al arrancar se mapea ese fichero y solo se pide a la base de datos lo
+// modificado desde que se escribió (updated_at), más la lista de IDs para quitar lo borrado.
+// Se mantiene al día con los eventos de escritura y, cada snapshot.interval, con lo modificado (updated_at) y lo
+// borrado (registro de borrados) en otras instancias, que se publica como los mismos eventos. Una entrada puede quedar
+// atrasada como mucho un intervalo si una escritura coincide con una reconciliación. Lo que no está en la caché se lee
+// de la base de datos
+@Service
+@Profile("!reactive")
+public class CatalogCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogCache.class);
+
+    // Tamaño de cada tramo en la carga completa y en la recarga de IDs que faltan
+    static final int LOAD_BATCH_SIZE = 5000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Value("${catalog.cache.snapshot.enabled:true}")
+    private boolean snapshotEnabled = true;
+
+    @Value("${catalog.cache.snapshot.path:data/catalog.snapshot}")
+    private Path snapshotPath;
+
+    // Se piden también las filas modificadas un poco antes del snapshot: cubre escrituras que se confirmaron
+    // mientras se escribía y pequeñas diferencias de reloj entre instancias
+    @Value("${catalog.cache.snapshot.reconcile-margin:PT1M}")
+    private Duration reconcileMargin = Duration.ofMinutes(1);
+
+    // Antigüedad de las filas del registro de borrados que se purgan: más que cualquier intervalo que se vuelva a leer
+    @Value("${catalog.cache.deletions.retention:P1D}")
+    private Duration deletionRetention = Duration.ofDays(1);
+
+    @Autowired // Las diferencias que encuentra la reconciliación periódica se publican como eventos de escritura
+    private ApplicationEventPublisher eventPublisher;
+
+    private Clock clock = Clock.systemUTC();
+
+    private final Map<Long, ProductSnapshot> products = new ConcurrentHashMap<>();
+    private final Map<Long, CategorySnapshot> categories = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile Instant reconciledAt;
+    // Los eventos de una reconciliación no son escrituras de esta instancia: CacheInvalidationBus no los reenvía
+    private final ThreadLocal<Boolean> reconciling = ThreadLocal.withInitial(() -> false);
+
+    @PostConstruct
+    public void warmUp() {
+        long start = System.nanoTime();
+        Instant startedAt = clock.instant();
+        Optional<CatalogSnapshotFile.Contents> snapshot = readSnapshot();
+        if (snapshot.isPresent()) {
+            snapshot.get().getCategories().forEach(category -> categories.put(category.getId(), category));
+            snapshot.get().getProducts().forEach(product -> products.put(product.getId(), product));
+            reconcile(snapshot.get().getCreatedAt().minus(reconcileMargin));
+        } else {
+            loadFromDatabase();
+        }
+        reconciledAt = startedAt;
+        loaded = true;
+        log.info("Caché del catálogo cargada desde {} en {} ms: {} productos, {} categorías",
+                snapshot.isPresent() ? "snapshot" : "la base de datos", (System.nanoTime() - start) / 1_000_000,
+                products.size(), categories.size());
+    }
+
+    // Se vuelve a reconciliar (por si otra instancia escribió en la base de datos), se purga el registro de borrados y
+    // se guarda el snapshot
+    @Scheduled(fixedDelayString = "${catalog.cache.snapshot.interval:PT5M}",
+            initialDelayString = "${catalog.cache.snapshot.interval:PT5M}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        Instant startedAt = clock.instant();
+        reconcileChanges(reconciledAt.minus(reconcileMargin));
+        reconciledAt = startedAt;
+        productRepository.deleteDeletionsBefore(startedAt.minus(deletionRetention));
+        writeSnapshot(startedAt);
+    }
+
+    @PreDestroy
+    void writeSnapshotOnShutdown() {
+        if (loaded) {
+            writeSnapshot(clock.instant());
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean isReconciling() {
+        return reconciling.get();
+    }
+
+    // Copia desacoplada de la entidad: se puede modificar sin que Hibernate la vuelque
+    public Optional<Product> getProduct(Long id) {
+        ProductSnapshot product = products.get(id);
+        CategorySnapshot category = product != null ? categories.get(product.getCategoryId()) : null;
+        if (category == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Product(product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getStock(), category.toCategory()));
+    }
+
+    public Optional<Category> getCategory(Long id) {
+        return Optional.ofNullable(categories.get(id)).map(CategorySnapshot::toCategory);
+    }
+
+    public Collection<ProductSnapshot> getProducts() {
+        return Collections.unmodifiableCollection(products.values());
+    }
+
+    public Collection<CategorySnapshot> getCategories() {
+        return Collections.unmodifiableCollection(categories.values());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getAfter() == null) {
+            products.remove(event.getBefore().getId());
+        } else {
+            products.put(event.getAfter().getId(), event.getAfter());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            // Los productos de la categoría se han borrado en cascada
+            categories.remove(event.getCategoryId());
+            products.values().removeIf(product -> event.getCategoryId().equals(product.getCategoryId()));
+        } else {
+            categories.put(event.getCategoryId(), CategorySnapshot.of(event));
+        }
+    }
+
+    // Al arrancar desde el snapshot: trae lo modificado desde "since", quita lo que ya no existe y carga lo que falte
+    // (p. ej. filas sin updated_at). Compara con todos los IDs porque el snapshot puede ser más antiguo que el registro
+    // de borrados; no publica eventos porque los índices aún no se han construido
+    void reconcile(Instant since) {
+        categoryRepository.findSnapshotsUpdatedSince(since).forEach(category -> categories.put(category.getId(), category));
+        Set<Long> categoryIds = new HashSet<>(categoryRepository.findAllIds());
+        categories.keySet().retainAll(categoryIds);
+        if (!categories.keySet().containsAll(categoryIds)) {
+            categoryRepository.findAllSnapshots().forEach(category -> categories.putIfAbsent(category.getId(), category));
+        }
+
+        productRepository.findSnapshotsUpdatedSince(since).forEach(product -> products.put(product.getId(), product));
+        Set<Long> productIds = new HashSet<>(productRepository.findAllIds());
+        products.keySet().retainAll(productIds);
+        productIds.removeAll(products.keySet());
+        List<Long> missing = new ArrayList<>(productIds);
+        for (int from = 0; from < missing.size(); from += LOAD_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + LOAD_BATCH_SIZE, missing.size()));
+            productRepository.findSnapshotsByIdIn(batch).forEach(product -> products.putIfAbsent(product.getId(), product));
+        }
+    }
+
+    // Reconciliación periódica: lo modificado desde "since" y lo que recoge el registro de borrados se publica como el
+    // evento que lo habría producido, el mismo que publica CacheInvalidationBus al releer una fila. Lo aplican la caché
+    // (sus propios listeners) y los índices que dependen de ella. Primero las categorías: un producto nuevo puede ser
+    // de una categoría nueva
+    void reconcileChanges(Instant since) {
+        reconciling.set(true);
+        try {
+            categoryRepository.findSnapshotsUpdatedSince(since).forEach(category -> publishCategory(category.getId(), category));
+            categoryRepository.findIdsDeletedSince(since).forEach(id -> publishCategory(id, null));
+            productRepository.findSnapshotsUpdatedSince(since).forEach(product -> publishProduct(product.getId(), product));
+            productRepository.findIdsDeletedSince(since).forEach(id -> publishProduct(id, null));
+        } finally {
+            reconciling.remove();
+        }
+    }
+
+    private void publishProduct(Long id, ProductSnapshot current) {
+        ProductSnapshot cached = products.get(id);
+        if (!Objects.equals(cached, current)) {
+            eventPublisher.publishEvent(new ProductChangedEvent(cached, current));
+        }
+    }
+
+    private void publishCategory(Long id, CategorySnapshot current) {
+        CategorySnapshot cached = categories.get(id);
+        if (current == null) {
+            if (cached != null) {
+                eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
+            }
+        } else if (!current.equals(cached)) {
+            eventPublisher.publishEvent(new CategoryChangedEvent(id, current.getName(), current.getDescription(), false));
+        }
+    }
+
+    // Arranque en frío: todo el catálogo por tramos ordenados por clave primaria
+    private void loadFromDatabase() {
+        categoryRepository.findAllSnapshots().forEach(category -> categories.put(category.getId(), category));
+        long afterId = 0;
+        List<ProductSnapshot> batch;
+        do {
+            batch = productRepository.findSnapshotsAfterId(afterId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            for (ProductSnapshot product : batch) {
+                products.put(product.getId(), product);
+                afterId = product.getId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+    }
+
+    private Optional<CatalogSnapshotFile.Contents> readSnapshot() {
+        if (!snapshotEnabled) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(CatalogSnapshotFile.read(snapshotPath));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            // Un snapshot dañado o de otra versión no impide arrancar: se carga todo de la base de datos
+            log.warn("Se descarta el snapshot del catálogo {}: {}", snapshotPath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void writeSnapshot(Instant createdAt) {
+        if (!snapshotEnabled) {
+            return;
+        }
+        try {
+            CatalogSnapshotFile.write(snapshotPath, createdAt, categories.values(), products.values());
+        } catch (IOException e) {
+            log.warn("No se pudo guardar el snapshot del catálogo en {}", snapshotPath, e);
+            try {
+                Files.deleteIfExists(snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp"));
+            } catch (IOException ignored) {
+                // El temporal se sobrescribe en el siguiente intento
+            }
+        }
+    }
+}
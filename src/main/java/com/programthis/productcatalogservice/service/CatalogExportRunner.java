@@ -0,0 +1,101 @@
+package com.programthis.productcatalogservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+// Exportación desde la línea de comandos para los procesos nocturnos, sin levantar el servidor web:
+//   java -jar app.jar --spring.main.web-application-type=none --catalog.export.output=catalog.arrows [--catalog.export.incremental=true]
+// En modo incremental la marca de la última exportación se guarda en <output>.watermark y solo se exporta lo modificado
+// y borrado desde entonces (completa si la marca es más antigua que el registro de borrados, ver CatalogExportService).
+// Al terminar se cierra la aplicación
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "catalog.export.output")
+public class CatalogExportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogExportRunner.class);
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${catalog.export.output}")
+    private Path output;
+
+    @Value("${catalog.export.incremental:false}")
+    private boolean incremental;
+
+    @Value("${catalog.export.exit-when-done:true}")
+    private boolean exitWhenDone = true;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        int exitCode = 0;
+        try {
+            export();
+        } catch (IOException | RuntimeException e) {
+            log.error("No se pudo exportar el catálogo a {}", output, e);
+            exitCode = 1;
+            if (!exitWhenDone) {
+                throw e;
+            }
+        }
+        if (exitWhenDone) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    // El fichero y la marca se escriben en temporales y se renombran: un fallo a mitad deja la exportación anterior
+    void export() throws IOException {
+        Path watermarkFile = output.resolveSibling(output.getFileName() + ".watermark");
+        Instant since = incremental ? readWatermark(watermarkFile) : null;
+        Instant watermark = catalogExportService.newWatermark();
+        Path directory = output.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        CatalogExportService.ExportResult result;
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            result = catalogExportService.export(since, watermark, out);
+        }
+        Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (incremental) {
+            Path temporaryWatermark = watermarkFile.resolveSibling(watermarkFile.getFileName() + ".tmp");
+            Files.writeString(temporaryWatermark, watermark.toString(), StandardCharsets.UTF_8);
+            Files.move(temporaryWatermark, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        log.info("Catálogo exportado a {}: {} productos en {} lotes{}", output, result.getRows(), result.getBatches(),
+                result.getSince() != null
+                        ? " (modificados desde " + result.getSince() + ", " + result.getDeletions() + " borrados)" : "");
+    }
+
+    private static Instant readWatermark(Path watermarkFile) throws IOException {
+        try {
+            return Instant.parse(Files.readString(watermarkFile, StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return null; // primera exportación: completa
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.repository.ProductRepositoryCustom;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Exportación del catálogo (productos con su categoría) en formato Arrow IPC de streaming, para los procesos de BI:
+// un fichero columnar en lugar de millones de objetos JSON. Las filas se leen de un cursor JDBC y se escriben en lotes
+// (record batches) de batch-rows filas, así que la memoria no depende del tamaño del catálogo. El nombre de la
+// categoría va codificado con diccionario: cada fila lleva un índice y los nombres se escriben una sola vez.
+// Modo incremental: con "since" solo van las filas con updated_at >= since - incremental-margin (pueden repetirse
+// filas de la exportación anterior; se identifican por id), seguidas de lápidas en lotes aparte con lo borrado desde
+// entonces (registro de borrados): deleted = true y solo id, o solo category_id si se borró la categoría con todos sus
+// productos. El registro se purga pasado catalog.cache.deletions.retention: con un "since" más antiguo los borrados ya
+// no se pueden saber y se hace una exportación completa, que sustituye a la anterior (no lleva SINCE_METADATA)
+@Service
+@Profile("!reactive")
+public class CatalogExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogExportService.class);
+
+    public static final String MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+
+    // Claves de los metadatos del esquema
+    public static final String WATERMARK_METADATA = "catalog.export.watermark";
+    public static final String SINCE_METADATA = "catalog.export.since";
+
+    private static final long CATEGORY_DICTIONARY_ID = 0;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Value("${catalog.export.batch-rows:65536}")
+    private int batchRows = 65536;
+
+    // Mismo papel que catalog.cache.snapshot.reconcile-margin: escrituras en curso y relojes de otras instancias
+    @Value("${catalog.export.incremental-margin:PT1M}")
+    private Duration incrementalMargin = Duration.ofMinutes(1);
+
+    // La misma que purga CatalogCache: un intervalo incremental no puede empezar antes
+    @Value("${catalog.cache.deletions.retention:P1D}")
+    private Duration deletionRetention = Duration.ofDays(1);
+
+    private Clock clock = Clock.systemUTC();
+
+    // Valor que el cliente debe pasar como "since" en la siguiente exportación incremental
+    public Instant newWatermark() {
+        return clock.instant();
+    }
+
+    // Las categorías y los productos se leen en la misma transacción de solo lectura
+    @Transactional(readOnly = true)
+    public ExportResult export(Instant since, Instant watermark, OutputStream out) throws IOException {
+        Instant from = since != null ? since.minus(incrementalMargin) : null;
+        if (from != null && from.isBefore(clock.instant().minus(deletionRetention))) {
+            log.info("Exportación incremental desde {} anterior a la retención del registro de borrados ({}): se hace completa",
+                    since, deletionRetention);
+            since = null;
+            from = null;
+        }
+        Map<Long, Integer> categoryIndexes = new HashMap<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             VarCharVector categoryNames = new VarCharVector("category_name", allocator)) {
+            List<CategorySnapshot> categories = categoryRepository.findAllSnapshots();
+            categoryNames.allocateNew(categories.size());
+            for (CategorySnapshot category : categories) {
+                int index = categoryIndexes.size();
+                categoryIndexes.put(category.getId(), index);
+                categoryNames.setSafe(index, category.getName().getBytes(StandardCharsets.UTF_8));
+            }
+            categoryNames.setValueCount(categories.size());
+            ArrowType.Int indexType = new ArrowType.Int(32, true);
+            DictionaryEncoding encoding = new DictionaryEncoding(CATEGORY_DICTIONARY_ID, false, indexType);
+            DictionaryProvider.MapDictionaryProvider dictionaries =
+                    new DictionaryProvider.MapDictionaryProvider(new Dictionary(categoryNames, encoding));
+
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put(WATERMARK_METADATA, watermark.toString());
+            if (since != null) {
+                metadata.put(SINCE_METADATA, since.toString());
+            }
+            // Las columnas de datos admiten null por las lápidas; en las filas de productos siempre tienen valor
+            BigIntVector id = new BigIntVector("id", allocator);
+            VarCharVector name = new VarCharVector("name", allocator);
+            VarCharVector description = new VarCharVector("description", allocator);
+            Float8Vector price = new Float8Vector("price", allocator);
+            IntVector stock = new IntVector("stock", allocator);
+            BigIntVector categoryId = new BigIntVector("category_id", allocator);
+            // En memoria es el índice en el diccionario (el fichero lo declara como utf8 codificado); null si la
+            // categoría se creó después de leer el diccionario
+            IntVector categoryName = new IntVector(new Field("category_name",
+                    new FieldType(true, indexType, encoding), null), allocator);
+            TimeStampMilliTZVector updatedAt = new TimeStampMilliTZVector(new Field("updated_at",
+                    FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC")), null), allocator);
+            BitVector deleted = new BitVector(new Field("deleted", FieldType.notNullable(new ArrowType.Bool()), null), allocator);
+            List<FieldVector> vectors = List.of(id, name, description, price, stock, categoryId, categoryName, updatedAt, deleted);
+
+            try (VectorSchemaRoot root = new VectorSchemaRoot(
+                    new Schema(vectors.stream().map(FieldVector::getField).toList(), metadata), vectors, 0);
+                 ArrowStreamWriter writer = new ArrowStreamWriter(root, dictionaries, Channels.newChannel(out))) {
+                writer.start();
+                BatchWriter batches = new BatchWriter(root, writer);
+                productRepository.streamExportRows(from, row -> {
+                    int index = batches.nextRow();
+                    id.setSafe(index, row.getId());
+                    name.setSafe(index, row.getName().getBytes(StandardCharsets.UTF_8));
+                    description.setSafe(index, row.getDescription().getBytes(StandardCharsets.UTF_8));
+                    price.setSafe(index, row.getPrice());
+                    stock.setSafe(index, row.getStock());
+                    categoryId.setSafe(index, row.getCategoryId());
+                    Integer dictionaryIndex = categoryIndexes.get(row.getCategoryId());
+                    if (dictionaryIndex != null) {
+                        categoryName.setSafe(index, dictionaryIndex);
+                    } else {
+                        categoryName.setNull(index);
+                    }
+                    if (row.getUpdatedAt() != null) {
+                        updatedAt.setSafe(index, row.getUpdatedAt().toEpochMilli());
+                    } else {
+                        updatedAt.setNull(index);
+                    }
+                    deleted.setSafe(index, 0);
+                    batches.rowWritten();
+                });
+                long rows = batches.rows;
+                if (from != null) {
+                    // Los borrados se leen en la misma transacción que las filas
+                    List<Long> deletedCategories = categoryRepository.findIdsDeletedSince(from);
+                    List<Long> deletedProducts = productRepository.findIdsDeletedSince(from);
+                    if (!deletedCategories.isEmpty() || !deletedProducts.isEmpty()) {
+                        batches.flushPending();
+                    }
+                    for (Long deletedId : deletedCategories) {
+                        int index = batches.nextRow();
+                        vectors.forEach(vector -> vector.setNull(index));
+                        categoryId.setSafe(index, deletedId);
+                        deleted.setSafe(index, 1);
+                        batches.rowWritten();
+                    }
+                    for (Long deletedId : deletedProducts) {
+                        int index = batches.nextRow();
+                        vectors.forEach(vector -> vector.setNull(index));
+                        id.setSafe(index, deletedId);
+                        deleted.setSafe(index, 1);
+                        batches.rowWritten();
+                    }
+                }
+                batches.flush();
+                writer.end();
+                return new ExportResult(rows, batches.rows - rows, batches.batches, since, watermark);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Acumula filas en el VectorSchemaRoot y escribe un record batch cada batchRows
+    private class BatchWriter {
+
+        private final VectorSchemaRoot root;
+        private final ArrowStreamWriter writer;
+        private int pending;
+        private long rows;
+        private int batches;
+
+        BatchWriter(VectorSchemaRoot root, ArrowStreamWriter writer) {
+            this.root = root;
+            this.writer = writer;
+        }
+
+        int nextRow() {
+            if (pending == 0) {
+                root.allocateNew();
+            }
+            return pending;
+        }
+
+        void rowWritten() {
+            pending++;
+            rows++;
+            if (pending == batchRows) {
+                flush();
+            }
+        }
+
+        // Cierra el lote en curso para que lo siguiente empiece uno nuevo
+        void flushPending() {
+            if (pending > 0) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending == 0 && batches > 0) {
+                return;
+            }
+            // Aunque no haya filas se escribe un lote vacío: el lector ve el esquema y un resultado válido
+            if (pending == 0) {
+                root.allocateNew();
+            }
+            root.setRowCount(pending);
+            try {
+                writer.writeBatch();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // se lanza desde el consumidor del cursor
+            }
+            batches++;
+            pending = 0;
+        }
+    }
+
+    // --- DTOs ---
+    @lombok.Value
+    public static class ExportResult {
+        long rows;      // productos exportados
+        long deletions; // lápidas
+        int batches;
+        Instant since;  // null si la exportación ha sido completa
+        Instant watermark;
+    }
+}
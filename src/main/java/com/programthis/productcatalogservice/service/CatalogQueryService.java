@@ -0,0 +1,234 @@
+package com.programthis.productcatalogservice.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+// POST /api/query: en una sola petición, categorías con sus productos y productos con su categoría (lo que antes eran
+// /api/categories, un /api/products/category/{id} por categoría y un /api/products/{id} por producto destacado).
+// Las relaciones no se resuelven una a una: cada nivel apunta las claves que necesita en un BatchLoader y se
+// resuelven juntas, así que la petición hace como mucho una consulta IN por tipo de clave (las lecturas por ID pasan
+// antes por CatalogCache). Dentro de la petición cada categoría o producto se lee una sola vez aunque aparezca en
+// varios sitios
+@Service
+@Profile("!reactive")
+public class CatalogQueryService {
+
+    // Límite de IDs por lista de la consulta
+    static final int MAX_IDS = 500;
+    // Productos por categoría como mucho (sin limit o con uno mayor), se pidan todas las categorías o MAX_IDS de ellas
+    static final int MAX_PRODUCTS_PER_CATEGORY = 100;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    public QueryResult execute(CatalogQuery query) {
+        validate(query);
+        BatchLoader<Long, Category> categories = new BatchLoader<>(categoryService::getCategoriesByIds);
+        BatchLoader<Long, Product> products = new BatchLoader<>(productService::getProductsByIds);
+        Integer limit = productLimit(query.getCategories());
+        BatchLoader<Long, List<Product>> productsByCategory =
+                new BatchLoader<>(ids -> productService.getProductsByCategoryIds(ids, limit));
+        QueryResult result = new QueryResult();
+
+        // Nivel 1: las categorías pedidas (todas si no se indican IDs)
+        List<Long> categoryIds = List.of();
+        CategorySelection categorySelection = query.getCategories();
+        if (categorySelection != null) {
+            if (categorySelection.getIds() != null) {
+                categoryIds = categorySelection.getIds();
+                categories.loadMany(categoryIds);
+                categories.dispatch();
+            } else {
+                categoryIds = new ArrayList<>();
+                for (Category category : categoryService.getAllCategories()) {
+                    categories.prime(category.getId(), category);
+                    categoryIds.add(category.getId());
+                }
+            }
+        }
+
+        // Nivel 2: los productos de esas categorías (un IN, recortado por categoría en la consulta) y los productos pedidos que no hayan salido ya (otro IN)
+        boolean withProducts = categorySelection != null && categorySelection.getProducts() != null;
+        if (withProducts) {
+            List<Long> found = categoryIds.stream().filter(id -> categories.get(id).isPresent()).toList();
+            productsByCategory.loadMany(found);
+            productsByCategory.dispatch();
+            found.stream()
+                    .map(productsByCategory::get)
+                    .flatMap(Optional::stream)
+                    .flatMap(List::stream)
+                    .forEach(product -> products.prime(product.getId(), product));
+        }
+        ProductSelection productSelection = query.getProducts();
+        if (productSelection != null) {
+            products.loadMany(productSelection.getIds());
+            products.dispatch();
+        }
+
+        // Nivel 3: la categoría de cada producto pedido, salvo las ya leídas
+        boolean withCategory = productSelection != null && productSelection.isCategory();
+        if (withCategory) {
+            productSelection.getIds().stream()
+                    .map(products::get)
+                    .flatMap(Optional::stream)
+                    .forEach(product -> categories.load(product.getCategory().getId()));
+            categories.dispatch();
+        }
+
+        for (Long id : categoryIds) {
+            Optional<Category> category = categories.get(id);
+            if (category.isEmpty()) {
+                result.getMissingCategoryIds().add(id);
+                continue;
+            }
+            CategoryNode node = CategoryNode.of(category.get());
+            if (withProducts) {
+                node.setProducts(productsByCategory.get(id).orElse(List.of()).stream().map(ProductNode::of).toList());
+            }
+            result.getCategories().add(node);
+        }
+        if (productSelection != null) {
+            for (Long id : productSelection.getIds()) {
+                Optional<Product> product = products.get(id);
+                if (product.isEmpty()) {
+                    result.getMissingProductIds().add(id);
+                    continue;
+                }
+                ProductNode node = ProductNode.of(product.get());
+                if (withCategory) {
+                    categories.get(product.get().getCategory().getId()).map(CategoryNode::of).ifPresent(node::setCategory);
+                }
+                result.getProducts().add(node);
+            }
+        }
+        return result;
+    }
+
+    // El límite por categoría no puede faltar ni pasar del máximo: con IDs se leen como mucho
+    // MAX_IDS * MAX_PRODUCTS_PER_CATEGORY productos, y sin ellos MAX_PRODUCTS_PER_CATEGORY por categoría del catálogo
+    private static Integer productLimit(CategorySelection categories) {
+        if (categories == null || categories.getProducts() == null) {
+            return null;
+        }
+        Integer limit = categories.getProducts().getLimit();
+        return limit != null ? Math.min(limit, MAX_PRODUCTS_PER_CATEGORY) : MAX_PRODUCTS_PER_CATEGORY;
+    }
+
+    private static void validate(CatalogQuery query) {
+        if (query == null || (query.getCategories() == null && query.getProducts() == null)) {
+            throw new IllegalArgumentException("La consulta debe pedir categories o products");
+        }
+        CategorySelection categories = query.getCategories();
+        if (categories != null) {
+            checkIds(categories.getIds(), "categories.ids");
+            if (categories.getProducts() != null && categories.getProducts().getLimit() != null
+                    && categories.getProducts().getLimit() < 0) {
+                throw new IllegalArgumentException("categories.products.limit no puede ser negativo");
+            }
+        }
+        if (query.getProducts() != null) {
+            if (query.getProducts().getIds() == null) {
+                throw new IllegalArgumentException("products.ids es obligatorio");
+            }
+            checkIds(query.getProducts().getIds(), "products.ids");
+        }
+    }
+
+    private static void checkIds(List<Long> ids, String name) {
+        if (ids == null) {
+            return;
+        }
+        if (ids.size() > MAX_IDS) {
+            throw new IllegalArgumentException(name + " admite como mucho " + MAX_IDS + " IDs");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException(name + " no puede contener null");
+        }
+    }
+
+    // --- DTOs ---
+    @Data
+    public static class CatalogQuery {
+        private CategorySelection categories;
+        private ProductSelection products;
+    }
+
+    @Data
+    public static class CategorySelection {
+        private List<Long> ids; // null: todas
+        private ProductsOfCategory products; // null: sin productos
+    }
+
+    @Data
+    public static class ProductsOfCategory {
+        private Integer limit; // por categoría; null o mayor que MAX_PRODUCTS_PER_CATEGORY: MAX_PRODUCTS_PER_CATEGORY
+    }
+
+    @Data
+    public static class ProductSelection {
+        private List<Long> ids;
+        private boolean category; // incluir la categoría de cada producto
+    }
+
+    @Data
+    public static class QueryResult {
+        private List<CategoryNode> categories = new ArrayList<>();
+        private List<ProductNode> products = new ArrayList<>();
+        private List<Long> missingCategoryIds = new ArrayList<>();
+        private List<Long> missingProductIds = new ArrayList<>();
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class CategoryNode {
+        private Long id;
+        private String name;
+        private String description;
+        private List<ProductNode> products; // solo si se pidieron
+
+        static CategoryNode of(Category category) {
+            CategoryNode node = new CategoryNode();
+            node.setId(category.getId());
+            node.setName(category.getName());
+            node.setDescription(category.getDescription());
+            return node;
+        }
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ProductNode {
+        private Long id;
+        private String name;
+        private String description;
+        private Double price;
+        private Integer stock;
+        private Long categoryId;
+        private CategoryNode category; // solo si se pidió
+
+        static ProductNode of(Product product) {
+            ProductNode node = new ProductNode();
+            node.setId(product.getId());
+            node.setName(product.getName());
+            node.setDescription(product.getDescription());
+            node.setPrice(product.getPrice());
+            node.setStock(product.getStock());
+            node.setCategoryId(product.getCategory().getId());
+            return node;
+        }
+    }
+}
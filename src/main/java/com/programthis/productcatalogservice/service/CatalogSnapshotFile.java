@@ -0,0 +1,154 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import lombok.Value;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Formato binario del snapshot de CatalogCache (big-endian):
+//   cabecera: magic (int), versión (int), creado en (long, epoch ms)
+//   categorías: nº (int) y por cada una id (long), name, description
+//   productos: nº (int) y por cada uno id (long), name, description, price (double), stock (int), categoryId (long)
+//   CRC32 (int) de todo lo anterior
+// Los textos van como longitud (int, -1 si es null) + bytes UTF-8. Se lee con un mapeo de solo lectura del fichero
+final class CatalogSnapshotFile {
+
+    static final int MAGIC = 0x50435343; // "PCSC"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8;
+
+    private CatalogSnapshotFile() {
+    }
+
+    // Se escribe en un temporal que luego sustituye al anterior: un corte a mitad nunca deja un snapshot a medias
+    static void write(Path path, Instant createdAt, Collection<CategorySnapshot> categories,
+                      Collection<ProductSnapshot> products) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(createdAt.toEpochMilli());
+            // Las colecciones pueden cambiar mientras se recorren: se copian para que el recuento cuadre
+            List<CategorySnapshot> categoryList = new ArrayList<>(categories);
+            out.writeInt(categoryList.size());
+            for (CategorySnapshot category : categoryList) {
+                out.writeLong(category.getId());
+                writeString(out, category.getName());
+                writeString(out, category.getDescription());
+            }
+            List<ProductSnapshot> productList = new ArrayList<>(products);
+            out.writeInt(productList.size());
+            for (ProductSnapshot product : productList) {
+                out.writeLong(product.getId());
+                writeString(out, product.getName());
+                writeString(out, product.getDescription());
+                out.writeDouble(product.getPrice());
+                out.writeInt(product.getStock());
+                out.writeLong(product.getCategoryId());
+            }
+            out.flush();
+            // El CRC va fuera del flujo comprobado
+            new DataOutputStream(file).writeInt((int) checked.getChecksum().getValue());
+            file.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Lanza IOException si el fichero está truncado, es de otra versión o no cuadra el CRC
+    static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Tamaño de snapshot no válido: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("El fichero no es un snapshot del catálogo");
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Versión de snapshot " + version + " no soportada (se espera " + VERSION + ")");
+            }
+            int end = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("El CRC del snapshot no coincide");
+            }
+
+            ByteBuffer in = buffer.duplicate().position(8).limit(end);
+            Instant createdAt = Instant.ofEpochMilli(in.getLong());
+            int categoryCount = in.getInt();
+            List<CategorySnapshot> categories = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                categories.add(new CategorySnapshot(in.getLong(), readString(in), readString(in)));
+            }
+            int productCount = in.getInt();
+            List<ProductSnapshot> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                products.add(new ProductSnapshot(in.getLong(), readString(in), readString(in), in.getDouble(),
+                        in.getInt(), in.getLong()));
+            }
+            return new Contents(createdAt, categories, products);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException y similares: el contenido no encaja con las cabeceras
+            throw new IOException("Snapshot del catálogo corrupto", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- DTOs ---
+    @Value
+    static class Contents {
+        Instant createdAt;
+        List<CategorySnapshot> categories;
+        List<ProductSnapshot> products;
+    }
+}
@@ -0,0 +1,84 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import org.springframework.data.domain.Sort;
+
+import java.util.Map;
+import java.util.Set;
+
+// Reglas de validación comunes a la API bloqueante (MVC + JPA) y a la reactiva (WebFlux + R2DBC)
+public final class CatalogValidation {
+
+    // Solo se permite ordenar por columnas cubiertas por algún índice de products
+    public static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "name", "price", "stock");
+
+    private CatalogValidation() {
+    }
+
+    public static void checkSearch(Double minPrice, Double maxPrice, Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new RuntimeException("No se puede ordenar por: " + order.getProperty());
+            }
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new RuntimeException("minPrice no puede ser mayor que maxPrice");
+        }
+    }
+
+    // Aplica un JSON Merge Patch (RFC 7396) a los campos simples del producto. La categoría la resuelve quien llama:
+    // se devuelve el categoryId pedido, o null si el patch no lo incluye
+    public static Long applyProductPatch(Product product, Map<String, Object> patch) {
+        Long categoryId = null;
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            switch (entry.getKey()) {
+                case "name" -> product.setName(requireType(entry, String.class));
+                case "description" -> product.setDescription(requireType(entry, String.class));
+                case "price" -> product.setPrice(requireType(entry, Number.class).doubleValue());
+                case "stock" -> product.setStock(toInteger(entry));
+                case "categoryId" -> categoryId = requireType(entry, Number.class).longValue();
+                default -> throw new RuntimeException("Campo no modificable: " + entry.getKey());
+            }
+        }
+        return categoryId;
+    }
+
+    public static void applyCategoryPatch(Category category, Map<String, Object> patch) {
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "name" -> {
+                    if (!(value instanceof String name)) {
+                        throw new RuntimeException("Valor no válido para el campo name: " + value);
+                    }
+                    category.setName(name);
+                }
+                case "description" -> {
+                    // description admite null: en Merge Patch un null borra el valor
+                    if (value != null && !(value instanceof String)) {
+                        throw new RuntimeException("Valor no válido para el campo description: " + value);
+                    }
+                    category.setDescription((String) value);
+                }
+                default -> throw new RuntimeException("Campo no modificable: " + entry.getKey());
+            }
+        }
+    }
+
+    // Todas las columnas de products son NOT NULL, así que un null en el patch no es válido
+    private static <T> T requireType(Map.Entry<String, Object> entry, Class<T> type) {
+        if (!type.isInstance(entry.getValue())) {
+            throw new RuntimeException("Valor no válido para el campo " + entry.getKey() + ": " + entry.getValue());
+        }
+        return type.cast(entry.getValue());
+    }
+
+    private static Integer toInteger(Map.Entry<String, Object> entry) {
+        Number number = requireType(entry, Number.class);
+        if (number.doubleValue() != Math.floor(number.doubleValue())) {
+            throw new RuntimeException("Valor no válido para el campo " + entry.getKey() + ": " + number);
+        }
+        return Math.toIntExact(number.longValue());
+    }
+}
@@ -1,32 +1,129 @@
 package com.programthis.productcatalogservice.service;
 
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.model.CatalogDeletion;
 import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.repository.CatalogDeletionRepository;
 import com.programthis.productcatalogservice.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service // Indica que esta clase es un componente de servicio de Spring
+@Profile("!reactive")
 public class CategoryService {
 
+    // Campos que admite ?fields=
+    private static final Map<String, List<String>> SELECTABLE_FIELDS = Map.of(
+            "id", List.of("id"),
+            "name", List.of("name"),
+            "description", List.of("description"));
+
     @Autowired // Inyecta el repositorio de categorías
     private CategoryRepository categoryRepository;
 
+    @Autowired // Avisa a los índices en memoria de cada escritura
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired // Copia en memoria del catálogo para las lecturas por ID
+    private CatalogCache catalogCache;
+
+    // Las lecturas por ID salen de la caché solo si se sabe que está al día: con varias réplicas y sin bus de
+    // invalidación otra instancia la pone al día cada snapshot-interval, y entretanto se leen precio y stock antiguos
+    @Value("${catalog.cache.serve-reads:${catalog.invalidation.enabled:false}}")
+    private boolean serveReadsFromCache;
+
+    @Autowired // Nombres repetidos: se rechazan antes de escribir, sin esperar a la restricción UNIQUE
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @Autowired // Registro de borrados con el que las otras instancias quitan lo borrado de su caché
+    private CatalogDeletionRepository deletionRepository;
+
+    private Optional<Category> cached(Long id) {
+        return serveReadsFromCache ? catalogCache.getCategory(id) : Optional.empty();
+    }
+
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
 
     public Optional<Category> getCategoryById(Long id) {
-        return categoryRepository.findById(id);
+        Optional<Category> category = cached(id);
+        return category.isPresent() ? category : categoryRepository.findById(id);
+    }
+
+    // Varias categorías por ID: lo que no está en la caché se lee con una sola consulta IN. Las que no existen no aparecen
+    public Map<Long, Category> getCategoriesByIds(Collection<Long> ids) {
+        Map<Long, Category> categories = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            cached(id).ifPresentOrElse(category -> categories.put(id, category), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            categoryRepository.findAllById(missing).forEach(category -> categories.put(category.getId(), category));
+        }
+        return categories;
+    }
+
+    // Lecturas con ?fields=: el SELECT solo lleva las columnas pedidas
+    public List<Map<String, Object>> getAllCategoryFields(String fields) {
+        return categoryRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS), null, Pageable.unpaged());
+    }
+
+    public Optional<Map<String, Object>> getCategoryFieldsById(Long id, String fields) {
+        Specification<Category> byId = (root, query, cb) -> cb.equal(root.get("id"), id);
+        return categoryRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS), byId, Pageable.unpaged())
+                .stream()
+                .findFirst();
     }
 
     public Category saveCategory(Category category) {
-        return categoryRepository.save(category);
+        // En una actualización sin cambio de nombre no hace falta comprobarlo
+        boolean renamed = category.getId() == null || cached(category.getId())
+                .map(cached -> !cached.getName().equals(category.getName()))
+                .orElse(true);
+        if (renamed) {
+            duplicateNameGuard.checkCategoryName(category.getName(), category.getId());
+        }
+        Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(savedCategory));
+        return savedCategory;
+    }
+
+    // JSON Merge Patch (RFC 7396): solo cambia los campos presentes; con @DynamicUpdate el UPDATE lleva solo esas columnas
+    @Transactional
+    public Optional<Category> patchCategory(Long id, Map<String, Object> patch) {
+        Optional<Category> categoryOptional = categoryRepository.findById(id);
+        if (categoryOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        Category category = categoryOptional.get();
+        if (patch.get("name") instanceof String name && !name.equals(category.getName())) {
+            duplicateNameGuard.checkCategoryName(name, id);
+        }
+        CatalogValidation.applyCategoryPatch(category, patch);
+        Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(savedCategory));
+        return Optional.of(savedCategory);
     }
 
+    @Transactional
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        // Sus productos se borran en cascada: basta con registrar la categoría
+        deletionRepository.save(new CatalogDeletion(CatalogDeletion.Kind.CATEGORY, id));
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
     }
 }
\ No newline at end of file
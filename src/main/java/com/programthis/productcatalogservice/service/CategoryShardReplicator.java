@@ -0,0 +1,197 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.repository.ShardRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Con sharding las categorías se escriben en el shard 0 (CategoryService no cambia) y se copian con el mismo ID en el
+// resto, donde las necesita la clave ajena de products. Al arrancar se sincronizan todas y se mueven al shard que
+// les toca los productos que estén en otro (p. ej. al activar sharding o añadir un shard).
+// Con varias réplicas solo una hace la sincronización: la que consigue el bloqueo de shard_locks en el shard 0, un
+// alquiler que se renueva con cada página y caduca solo si la instancia se cae a mitad
+@Service
+@Profile("sharding")
+public class CategoryShardReplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryShardReplicator.class);
+    private static final String LOCK_NAME = "category-shard-sync";
+    private static final Duration LOCK_LEASE = Duration.ofMinutes(5);
+    private static final int REBALANCE_PAGE_SIZE = 500;
+
+    @Autowired
+    private ShardRoutingDataSource shards;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void synchronize() {
+        if (!acquireLock()) {
+            log.info("Otra instancia está sincronizando los shards; esta no lo hace");
+            return;
+        }
+        try {
+            List<Map<String, Object>> categories = jdbc(0).queryForList("select id, name, description from categories");
+            for (int shard = 1; shard < shards.getShardCount(); shard++) {
+                for (Map<String, Object> category : categories) {
+                    upsert(shard, ((Number) category.get("id")).longValue(), (String) category.get("name"),
+                            (String) category.get("description"));
+                }
+            }
+            int moved = rebalance();
+            if (moved > 0) {
+                log.info("Movidos {} productos al shard de su categoría", moved);
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        for (int shard = 1; shard < shards.getShardCount(); shard++) {
+            try {
+                if (event.isDeleted()) {
+                    // En el shard 0 el borrado en cascada lo ha hecho JPA
+                    jdbc(shard).update("delete from products where category_id = ?", event.getCategoryId());
+                    jdbc(shard).update("delete from categories where id = ?", event.getCategoryId());
+                } else {
+                    upsert(shard, event.getCategoryId(), event.getName(), event.getDescription());
+                }
+            } catch (RuntimeException e) {
+                // La siguiente sincronización al arrancar la deja al día
+                log.error("No se pudo replicar la categoría {} en el shard {}", event.getCategoryId(), shard, e);
+            }
+        }
+    }
+
+    // Recorre, por páginas y en orden de ID, solo los productos que no están en el shard de su categoría
+    int rebalance() {
+        int shardCount = shards.getShardCount();
+        int moved = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long after = 0;
+            while (true) {
+                List<Long> misplaced = jdbc(shard).queryForList(
+                        "select id from products where mod(category_id, ?) <> ? and id > ? order by id limit ?",
+                        Long.class, shardCount, shard, after, REBALANCE_PAGE_SIZE);
+                for (Long id : misplaced) {
+                    if (moveProduct(shard, id)) {
+                        moved++;
+                    }
+                    after = id;
+                }
+                if (misplaced.size() < REBALANCE_PAGE_SIZE) {
+                    break;
+                }
+                renewLock();
+            }
+        }
+        return moved;
+    }
+
+    // La fila se bloquea y se borra en la transacción del shard de origen, y se inserta (con el mismo ID) en una del
+    // de destino anidada en ella: o se confirman las dos o ninguna. Si el destino ya ha confirmado y falla la del
+    // origen, se deshace el INSERT
+    private boolean moveProduct(int from, Long id) {
+        boolean[] inserted = {false};
+        int[] to = {from};
+        try {
+            return Boolean.TRUE.equals(transaction(from).execute(status -> {
+                List<Map<String, Object>> rows = jdbc(from).queryForList(
+                        "select id, name, description, price, stock, category_id from products where id = ? for update", id);
+                if (rows.isEmpty()) {
+                    return false; // borrado o movido mientras tanto
+                }
+                Map<String, Object> product = rows.get(0);
+                to[0] = shards.shardFor(((Number) product.get("category_id")).longValue());
+                if (to[0] == from) {
+                    return false;
+                }
+                jdbc(from).update("delete from products where id = ?", id);
+                transaction(to[0]).executeWithoutResult(targetStatus -> jdbc(to[0]).update(
+                        "insert into products (id, name, description, price, stock, category_id, updated_at) "
+                                + "values (?, ?, ?, ?, ?, ?, ?)", id, product.get("name"), product.get("description"),
+                        product.get("price"), product.get("stock"), product.get("category_id"), now()));
+                inserted[0] = true;
+                return true;
+            }));
+        } catch (DuplicateKeyException e) {
+            // Solo pasa si antes se movió a medias: no se sabe qué copia es la buena, así que se dejan las dos
+            log.error("El producto {} está en los shards {} y {}; hay que revisarlo a mano", id, from, to[0]);
+            return false;
+        } catch (RuntimeException e) {
+            if (inserted[0]) {
+                try {
+                    jdbc(to[0]).update("delete from products where id = ?", id);
+                } catch (RuntimeException undo) {
+                    e.addSuppressed(undo);
+                }
+            }
+            log.error("No se pudo mover el producto {} del shard {} al {}", id, from, to[0], e);
+            return false;
+        }
+    }
+
+    private boolean acquireLock() {
+        JdbcTemplate jdbc = jdbc(0);
+        jdbc.execute("create table if not exists shard_locks "
+                + "(name varchar(64) primary key, owner varchar(64) not null, locked_until timestamp not null)");
+        LocalDateTime now = now();
+        try {
+            return jdbc.update("insert into shard_locks (name, owner, locked_until) values (?, ?, ?)",
+                    LOCK_NAME, owner, now.plus(LOCK_LEASE)) == 1;
+        } catch (DuplicateKeyException e) {
+            // Se queda con el bloqueo si el de la otra instancia ha caducado
+            return jdbc.update("update shard_locks set owner = ?, locked_until = ? where name = ? and locked_until < ?",
+                    owner, now.plus(LOCK_LEASE), LOCK_NAME, now) == 1;
+        }
+    }
+
+    private void renewLock() {
+        jdbc(0).update("update shard_locks set locked_until = ? where name = ? and owner = ?",
+                now().plus(LOCK_LEASE), LOCK_NAME, owner);
+    }
+
+    private void releaseLock() {
+        jdbc(0).update("delete from shard_locks where name = ? and owner = ?", LOCK_NAME, owner);
+    }
+
+    private TransactionTemplate transaction(int shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(shards.getShard(shard)));
+    }
+
+    private void upsert(int shard, Long id, String name, String description) {
+        JdbcTemplate jdbc = jdbc(shard);
+        LocalDateTime now = now();
+        if (jdbc.update("update categories set name = ?, description = ?, updated_at = ? where id = ?", name, description, now, id) == 0) {
+            jdbc.update("insert into categories (id, name, description, updated_at) values (?, ?, ?, ?)", id, name, description, now);
+        }
+    }
+
+    // Mismo criterio que hibernate.jdbc.time_zone=UTC
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    private JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(shards.getShard(shard));
+    }
+}
@@ -0,0 +1,169 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Estadísticas por categoría (número de productos, con stock, rango de precios y stock total) mantenidas en memoria.
+// Se cargan al arrancar desde CatalogCache (o con una consulta agregada si no está cargada) y después se actualizan con cada evento de ProductService,
+// así que las peticiones de estadísticas nunca consultan la tabla products
+@Service
+@Profile("!reactive")
+public class CategoryStatsService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired // Si ya está cargada, las estadísticas se calculan desde ella
+    private CatalogCache catalogCache;
+
+    private final Map<Long, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, Aggregate> rebuilt = new ConcurrentHashMap<>();
+        if (catalogCache.isLoaded()) {
+            // La caché ya tiene todo el catálogo: se agrega en memoria sin consultar la base de datos
+            catalogCache.getCategories().forEach(category -> rebuilt.put(category.getId(), new Aggregate()));
+            for (ProductSnapshot product : catalogCache.getProducts()) {
+                rebuilt.computeIfAbsent(product.getCategoryId(), id -> new Aggregate()).add(product);
+            }
+        } else {
+            for (Object[] row : productRepository.aggregateStatsByCategory()) {
+                rebuilt.put((Long) row[0], new Aggregate(
+                        ((Number) row[1]).longValue(),
+                        ((Number) row[2]).longValue(),
+                        (Double) row[3],
+                        (Double) row[4],
+                        ((Number) row[5]).longValue()));
+            }
+        }
+        aggregates.keySet().retainAll(rebuilt.keySet());
+        aggregates.putAll(rebuilt);
+    }
+
+    public Optional<CategoryStats> getStats(Long categoryId) {
+        Aggregate aggregate = aggregates.get(categoryId);
+        return aggregate == null ? Optional.empty() : Optional.of(aggregate.toStats(categoryId));
+    }
+
+    public List<CategoryStats> getAllStats() {
+        return aggregates.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparing(CategoryStats::getCategoryId))
+                .collect(Collectors.toList());
+    }
+
+    // Se aplica tras el commit (o al momento si la escritura no iba en una transacción)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        ProductSnapshot before = event.getBefore();
+        ProductSnapshot after = event.getAfter();
+        Aggregate staleRange = null;
+        if (before != null) {
+            Aggregate aggregate = aggregates.get(before.getCategoryId());
+            if (aggregate != null && aggregate.remove(before)) {
+                staleRange = aggregate;
+            }
+        }
+        if (after != null) {
+            aggregates.computeIfAbsent(after.getCategoryId(), id -> new Aggregate()).add(after);
+        }
+        if (staleRange != null) {
+            // Ha salido el precio mínimo o máximo: se vuelve a pedir el rango, que sale del índice (category_id, price)
+            List<Object[]> range = productRepository.findPriceRangeByCategoryId(before.getCategoryId());
+            Object[] row = range.isEmpty() ? new Object[2] : range.get(0);
+            staleRange.setPriceRange((Double) row[0], (Double) row[1]);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            aggregates.remove(event.getCategoryId());
+        } else {
+            aggregates.putIfAbsent(event.getCategoryId(), new Aggregate());
+        }
+    }
+
+    // Acumulador mutable de una categoría
+    private static class Aggregate {
+        private long productCount;
+        private long inStockCount;
+        private Double minPrice;
+        private Double maxPrice;
+        private long totalStock;
+
+        Aggregate() {
+        }
+
+        Aggregate(long productCount, long inStockCount, Double minPrice, Double maxPrice, long totalStock) {
+            this.productCount = productCount;
+            this.inStockCount = inStockCount;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.totalStock = totalStock;
+        }
+
+        synchronized void add(ProductSnapshot product) {
+            productCount++;
+            if (product.getStock() > 0) {
+                inStockCount++;
+            }
+            totalStock += product.getStock();
+            minPrice = minPrice == null ? product.getPrice() : Math.min(minPrice, product.getPrice());
+            maxPrice = maxPrice == null ? product.getPrice() : Math.max(maxPrice, product.getPrice());
+        }
+
+        // Devuelve true si el producto que sale tenía el precio mínimo o máximo y hay que recalcular el rango
+        synchronized boolean remove(ProductSnapshot product) {
+            productCount--;
+            if (product.getStock() > 0) {
+                inStockCount--;
+            }
+            totalStock -= product.getStock();
+            if (productCount <= 0) {
+                productCount = 0;
+                minPrice = null;
+                maxPrice = null;
+                return false;
+            }
+            return product.getPrice() <= minPrice || product.getPrice() >= maxPrice;
+        }
+
+        synchronized void setPriceRange(Double minPrice, Double maxPrice) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+        }
+
+        synchronized CategoryStats toStats(Long categoryId) {
+            return new CategoryStats(categoryId, productCount, inStockCount, minPrice, maxPrice, totalStock);
+        }
+    }
+
+    // --- DTOs ---
+    @Value
+    public static class CategoryStats {
+        Long categoryId;
+        long productCount;
+        long inStockCount;
+        Double minPrice;
+        Double maxPrice;
+        long totalStock;
+    }
+}
@@ -0,0 +1,9 @@
+package com.programthis.productcatalogservice.service;
+
+// Ya existe un producto (o una categoría) con ese nombre; los nombres son únicos
+public class DuplicateNameException extends RuntimeException {
+
+    public DuplicateNameException(String entity, String name) {
+        super("Ya existe " + entity + " con el nombre: " + name);
+    }
+}
@@ -0,0 +1,163 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// Comprueba que un nombre de producto o de categoría está libre antes de escribir, en lugar de descubrirlo cuando el
+// INSERT/UPDATE choca con la restricción UNIQUE y hay que deshacer la transacción (las cargas de proveedores traen
+// muchos repetidos). Un filtro de Bloom en memoria con todos los nombres descarta sin consultar los nombres nuevos;
+// si dice "puede estar" se confirma con un exists por el índice único. El "no está" del filtro solo vale si le llegan
+// todas las escrituras (trust-filter: por defecto, con el bus de invalidación activo); si no, o mientras no se ha
+// construido, siempre se consulta la base de datos. Los nombres borrados o renombrados no se quitan (el filtro no
+// admite borrados): cuestan una consulta de más hasta la siguiente reconstrucción. Las claves se normalizan igual que
+// en ProductSuggestionService (minúsculas, sin tildes ni espacios a los lados), un superconjunto de lo que la
+// intercalación de MySQL considera igual
+@Service
+@Profile("!reactive")
+public class DuplicateNameGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(DuplicateNameGuard.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired // Si ya está cargada, el filtro se construye desde ella
+    private CatalogCache catalogCache;
+
+    // Nombres previstos (productos más categorías); con más, el filtro da más falsos positivos hasta la siguiente
+    // reconstrucción, que lo dimensiona con el doble de los que haya
+    @Value("${catalog.name-index.expected-names:100000}")
+    private long expectedNames = 100_000;
+
+    @Value("${catalog.name-index.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    // Sin el bus, los nombres dados de alta en otra réplica no llegan al filtro. Como no se sabe si hay otras réplicas,
+    // por defecto cada comprobación cuesta un exists; una sola instancia puede activarlo y ahorrárselo
+    @Value("${catalog.name-index.trust-filter:${catalog.invalidation.enabled:false}}")
+    private boolean trustFilter;
+
+    private volatile BloomFilter filter;
+    // Filtro en construcción: también recibe las altas que lleguen mientras se recorre el catálogo
+    private volatile BloomFilter building;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong confirmations = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    // Se reconstruye periódicamente para soltar los nombres borrados o renombrados
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${catalog.name-index.rebuild-interval:PT1H}",
+            initialDelayString = "${catalog.name-index.rebuild-interval:PT1H}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        long names = catalogCache.isLoaded()
+                ? catalogCache.getProducts().size() + catalogCache.getCategories().size()
+                : 0;
+        BloomFilter next = new BloomFilter(Math.max(expectedNames, 2 * names), falsePositiveRate);
+        building = next;
+        try {
+            if (catalogCache.isLoaded()) {
+                catalogCache.getProducts().forEach(product -> next.add(productKey(product.getName())));
+                catalogCache.getCategories().forEach(category -> next.add(categoryKey(category.getName())));
+            } else {
+                productRepository.findAllSuggestionRows().forEach(row -> next.add(productKey((String) row[1])));
+                categoryRepository.findAllSuggestionRows().forEach(row -> next.add(categoryKey((String) row[1])));
+            }
+            filter = next;
+        } finally {
+            building = null;
+        }
+        log.info("Filtro de nombres construido en {} ms: {} KB, {} funciones hash; {} comprobaciones, {} confirmadas "
+                        + "en la base de datos, {} falsos positivos", (System.nanoTime() - start) / 1_000_000,
+                next.getMemoryBytes() / 1024, next.getHashCount(), checks.get(), confirmations.get(), falsePositives.get());
+    }
+
+    // Lanza DuplicateNameException si otro producto (distinto de productId, null al crear) ya usa el nombre
+    public void checkProductName(String name, Long productId) {
+        if (name != null && exists(productKey(name), () -> productId == null
+                ? productRepository.existsByName(name)
+                : productRepository.existsByNameAndIdNot(name, productId))) {
+            throw new DuplicateNameException("un producto", name);
+        }
+    }
+
+    public void checkCategoryName(String name, Long categoryId) {
+        if (name != null && exists(categoryKey(name), () -> categoryId == null
+                ? categoryRepository.existsByName(name)
+                : categoryRepository.existsByNameAndIdNot(name, categoryId))) {
+            throw new DuplicateNameException("una categoría", name);
+        }
+    }
+
+    public boolean productNameExists(String name) {
+        return exists(productKey(name), () -> productRepository.existsByName(name));
+    }
+
+    private boolean exists(String key, BooleanSupplier confirm) {
+        checks.incrementAndGet();
+        BloomFilter current = trustFilter ? filter : null;
+        if (current != null && !current.mightContain(key)) {
+            return false;
+        }
+        confirmations.incrementAndGet();
+        boolean exists = confirm.getAsBoolean();
+        if (!exists && current != null) {
+            falsePositives.incrementAndGet();
+        }
+        return exists;
+    }
+
+    // Solo altas y cambios de nombre: el nombre anterior se queda hasta la reconstrucción
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getAfter() != null
+                && (event.getBefore() == null || !event.getBefore().getName().equals(event.getAfter().getName()))) {
+            add(productKey(event.getAfter().getName()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!event.isDeleted()) {
+            add(categoryKey(event.getName()));
+        }
+    }
+
+    private void add(String key) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.add(key);
+        }
+        BloomFilter next = building;
+        if (next != null && next != current) {
+            next.add(key);
+        }
+    }
+
+    private static String productKey(String name) {
+        return "P" + ProductSuggestionService.normalize(name);
+    }
+
+    private static String categoryKey(String name) {
+        return "C" + ProductSuggestionService.normalize(name);
+    }
+}
@@ -0,0 +1,30 @@
+package com.programthis.productcatalogservice.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Traduce el parámetro ?fields=a,b,c a las rutas de atributos que hay que leer. El id siempre se incluye
+final class FieldSelection {
+
+    private FieldSelection() {
+    }
+
+    static List<String> toPaths(String fields, Map<String, List<String>> allowedFields) {
+        Set<String> paths = new LinkedHashSet<>(allowedFields.get("id"));
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            List<String> fieldPaths = allowedFields.get(name);
+            if (fieldPaths == null) {
+                throw new RuntimeException("Campo no válido: " + name);
+            }
+            paths.addAll(fieldPaths);
+        }
+        return new ArrayList<>(paths);
+    }
+}
@@ -0,0 +1,9 @@
+package com.programthis.productcatalogservice.service;
+
+// No hay stock disponible suficiente para atender una reserva
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(Long productId, int requested, int available) {
+        super("Stock insuficiente para el producto " + productId + ": pedido " + requested + ", disponible " + available);
+    }
+}
@@ -0,0 +1,101 @@
+package com.programthis.productcatalogservice.service;
+
+import lombok.Value;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Mensaje de CacheInvalidationBus (big-endian):
+//   magic (int), instancia emisora (2 long), secuencia (long), nº de entradas (short)
+//   por entrada: tipo (byte, 0 = producto, 1 = categoría), id (long), versión (long)
+// Con MAX_ENTRIES entradas ocupa menos de 1400 bytes: cabe en un datagrama sin fragmentar en una red Ethernet
+@Value
+public class InvalidationMessage {
+
+    static final int MAGIC = 0x50434942; // "PCIB"
+    static final int MAX_ENTRIES = 80;
+    private static final int HEADER_BYTES = 4 + 16 + 8 + 2;
+    private static final int ENTRY_BYTES = 1 + 8 + 8;
+
+    UUID senderId;
+    long sequence; // por emisor, empieza en 1 y no se salta números: un hueco es un mensaje perdido
+    List<Entry> entries; // vacío en los latidos
+
+    public byte[] encode() {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IllegalStateException("Demasiadas entradas para un mensaje: " + entries.size());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + entries.size() * ENTRY_BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(senderId.getMostSignificantBits());
+            out.writeLong(senderId.getLeastSignificantBits());
+            out.writeLong(sequence);
+            out.writeShort(entries.size());
+            for (Entry entry : entries) {
+                out.writeByte(entry.getKind().ordinal());
+                out.writeLong(entry.getId());
+                out.writeLong(entry.getVersion());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // no ocurre escribiendo en memoria
+        }
+        return bytes.toByteArray();
+    }
+
+    public static InvalidationMessage decode(byte[] datagram) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(datagram);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("No es un mensaje del bus de invalidación");
+            }
+            UUID senderId = new UUID(buffer.getLong(), buffer.getLong());
+            long sequence = buffer.getLong();
+            int count = buffer.getShort();
+            if (count < 0 || count > MAX_ENTRIES || buffer.remaining() != count * ENTRY_BYTES) {
+                throw new IOException("Mensaje del bus de invalidación con tamaño incorrecto");
+            }
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int kind = buffer.get();
+                if (kind < 0 || kind >= Kind.values().length) {
+                    throw new IOException("Tipo de entrada desconocido: " + kind);
+                }
+                entries.add(new Entry(Kind.values()[kind], buffer.getLong(), buffer.getLong()));
+            }
+            return new InvalidationMessage(senderId, sequence, entries);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Mensaje del bus de invalidación incompleto", e);
+        }
+    }
+
+    public enum Kind {
+        PRODUCT,
+        CATEGORY
+    }
+
+    // --- DTOs ---
+    @Value
+    public static class Key {
+        Kind kind;
+        long id;
+    }
+
+    @Value
+    public static class Entry {
+        Kind kind;
+        long id;
+        long version; // contador del emisor en el momento de la escritura; crece con cada escritura que hace
+
+        public Key getKey() {
+            return new Key(kind, id);
+        }
+    }
+}
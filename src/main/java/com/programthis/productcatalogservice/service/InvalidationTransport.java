@@ -0,0 +1,16 @@
+package com.programthis.productcatalogservice.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+// Transporte de los mensajes de CacheInvalidationBus. Basta con entregar datagramas completos "como mucho una vez":
+// el bus detecta por número de secuencia lo que se pierde o llega desordenado
+public interface InvalidationTransport extends Closeable {
+
+    // Empieza a recibir; el consumidor se llama desde un único hilo del transporte
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    // Envía el datagrama a las demás instancias
+    void send(byte[] datagram) throws IOException;
+}
@@ -0,0 +1,276 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Reservas temporales de stock para el checkout. El stock disponible de cada producto se lleva en memoria,
+// protegido por un candado de un conjunto fijo (lock striping), así que reservar y liberar no toca la base de datos.
+// Solo las reservas confirmadas cambian products.stock, con ProductService.adjustStock: en modo write-behind la venta
+// se anota en el diario de stock (StockWriteBehindBuffer) antes de responder y se vuelca por lotes con el resto de
+// variaciones; sin él se escribe al confirmar. En ningún caso una venta confirmada vive solo en memoria
+@Service
+@Profile("!reactive")
+public class InventoryReservationService {
+
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired // Variaciones de stock aún sin volcar, ver onProductChanged
+    private StockWriteBehindBuffer stockBuffer;
+
+    @Value("${catalog.reservations.ttl:PT5M}")
+    private Duration ttl = Duration.ofMinutes(5);
+
+    private Clock clock = Clock.systemUTC();
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Map<Long, Inventory> inventories = new ConcurrentHashMap<>();
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    // Las mismas reservas por orden de caducidad: expireHolds solo recorre las ya caducadas, no todas las vivas
+    private final NavigableSet<Hold> holdsByExpiry = new ConcurrentSkipListSet<>(
+            Comparator.comparing((Hold hold) -> hold.expiresAt).thenComparing(hold -> hold.id));
+
+    public InventoryReservationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Devuelve vacío si el producto no existe; lanza InsufficientStockException si no hay disponible suficiente
+    public Optional<Reservation> reserve(Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new RuntimeException("La cantidad a reservar debe ser positiva");
+        }
+        Inventory inventory = inventories.get(productId);
+        if (inventory == null) {
+            Optional<Product> product = productService.getProductById(productId);
+            if (product.isEmpty()) {
+                return Optional.empty();
+            }
+            inventory = inventories.computeIfAbsent(productId, id -> new Inventory(product.get().getStock()));
+        }
+
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            int available = inventory.onHand - inventory.held;
+            if (available < quantity) {
+                throw new InsufficientStockException(productId, quantity, available);
+            }
+            inventory.held += quantity;
+        } finally {
+            lock.unlock();
+        }
+
+        Hold hold = new Hold(UUID.randomUUID().toString(), productId, quantity, clock.instant().plus(ttl));
+        holds.put(hold.id, hold);
+        holdsByExpiry.add(hold);
+        return Optional.of(hold.toReservation());
+    }
+
+    // La reserva pasa a ser una venta. Vacío si la reserva no existe, ha caducado o si el producto se ha borrado
+    // entretanto (no hay stock al que descontar la venta)
+    public Optional<Reservation> confirm(Long productId, String holdId) {
+        Hold hold = removeHold(productId, holdId);
+        if (hold == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            Inventory inventory = inventories.get(productId);
+            if (inventory == null) {
+                return Optional.empty();
+            }
+            inventory.held -= hold.quantity;
+            inventory.onHand -= hold.quantity;
+        } finally {
+            lock.unlock();
+        }
+        // Fuera del candado: el fsync del diario o el UPDATE no bloquean a los demás productos de la franja
+        Optional<Product> sold;
+        try {
+            sold = productService.adjustStock(productId, -hold.quantity);
+        } catch (RuntimeException e) {
+            // La venta no ha quedado registrada: la reserva vuelve a estar activa
+            restoreHold(hold);
+            throw e;
+        }
+        return sold.map(product -> hold.toReservation());
+    }
+
+    public Optional<Reservation> release(Long productId, String holdId) {
+        Hold hold = removeHold(productId, holdId);
+        if (hold == null) {
+            return Optional.empty();
+        }
+        releaseHeld(hold);
+        return Optional.of(hold.toReservation());
+    }
+
+    public Optional<Availability> getAvailability(Long productId) {
+        Inventory inventory = inventories.get(productId);
+        if (inventory == null) {
+            return productService.getProductById(productId)
+                    .map(product -> new Availability(productId, product.getStock(), 0, product.getStock()));
+        }
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            return Optional.of(new Availability(productId, inventory.onHand, inventory.held, inventory.onHand - inventory.held));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.reservations.expiry-check-interval:PT1S}")
+    public void expireHolds() {
+        // Todo lo anterior a "now" (el ID vacío va antes que cualquier otro con la misma caducidad)
+        Iterator<Hold> expired = holdsByExpiry.headSet(new Hold("", null, 0, clock.instant())).iterator();
+        while (expired.hasNext()) {
+            Hold hold = expired.next();
+            expired.remove();
+            if (holds.remove(hold.id, hold)) {
+                releaseHeld(hold);
+            }
+        }
+    }
+
+    // Otras escrituras (PUT, PATCH, volcados) cambian products.stock: el disponible se recalcula sobre el valor nuevo
+    // más lo que aún no se ha volcado del diario de stock (incluidas las ventas confirmadas aquí)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long productId = event.getProductId();
+        if (!inventories.containsKey(productId)) {
+            return;
+        }
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            if (event.getAfter() == null) {
+                inventories.remove(productId);
+            } else {
+                Inventory inventory = inventories.get(productId);
+                if (inventory != null) {
+                    inventory.onHand = event.getAfter().getStock() + stockBuffer.pendingDelta(productId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Hold removeHold(Long productId, String holdId) {
+        Hold hold = holds.get(holdId);
+        if (hold == null || !hold.productId.equals(productId) || !holds.remove(holdId, hold)) {
+            return null;
+        }
+        holdsByExpiry.remove(hold);
+        if (hold.expiresAt.isBefore(clock.instant())) {
+            // Ya caducada aunque expireHolds aún no haya pasado: no se confirma y sus unidades se liberan ahora
+            releaseHeld(hold);
+            return null;
+        }
+        return hold;
+    }
+
+    private void releaseHeld(Hold hold) {
+        ReentrantLock lock = lockFor(hold.productId);
+        lock.lock();
+        try {
+            Inventory inventory = inventories.get(hold.productId);
+            if (inventory != null) {
+                inventory.held -= hold.quantity;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void restoreHold(Hold hold) {
+        ReentrantLock lock = lockFor(hold.productId);
+        lock.lock();
+        try {
+            Inventory inventory = inventories.get(hold.productId);
+            if (inventory == null) {
+                return;
+            }
+            inventory.held += hold.quantity;
+            inventory.onHand += hold.quantity;
+        } finally {
+            lock.unlock();
+        }
+        holds.put(hold.id, hold);
+        holdsByExpiry.add(hold);
+    }
+
+    private ReentrantLock lockFor(Long productId) {
+        return locks[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    // Estado en memoria de un producto; se accede siempre con el candado de su franja
+    private static class Inventory {
+        private int onHand; // stock real: el de la base de datos más las variaciones aún no volcadas
+        private int held;   // unidades retenidas por reservas activas
+
+        Inventory(int onHand) {
+            this.onHand = onHand;
+        }
+    }
+
+    private static class Hold {
+        private final String id;
+        private final Long productId;
+        private final int quantity;
+        private final Instant expiresAt;
+
+        Hold(String id, Long productId, int quantity, Instant expiresAt) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+
+        Reservation toReservation() {
+            return new Reservation(id, productId, quantity, expiresAt);
+        }
+    }
+
+    // --- DTOs ---
+    @lombok.Value
+    public static class Reservation {
+        String holdId;
+        Long productId;
+        int quantity;
+        Instant expiresAt;
+    }
+
+    @lombok.Value
+    public static class Availability {
+        Long productId;
+        int stock;
+        int held;
+        int available;
+    }
+}
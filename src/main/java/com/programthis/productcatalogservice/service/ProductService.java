@@ -1,46 +1,168 @@
 package com.programthis.productcatalogservice.service;
 
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
 import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.model.CatalogDeletion;
 import com.programthis.productcatalogservice.model.Category; // Importar Category
+import com.programthis.productcatalogservice.model.StockJournalCheckpoint;
+import com.programthis.productcatalogservice.repository.CatalogDeletionRepository;
 import com.programthis.productcatalogservice.repository.ProductRepository;
 import com.programthis.productcatalogservice.repository.CategoryRepository; // Importar CategoryRepository
+import com.programthis.productcatalogservice.repository.StockJournalCheckpointRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static com.programthis.productcatalogservice.repository.ProductSpecifications.*;
+
 @Service // Indica que esta clase es un componente de servicio de Spring
+@Profile("!reactive")
 public class ProductService {
 
+    // Campos que admite ?fields= y las columnas que lee cada uno ("category" hace JOIN con categories)
+    private static final Map<String, List<String>> SELECTABLE_FIELDS = Map.of(
+            "id", List.of("id"),
+            "name", List.of("name"),
+            "description", List.of("description"),
+            "price", List.of("price"),
+            "stock", List.of("stock"),
+            "category", List.of("category.id", "category.name"));
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired // Necesitamos este para buscar categorías
     private CategoryRepository categoryRepository;
 
+    @Autowired // Avisa a los índices en memoria (estadísticas, sugerencias...) de cada escritura
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired // Variaciones de stock en modo write-behind, aún no volcadas a la base de datos
+    private StockWriteBehindBuffer stockBuffer;
+
+    @Autowired // Copia en memoria del catálogo para las lecturas por ID
+    private CatalogCache catalogCache;
+
+    // Las lecturas por ID salen de la caché solo si se sabe que está al día: con varias réplicas y sin bus de
+    // invalidación otra instancia la pone al día cada snapshot-interval, y entretanto se leen precio y stock antiguos
+    @Value("${catalog.cache.serve-reads:${catalog.invalidation.enabled:false}}")
+    private boolean serveReadsFromCache;
+
+    @Autowired // Último lote del diario de stock aplicado, ver applyStockDeltas(deltas, journalId, sequence)
+    private StockJournalCheckpointRepository checkpointRepository;
+
+    @Autowired // Nombres repetidos: se rechazan antes de escribir, sin esperar a la restricción UNIQUE
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @Autowired // Registro de borrados con el que las otras instancias quitan lo borrado de su caché
+    private CatalogDeletionRepository deletionRepository;
+
+    @Autowired // adjustStock solo abre transacción cuando aplica la variación al momento
+    private PlatformTransactionManager transactionManager;
+
+    private Optional<Product> cached(Long id) {
+        return serveReadsFromCache ? catalogCache.getProduct(id) : Optional.empty();
+    }
+
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
 
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return stockBuffer.readWithPendingStock(() -> {
+            // Lo que aún no está en la caché (p. ej. si la reconciliación no ha terminado) se lee de la base de datos
+            Optional<Product> product = cached(id);
+            return (product.isPresent() ? product : productRepository.findById(id)).map(this::withPendingStock);
+        });
+    }
+
+    // Varios productos por ID: lo que no está en la caché se lee con una sola consulta IN. Los que no existen no aparecen
+    public Map<Long, Product> getProductsByIds(Collection<Long> ids) {
+        return stockBuffer.readWithPendingStock(() -> findProductsByIds(ids));
+    }
+
+    private Map<Long, Product> findProductsByIds(Collection<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            cached(id).ifPresentOrElse(product -> products.put(id, product), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            productRepository.findByIdIn(missing).forEach(product -> products.put(product.getId(), product));
+        }
+        products.replaceAll((id, product) -> withPendingStock(product));
+        return products;
+    }
+
+    // Productos de varias categorías con una sola consulta IN, agrupados por categoría y en orden de ID. Con limit la
+    // base de datos elige antes los IDs de los primeros limit de cada categoría y solo se leen esos
+    public Map<Long, List<Product>> getProductsByCategoryIds(Collection<Long> categoryIds, Integer limit) {
+        return stockBuffer.readWithPendingStock(() -> findProductsByCategoryIds(categoryIds, limit));
+    }
+
+    private Map<Long, List<Product>> findProductsByCategoryIds(Collection<Long> categoryIds, Integer limit) {
+        Map<Long, List<Product>> byCategory = new LinkedHashMap<>();
+        categoryIds.forEach(categoryId -> byCategory.put(categoryId, new ArrayList<>()));
+        if (!categoryIds.isEmpty() && (limit == null || limit > 0)) {
+            List<Product> products;
+            if (limit == null) {
+                products = productRepository.findByCategoryIdInOrderByIdAsc(categoryIds);
+            } else {
+                List<Long> ids = productRepository.findFirstIdsPerCategory(categoryIds, limit);
+                products = ids.isEmpty() ? List.of() : new ArrayList<>(productRepository.findByIdIn(ids));
+                products.sort(Comparator.comparing(Product::getId));
+            }
+            for (Product product : products) {
+                byCategory.get(product.getCategory().getId()).add(withPendingStock(product));
+            }
+        }
+        return byCategory;
     }
 
     // Método para guardar un producto (crear o actualizar)
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        // El estado anterior se lee con una proyección: la entidad recibida puede ser la misma instancia ya modificada
+        ProductSnapshot before = product.getId() != null
+                ? productRepository.findSnapshotById(product.getId()).orElse(null)
+                : null;
+        if (before == null || !before.getName().equals(product.getName())) {
+            duplicateNameGuard.checkProductName(product.getName(), product.getId());
+        }
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(before, ProductSnapshot.of(savedProduct)));
+        return savedProduct;
     }
 
     // Método para crear un producto, manejando la asignación de categoría por ID
     public Product createProduct(String name, String description, Double price, Integer stock, Long categoryId) {
+        duplicateNameGuard.checkProductName(name, null);
         Optional<Category> categoryOptional = categoryRepository.findById(categoryId);
         if (categoryOptional.isEmpty()) {
             throw new RuntimeException("Categoría no encontrada con ID: " + categoryId);
         }
         Category category = categoryOptional.get();
         Product newProduct = new Product(null, name, description, price, stock, category); // ID es null para que se autogenere
-        return productRepository.save(newProduct);
+        Product savedProduct = productRepository.save(newProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(null, ProductSnapshot.of(savedProduct)));
+        return savedProduct;
     }
 
     // Método para actualizar un producto existente
@@ -48,6 +170,10 @@ public class ProductService {
         Optional<Product> productOptional = productRepository.findById(id);
         if (productOptional.isPresent()) {
             Product product = productOptional.get();
+            ProductSnapshot before = ProductSnapshot.of(product);
+            if (!product.getName().equals(productDetails.getName())) {
+                duplicateNameGuard.checkProductName(productDetails.getName(), id);
+            }
             product.setName(productDetails.getName());
             product.setDescription(productDetails.getDescription());
             product.setPrice(productDetails.getPrice());
@@ -60,14 +186,162 @@ public class ProductService {
                 }
                 product.setCategory(categoryOptional.get());
             }
-            return Optional.of(productRepository.save(product));
+            Product savedProduct = productRepository.save(product);
+            eventPublisher.publishEvent(new ProductChangedEvent(before, ProductSnapshot.of(savedProduct)));
+            return Optional.of(savedProduct);
         }
         return Optional.empty();
     }
 
+    // Método para aplicar un JSON Merge Patch (RFC 7396): solo se modifican los campos presentes.
+    // Dentro de la transacción la entidad queda gestionada y, con @DynamicUpdate, el UPDATE solo lleva las columnas cambiadas
+    @Transactional
+    public Optional<Product> patchProduct(Long id, Map<String, Object> patch) {
+        Optional<Product> productOptional = productRepository.findById(id);
+        if (productOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        Product product = productOptional.get();
+        ProductSnapshot before = ProductSnapshot.of(product);
+        if (patch.get("name") instanceof String name && !name.equals(product.getName())) {
+            duplicateNameGuard.checkProductName(name, id);
+        }
+        Long categoryId = CatalogValidation.applyProductPatch(product, patch);
+        if (categoryId != null && !categoryId.equals(product.getCategory().getId())) {
+            Category category = categoryRepository.findById(categoryId)
+                    .orElseThrow(() -> new RuntimeException("Categoría no encontrada con ID: " + categoryId));
+            product.setCategory(category);
+        }
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(before, ProductSnapshot.of(savedProduct)));
+        return Optional.of(savedProduct);
+    }
 
+    // Aplica variaciones de stock acumuladas (reservas confirmadas, sincronización de almacén...) en un único lote.
+    // Los eventos se generan a partir del stock ya actualizado, leído en la misma transacción
+    @Transactional
+    public void applyStockDeltas(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        productRepository.adjustStock(deltas);
+        for (ProductSnapshot after : productRepository.findSnapshotsByIdIn(deltas.keySet())) {
+            ProductSnapshot before = after.withStock(after.getStock() - deltas.get(after.getId()));
+            eventPublisher.publishEvent(new ProductChangedEvent(before, after));
+        }
+    }
+
+    // Lote del diario de stock (write-behind): el número de lote se registra en la misma transacción que el UPDATE,
+    // así un segmento del diario que sobreviva al commit no se vuelve a aplicar al arrancar
+    @Transactional
+    public void applyStockDeltas(Map<Long, Integer> deltas, String journalId, long sequence) {
+        applyStockDeltas(deltas);
+        checkpointRepository.save(new StockJournalCheckpoint(journalId, sequence));
+        stockBuffer.completeOnCommit(); // el lote deja de sumarse a las lecturas a la vez que se confirma
+    }
+
+    // Variación relativa de stock (sincronización de almacén). En modo write-behind solo se anota en el diario
+    // y en memoria, y se vuelca en lote más tarde; si no, se aplica al momento con el mismo UPDATE por lotes.
+    // En write-behind no se abre transacción y el producto sale de la caché aunque no se sirvan de ella las lecturas:
+    // el stock que se devuelve ya es una estimación local (lo pendiente de esta instancia) y una variación de un
+    // producto borrado en otra réplica no hace nada al volcarse. Solo lo que aún no está en la caché se lee
+    public Optional<Product> adjustStock(Long id, int delta) {
+        if (stockBuffer.isEnabled()) {
+            return stockBuffer.readWithPendingStock(() -> {
+                Optional<Product> product = catalogCache.getProduct(id).or(() -> productRepository.findById(id));
+                product.ifPresent(found -> stockBuffer.add(id, delta));
+                return product.map(this::withPendingStock);
+            });
+        }
+        return new TransactionTemplate(transactionManager).execute(status -> productRepository.findById(id).map(product -> {
+            applyStockDeltas(Map.of(id, delta));
+            return withStock(product, product.getStock() + delta);
+        }));
+    }
+
+    // La entidad puede estar gestionada: se devuelve una copia para que el stock pendiente nunca se escriba como absoluto.
+    // Se llama dentro de stockBuffer.readWithPendingStock, junto con la lectura del producto
+    private Product withPendingStock(Product product) {
+        int pendingDelta = stockBuffer.pendingDelta(product.getId());
+        return pendingDelta == 0 ? product : withStock(product, product.getStock() + pendingDelta);
+    }
+
+    private static Product withStock(Product product, int stock) {
+        return new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(), stock, product.getCategory());
+    }
+
+    // HEAD /api/products?name=: un exists por el índice único; con trust-filter, un nombre nuevo se responde desde el
+    // filtro de nombres sin consultar la base de datos
+    public boolean productNameExists(String name) {
+        return duplicateNameGuard.productNameExists(name);
+    }
+
+    @Transactional
     public void deleteProduct(Long id) {
+        Optional<ProductSnapshot> before = productRepository.findById(id).map(ProductSnapshot::of);
         productRepository.deleteById(id);
+        if (before.isPresent()) {
+            deletionRepository.save(new CatalogDeletion(CatalogDeletion.Kind.PRODUCT, id));
+            eventPublisher.publishEvent(new ProductChangedEvent(before.get(), null));
+        }
+    }
+
+    // Búsqueda filtrada y ordenada en la base de datos; todos los filtros son opcionales
+    public Page<Product> searchProducts(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock,
+                                        String namePrefix, Pageable pageable) {
+        return productRepository.findAll(searchSpecification(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable), pageable);
+    }
+
+    // Lecturas con ?fields=: el SELECT solo lleva las columnas pedidas y el resultado es un mapa por producto
+    public List<Map<String, Object>> getAllProductFields(String fields) {
+        return productRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS), null, Pageable.unpaged());
+    }
+
+    public Optional<Map<String, Object>> getProductFieldsById(Long id, String fields) {
+        Specification<Product> byId = (root, query, cb) -> cb.equal(root.get("id"), id);
+        return stockBuffer.readWithPendingStock(() -> {
+            Optional<Map<String, Object>> row = productRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS), byId, Pageable.unpaged())
+                    .stream()
+                    .findFirst();
+            int pendingDelta = stockBuffer.pendingDelta(id);
+            if (pendingDelta != 0) {
+                row.ifPresent(values -> values.computeIfPresent("stock", (key, stock) -> (Integer) stock + pendingDelta));
+            }
+            return row;
+        });
+    }
+
+    public List<Map<String, Object>> getProductFieldsByCategoryId(Long categoryId, String fields) {
+        return productRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS), inCategory(categoryId), Pageable.unpaged());
+    }
+
+    public List<Map<String, Object>> searchProductFields(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock,
+                                                         String namePrefix, String fields, Pageable pageable) {
+        return productRepository.findFields(FieldSelection.toPaths(fields, SELECTABLE_FIELDS),
+                searchSpecification(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable), pageable);
+    }
+
+    private Specification<Product> searchSpecification(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock,
+                                                       String namePrefix, Pageable pageable) {
+        CatalogValidation.checkSearch(minPrice, maxPrice, pageable.getSort());
+
+        Specification<Product> spec = Specification.where(fetchCategory());
+        if (categoryId != null) {
+            spec = spec.and(inCategory(categoryId));
+        }
+        if (minPrice != null) {
+            spec = spec.and(priceAtLeast(minPrice));
+        }
+        if (maxPrice != null) {
+            spec = spec.and(priceAtMost(maxPrice));
+        }
+        if (Boolean.TRUE.equals(inStock)) {
+            spec = spec.and(inStock());
+        }
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            spec = spec.and(nameStartsWith(namePrefix));
+        }
+        return spec;
     }
 
     public List<Product> getProductsByCategoryId(Long categoryId) {
@@ -0,0 +1,399 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+// Índice en memoria para el autocompletado de nombres de productos y categorías.
+// Las claves (nombre normalizado) están ordenadas, así que un prefijo es un rango contiguo del mapa;
+// dentro del rango se eligen las entradas más populares (visitas a la ficha del producto o de la categoría).
+// Los prefijos cortos (hasta INDEXED_PREFIX_LENGTH letras) y los largos cuyo rango pasa de SCAN_LIMIT entradas tienen
+// además un índice ordenado por popularidad, y la consulta lee solo sus primeras entradas; cualquier otro prefijo
+// abarca como mucho SCAN_LIMIT entradas y se recorre entero. Un prefijo largo pierde su índice cuando baja de la
+// mitad de SCAN_LIMIT.
+// Una visita solo suma en un contador: el índice la refleja en la siguiente reordenación (rerank-interval)
+@Service
+@Profile("!reactive")
+public class ProductSuggestionService {
+
+    public static final int MAX_LIMIT = 50;
+
+    // Prefijos que siempre tienen índice por popularidad
+    static final int INDEXED_PREFIX_LENGTH = 3;
+
+    // Entradas que recorre como mucho una consulta de un prefijo sin índice propio
+    static final int SCAN_LIMIT = 256;
+
+    // Más visitas primero; a igual popularidad por nombre, como la respuesta
+    private static final Comparator<Ranked> RANKING = Comparator.comparingLong((Ranked ranked) -> ranked.views).reversed()
+            .thenComparing(ranked -> ranked.entry.name)
+            .thenComparing(ranked -> ranked.entry.key);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired // Si ya está cargada, el índice se construye desde ella
+    private CatalogCache catalogCache;
+
+    private final NavigableMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Map<Long, String> productKeys = new ConcurrentHashMap<>();
+    private final Map<Long, String> categoryKeys = new ConcurrentHashMap<>();
+    private final Map<String, PrefixRanking> byPopularity = new ConcurrentHashMap<>(); // prefijo -> entradas
+    private final Set<Entry> viewed = ConcurrentHashMap.newKeySet(); // con visitas aún sin reflejar en el índice
+    // Serializa los cambios del índice (altas, bajas, reordenaciones); las consultas no lo toman
+    private final Object indexLock = new Object();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (catalogCache.isLoaded()) {
+            catalogCache.getProducts().forEach(product ->
+                    put(SuggestionType.PRODUCT, product.getId(), product.getName(), product.getCategoryId()));
+            catalogCache.getCategories().forEach(category ->
+                    put(SuggestionType.CATEGORY, category.getId(), category.getName(), null));
+            return;
+        }
+        for (Object[] row : productRepository.findAllSuggestionRows()) {
+            put(SuggestionType.PRODUCT, (Long) row[0], (String) row[1], (Long) row[2]);
+        }
+        for (Object[] row : categoryRepository.findAllSuggestionRows()) {
+            put(SuggestionType.CATEGORY, (Long) row[0], (String) row[1], null);
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int size = Math.min(limit, MAX_LIMIT);
+        PrefixRanking ranking = byPopularity.get(normalizedPrefix);
+        List<Suggestion> result = ranking != null ? mostPopular(ranking, size) : scanRange(normalizedPrefix, size);
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet(System.nanoTime() - start);
+        return result;
+    }
+
+    // Ya en orden: basta con las primeras "size" entradas vigentes
+    private List<Suggestion> mostPopular(PrefixRanking ranking, int size) {
+        List<Suggestion> result = new ArrayList<>(size);
+        for (Ranked ranked : ranking.entries) {
+            if (ranked.isCurrent()) {
+                result.add(ranked.toSuggestion());
+                if (result.size() == size) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Sin índice propio el rango tiene como mucho SCAN_LIMIT entradas (vacío para un prefijo corto sin entradas)
+    private List<Suggestion> scanRange(String prefix, int size) {
+        // Montículo de mínimos con los "size" más populares vistos hasta ahora
+        PriorityQueue<Ranked> top = new PriorityQueue<>(size + 1, RANKING.reversed());
+        for (Entry entry : range(prefix).values()) {
+            top.offer(entry.ranked);
+            if (top.size() > size) {
+                top.poll();
+            }
+        }
+        List<Suggestion> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().toSuggestion());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // Señal de popularidad: cada visita a la ficha de un producto o de una categoría. En la petición solo se cuenta
+    public void recordProductView(Long productId) {
+        recordView(productKeys.get(productId));
+    }
+
+    public void recordCategoryView(Long categoryId) {
+        recordView(categoryKeys.get(categoryId));
+    }
+
+    private void recordView(String key) {
+        Entry entry = key != null ? entries.get(key) : null;
+        if (entry != null) {
+            entry.views.incrementAndGet();
+            viewed.add(entry);
+        }
+    }
+
+    // Lleva al índice las visitas contadas desde la última vez
+    @Scheduled(fixedDelayString = "${catalog.suggestions.rerank-interval:PT1S}")
+    public void rerank() {
+        for (Iterator<Entry> pending = viewed.iterator(); pending.hasNext(); ) {
+            Entry entry = pending.next();
+            pending.remove(); // una visita posterior la vuelve a apuntar
+            synchronized (indexLock) {
+                long views = entry.views.get();
+                if (entry.removed || views == entry.ranked.views) {
+                    continue;
+                }
+                // La nueva posición se añade antes de quitar la anterior: una consulta nunca deja de verla
+                Ranked previous = entry.ranked;
+                entry.ranked = new Ranked(entry, views);
+                forEachRanking(entry, (prefix, ranking) -> {
+                    ranking.entries.add(entry.ranked);
+                    ranking.entries.remove(previous);
+                });
+            }
+        }
+    }
+
+    public IndexStats getIndexStats() {
+        long estimatedBytes = 0;
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            // Nodo del skip list (~48 B), clave (~56 B + 1 B/carácter), Entry con su contador (~72 B) y nombre original
+            estimatedBytes += 48 + 56 + mapEntry.getKey().length() + 72 + 40 + mapEntry.getValue().name.length();
+        }
+        for (Map.Entry<String, PrefixRanking> ranking : byPopularity.entrySet()) {
+            // Entrada del mapa con el prefijo (~96 B) y, por entrada del rango, un nodo del índice (~48 B) y su Ranked (~24 B)
+            estimatedBytes += 96 + ranking.getKey().length() + 72L * ranking.getValue().size;
+        }
+        // Mapas inversos ID -> clave (~64 B por entrada, la clave es compartida)
+        estimatedBytes += 64L * (productKeys.size() + categoryKeys.size());
+        long count = lookups.get();
+        return new IndexStats(entries.size(), estimatedBytes, count,
+                count == 0 ? 0 : lookupNanos.get() / count / 1_000.0);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getAfter() == null) {
+            remove(productKeys.remove(event.getProductId()));
+        } else {
+            put(SuggestionType.PRODUCT, event.getProductId(), event.getAfter().getName(), event.getAfter().getCategoryId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(categoryKeys.remove(event.getCategoryId()));
+            // Los productos de la categoría se borran en cascada en la base de datos sin evento propio
+            productKeys.entrySet().removeIf(productKey -> {
+                Entry entry = entries.get(productKey.getValue());
+                if (entry != null && event.getCategoryId().equals(entry.categoryId)) {
+                    remove(productKey.getValue());
+                    return true;
+                }
+                return false;
+            });
+        } else {
+            put(SuggestionType.CATEGORY, event.getCategoryId(), event.getName(), null);
+        }
+    }
+
+    private void put(SuggestionType type, Long id, String name, Long categoryId) {
+        Map<Long, String> keys = type == SuggestionType.PRODUCT ? productKeys : categoryKeys;
+        // El ID forma parte de la clave para que un producto y una categoría con el mismo nombre no choquen
+        String key = normalize(name) + '\u0000' + type.ordinal() + id;
+        synchronized (indexLock) {
+            String previousKey = keys.put(id, key);
+            Entry previous = previousKey != null && !previousKey.equals(key) ? entries.remove(previousKey) : entries.get(key);
+            // Un cambio de nombre conserva la popularidad
+            long views = previous != null ? unindex(previous) : 0;
+            Entry entry = new Entry(type, id, name, categoryId, key, views);
+            entries.put(key, entry);
+            index(entry);
+        }
+    }
+
+    private void remove(String key) {
+        if (key != null) {
+            synchronized (indexLock) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(entry);
+                }
+            }
+        }
+    }
+
+    // La entrada ya está en "entries". Un prefijo largo sin índice cuyo rango pasa de SCAN_LIMIT lo estrena (con todo
+    // su rango); si no pasa, tampoco pasa ninguno más largo y solo queda apuntarla en los que ya tienen índice
+    private void index(Entry entry) {
+        String normalized = entry.normalizedName();
+        boolean mayPromote = true;
+        for (int length = 1; length <= normalized.length(); length++) {
+            String prefix = normalized.substring(0, length);
+            PrefixRanking ranking = byPopularity.get(prefix);
+            if (ranking == null && length <= INDEXED_PREFIX_LENGTH) {
+                ranking = new PrefixRanking();
+                byPopularity.put(prefix, ranking);
+            } else if (ranking == null && mayPromote) {
+                if (range(prefix).keySet().stream().limit(SCAN_LIMIT + 1).count() > SCAN_LIMIT) {
+                    PrefixRanking promoted = new PrefixRanking();
+                    range(prefix).values().forEach(inRange -> promoted.add(inRange.ranked));
+                    byPopularity.put(prefix, promoted);
+                    continue;
+                }
+                mayPromote = false;
+            }
+            if (ranking != null) {
+                ranking.add(entry.ranked);
+            }
+        }
+    }
+
+    // Saca la entrada del índice por popularidad y devuelve sus visitas; ya no se le apuntan más
+    private long unindex(Entry entry) {
+        entry.removed = true;
+        forEachRanking(entry, (prefix, ranking) -> {
+            ranking.remove(entry.ranked);
+            if (prefix.length() > INDEXED_PREFIX_LENGTH && ranking.size < SCAN_LIMIT / 2) {
+                byPopularity.remove(prefix);
+            }
+        });
+        return entry.views.get();
+    }
+
+    private void forEachRanking(Entry entry, BiConsumer<String, PrefixRanking> action) {
+        String normalized = entry.normalizedName();
+        for (int length = 1; length <= normalized.length(); length++) {
+            String prefix = normalized.substring(0, length);
+            PrefixRanking ranking = byPopularity.get(prefix);
+            if (ranking != null) {
+                action.accept(prefix, ranking);
+            }
+        }
+    }
+
+    private NavigableMap<String, Entry> range(String prefix) {
+        return entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public enum SuggestionType {
+        PRODUCT, CATEGORY
+    }
+
+    private static class Entry {
+        private final SuggestionType type;
+        private final Long id;
+        private final String name;
+        private final Long categoryId; // solo en productos, para limpiar al borrar su categoría
+        private final String key;
+        private final AtomicLong views; // visitas contadas, aunque el índice aún no las refleje
+        // Posición vigente en el índice por popularidad; se sustituye (no se modifica) al reordenar
+        private volatile Ranked ranked;
+        private volatile boolean removed;
+
+        Entry(SuggestionType type, Long id, String name, Long categoryId, String key, long views) {
+            this.type = type;
+            this.id = id;
+            this.name = name;
+            this.categoryId = categoryId;
+            this.key = key;
+            this.views = new AtomicLong(views);
+            this.ranked = new Ranked(this, views);
+        }
+
+        String normalizedName() {
+            return key.substring(0, key.indexOf('\u0000'));
+        }
+    }
+
+    // Entradas del rango de un prefijo, de más a menos popular. size solo cambia con indexLock
+    private static class PrefixRanking {
+        private final NavigableSet<Ranked> entries = new ConcurrentSkipListSet<>(RANKING);
+        private int size;
+
+        void add(Ranked ranked) {
+            if (entries.add(ranked)) {
+                size++;
+            }
+        }
+
+        void remove(Ranked ranked) {
+            if (entries.remove(ranked)) {
+                size--;
+            }
+        }
+    }
+
+    // Inmutable: el orden de un ConcurrentSkipListSet no admite cambiar la clave de un elemento ya insertado
+    private static class Ranked {
+        private final Entry entry;
+        private final long views;
+
+        Ranked(Entry entry, long views) {
+            this.entry = entry;
+            this.views = views;
+        }
+
+        // Una reordenación o un borrado concurrentes pueden dejar un momento la posición anterior en el índice
+        boolean isCurrent() {
+            return entry.ranked == this && !entry.removed;
+        }
+
+        Suggestion toSuggestion() {
+            return new Suggestion(entry.type, entry.id, entry.name, views);
+        }
+    }
+
+    // --- DTOs ---
+    @Value
+    public static class Suggestion {
+        SuggestionType type;
+        Long id;
+        String name;
+        long popularity;
+    }
+
+    @Value
+    public static class IndexStats {
+        int entryCount;
+        long estimatedMemoryBytes;
+        long lookups;
+        double averageLookupMicros;
+    }
+}
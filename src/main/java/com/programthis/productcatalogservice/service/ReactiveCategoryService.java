@@ -0,0 +1,46 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.repository.ReactiveCategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// Equivalente no bloqueante de CategoryService para el perfil "reactive"
+@Service
+@Profile("reactive")
+public class ReactiveCategoryService {
+
+    @Autowired
+    private ReactiveCategoryRepository categoryRepository;
+
+    public Flux<Category> getAllCategories() {
+        return categoryRepository.findAll();
+    }
+
+    public Mono<Category> getCategoryById(Long id) {
+        return categoryRepository.findById(id);
+    }
+
+    public Mono<Category> saveCategory(Category category) {
+        return categoryRepository.save(category);
+    }
+
+    @Transactional
+    public Mono<Category> patchCategory(Long id, Map<String, Object> patch) {
+        return categoryRepository.findById(id).flatMap(category -> {
+            CatalogValidation.applyCategoryPatch(category, patch);
+            return categoryRepository.save(category);
+        });
+    }
+
+    @Transactional
+    public Mono<Void> deleteCategory(Long id) {
+        return categoryRepository.deleteById(id).then();
+    }
+}
@@ -0,0 +1,133 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.repository.ReactiveCategoryRepository;
+import com.programthis.productcatalogservice.repository.ReactiveProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+
+// Equivalente no bloqueante de ProductService para el perfil "reactive". Comparte modelo y validación
+// (CatalogValidation); las escrituras se emiten además por changes() para los clientes suscritos
+@Service
+@Profile("reactive")
+public class ReactiveProductService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveProductService.class);
+
+    @Autowired
+    private ReactiveProductRepository productRepository;
+
+    @Autowired
+    private ReactiveCategoryRepository categoryRepository;
+
+    // Un suscriptor lento pierde eventos en lugar de frenar las escrituras ni a los demás suscriptores
+    private final Sinks.Many<ProductChangedEvent> changes = Sinks.many().multicast().directBestEffort();
+
+    public Flux<Product> getAllProducts() {
+        return productRepository.findAll();
+    }
+
+    public Mono<Product> getProductById(Long id) {
+        return productRepository.findById(id);
+    }
+
+    public Flux<Product> getProductsByCategoryId(Long categoryId) {
+        return productRepository.findByCategoryId(categoryId);
+    }
+
+    // La validación se hace al llamar, no al suscribirse, para que el controlador pueda responder 400
+    public Flux<Product> searchProducts(Long categoryId, Double minPrice, Double maxPrice, Boolean inStock,
+                                        String namePrefix, Pageable pageable) {
+        CatalogValidation.checkSearch(minPrice, maxPrice, pageable.getSort());
+        return productRepository.search(categoryId, minPrice, maxPrice, inStock, namePrefix, pageable);
+    }
+
+    public Flux<ProductChangedEvent> changes() {
+        return changes.asFlux();
+    }
+
+    public Mono<Product> createProduct(String name, String description, Double price, Integer stock, Long categoryId) {
+        return findCategory(categoryId)
+                .flatMap(category -> productRepository.save(new Product(null, name, description, price, stock, category)))
+                .doOnNext(savedProduct -> publish(null, savedProduct));
+    }
+
+    @Transactional
+    public Mono<Product> updateProduct(Long id, Product productDetails, Long categoryId) {
+        return productRepository.findById(id).flatMap(product -> {
+            ProductSnapshot before = ProductSnapshot.of(product);
+            product.setName(productDetails.getName());
+            product.setDescription(productDetails.getDescription());
+            product.setPrice(productDetails.getPrice());
+            product.setStock(productDetails.getStock());
+            return withCategory(product, categoryId)
+                    .flatMap(productRepository::save)
+                    .doOnNext(savedProduct -> publish(before, savedProduct));
+        });
+    }
+
+    // JSON Merge Patch (RFC 7396) con las mismas reglas que la API bloqueante
+    @Transactional
+    public Mono<Product> patchProduct(Long id, Map<String, Object> patch) {
+        return productRepository.findById(id).flatMap(product -> {
+            ProductSnapshot before = ProductSnapshot.of(product);
+            Long categoryId = CatalogValidation.applyProductPatch(product, patch);
+            return withCategory(product, categoryId)
+                    .flatMap(productRepository::save)
+                    .doOnNext(savedProduct -> publish(before, savedProduct));
+        });
+    }
+
+    @Transactional
+    public Mono<Void> deleteProduct(Long id) {
+        return productRepository.findById(id)
+                .flatMap(product -> productRepository.deleteById(id)
+                        .doOnNext(deleted -> emit(new ProductChangedEvent(ProductSnapshot.of(product), null))))
+                .then();
+    }
+
+    private Mono<Product> withCategory(Product product, Long categoryId) {
+        if (categoryId == null || categoryId.equals(product.getCategory().getId())) {
+            return Mono.just(product);
+        }
+        return findCategory(categoryId).map(category -> {
+            product.setCategory(category);
+            return product;
+        });
+    }
+
+    private Mono<Category> findCategory(Long categoryId) {
+        return categoryRepository.findById(categoryId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Categoría no encontrada con ID: " + categoryId)));
+    }
+
+    private void publish(ProductSnapshot before, Product savedProduct) {
+        emit(new ProductChangedEvent(before, ProductSnapshot.of(savedProduct)));
+    }
+
+    // El sink no admite dos emisiones a la vez (devuelve FAIL_NON_SERIALIZED y el evento se pierde) y las escrituras
+    // terminan en hilos distintos: se emite de una en una. Con directBestEffort la entrega no espera a los suscriptores
+    private void emit(ProductChangedEvent event) {
+        Sinks.EmitResult result;
+        synchronized (changes) {
+            result = changes.tryEmitNext(event);
+        }
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            // FAIL_OVERFLOW: todos los suscriptores van lentos
+            log.debug("No se pudo emitir el cambio del producto {}: {}", event.getProductId(), result);
+        }
+    }
+}
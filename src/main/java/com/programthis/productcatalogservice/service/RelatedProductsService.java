@@ -0,0 +1,366 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Índice en memoria de productos relacionados: para cada producto, los MAX_LIMIT más parecidos de su misma categoría
+// según las palabras en común de nombre y descripción (Jaccard) y la cercanía de precio.
+// Los candidatos de cada producto son los que comparten alguna palabra (índice invertido por categoría) y los
+// PRICE_NEIGHBOURS más cercanos en precio por cada lado; así no se compara cada producto con toda su categoría.
+// La reconstrucción completa calcula las listas en paralelo; después cada escritura recalcula solo las listas del
+// producto modificado, de los que lo tenían como relacionado y de los que ahora deberían tenerlo
+@Service
+@Profile("!reactive")
+public class RelatedProductsService {
+
+    private static final Logger log = LoggerFactory.getLogger(RelatedProductsService.class);
+
+    public static final int MAX_LIMIT = 20;
+
+    static final double TERM_WEIGHT = 0.7;
+    static final double PRICE_WEIGHT = 0.3;
+
+    // Productos a cada lado en el orden por precio que son candidatos aunque no compartan ninguna palabra
+    static final int PRICE_NEIGHBOURS = 25;
+
+    // Una palabra presente en más productos de la categoría no aporta candidatos (se comporta como "de" o "para"),
+    // aunque sigue contando en la puntuación
+    static final int MAX_POSTING_SIZE = 500;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_TERM_LENGTH = 3;
+
+    private static final Comparator<Doc> BY_PRICE = Comparator.comparingDouble(Doc::getPrice).thenComparing(Doc::getId);
+    // Mejor puntuación primero; a igualdad, el ID menor
+    private static final Comparator<Neighbour> BY_SCORE = Comparator.comparingDouble(Neighbour::getScore).reversed()
+            .thenComparing(Neighbour::getId);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired // Si ya está cargada, el índice se construye desde ella
+    private CatalogCache catalogCache;
+
+    // Las escrituras (reconstrucción y eventos) van de una en una; las lecturas no bloquean
+    private final Object writeLock = new Object();
+    private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+    private final Map<Long, List<Neighbour>> neighbours = new ConcurrentHashMap<>();
+    // Productos que tienen a cada producto en su lista: si cambia o se borra, sus listas se recalculan
+    private final Map<Long, Set<Long>> referencedBy = new ConcurrentHashMap<>();
+    // Solo se leen y modifican con writeLock
+    private final Map<Long, CategoryIndex> categories = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            docs.clear();
+            neighbours.clear();
+            referencedBy.clear();
+            categories.clear();
+            for (ProductSnapshot product : loadProducts()) {
+                index(new Doc(product));
+            }
+            // Los índices ya no cambian hasta el final: cada hilo solo escribe la lista de su producto
+            docs.values().parallelStream().forEach(doc -> setNeighbours(doc.getId(), computeNeighbours(doc)));
+        }
+        log.info("Índice de productos relacionados construido en {} ms: {} productos",
+                (System.nanoTime() - start) / 1_000_000, docs.size());
+    }
+
+    // Vacío si el producto no existe
+    public Optional<List<RelatedProduct>> getRelated(Long productId, int limit) {
+        if (!docs.containsKey(productId)) {
+            return Optional.empty();
+        }
+        int size = Math.max(0, Math.min(limit, MAX_LIMIT));
+        List<RelatedProduct> related = new ArrayList<>(size);
+        for (Neighbour neighbour : neighbours.getOrDefault(productId, List.of())) {
+            if (related.size() >= size) {
+                break;
+            }
+            Doc doc = docs.get(neighbour.getId());
+            if (doc != null) {
+                related.add(new RelatedProduct(doc.getId(), doc.getName(), doc.getPrice(), neighbour.getScore()));
+            }
+        }
+        return Optional.of(related);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long id = event.getProductId();
+        synchronized (writeLock) {
+            Doc previous = docs.get(id);
+            if (event.getAfter() == null) {
+                if (previous != null) {
+                    unindex(previous);
+                    setNeighbours(id, null);
+                    refresh(referencedBy.remove(id));
+                }
+                return;
+            }
+            Doc doc = new Doc(event.getAfter());
+            if (previous != null && previous.rankedLike(doc)) {
+                // Solo stock o un cambio de nombre sin palabras nuevas: las listas no cambian
+                docs.put(id, doc);
+                return;
+            }
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(doc);
+            Set<Long> affected = new HashSet<>(referencedBy.getOrDefault(id, Set.of()));
+            setNeighbours(id, computeNeighbours(doc));
+            // Los candidatos del producto en cuya lista ahora entraría
+            for (Long candidateId : candidates(doc)) {
+                List<Neighbour> current = neighbours.getOrDefault(candidateId, List.of());
+                double score = score(docs.get(candidateId), doc);
+                if (current.size() < MAX_LIMIT || score > current.get(current.size() - 1).getScore()) {
+                    affected.add(candidateId);
+                }
+            }
+            affected.remove(id);
+            refresh(affected);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!event.isDeleted()) {
+            return;
+        }
+        // Los productos de la categoría se han borrado en cascada; solo estaban relacionados entre ellos
+        synchronized (writeLock) {
+            CategoryIndex index = categories.remove(event.getCategoryId());
+            if (index != null) {
+                for (Doc doc : index.byPrice) {
+                    docs.remove(doc.getId());
+                    setNeighbours(doc.getId(), null);
+                    referencedBy.remove(doc.getId());
+                }
+            }
+        }
+    }
+
+    private Collection<ProductSnapshot> loadProducts() {
+        if (catalogCache.isLoaded()) {
+            return catalogCache.getProducts();
+        }
+        // Por tramos de clave primaria, igual que la carga en frío de CatalogCache
+        List<ProductSnapshot> products = new ArrayList<>();
+        long afterId = 0;
+        List<ProductSnapshot> batch;
+        do {
+            batch = productRepository.findSnapshotsAfterId(afterId, PageRequest.ofSize(CatalogCache.LOAD_BATCH_SIZE));
+            products.addAll(batch);
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == CatalogCache.LOAD_BATCH_SIZE);
+        return products;
+    }
+
+    private void refresh(Collection<Long> productIds) {
+        if (productIds == null) {
+            return;
+        }
+        for (Long productId : productIds) {
+            Doc doc = docs.get(productId);
+            if (doc != null) {
+                setNeighbours(productId, computeNeighbours(doc));
+            }
+        }
+    }
+
+    private void index(Doc doc) {
+        docs.put(doc.getId(), doc);
+        CategoryIndex index = categories.computeIfAbsent(doc.getCategoryId(), id -> new CategoryIndex());
+        index.byPrice.add(doc);
+        for (String term : doc.getTerms()) {
+            index.postings.computeIfAbsent(term, t -> new HashSet<>()).add(doc.getId());
+        }
+    }
+
+    private void unindex(Doc doc) {
+        docs.remove(doc.getId());
+        CategoryIndex index = categories.get(doc.getCategoryId());
+        if (index == null) {
+            return;
+        }
+        index.byPrice.remove(doc);
+        for (String term : doc.getTerms()) {
+            Set<Long> posting = index.postings.get(term);
+            if (posting != null && posting.remove(doc.getId()) && posting.isEmpty()) {
+                index.postings.remove(term);
+            }
+        }
+    }
+
+    // Sustituye la lista de un producto (null la quita) y mantiene referencedBy
+    private void setNeighbours(Long productId, List<Neighbour> list) {
+        List<Neighbour> previous = list != null ? neighbours.put(productId, list) : neighbours.remove(productId);
+        if (previous != null) {
+            for (Neighbour neighbour : previous) {
+                Set<Long> referrers = referencedBy.get(neighbour.getId());
+                if (referrers != null) {
+                    referrers.remove(productId);
+                }
+            }
+        }
+        if (list != null) {
+            for (Neighbour neighbour : list) {
+                referencedBy.computeIfAbsent(neighbour.getId(), id -> ConcurrentHashMap.newKeySet()).add(productId);
+            }
+        }
+    }
+
+    private List<Neighbour> computeNeighbours(Doc doc) {
+        // Montículo de mínimos con los MAX_LIMIT mejores vistos hasta ahora
+        PriorityQueue<Neighbour> top = new PriorityQueue<>(MAX_LIMIT + 1, BY_SCORE.reversed());
+        for (Long candidateId : candidates(doc)) {
+            Doc candidate = docs.get(candidateId);
+            if (candidate == null) {
+                continue;
+            }
+            top.offer(new Neighbour(candidateId, score(doc, candidate)));
+            if (top.size() > MAX_LIMIT) {
+                top.poll();
+            }
+        }
+        List<Neighbour> result = new ArrayList<>(top);
+        result.sort(BY_SCORE);
+        return List.copyOf(result);
+    }
+
+    private Set<Long> candidates(Doc doc) {
+        CategoryIndex index = categories.get(doc.getCategoryId());
+        Set<Long> candidates = new HashSet<>();
+        if (index == null) {
+            return candidates;
+        }
+        for (String term : doc.getTerms()) {
+            Set<Long> posting = index.postings.get(term);
+            if (posting != null && posting.size() <= MAX_POSTING_SIZE) {
+                candidates.addAll(posting);
+            }
+        }
+        addFirst(index.byPrice.headSet(doc, false).descendingIterator(), candidates);
+        addFirst(index.byPrice.tailSet(doc, false).iterator(), candidates);
+        candidates.remove(doc.getId());
+        return candidates;
+    }
+
+    private static void addFirst(Iterator<Doc> iterator, Set<Long> candidates) {
+        for (int i = 0; i < PRICE_NEIGHBOURS && iterator.hasNext(); i++) {
+            candidates.add(iterator.next().getId());
+        }
+    }
+
+    static double score(Doc a, Doc b) {
+        return TERM_WEIGHT * jaccard(a.getTerms(), b.getTerms()) + PRICE_WEIGHT * priceProximity(a.getPrice(), b.getPrice());
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 0;
+        }
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int shared = 0;
+        for (String term : smaller) {
+            if (larger.contains(term)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    // 1 con el mismo precio, 0.5 si uno dobla al otro, tiende a 0 cuanto más se alejan
+    static double priceProximity(double a, double b) {
+        double max = Math.max(Math.abs(a), Math.abs(b));
+        return max == 0 ? 1 : 1 - Math.abs(a - b) / max;
+    }
+
+    static Set<String> terms(String... texts) {
+        Set<String> terms = new HashSet<>();
+        for (String text : texts) {
+            for (String term : NON_WORD.split(ProductSuggestionService.normalize(text))) {
+                if (term.length() >= MIN_TERM_LENGTH) {
+                    terms.add(term);
+                }
+            }
+        }
+        return Set.copyOf(terms);
+    }
+
+    private static class CategoryIndex {
+        private final Map<String, Set<Long>> postings = new HashMap<>();
+        private final NavigableSet<Doc> byPrice = new TreeSet<>(BY_PRICE);
+    }
+
+    @Value
+    static class Doc {
+        Long id;
+        Long categoryId;
+        String name;
+        double price;
+        Set<String> terms;
+
+        Doc(ProductSnapshot product) {
+            this.id = product.getId();
+            this.categoryId = product.getCategoryId();
+            this.name = product.getName();
+            this.price = product.getPrice() != null ? product.getPrice() : 0;
+            this.terms = terms(product.getName(), product.getDescription());
+        }
+
+        boolean rankedLike(Doc other) {
+            return Objects.equals(categoryId, other.categoryId) && price == other.price && terms.equals(other.terms);
+        }
+    }
+
+    @Value
+    static class Neighbour {
+        Long id;
+        double score;
+    }
+
+    // --- DTOs ---
+    @Value
+    public static class RelatedProduct {
+        Long id;
+        String name;
+        double price;
+        double score;
+    }
+}
@@ -0,0 +1,389 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.model.StockJournalCheckpoint;
+import com.programthis.productcatalogservice.repository.StockJournalCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Modo write-behind para variaciones de stock (sincronización de almacén): cada variación se anota en un diario
+// local de solo escritura al final y se acumula por producto en memoria. StockWriteBehindFlusher vuelca el acumulado
+// con un único UPDATE por lotes. Al arrancar se reproduce el diario, así que un reinicio no pierde variaciones.
+// Cada lote lleva un número de secuencia que se guarda en la base de datos en la misma transacción que su UPDATE
+// (StockJournalCheckpoint): un segmento cuyo lote ya consta como aplicado no se reproduce, así que un fallo entre el
+// commit y el borrado del segmento no suma dos veces las mismas variaciones.
+// Formato del diario: una cabecera "#<secuencia del lote>" y una línea "productId delta" por variación
+@Component
+@Profile("!reactive")
+public class StockWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(StockWriteBehindBuffer.class);
+
+    @Value("${catalog.stock.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${catalog.stock.write-behind.journal:data/stock-journal.log}")
+    private Path journalPath;
+
+    // Nº de variaciones acumuladas que fuerza un volcado sin esperar al siguiente intervalo
+    @Value("${catalog.stock.write-behind.flush-threshold:1000}")
+    private int flushThreshold = 1000;
+
+    // Con fsync cada variación está en disco antes de responder; sin él, un fallo del sistema puede perder las últimas.
+    // El fsync es en grupo: se hace fuera del monitor y uno solo cubre todas las variaciones escritas hasta ese momento
+    @Value("${catalog.stock.write-behind.fsync:true}")
+    private boolean fsync = true;
+
+    @Autowired
+    private StockJournalCheckpointRepository checkpointRepository;
+
+    // Todo el estado se protege con el monitor de este objeto
+    private final Map<Long, Integer> pending = new HashMap<>();
+    private Map<Long, Integer> inFlight = Map.of();
+    private int changesSinceDrain;
+    private FileChannel journal;
+    private Runnable flushTrigger = () -> { };
+    private String journalId;
+    private long journalSequence; // lote al que pertenece el diario activo
+    private long inFlightSequence;
+    private long appendedRecords;
+
+    // Una lectura que suma pendingDelta al stock leído (de la base de datos o de la caché) lo hace con el cerrojo de
+    // lectura; el commit de un lote y la retirada de su inFlight van juntos con el de escritura. Así la lectura ve la
+    // fila sin el lote más el lote, o la fila con el lote y sin él. Las lecturas no bloquean filas: con el cerrojo
+    // tomado nunca esperan al UPDATE del lote, que lo pide solo para el commit
+    private final ReadWriteLock commitGate = new ReentrantReadWriteLock();
+
+    // Solo un fsync a la vez; quien espera aquí suele encontrar su variación ya cubierta por el fsync anterior
+    private final Object syncLock = new Object();
+    private volatile long syncedRecords;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = journalPath.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        journalId = readJournalId();
+        long lastApplied = checkpointRepository.findById(journalId)
+                .map(StockJournalCheckpoint::getLastSequence)
+                .orElse(0L);
+        // Un segmento "flushing" es un lote que estaba volcándose al parar: se vuelve a aplicar solo si su UPDATE no
+        // llegó a confirmarse
+        long flushingSequence = replay(flushingPath(), lastApplied);
+        long journaledSequence = replay(journalPath, lastApplied);
+        journalSequence = Math.max(lastApplied, Math.max(flushingSequence, journaledSequence)) + 1;
+        compactJournal();
+        Files.deleteIfExists(flushingPath());
+        journal = openJournal();
+        if (!pending.isEmpty()) {
+            log.info("Recuperadas del diario variaciones de stock pendientes de {} productos", pending.size());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    // Lo registra StockWriteBehindFlusher para que un umbral alcanzado dispare un volcado inmediato
+    void setFlushTrigger(Runnable flushTrigger) {
+        this.flushTrigger = flushTrigger;
+    }
+
+    public void add(Long productId, int delta) {
+        boolean thresholdReached;
+        long record;
+        synchronized (this) {
+            if (journal == null) {
+                throw new IllegalStateException("El modo write-behind de stock no está activo");
+            }
+            // La variación entra en el acumulado junto con su línea del diario: un drain() nunca separa una de otra
+            appendToJournal(productId, delta);
+            record = appendedRecords;
+            pending.merge(productId, delta, Integer::sum);
+            thresholdReached = ++changesSinceDrain == flushThreshold;
+        }
+        if (fsync) {
+            awaitDurable(record);
+        }
+        if (thresholdReached) {
+            flushTrigger.run();
+        }
+    }
+
+    // Variación aún no reflejada en products.stock: la acumulada más la del lote que se está volcando. Para sumarla a
+    // una fila hay que leer las dos dentro de readWithPendingStock
+    public synchronized int pendingDelta(Long productId) {
+        return pending.getOrDefault(productId, 0) + inFlight.getOrDefault(productId, 0);
+    }
+
+    public <T> T readWithPendingStock(Supplier<T> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        commitGate.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            commitGate.readLock().unlock();
+        }
+    }
+
+    public synchronized int pendingProductCount() {
+        return pending.size();
+    }
+
+    // Toma el acumulado para volcarlo. El diario rota a un segmento "flushing" que se borra al confirmar el lote.
+    // Devuelve un mapa vacío si no hay nada que volcar o si ya hay otro lote en curso
+    synchronized Map<Long, Integer> drain() {
+        if (journal == null || pending.isEmpty() || !inFlight.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            if (fsync) {
+                // Las variaciones que aún esperan su fsync en grupo quedan cubiertas por este
+                journal.force(false);
+                syncedRecords = appendedRecords;
+            }
+            journal.close();
+            Files.move(journalPath, flushingPath(), StandardCopyOption.REPLACE_EXISTING);
+            inFlightSequence = journalSequence++;
+            journal = openJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo rotar el diario de stock", e);
+        }
+        inFlight = Map.copyOf(pending);
+        pending.clear();
+        changesSinceDrain = 0;
+        return inFlight;
+    }
+
+    // Identifican el lote en curso; ProductService.applyStockDeltas los registra junto con su UPDATE
+    synchronized String getJournalId() {
+        return journalId;
+    }
+
+    synchronized long getInFlightSequence() {
+        return inFlightSequence;
+    }
+
+    // Se llama dentro de la transacción del lote (ProductService.applyStockDeltas): el commit se hace con el cerrojo de
+    // escritura y, si se confirma, el lote deja de contar como pendiente antes de soltarlo. Los listeners que ponen al
+    // día la caché con el stock nuevo (afterCommit) también corren antes, y después de retirar el lote: el que suma
+    // pendingDelta al stock del evento (InventoryReservationService) no cuenta el lote dos veces
+    void completeOnCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitGate.writeLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                synchronized (StockWriteBehindBuffer.this) {
+                    inFlight = Map.of();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    commitGate.writeLock().unlock();
+                }
+            }
+        });
+    }
+
+    // El lote ya está en la base de datos: su segmento del diario deja de hacer falta
+    synchronized void complete() {
+        inFlight = Map.of(); // normalmente ya lo ha hecho completeOnCommit
+        try {
+            Files.deleteIfExists(flushingPath());
+        } catch (IOException e) {
+            // Si el segmento sobrevive no pasa nada: su lote ya consta como aplicado y no se reproducirá
+            log.error("No se pudo borrar el segmento ya volcado del diario de stock", e);
+        }
+    }
+
+    // El volcado falló: el lote vuelve al acumulado y al diario activo antes de descartar su segmento
+    synchronized void restore() {
+        inFlight.forEach((productId, delta) -> {
+            appendToJournal(productId, delta);
+            pending.merge(productId, delta, Integer::sum);
+        });
+        inFlight = Map.of();
+        try {
+            if (fsync) {
+                journal.force(false); // el segmento se borra a continuación: el lote tiene que estar ya en el activo
+                syncedRecords = appendedRecords;
+            }
+            Files.deleteIfExists(flushingPath());
+        } catch (IOException e) {
+            log.error("No se pudo borrar el segmento fallido del diario de stock", e);
+        }
+    }
+
+    private void appendToJournal(Long productId, int delta) {
+        write(productId + " " + delta + "\n");
+        appendedRecords++;
+    }
+
+    private void write(String line) {
+        ByteBuffer record = StandardCharsets.US_ASCII.encode(line);
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario de stock", e);
+        }
+    }
+
+    // Fsync en grupo: vuelve cuando la variación nº "record" está en disco. Un solo hilo hace el fsync y con él cubre
+    // todo lo escrito hasta ese momento; los que esperaban detrás salen sin hacer otro
+    private void awaitDurable(long record) {
+        synchronized (syncLock) {
+            while (syncedRecords < record) {
+                FileChannel channel;
+                long target;
+                synchronized (this) {
+                    channel = journal;
+                    target = appendedRecords;
+                }
+                try {
+                    channel.force(false);
+                    syncedRecords = Math.max(syncedRecords, target);
+                } catch (ClosedChannelException e) {
+                    // drain() ha rotado el diario y ya hizo el fsync del anterior: se vuelve a comprobar
+                    synchronized (this) {
+                        if (journal == channel) {
+                            throw new UncheckedIOException("El diario de stock está cerrado", e);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo escribir en el diario de stock", e);
+                }
+            }
+        }
+    }
+
+    // Devuelve el nº de lote de la cabecera (0 si no hay fichero o es de una versión sin cabecera). Si el lote ya
+    // consta como aplicado en la base de datos, sus variaciones no se suman
+    private long replay(Path path, long lastApplied) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long sequence = 0;
+        Map<Long, Integer> deltas = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (line.startsWith("#")) {
+                        sequence = Long.parseLong(line.substring(1));
+                        continue;
+                    }
+                    String[] parts = line.split(" ");
+                    deltas.merge(Long.valueOf(parts[0]), Integer.valueOf(parts[1]), Integer::sum);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // Última línea a medio escribir por una parada brusca: la variación no llegó a confirmarse
+                    log.warn("Línea ignorada en el diario de stock {}: {}", path, line);
+                }
+            }
+        }
+        if (sequence > 0 && sequence <= lastApplied) {
+            log.info("Lote {} del diario de stock ya aplicado en la base de datos, no se reproduce", sequence);
+        } else {
+            deltas.forEach((productId, delta) -> pending.merge(productId, delta, Integer::sum));
+        }
+        return sequence;
+    }
+
+    // Reescribe el diario con una línea por producto para que no crezca entre reinicios
+    private void compactJournal() throws IOException {
+        Path compacted = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            journal = channel;
+            write("#" + journalSequence + "\n");
+            pending.forEach(this::appendToJournal);
+            channel.force(true);
+            syncedRecords = appendedRecords;
+        } finally {
+            journal = null;
+        }
+        Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Diario nuevo con la cabecera del lote que le toca
+    private FileChannel openJournal() throws IOException {
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            channel.write(StandardCharsets.US_ASCII.encode("#" + journalSequence + "\n"));
+        }
+        return channel;
+    }
+
+    // Se crea una vez y se conserva junto al diario: los números de lote solo son únicos dentro de un diario
+    private String readJournalId() throws IOException {
+        Path idPath = journalPath.resolveSibling(journalPath.getFileName() + ".id");
+        if (Files.exists(idPath)) {
+            return Files.readString(idPath, StandardCharsets.US_ASCII).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Path temporary = idPath.resolveSibling(idPath.getFileName() + ".tmp");
+        Files.writeString(temporary, id, StandardCharsets.US_ASCII);
+        Files.move(temporary, idPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    private Path flushingPath() {
+        return journalPath.resolveSibling(journalPath.getFileName() + ".flushing");
+    }
+}
@@ -0,0 +1,64 @@
+package com.programthis.productcatalogservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Vuelca a products.stock las variaciones acumuladas en StockWriteBehindBuffer: cada flush-interval o en cuanto
+// se alcanza flush-threshold. Cada volcado es un único UPDATE por lotes (ProductService.applyStockDeltas) que registra
+// el número de lote en la misma transacción
+@Service
+@Profile("!reactive")
+public class StockWriteBehindFlusher {
+
+    private static final Logger log = LoggerFactory.getLogger(StockWriteBehindFlusher.class);
+
+    @Autowired
+    private StockWriteBehindBuffer stockBuffer;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @PostConstruct
+    void registerFlushTrigger() {
+        // El volcado por umbral se hace en el hilo del planificador, no en la petición que lo alcanzó
+        stockBuffer.setFlushTrigger(() -> taskScheduler.schedule(this::flush, Instant.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.stock.write-behind.flush-interval:PT1S}")
+    public void flush() {
+        if (!stockBuffer.isEnabled()) {
+            return;
+        }
+        Map<Long, Integer> deltas = stockBuffer.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            productService.applyStockDeltas(deltas, stockBuffer.getJournalId(), stockBuffer.getInFlightSequence());
+        } catch (RuntimeException e) {
+            log.warn("No se pudo volcar el stock de {} productos, se reintentará", deltas.size(), e);
+            stockBuffer.restore();
+            return;
+        }
+        stockBuffer.complete();
+    }
+
+    // Al parar se intenta dejar la base de datos al día; lo que no se vuelque queda en el diario
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
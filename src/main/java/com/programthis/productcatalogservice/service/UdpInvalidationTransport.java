@@ -0,0 +1,101 @@
+package com.programthis.productcatalogservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Transporte UDP unicast: cada datagrama se envía a todos los peers configurados (host:puerto), sin confirmaciones ni
+// reintentos. Sirve entre procesos de la misma máquina (127.0.0.1 con un puerto por instancia) o de una red local
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(UdpInvalidationTransport.class);
+
+    // Máximo de datos en un datagrama UDP sobre IPv4
+    private static final int MAX_DATAGRAM_BYTES = 65_507;
+
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private Thread receiverThread;
+
+    public UdpInvalidationTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) throws SocketException {
+        this.socket = new DatagramSocket(bindAddress);
+        this.peers = List.copyOf(peers);
+    }
+
+    // "host:puerto"
+    public static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0 || separator == address.length() - 1) {
+            throw new IllegalArgumentException("Dirección no válida (se espera host:puerto): " + address);
+        }
+        return new InetSocketAddress(address.substring(0, separator).trim(),
+                Integer.parseInt(address.substring(separator + 1).trim()));
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver) {
+        if (receiverThread != null) {
+            throw new IllegalStateException("El transporte ya está arrancado");
+        }
+        receiverThread = new Thread(() -> receiveLoop(receiver), "invalidation-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+        log.info("Bus de invalidación escuchando en UDP {} con {} peers", getLocalAddress(), peers.size());
+    }
+
+    private void receiveLoop(Consumer<byte[]> receiver) {
+        byte[] buffer = new byte[MAX_DATAGRAM_BYTES];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("Error recibiendo del bus de invalidación", e);
+                }
+                continue;
+            }
+            try {
+                receiver.accept(Arrays.copyOf(packet.getData(), packet.getLength()));
+            } catch (RuntimeException e) {
+                // Un mensaje que no se pudo aplicar no detiene la recepción
+                log.warn("Error aplicando un mensaje del bus de invalidación", e);
+            }
+        }
+    }
+
+    // Se intenta con todos los peers aunque falle alguno; se lanza el primer error
+    @Override
+    public void send(byte[] datagram) throws IOException {
+        IOException failure = null;
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(datagram, datagram.length, peer));
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
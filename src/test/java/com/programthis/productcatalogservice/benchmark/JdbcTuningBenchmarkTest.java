@@ -0,0 +1,155 @@
+package com.programthis.productcatalogservice.benchmark;
+
+import com.programthis.productcatalogservice.ProductCatalogServiceApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Rendimiento de los endpoints principales con la configuración por defecto y con el perfil "prod" (pool dimensionado,
+// sentencias preparadas cacheadas, lotes reescritos...) sobre la misma base de datos (mvn test -Pbenchmark).
+// Por defecto usa H2 en modo MySQL, que ignora las propiedades de Connector/J: ahí solo se ve el efecto del pool y de
+// Hibernate. Para medir el driver, contra un MySQL local (p. ej. docker run -p 3306:3306 -e MYSQL_ROOT_PASSWORD=1234
+// -e MYSQL_DATABASE=bench mysql:8):
+//   mvn test -Pbenchmark -Dtest=JdbcTuningBenchmarkTest -Dbenchmark.datasource.url=jdbc:mysql://localhost:3306/bench
+//       -Dbenchmark.datasource.username=root -Dbenchmark.datasource.password=1234
+@Tag("benchmark")
+class JdbcTuningBenchmarkTest {
+
+    private static final int CATEGORIES = 10;
+    private static final int PRODUCTS = 1_000;
+    private static final int CONCURRENCY = 64;
+    private static final int WARMUP_REQUESTS = 1_000;
+    private static final int MEASURED_REQUESTS = 5_000;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void compareDefaultAndProductionProfiles() throws Exception {
+        System.out.printf("%-8s %-28s %10s %10s %10s%n", "profile", "endpoint", "req/s", "p50 ms", "p99 ms");
+        run("default");
+        run("prod");
+    }
+
+    private void run(String profile) throws Exception {
+        String url = System.getProperty("benchmark.datasource.url", "jdbc:h2:mem:bench-" + profile + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("benchmark.datasource.username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.datasource.password", ""),
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--catalog.cache.snapshot.enabled=false",
+                "--catalog.admission.enabled=false"));
+        if (url.startsWith("jdbc:h2:")) {
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+        if (!profile.equals("default")) {
+            args.add("--spring.profiles.active=" + profile);
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductCatalogServiceApplication.class)
+                .run(args.toArray(String[]::new))) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<Long> categoryIds = new ArrayList<>();
+            List<Long> productIds = new ArrayList<>();
+            seed(baseUrl, categoryIds, productIds);
+
+            // GET /api/products/{id} sale de la caché del catálogo; con ?fields= va a la base de datos
+            Map<String, IntFunction<HttpRequest>> endpoints = new LinkedHashMap<>();
+            endpoints.put("GET /products/{id}?fields", i -> get(baseUrl + "/api/products/" + productIds.get(i % productIds.size())
+                    + "?fields=name,price,stock"));
+            endpoints.put("GET /products/search", i -> get(baseUrl + "/api/products/search?links=none&size=20&categoryId="
+                    + categoryIds.get(i % categoryIds.size()) + "&minPrice=" + (i % 50) + "&sort=price"));
+            endpoints.put("GET /products/category/{id}", i -> get(baseUrl + "/api/products/category/"
+                    + categoryIds.get(i % categoryIds.size()) + "?links=none"));
+            endpoints.put("POST /products/{id}/stock/adj", i -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/"
+                            + productIds.get(i % productIds.size()) + "/stock/adjustments"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"delta\":" + (i % 2 == 0 ? 1 : -1) + "}"))
+                    .build());
+
+            for (Map.Entry<String, IntFunction<HttpRequest>> endpoint : endpoints.entrySet()) {
+                load(endpoint.getValue(), WARMUP_REQUESTS);
+                long start = System.nanoTime();
+                long[] latencies = load(endpoint.getValue(), MEASURED_REQUESTS);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("%-8s %-28s %10.0f %10.2f %10.2f%n", profile, endpoint.getKey(), MEASURED_REQUESTS / seconds,
+                        latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6);
+            }
+        }
+    }
+
+    private void seed(String baseUrl, List<Long> categoryIds, List<Long> productIds) throws Exception {
+        for (int i = 0; i < CATEGORIES; i++) {
+            categoryIds.add(id(post(baseUrl + "/api/categories",
+                    String.format("{\"name\":\"Category %d\",\"description\":\"Description %d\"}", i, i))));
+        }
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIds.add(id(post(baseUrl + "/api/products", String.format(
+                    "{\"name\":\"Product %d\",\"description\":\"Description %d\",\"price\":%d.5,\"stock\":%d,\"categoryId\":%d}",
+                    i, i, 10 + i % 90, 1_000, categoryIds.get(i % CATEGORIES)))));
+        }
+    }
+
+    private static long id(String json) {
+        return Long.parseLong(json.replaceAll("(?s).*?\"id\"\\s*:\\s*(\\d+).*", "$1"));
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/json").build();
+    }
+
+    private String post(String url, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode(), response.body());
+        return response.body();
+    }
+
+    // Mantiene CONCURRENCY peticiones en vuelo hasta completar el total; devuelve la latencia de cada una
+    private long[] load(IntFunction<HttpRequest> requests, int count) throws Exception {
+        long[] latencies = new long[count];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        List<CompletableFuture<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            int index = i;
+            long start = System.nanoTime();
+            futures.add(client.sendAsync(requests.apply(i), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - start;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        assertEquals(0, failures.get());
+        return latencies;
+    }
+}
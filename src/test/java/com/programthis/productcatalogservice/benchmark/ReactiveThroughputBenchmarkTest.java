@@ -0,0 +1,125 @@
+package com.programthis.productcatalogservice.benchmark;
+
+import com.programthis.productcatalogservice.ProductCatalogServiceApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Rendimiento de GET /api/products/{id} en la edición bloqueante (MVC + JPA sobre Tomcat) y en la reactiva
+// (WebFlux + R2DBC sobre Netty) con la misma base de datos H2 y la misma concurrencia (mvn test -Pbenchmark)
+@Tag("benchmark")
+class ReactiveThroughputBenchmarkTest {
+
+    private static final int PRODUCTS = 200;
+    private static final int CONCURRENCY = 256;
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int MEASURED_REQUESTS = 10_000;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void compareBlockingAndReactive() throws Exception {
+        System.out.printf("%-10s %10s %12s %12s %14s%n", "stack", "req/s", "p50 ms", "p99 ms", "server threads");
+        run("blocking", "/api/products/%d?links=none",
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:bench-blocking;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--catalog.admission.enabled=false");
+        run("reactive", "/api/products/%d",
+                "--spring.profiles.active=reactive",
+                "--server.port=0",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///bench-reactive;DB_CLOSE_DELAY=-1",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=",
+                "--spring.sql.init.mode=always",
+                "--spring.sql.init.schema-locations=classpath:reactive-schema.sql");
+    }
+
+    private void run(String stack, String productPath, String... args) throws Exception {
+        int threadsBefore = Thread.activeCount();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductCatalogServiceApplication.class).run(args)) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<Long> ids = seed(baseUrl);
+
+            load(baseUrl, productPath, ids, WARMUP_REQUESTS);
+            long start = System.nanoTime();
+            long[] latencies = load(baseUrl, productPath, ids, MEASURED_REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-10s %10.0f %12.2f %12.2f %14d%n", stack, MEASURED_REQUESTS / seconds,
+                    latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6,
+                    Thread.activeCount() - threadsBefore);
+        }
+    }
+
+    private List<Long> seed(String baseUrl) throws Exception {
+        String category = post(baseUrl + "/api/categories", "{\"name\":\"Electronics\",\"description\":\"Devices\"}");
+        long categoryId = Long.parseLong(category.replaceAll("(?s).*?\"id\"\\s*:\\s*(\\d+).*", "$1"));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            String product = post(baseUrl + "/api/products", String.format(
+                    "{\"name\":\"Product %d\",\"description\":\"Description %d\",\"price\":%d.5,\"stock\":%d,\"categoryId\":%d}",
+                    i, i, 10 + i, i % 7, categoryId));
+            ids.add(Long.parseLong(product.replaceAll("(?s).*?\"id\"\\s*:\\s*(\\d+).*", "$1")));
+        }
+        return ids;
+    }
+
+    private String post(String url, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode(), response.body());
+        return response.body();
+    }
+
+    // Mantiene CONCURRENCY peticiones en vuelo hasta completar el total; devuelve la latencia de cada una
+    private long[] load(String baseUrl, String productPath, List<Long> ids, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        List<CompletableFuture<?>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + String.format(productPath, ids.get(i % ids.size()))))
+                    .header("Accept", "application/json")
+                    .build();
+            long start = System.nanoTime();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - start;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        assertEquals(0, failures.get());
+        return latencies;
+    }
+}
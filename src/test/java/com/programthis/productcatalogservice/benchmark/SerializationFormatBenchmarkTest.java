@@ -0,0 +1,90 @@
+package com.programthis.productcatalogservice.benchmark;
+
+import com.programthis.productcatalogservice.controller.ProductController;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.ProductService;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
+import com.programthis.productcatalogservice.service.RelatedProductsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Bytes por respuesta y CPU de serialización de GET /api/products para cada formato (mvn test -Pbenchmark).
+// El servicio está simulado, así que el tiempo medido es el de construir enlaces y serializar
+@Tag("benchmark")
+@WebMvcTest(ProductController.class)
+class SerializationFormatBenchmarkTest {
+
+    private static final int PRODUCTS = 1_000;
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 100;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProductService productService;
+
+    @MockBean
+    private ProductSuggestionService productSuggestionService;
+
+    @MockBean
+    private RelatedProductsService relatedProductsService;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category(1L, "Electronics", "Devices and gadgets");
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (long i = 1; i <= PRODUCTS; i++) {
+            products.add(new Product(i, "Product " + i, "Description of product " + i + " ".repeat(200), 10.0 + i, (int) (i % 50), category));
+        }
+        when(productService.getAllProducts()).thenReturn(products);
+    }
+
+    @Test
+    void compareFormats() throws Exception {
+        Map<String, MockHttpServletRequestBuilder> formats = new LinkedHashMap<>();
+        formats.put("HAL JSON", get("/api/products").accept("application/hal+json"));
+        formats.put("JSON links=none", get("/api/products").param("links", "none").accept("application/json"));
+        formats.put("CBOR links=none", get("/api/products").param("links", "none").accept("application/cbor"));
+        formats.put("Smile links=none", get("/api/products").param("links", "none").accept("application/x-jackson-smile"));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        System.out.printf("%-18s %12s %14s%n", "format", "bytes", "cpu us/request");
+        for (Map.Entry<String, MockHttpServletRequestBuilder> format : formats.entrySet()) {
+            int size = 0;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                size = mockMvc.perform(format.getValue()).andReturn().getResponse().getContentAsByteArray().length;
+            }
+            long start = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                mockMvc.perform(format.getValue()).andReturn();
+            }
+            long cpuMicros = (threads.getCurrentThreadCpuTime() - start) / MEASURED_ITERATIONS / 1_000;
+            sizes.put(format.getKey(), size);
+            System.out.printf("%-18s %12d %14d%n", format.getKey(), size, cpuMicros);
+        }
+
+        assertTrue(sizes.get("JSON links=none") < sizes.get("HAL JSON"));
+        assertTrue(sizes.get("CBOR links=none") < sizes.get("JSON links=none"));
+        assertTrue(sizes.get("Smile links=none") < sizes.get("JSON links=none"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.programthis.productcatalogservice.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    @Test
+    @DisplayName("Requests are classified into stock, write, read and bulk groups")
+    void classify_shouldMapEndpointsToGroups() {
+        assertEquals(EndpointGroup.STOCK, EndpointGroup.classify(request("POST", "/api/products/1/stock/adjustments")));
+        assertEquals(EndpointGroup.STOCK, EndpointGroup.classify(request("DELETE", "/api/products/1/reservations/abc")));
+        assertEquals(EndpointGroup.WRITE, EndpointGroup.classify(request("PATCH", "/api/products/1")));
+        assertEquals(EndpointGroup.READ, EndpointGroup.classify(request("GET", "/api/products/1")));
+        assertEquals(EndpointGroup.READ, EndpointGroup.classify(request("GET", "/api/products/search")));
+        assertEquals(EndpointGroup.BULK, EndpointGroup.classify(request("GET", "/api/products")));
+        assertEquals(EndpointGroup.BULK, EndpointGroup.classify(request("GET", "/api/products/category/3")));
+        assertEquals(EndpointGroup.BULK, EndpointGroup.classify(request("GET", "/api/products/export")));
+        assertEquals(EndpointGroup.READ, EndpointGroup.classify(request("POST", "/api/query")));
+        MockHttpServletRequest nameCheck = request("HEAD", "/api/products");
+        nameCheck.setParameter("name", "Laptop");
+        assertEquals(EndpointGroup.READ, EndpointGroup.classify(nameCheck));
+        assertNull(EndpointGroup.classify(request("GET", "/api/admission/stats")));
+    }
+
+    @Test
+    @DisplayName("Requests over the limit get 503 with Retry-After")
+    void doFilter_shouldRejectWhenLimitIsReached() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(1, 1, 10, Duration.ofSeconds(2));
+        AdaptiveConcurrencyLimiter readLimiter = filter.getLimiter(EndpointGroup.READ);
+        assertTrue(readLimiter.tryAcquire()); // una lectura en curso ocupa todo el límite
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("GET", "/api/products/1"), response, chain);
+
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        assertEquals(1, filter.getStats().get(EndpointGroup.READ).getRejected());
+    }
+
+    @Test
+    @DisplayName("Stock writes at their limit do not shed reads that still have capacity")
+    void doFilter_shouldAdmitReadsWhileStockIsAtItsLimit() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(4, 2, 10, Duration.ofSeconds(1));
+        AdaptiveConcurrencyLimiter stockLimiter = filter.getLimiter(EndpointGroup.STOCK);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(stockLimiter.tryAcquire()); // STOCK en su límite, pero sin rechazar nada
+        }
+        assertTrue(filter.getLimiter(EndpointGroup.READ).tryAcquire());
+        assertTrue(filter.getLimiter(EndpointGroup.READ).tryAcquire()); // READ ya por encima de su cuota garantizada
+
+        MockHttpServletResponse readResponse = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("GET", "/api/products/1"), readResponse, chain);
+
+        assertEquals(200, readResponse.getStatus());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Stock writes being rejected shed catalog browsing down to its guaranteed share")
+    void doFilter_shouldPrioritizeStockWrites() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(2, 1, 10, Duration.ofSeconds(1));
+        AdaptiveConcurrencyLimiter stockLimiter = filter.getLimiter(EndpointGroup.STOCK);
+        assertTrue(stockLimiter.tryAcquire());
+        assertTrue(stockLimiter.tryAcquire());
+        MockHttpServletResponse stockResponse = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/api/products/2/stock/adjustments"), stockResponse, new MockFilterChain());
+        assertEquals(503, stockResponse.getStatus()); // el propio grupo también tiene límite
+
+        // Sin lecturas en curso, la primera entra por la cuota garantizada (min-limit = 1)
+        MockHttpServletResponse guaranteedResponse = new MockHttpServletResponse();
+        AdaptiveConcurrencyLimiter readLimiter = filter.getLimiter(EndpointGroup.READ);
+        FilterChain readWhileAnotherIsInFlight = (req, res) -> {
+            MockHttpServletResponse shedResponse = new MockHttpServletResponse();
+            filter.doFilter(request("GET", "/api/products/3"), shedResponse, new MockFilterChain());
+            assertEquals(503, shedResponse.getStatus());
+        };
+        filter.doFilter(request("GET", "/api/products/1"), guaranteedResponse, readWhileAnotherIsInFlight);
+
+        assertEquals(200, guaranteedResponse.getStatus());
+        assertEquals(1, filter.getStats().get(EndpointGroup.READ).getAccepted());
+        assertEquals(0, readLimiter.getInFlight());
+    }
+
+    @Test
+    @DisplayName("Unclassified paths bypass admission control")
+    void doFilter_shouldIgnoreOtherPaths() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(1, 1, 10, Duration.ofSeconds(1));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("GET", "/swagger-ui/index.html"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Server errors cut the limit multiplicatively")
+    void doFilter_shouldBackOffOnServerErrors() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(20, 2, 100, Duration.ofSeconds(1));
+        FilterChain failingChain = (req, res) -> ((MockHttpServletResponse) res).setStatus(500);
+
+        filter.doFilter(request("PUT", "/api/products/1"), new MockHttpServletResponse(), failingChain);
+
+        assertEquals(18, filter.getStats().get(EndpointGroup.WRITE).getLimit());
+        assertEquals(1, filter.getStats().get(EndpointGroup.WRITE).getDropped());
+    }
+
+    @Test
+    @DisplayName("The limit grows while latency is stable and shrinks when it degrades")
+    void limiter_shouldFollowLatencyGradient() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100);
+        long fast = TimeUnit.MILLISECONDS.toNanos(5);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(fast, limiter.getLimit(), false);
+        }
+        int grownLimit = limiter.getLimit();
+        assertTrue(grownLimit > 10, "limit should grow, was " + grownLimit);
+
+        long slow = TimeUnit.MILLISECONDS.toNanos(100);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(slow, limiter.getLimit(), false);
+        }
+        assertTrue(limiter.getLimit() < grownLimit / 2, "limit should shrink, was " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    @DisplayName("The limit does not grow while the group is mostly idle")
+    void limiter_shouldNotGrowWhenUnderused() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(5), 1, false);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
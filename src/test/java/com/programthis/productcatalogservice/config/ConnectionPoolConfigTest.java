@@ -0,0 +1,27 @@
+package com.programthis.productcatalogservice.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConnectionPoolConfigTest {
+
+    @Test
+    @DisplayName("pool size should follow cores * 2 + spindles")
+    void poolSize_shouldFollowCoreFormula() {
+        assertEquals(17, ConnectionPoolConfig.poolSize(8, 1, 50));
+    }
+
+    @Test
+    @DisplayName("pool size should not exceed the expected concurrency")
+    void poolSize_shouldBeCappedByExpectedConcurrency() {
+        assertEquals(10, ConnectionPoolConfig.poolSize(32, 2, 10));
+    }
+
+    @Test
+    @DisplayName("pool size should never drop below two connections")
+    void poolSize_shouldKeepMinimum() {
+        assertEquals(2, ConnectionPoolConfig.poolSize(0, 0, 1));
+    }
+}
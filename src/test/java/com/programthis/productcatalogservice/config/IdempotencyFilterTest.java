@@ -0,0 +1,324 @@
+package com.programthis.productcatalogservice.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"name\":\"Lamp\",\"price\":20.0}";
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    @DisplayName("Requests without Idempotency-Key or with safe methods pass straight through")
+    void doFilter_shouldIgnoreRequestsWithoutKey() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 1024, 1024);
+
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("POST", "/api/products", null), new MockHttpServletResponse(), chain);
+        MockFilterChain getChain = new MockFilterChain();
+        MockHttpServletRequest get = request("GET", "/api/products/1", "k1");
+        filter.doFilter(get, new MockHttpServletResponse(), getChain);
+
+        assertNotNull(chain.getRequest());
+        assertSame(get, getChain.getRequest());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("A retry with the same key replays the stored response without running the handler")
+    void doFilter_shouldReplayCompletedResponse() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(store(10), 1024, 1024);
+        AtomicInteger executions = new AtomicInteger();
+        FilterChain create = createdChain(executions);
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/api/products", "k1"), first, create);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/api/products", "k1"), retry, create);
+
+        assertEquals(1, executions.get());
+        assertEquals(201, first.getStatus());
+        assertEquals("{\"id\":7}", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(201, retry.getStatus());
+        assertEquals("{\"id\":7}", retry.getContentAsString());
+        assertEquals("/api/products/7", retry.getHeader("Location"));
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    @DisplayName("The handler still sees the request body that was read for the fingerprint")
+    void doFilter_shouldPassBodyToHandler() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(store(10), 1024, 1024);
+        StringBuilder seen = new StringBuilder();
+
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(),
+                (req, res) -> seen.append(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8)));
+
+        assertEquals(BODY, seen.toString());
+    }
+
+    @Test
+    @DisplayName("A non-blocking read of the cached body gets it at once, and only in async mode")
+    void doFilter_shouldServeCachedBodyToReadListener() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(store(10), 1024, 1024);
+        ByteArrayOutputStream seen = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+        MockHttpServletRequest asyncRequest = request("POST", "/api/products", "k1");
+        asyncRequest.setAsyncStarted(true);
+
+        filter.doFilter(asyncRequest, new MockHttpServletResponse(), (req, res) -> {
+            ServletInputStream in = req.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[8];
+                    while (in.isReady() && !in.isFinished()) {
+                        int read = in.read(buffer);
+                        seen.write(buffer, 0, read);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+            });
+        });
+        assertEquals(BODY, seen.toString(StandardCharsets.UTF_8));
+        assertTrue(allRead.get());
+
+        filter.doFilter(request("POST", "/api/products", "k2"), new MockHttpServletResponse(), (req, res) ->
+                assertThrows(IllegalStateException.class, () -> req.getInputStream().setReadListener(null)));
+    }
+
+    @Test
+    @DisplayName("Reusing a key for a different request is rejected with 422")
+    void doFilter_shouldRejectKeyReuseWithDifferentRequest() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(store(10), 1024, 1024);
+        AtomicInteger executions = new AtomicInteger();
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(), createdChain(executions));
+
+        MockHttpServletRequest other = request("POST", "/api/products", "k1");
+        other.setContent("{\"name\":\"Chair\"}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(other, response, createdChain(executions));
+
+        assertEquals(422, response.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    @DisplayName("A retry while the first request is still running gets 409 with Retry-After")
+    void doFilter_shouldRejectWhileInFlight() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 1024, 1024);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        MockFilterChain retryChain = new MockFilterChain();
+
+        // La segunda petición llega mientras la primera está dentro del controlador
+        filter.doFilter(request("PUT", "/api/products/3", "k1"), new MockHttpServletResponse(),
+                (req, res) -> filter.doFilter(request("PUT", "/api/products/3", "k1"), retry, retryChain));
+
+        assertEquals(409, retry.getStatus());
+        assertEquals("1", retry.getHeader("Retry-After"));
+        assertNull(retryChain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Server errors are not stored so the client can retry")
+    void doFilter_shouldNotStoreServerErrors() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 1024, 1024);
+        AtomicInteger executions = new AtomicInteger();
+        FilterChain failing = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(503);
+        };
+
+        filter.doFilter(request("PATCH", "/api/products/3", "k1"), new MockHttpServletResponse(), failing);
+        filter.doFilter(request("PATCH", "/api/products/3", "k1"), new MockHttpServletResponse(), failing);
+
+        assertEquals(2, executions.get());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("Client errors are stored and replayed like any other response")
+    void doFilter_shouldReplayClientErrors() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(store(10), 1024, 1024);
+        AtomicInteger executions = new AtomicInteger();
+        FilterChain rejecting = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(400);
+        };
+
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(), rejecting);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/api/products", "k1"), retry, rejecting);
+
+        assertEquals(1, executions.get());
+        assertEquals(400, retry.getStatus());
+    }
+
+    @Test
+    @DisplayName("Responses larger than the limit are sent but not stored")
+    void doFilter_shouldNotStoreLargeResponses() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 4, 1024);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST", "/api/products", "k1"), response, createdChain(new AtomicInteger()));
+
+        assertEquals("{\"id\":7}", response.getContentAsString());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("Request bodies larger than the limit are rejected with 413 without reaching the handler")
+    void doFilter_shouldRejectLargeRequests() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 1024, BODY.length() - 1);
+        AtomicInteger executions = new AtomicInteger();
+        MockHttpServletResponse declared = new MockHttpServletResponse();
+        MockHttpServletResponse chunked = new MockHttpServletResponse();
+        MockHttpServletRequest withoutLength = new MockHttpServletRequest("POST", "/api/products") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        withoutLength.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k2");
+        withoutLength.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+
+        filter.doFilter(request("POST", "/api/products", "k1"), declared, createdChain(executions));
+        filter.doFilter(withoutLength, chunked, createdChain(executions));
+
+        assertEquals(413, declared.getStatus());
+        assertEquals(413, chunked.getStatus());
+        assertEquals(0, executions.get());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("Stored responses expire after the TTL and the key can be used again")
+    void store_shouldExpireEntries() throws Exception {
+        IdempotencyStore store = store(10);
+        IdempotencyFilter filter = new IdempotencyFilter(store, 1024, 1024);
+        AtomicInteger executions = new AtomicInteger();
+
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(), createdChain(executions));
+        clock.advance(Duration.ofMinutes(59));
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(), createdChain(executions));
+        assertEquals(1, executions.get());
+
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(0, store.size());
+        filter.doFilter(request("POST", "/api/products", "k1"), new MockHttpServletResponse(), createdChain(executions));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    @DisplayName("Abandoned in-flight markers expire after the in-flight timeout")
+    void store_shouldExpireStuckInFlightMarkers() {
+        IdempotencyStore store = store(10);
+        assertNull(store.begin("k1", "a"));
+        assertTrue(store.begin("k1", "a").isInFlight());
+
+        clock.advance(Duration.ofSeconds(31));
+
+        assertNull(store.begin("k1", "a"));
+    }
+
+    @Test
+    @DisplayName("The store keeps at most max-entries keys, dropping the oldest")
+    void store_shouldBeBounded() {
+        IdempotencyStore store = store(3);
+        for (int i = 0; i < 5; i++) {
+            assertNull(store.begin("k" + i, "f"));
+            store.complete("k" + i, "f", new IdempotencyStore.StoredResponse(200, null, null, new byte[0]));
+        }
+
+        assertEquals(3, store.size());
+        assertNull(store.begin("k0", "f"));
+        assertNotNull(store.begin("k4", "f"));
+    }
+
+    private IdempotencyStore store(int maxEntries) {
+        return new IdempotencyStore(maxEntries, Duration.ofHours(1), Duration.ofSeconds(30), clock);
+    }
+
+    private static FilterChain createdChain(AtomicInteger executions) {
+        return (req, res) -> {
+            int id = 6 + executions.incrementAndGet();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.setHeader("Location", "/api/products/7");
+            response.getWriter().write("{\"id\":" + id + "}");
+        };
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String key) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        request.setContentType("application/json");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        }
+        return request;
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
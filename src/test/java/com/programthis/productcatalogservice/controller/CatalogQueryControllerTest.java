@@ -0,0 +1,69 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.service.CatalogQueryService;
+import com.programthis.productcatalogservice.service.CatalogQueryService.QueryResult;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CatalogQueryController.class)
+public class CatalogQueryControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CatalogQueryService catalogQueryService;
+
+    @Test
+    @DisplayName("POST /api/query should return the batched result")
+    void query_shouldReturnResult() throws Exception {
+        // Given
+        when(catalogQueryService.execute(any())).thenReturn(new QueryResult());
+
+        // When & Then
+        mockMvc.perform(post("/api/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"products\": {\"ids\": [1]}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products").isArray());
+    }
+
+    @Test
+    @DisplayName("POST /api/query should return 400 with the reason for an invalid query")
+    void query_shouldExplainInvalidQuery() throws Exception {
+        // Given
+        when(catalogQueryService.execute(any())).thenThrow(new IllegalArgumentException("products.ids es obligatorio"));
+
+        // When & Then
+        mockMvc.perform(post("/api/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"products\": {}}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("products.ids es obligatorio"));
+    }
+
+    @Test
+    @DisplayName("POST /api/query should not turn a database failure into a 400")
+    void query_shouldNotHideServerErrors() {
+        // Given
+        when(catalogQueryService.execute(any())).thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // When & Then
+        assertThrows(ServletException.class, () -> mockMvc.perform(post("/api/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"products\": {\"ids\": [1]}}")));
+    }
+}
@@ -3,6 +3,9 @@ package com.programthis.productcatalogservice.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.programthis.productcatalogservice.model.Category;
 import com.programthis.productcatalogservice.service.CategoryService;
+import com.programthis.productcatalogservice.service.CategoryStatsService;
+import com.programthis.productcatalogservice.service.CategoryStatsService.CategoryStats;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,6 +17,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -34,6 +38,12 @@ public class CategoryControllerTest {
     @MockBean // Crea un mock del CategoryService y lo inyecta
     private CategoryService categoryService; //
 
+    @MockBean
+    private CategoryStatsService categoryStatsService;
+
+    @MockBean
+    private ProductSuggestionService productSuggestionService;
+
     private Category category1; //
     private Category category2; //
 
@@ -154,4 +164,101 @@ public class CategoryControllerTest {
                 .andExpect(status().isNoContent()); //
         verify(categoryService, times(1)).deleteCategory(1L); //
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("PATCH /api/categories/{id} should apply a merge patch")
+    void patchCategory_shouldApplyMergePatch() throws Exception {
+        // Given
+        Category patchedCategory = new Category(1L, "Electronics", "Gadgets");
+        when(categoryService.patchCategory(eq(1L), eq(Map.of("description", "Gadgets")))).thenReturn(Optional.of(patchedCategory));
+
+        // When & Then
+        mockMvc.perform(patch("/api/categories/{id}", 1L)
+                .contentType("application/merge-patch+json")
+                .content("{\"description\": \"Gadgets\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Gadgets"));
+        verify(categoryService, times(1)).patchCategory(eq(1L), eq(Map.of("description", "Gadgets")));
+    }
+
+    @Test
+    @DisplayName("PATCH /api/categories/{id} should return 404 if category not found")
+    void patchCategory_shouldReturnNotFound() throws Exception {
+        // Given
+        when(categoryService.patchCategory(eq(99L), anyMap())).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(patch("/api/categories/{id}", 99L)
+                .contentType("application/merge-patch+json")
+                .content("{\"name\": \"Other\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id}/stats should return the category statistics")
+    void getCategoryStats_shouldReturnStats() throws Exception {
+        // Given
+        when(categoryStatsService.getStats(1L)).thenReturn(Optional.of(new CategoryStats(1L, 3, 2, 5.0, 50.0, 17)));
+
+        // When & Then
+        mockMvc.perform(get("/api/categories/{id}/stats", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productCount").value(3))
+                .andExpect(jsonPath("$.inStockCount").value(2))
+                .andExpect(jsonPath("$.minPrice").value(5.0))
+                .andExpect(jsonPath("$.maxPrice").value(50.0))
+                .andExpect(jsonPath("$.totalStock").value(17));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id}/stats should return 404 for an unknown category")
+    void getCategoryStats_shouldReturnNotFound() throws Exception {
+        // Given
+        when(categoryStatsService.getStats(99L)).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/categories/{id}/stats", 99L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/stats should return statistics for every category")
+    void getAllCategoryStats_shouldReturnList() throws Exception {
+        // Given
+        when(categoryStatsService.getAllStats()).thenReturn(List.of(
+                new CategoryStats(1L, 3, 2, 5.0, 50.0, 17),
+                new CategoryStats(2L, 0, 0, null, null, 0)));
+
+        // When & Then
+        mockMvc.perform(get("/api/categories/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].productCount").value(0));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id}?links=none should return the category without links")
+    void getCategoryById_withoutLinks_shouldReturnPlainObject() throws Exception {
+        // Given
+        when(categoryService.getCategoryById(1L)).thenReturn(Optional.of(category1));
+
+        // When & Then
+        mockMvc.perform(get("/api/categories/{id}", 1L).param("links", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Electronics"))
+                .andExpect(jsonPath("$._links").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /api/categories?fields= should return only the requested fields")
+    void getAllCategories_withFields_shouldReturnSparseObjects() throws Exception {
+        // Given
+        when(categoryService.getAllCategoryFields("name")).thenReturn(List.of(Map.of("id", 1L, "name", "Electronics")));
+
+        // When & Then
+        mockMvc.perform(get("/api/categories").param("fields", "name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Electronics"))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+}
@@ -0,0 +1,503 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programthis.productcatalogservice.service.CatalogCache;
+import com.programthis.productcatalogservice.service.CategoryStatsService;
+import com.programthis.productcatalogservice.service.DuplicateNameGuard;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
+import com.programthis.productcatalogservice.service.RelatedProductsService;
+import lombok.Value;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+// Presupuesto de rendimiento de cada endpoint de ProductController y CategoryController con los repositorios reales
+// sobre H2 y un catálogo sembrado (tamaño configurable: -Dperf.catalog.products=N -Dperf.catalog.categories=M).
+// Por llamada se mide: sentencias SQL ejecutadas, filas leídas de los ResultSet (también la clave generada de un
+// INSERT) y bytes reservados por el hilo.
+// Un N+1 o una carga de toda la tabla donde no toca supera los límites y rompe el build.
+// Los límites de los listados completos crecen con el tamaño del catálogo; el resto no depende de él
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:performance;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.show-sql=false",
+        "catalog.cache.snapshot.enabled=false",
+        "catalog.admission.enabled=false"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EndpointPerformanceBudgetTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointPerformanceBudgetTest.class);
+
+    private static final int PRODUCTS = Integer.getInteger("perf.catalog.products", 2_000);
+    private static final int CATEGORIES = Integer.getInteger("perf.catalog.categories", 20);
+    // Productos por categoría, que es lo que devuelven los listados de una categoría
+    private static final int PER_CATEGORY = (PRODUCTS + CATEGORIES - 1) / CATEGORIES;
+
+    // Antes de medir se repite la petición para que la carga de clases y las cachés de arranque no cuenten;
+    // de las mediciones se toma la menor (las reservas de otros hilos o del JIT solo pueden sumar)
+    private static final int WARMUP_CALLS = 3;
+    private static final int MEASURED_CALLS = 3;
+
+    private static final long KB = 1024;
+    // Bytes por elemento de un listado: con enlaces HAL (linkTo/methodOn crea proxies por cada enlace), en JSON plano
+    // y con ?fields=. Unas 1,5 veces lo medido, para que el ruido no rompa el build pero sí una regresión clara
+    private static final long HAL_BYTES_PER_ITEM = 128 * KB;
+    private static final long JSON_BYTES_PER_ITEM = 4 * KB;
+    private static final long FIELDS_BYTES_PER_ITEM = 2 * KB;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private CategoryStatsService categoryStatsService;
+
+    @Autowired
+    private ProductSuggestionService productSuggestionService;
+
+    @Autowired
+    private RelatedProductsService relatedProductsService;
+
+    @Autowired
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @BeforeAll
+    void seedCatalog() {
+        List<Object[]> categories = new ArrayList<>(CATEGORIES);
+        for (int i = 1; i <= CATEGORIES; i++) {
+            categories.add(new Object[]{"Category " + i, "Description of category " + i});
+        }
+        jdbcTemplate.batchUpdate("insert into categories (name, description) values (?, ?)", categories);
+        List<Long> categoryIds = jdbcTemplate.queryForList("select id from categories order by id", Long.class);
+
+        List<Object[]> products = new ArrayList<>(PRODUCTS);
+        for (int i = 1; i <= PRODUCTS; i++) {
+            products.add(new Object[]{"Product " + i, "Description of product " + i, 1.0 + i % 500, i % 40,
+                    categoryIds.get(i % CATEGORIES)});
+        }
+        jdbcTemplate.batchUpdate("insert into products (name, description, price, stock, category_id) values (?, ?, ?, ?, ?)",
+                products);
+
+        // Los índices en memoria se cargaron al arrancar, con la base de datos vacía
+        catalogCache.warmUp();
+        categoryStatsService.rebuild();
+        productSuggestionService.rebuild();
+        relatedProductsService.rebuild();
+        duplicateNameGuard.rebuild();
+    }
+
+    // --- ProductController ---
+
+    @Test
+    @DisplayName("GET /api/products should read the catalog in one query")
+    void getAllProducts() throws Exception {
+        assertWithinBudget(get("/api/products"), 200, new Budget(1, PRODUCTS, 256 * KB + PRODUCTS * HAL_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("GET /api/products?links=none should read the catalog in one query")
+    void getAllProductsWithoutLinks() throws Exception {
+        assertWithinBudget(get("/api/products").param("links", "none"), 200,
+                new Budget(1, PRODUCTS, 256 * KB + PRODUCTS * JSON_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("GET /api/products?fields= should read only the requested columns in one query")
+    void getAllProductFields() throws Exception {
+        assertWithinBudget(get("/api/products").param("fields", "name,price"), 200,
+                new Budget(1, PRODUCTS, 256 * KB + PRODUCTS * FIELDS_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/export should stream the catalog from one cursor")
+    void exportProducts() throws Exception {
+        assertWithinBudget(get("/api/products/export"), 200,
+                new Budget(2, CATEGORIES + PRODUCTS, 1024 * KB + PRODUCTS * FIELDS_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search should read one page and its count")
+    void searchProducts() throws Exception {
+        assertWithinBudget(get("/api/products/search").param("categoryId", firstCategoryId().toString())
+                        .param("minPrice", "10").param("size", "20").param("sort", "price,desc"), 200,
+                new Budget(2, 21, 2 * 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search?fields= should read one page")
+    void searchProductFields() throws Exception {
+        assertWithinBudget(get("/api/products/search").param("minPrice", "10").param("size", "20")
+                .param("fields", "name"), 200, new Budget(1, 20, 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/suggest should not touch the database")
+    void suggest() throws Exception {
+        assertWithinBudget(get("/api/products/suggest").param("prefix", "Product 1"), 200, new Budget(0, 0, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id} should read one row (the catalog cache only serves reads with the invalidation bus)")
+    void getProductById() throws Exception {
+        assertWithinBudget(get("/api/products/{id}", firstProductId()), 200, new Budget(1, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}/related should be served from the precomputed index")
+    void getRelatedProducts() throws Exception {
+        assertWithinBudget(get("/api/products/{id}/related", firstProductId()), 200, new Budget(0, 0, 256 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}?fields= should read one row")
+    void getProductFieldsById() throws Exception {
+        assertWithinBudget(get("/api/products/{id}", firstProductId()).param("fields", "name,category"), 200,
+                new Budget(1, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/category/{id} should read only that category's products")
+    void getProductsByCategoryId() throws Exception {
+        assertWithinBudget(get("/api/products/category/{id}", firstCategoryId()), 200,
+                new Budget(2, PER_CATEGORY + 1, 256 * KB + PER_CATEGORY * HAL_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("POST /api/products should check the name with one exists query and not load more than the category")
+    void createProduct() throws Exception {
+        int[] sequence = {0};
+        // Con la configuración por defecto el filtro de nombres no es fiable (trust-filter sigue al bus de
+        // invalidación) y un nombre nuevo también se confirma en la base de datos
+        assertWithinBudget(() -> post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("name", "Created " + sequence[0]++, "description", "New", "price", 5.0,
+                                "stock", 1, "categoryId", firstCategoryId()))), 201,
+                new Budget(3, 2, 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("POST /api/products with a taken name should be rejected with one exists query and no write")
+    void createProductWithDuplicateName() throws Exception {
+        assertWithinBudget(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("name", "Product 1", "description", "Repeated", "price", 5.0,
+                                "stock", 1, "categoryId", firstCategoryId()))), 409,
+                new Budget(1, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("HEAD /api/products?name= should answer with one exists query")
+    void productNameExists() throws Exception {
+        // Sin consultas solo con catalog.name-index.trust-filter=true (ver DuplicateNameGuardTest)
+        assertWithinBudget(head("/api/products").param("name", "Not in the catalog"), 404, new Budget(1, 0, 256 * KB));
+    }
+
+    @Test
+    @DisplayName("PUT /api/products/{id} should read and write one row")
+    void updateProduct() throws Exception {
+        Long id = firstProductId();
+        // Cada llamada cambia la fila: con el mismo cuerpo Hibernate no ve cambios y se ahorra el UPDATE
+        int[] sequence = {0};
+        assertWithinBudget(() -> put("/api/products/{id}", id).contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("productDetails", Map.of("name", "Product 1", "description",
+                                "Updated " + sequence[0]++, "price", 9.5, "stock", 3)))), 200,
+                new Budget(3, 2, 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should read and write one row")
+    void patchProduct() throws Exception {
+        Long id = firstProductId();
+        int[] sequence = {0};
+        assertWithinBudget(() -> patch("/api/products/{id}", id).contentType("application/merge-patch+json")
+                .content(json(Map.of("price", 12.5 + sequence[0]++))), 200, new Budget(2, 1, 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("POST /api/products/{id}/stock/adjustments should update the stock in place")
+    void adjustStock() throws Exception {
+        Long id = firstProductId();
+        assertWithinBudget(() -> post("/api/products/{id}/stock/adjustments", id).contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("delta", 1))), 200, new Budget(3, 2, 1024 * KB));
+    }
+
+    @Test
+    @DisplayName("DELETE /api/products/{id} should read and delete one row and log the deletion")
+    void deleteProduct() throws Exception {
+        List<Long> ids = jdbcTemplate.queryForList("select id from products order by id desc limit 10", Long.class);
+        int[] next = {0};
+        // Con el INSERT en el registro de borrados (la clave generada cuenta como fila)
+        assertWithinBudget(() -> delete("/api/products/{id}", ids.get(next[0]++)), 204, new Budget(4, 3, 512 * KB));
+    }
+
+    // --- CategoryController ---
+
+    @Test
+    @DisplayName("GET /api/categories should read the categories in one query")
+    void getAllCategories() throws Exception {
+        assertWithinBudget(get("/api/categories"), 200, new Budget(1, CATEGORIES, 256 * KB + CATEGORIES * HAL_BYTES_PER_ITEM));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id} should read one row (the catalog cache only serves reads with the invalidation bus)")
+    void getCategoryById() throws Exception {
+        assertWithinBudget(get("/api/categories/{id}", firstCategoryId()), 200, new Budget(1, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id}?fields= should read one row")
+    void getCategoryFieldsById() throws Exception {
+        assertWithinBudget(get("/api/categories/{id}", firstCategoryId()).param("fields", "name"), 200,
+                new Budget(1, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/stats should not touch the database")
+    void getAllCategoryStats() throws Exception {
+        assertWithinBudget(get("/api/categories/stats"), 200, new Budget(0, 0, 256 * KB + CATEGORIES * 4 * KB));
+    }
+
+    @Test
+    @DisplayName("GET /api/categories/{id}/stats should not touch the database")
+    void getCategoryStats() throws Exception {
+        assertWithinBudget(get("/api/categories/{id}/stats", firstCategoryId()), 200, new Budget(0, 0, 256 * KB));
+    }
+
+    @Test
+    @DisplayName("POST /api/categories should check the name with one exists query and insert one row")
+    void createCategory() throws Exception {
+        int[] sequence = {0};
+        assertWithinBudget(() -> post("/api/categories").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("name", "Created category " + sequence[0]++, "description", "New"))), 201,
+                new Budget(2, 1, 512 * KB));
+    }
+
+    @Test
+    @DisplayName("PATCH /api/categories/{id} should read and write one row")
+    void patchCategory() throws Exception {
+        Long id = firstCategoryId();
+        int[] sequence = {0};
+        assertWithinBudget(() -> patch("/api/categories/{id}", id).contentType("application/merge-patch+json")
+                .content(json(Map.of("description", "Patched " + sequence[0]++))), 200, new Budget(2, 1, 512 * KB));
+    }
+
+    // --- CatalogQueryController ---
+
+    @Test
+    @DisplayName("POST /api/query should batch the nested reads into one query per key type")
+    void queryCatalog() throws Exception {
+        // Sin la primera categoría, donde otros tests añaden productos
+        List<Long> categoryIds = jdbcTemplate.queryForList("select id from categories order by id limit 3 offset 1", Long.class);
+        List<Long> productIds = jdbcTemplate.queryForList("select id from products order by id desc limit 10", Long.class);
+        // Una consulta IN por tipo de clave: las tres categorías, los IDs de los cinco primeros productos de cada una y
+        // esos productos, los diez productos sueltos y sus categorías (con el bus de invalidación, las lecturas por ID
+        // saldrían de CatalogCache)
+        assertWithinBudget(post("/api/query").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("categories", Map.of("ids", categoryIds, "products", Map.of("limit", 5)),
+                                "products", Map.of("ids", productIds, "category", true)))), 200,
+                new Budget(5, 3 + 2 * 3 * 5 + 2 * 10, 1024 * KB + 3 * 5 * JSON_BYTES_PER_ITEM));
+    }
+
+    // --- Medición ---
+
+    private void assertWithinBudget(RequestBuilder request, int expectedStatus, Budget budget) throws Exception {
+        assertWithinBudget(() -> request, expectedStatus, budget);
+    }
+
+    private void assertWithinBudget(RequestFactory request, int expectedStatus, Budget budget) throws Exception {
+        RequestBuilder first = request.create();
+        MockHttpServletRequest built = first.buildRequest(null);
+        String endpoint = built.getMethod() + " " + built.getRequestURI();
+        perform(first, expectedStatus);
+        for (int i = 1; i < WARMUP_CALLS; i++) {
+            perform(request.create(), expectedStatus);
+        }
+        Measurement best = null;
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            Measurement measurement = measure(request.create(), expectedStatus);
+            best = best == null ? measurement : best.min(measurement);
+        }
+        log.debug("{} {} (presupuesto {})", endpoint, best, budget);
+        assertTrue(best.getStatements() <= budget.getStatements(),
+                endpoint + ": " + best.getStatements() + " sentencias SQL, máximo " + budget.getStatements());
+        assertTrue(best.getRows() <= budget.getRows(),
+                endpoint + ": " + best.getRows() + " filas leídas, máximo " + budget.getRows());
+        assertTrue(best.getAllocatedBytes() <= budget.getAllocatedBytes(),
+                endpoint + ": " + best.getAllocatedBytes() + " bytes reservados, máximo " + budget.getAllocatedBytes());
+    }
+
+    private Measurement measure(RequestBuilder request, int expectedStatus) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        JdbcCounters.start();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        try {
+            perform(request, expectedStatus);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            return new Measurement(JdbcCounters.statements(), JdbcCounters.rows(), allocated);
+        } finally {
+            JdbcCounters.stop();
+        }
+    }
+
+    private void perform(RequestBuilder request, int expectedStatus) throws Exception {
+        int status = mockMvc.perform(request).andReturn().getResponse().getStatus();
+        assertEquals(expectedStatus, status, "Estado HTTP inesperado");
+    }
+
+    private Long firstCategoryId() {
+        return jdbcTemplate.queryForObject("select min(id) from categories", Long.class);
+    }
+
+    private Long firstProductId() {
+        return jdbcTemplate.queryForObject("select min(id) from products", Long.class);
+    }
+
+    private String json(Object body) throws Exception {
+        return objectMapper.writeValueAsString(body);
+    }
+
+    // Las escrituras necesitan una petición nueva en cada llamada (nombres únicos, IDs distintos...)
+    @FunctionalInterface
+    private interface RequestFactory {
+        RequestBuilder create() throws Exception;
+    }
+
+    // Cuenta las sentencias ejecutadas y las filas leídas por el hilo que mide, envolviendo el DataSource de la aplicación
+    @TestConfiguration
+    static class JdbcCountersConfig {
+
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? JdbcCounters.counting(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+    }
+
+    static final class JdbcCounters {
+
+        private static volatile Thread measured;
+        private static long statements;
+        private static long rows;
+
+        static void start() {
+            statements = 0;
+            rows = 0;
+            measured = Thread.currentThread();
+        }
+
+        static void stop() {
+            measured = null;
+        }
+
+        static long statements() {
+            return statements;
+        }
+
+        static long rows() {
+            return rows;
+        }
+
+        // Proxy de la interfaz JDBC que también envuelve las conexiones, sentencias y ResultSet que devuelve
+        @SuppressWarnings("unchecked")
+        static <T> T counting(T target, Class<?>... types) {
+            return (T) Proxy.newProxyInstance(JdbcCounters.class.getClassLoader(), types, (proxy, method, arguments) -> {
+                Object result;
+                try {
+                    result = method.invoke(target, arguments);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (measured == Thread.currentThread()) {
+                    if (target instanceof Statement && method.getName().startsWith("execute")) {
+                        statements++;
+                    } else if (target instanceof ResultSet && method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                        rows++;
+                    }
+                }
+                if (result instanceof Connection || result instanceof Statement || result instanceof ResultSet) {
+                    return counting(result, jdbcInterfaces(result));
+                }
+                return result;
+            });
+        }
+
+        // Las interfaces JDBC que implementa el objeto real (un PreparedStatement debe seguir siéndolo)
+        private static Class<?>[] jdbcInterfaces(Object target) {
+            return ClassUtils.getAllInterfacesAsSet(target).stream()
+                    .filter(type -> type.getName().startsWith("java.sql."))
+                    .toArray(Class<?>[]::new);
+        }
+    }
+
+    // --- DTOs ---
+    @Value
+    static class Budget {
+        long statements;
+        long rows;
+        long allocatedBytes;
+
+        @Override
+        public String toString() {
+            return statements + " sentencias, " + rows + " filas, " + allocatedBytes / KB + " KB";
+        }
+    }
+
+    @Value
+    static class Measurement {
+        long statements;
+        long rows;
+        long allocatedBytes;
+
+        Measurement min(Measurement other) {
+            return new Measurement(Math.min(statements, other.statements), Math.min(rows, other.rows),
+                    Math.min(allocatedBytes, other.allocatedBytes));
+        }
+
+        @Override
+        public String toString() {
+            return statements + " sentencias, " + rows + " filas, " + allocatedBytes / KB + " KB";
+        }
+    }
+}
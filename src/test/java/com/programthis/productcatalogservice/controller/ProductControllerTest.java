@@ -1,22 +1,36 @@
 package com.programthis.productcatalogservice.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.programthis.productcatalogservice.model.Category;
 import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.DuplicateNameException;
 import com.programthis.productcatalogservice.service.ProductService;
+import com.programthis.productcatalogservice.service.ProductSuggestionService;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.Suggestion;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.SuggestionType;
+import com.programthis.productcatalogservice.service.RelatedProductsService;
+import com.programthis.productcatalogservice.service.RelatedProductsService.RelatedProduct;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -35,6 +49,12 @@ public class ProductControllerTest {
     @MockBean // Crea un mock del ProductService y lo inyecta en el contexto de Spring
     private ProductService productService; //
 
+    @MockBean
+    private ProductSuggestionService productSuggestionService;
+
+    @MockBean
+    private RelatedProductsService relatedProductsService;
+
     private Category testCategory; //
     private Product product1; //
     private Product product2; //
@@ -133,6 +153,32 @@ public class ProductControllerTest {
                 anyString(), anyString(), anyDouble(), anyInt(), anyLong()); //
     }
 
+    @Test
+    @DisplayName("POST /api/products should return 409 if the name is already in use")
+    void createProduct_shouldReturnConflictOnDuplicateName() throws Exception {
+        ProductController.ProductCreationRequest createRequest =
+                new ProductController.ProductCreationRequest("Laptop", "Description", 100.00, 5, 1L);
+        when(productService.createProduct(anyString(), anyString(), anyDouble(), anyInt(), anyLong()))
+                .thenThrow(new DuplicateNameException("un producto", "Laptop"));
+
+        mockMvc.perform(post("/api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createRequest)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("HEAD /api/products?name= should tell whether the name is in use")
+    void productNameExists_shouldReturnOkOrNotFound() throws Exception {
+        when(productService.productNameExists("Laptop")).thenReturn(true);
+
+        mockMvc.perform(head("/api/products").param("name", "Laptop"))
+                .andExpect(status().isOk());
+        mockMvc.perform(head("/api/products").param("name", "Tablet"))
+                .andExpect(status().isNotFound());
+        verify(productService, never()).getAllProducts();
+    }
+
     @Test
     @DisplayName("PUT /api/products/{id} should update an existing product successfully")
     void updateProduct_shouldUpdateProduct() throws Exception {
@@ -233,4 +279,227 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
         verify(productService, times(1)).getProductsByCategoryId(99L); //
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should apply a merge patch")
+    void patchProduct_shouldApplyMergePatch() throws Exception {
+        // Given
+        Product patchedProduct = new Product(1L, "Laptop", "High performance laptop", 999.00, 10, testCategory);
+        when(productService.patchProduct(eq(1L), eq(Map.of("price", 999.0)))).thenReturn(Optional.of(patchedProduct));
+
+        // When & Then
+        mockMvc.perform(patch("/api/products/{id}", 1L)
+                .contentType("application/merge-patch+json")
+                .content("{\"price\": 999.0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(999.00));
+        verify(productService, times(1)).patchProduct(eq(1L), eq(Map.of("price", 999.0)));
+    }
+
+    @Test
+    @DisplayName("POST /api/products/{id}/stock/adjustments should return the product with the adjusted stock")
+    void adjustStock_shouldReturnAdjustedProduct() throws Exception {
+        // Given
+        Product adjustedProduct = new Product(1L, "Laptop", "High performance laptop", 1200.00, 7, testCategory);
+        when(productService.adjustStock(1L, -3)).thenReturn(Optional.of(adjustedProduct));
+
+        // When & Then
+        mockMvc.perform(post("/api/products/{id}/stock/adjustments", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"delta\": -3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stock").value(7));
+        verify(productService, times(1)).adjustStock(1L, -3);
+    }
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should return 404 if product not found")
+    void patchProduct_shouldReturnNotFound() throws Exception {
+        // Given
+        when(productService.patchProduct(eq(99L), anyMap())).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(patch("/api/products/{id}", 99L)
+                .contentType("application/merge-patch+json")
+                .content("{\"stock\": 3}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should return 400 if the patch is invalid")
+    void patchProduct_shouldReturnBadRequestOnInvalidPatch() throws Exception {
+        // Given
+        when(productService.patchProduct(eq(1L), anyMap())).thenThrow(new RuntimeException("Campo no modificable: id"));
+
+        // When & Then
+        mockMvc.perform(patch("/api/products/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": 7}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search should return a page of matching products")
+    void searchProducts_shouldReturnPage() throws Exception {
+        // Given
+        when(productService.searchProducts(eq(1L), eq(10.0), isNull(), eq(true), eq("La"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(product1), PageRequest.of(0, 20), 1));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/search")
+                .param("categoryId", "1")
+                .param("minPrice", "10")
+                .param("inStock", "true")
+                .param("namePrefix", "La")
+                .param("sort", "price,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.productList[0].name").value("Laptop"))
+                .andExpect(jsonPath("$.page.totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search should return 400 for an unsupported sort key")
+    void searchProducts_shouldReturnBadRequestOnInvalidSort() throws Exception {
+        // Given
+        when(productService.searchProducts(any(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenThrow(new RuntimeException("No se puede ordenar por: description"));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/search").param("sort", "description"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/products/suggest should return suggestions for a prefix")
+    void suggest_shouldReturnSuggestions() throws Exception {
+        // Given
+        when(productSuggestionService.suggest("lap", 5)).thenReturn(List.of(
+                new Suggestion(SuggestionType.PRODUCT, 1L, "Laptop", 12)));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/suggest").param("prefix", "lap").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Laptop"))
+                .andExpect(jsonPath("$[0].type").value("PRODUCT"))
+                .andExpect(jsonPath("$[0].popularity").value(12));
+        verify(productSuggestionService, times(1)).suggest("lap", 5);
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}/related should return the precomputed related products")
+    void getRelatedProducts_shouldReturnRelatedProducts() throws Exception {
+        // Given
+        when(relatedProductsService.getRelated(1L, 3)).thenReturn(Optional.of(List.of(
+                new RelatedProduct(2L, "Mouse", 25.0, 0.42))));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/{id}/related", 1L).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].name").value("Mouse"))
+                .andExpect(jsonPath("$[0].score").value(0.42));
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}/related should return 404 for an unknown product")
+    void getRelatedProducts_shouldReturnNotFound() throws Exception {
+        // Given
+        when(relatedProductsService.getRelated(99L, 10)).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/products/{id}/related", 99L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id} should count a view for suggestion ranking")
+    void getProductById_shouldRecordView() throws Exception {
+        // Given
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product1));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/{id}", 1L))
+                .andExpect(status().isOk());
+        verify(productSuggestionService, times(1)).recordProductView(1L);
+    }
+
+    @Test
+    @DisplayName("GET /api/products?links=none should return a plain array without links")
+    void getAllProducts_withoutLinks_shouldReturnPlainArray() throws Exception {
+        // Given
+        when(productService.getAllProducts()).thenReturn(Arrays.asList(product1, product2));
+
+        // When & Then
+        mockMvc.perform(get("/api/products").param("links", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Laptop"))
+                .andExpect(jsonPath("$[0]._links").doesNotExist())
+                .andExpect(jsonPath("$._links").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id} should serve CBOR when requested")
+    void getProductById_shouldServeCbor() throws Exception {
+        // Given
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product1));
+
+        // When
+        byte[] body = mockMvc.perform(get("/api/products/{id}", 1L).param("links", "none")
+                .accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode product = new CBORMapper().readTree(body);
+        assertEquals("Laptop", product.get("name").asText());
+        assertEquals(1200.00, product.get("price").asDouble());
+    }
+
+    @Test
+    @DisplayName("GET /api/products/category/{categoryId} should serve Smile when requested")
+    void getProductsByCategoryId_shouldServeSmile() throws Exception {
+        // Given
+        when(productService.getProductsByCategoryId(1L)).thenReturn(Arrays.asList(product1, product2));
+
+        // When
+        byte[] body = mockMvc.perform(get("/api/products/category/{categoryId}", 1L).param("links", "none")
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode products = new SmileMapper().readTree(body);
+        assertEquals(2, products.size());
+        assertEquals("Mouse", products.get(1).get("name").asText());
+    }
+
+    @Test
+    @DisplayName("GET /api/products?fields= should return only the requested fields")
+    void getAllProducts_withFields_shouldReturnSparseObjects() throws Exception {
+        // Given
+        when(productService.getAllProductFields("name,price")).thenReturn(List.of(
+                Map.of("id", 1L, "name", "Laptop", "price", 1200.00)));
+
+        // When & Then
+        mockMvc.perform(get("/api/products").param("fields", "name,price").param("links", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Laptop"))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0]._links").doesNotExist());
+        verify(productService, never()).getAllProducts();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}?fields= should return 400 for an unknown field")
+    void getProductById_withUnknownField_shouldReturnBadRequest() throws Exception {
+        // Given
+        when(productService.getProductFieldsById(1L, "secret")).thenThrow(new RuntimeException("Campo no válido: secret"));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/{id}", 1L).param("fields", "secret"))
+                .andExpect(status().isBadRequest());
+    }
+}
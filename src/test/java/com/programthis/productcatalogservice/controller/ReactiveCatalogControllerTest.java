@@ -0,0 +1,241 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Edición reactiva completa (controlador, servicio y repositorio R2DBC) sobre H2 en memoria
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-catalog;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:reactive-schema.sql"})
+@ActiveProfiles("reactive")
+public class ReactiveCatalogControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private Category electronics;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("delete from products").then()
+                .then(databaseClient.sql("delete from categories").then())
+                .block();
+        electronics = createCategory("Electronics");
+        createProduct("Laptop", 1200.0, 10, electronics.getId());
+        createProduct("Phone", 800.0, 0, electronics.getId());
+        createProduct("Tablet", 500.0, 3, electronics.getId());
+    }
+
+    @Test
+    @DisplayName("GET /api/products should stream every product with its category")
+    void getAllProducts_shouldReturnProductsWithCategory() {
+        webTestClient.get().uri("/api/products")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].name").isEqualTo("Laptop")
+                .jsonPath("$[0].category.name").isEqualTo("Electronics");
+    }
+
+    @Test
+    @DisplayName("GET /api/products as NDJSON should emit one product per line")
+    void getAllProducts_shouldStreamNdjson() {
+        Flux<Product> products = webTestClient.get().uri("/api/products")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Product.class)
+                .getResponseBody();
+
+        StepVerifier.create(products.map(Product::getName))
+                .expectNext("Laptop", "Phone", "Tablet")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search should filter, sort and page like the blocking API")
+    void searchProducts_shouldApplyFilters() {
+        webTestClient.get().uri("/api/products/search?inStock=true&maxPrice=1000&sort=price,desc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Tablet");
+
+        webTestClient.get().uri("/api/products/search?namePrefix=L")
+                .exchange()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Laptop");
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search should reject the same invalid input as the blocking API")
+    void searchProducts_shouldRejectInvalidInput() {
+        webTestClient.get().uri("/api/products/search?sort=description")
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/api/products/search?minPrice=10&maxPrice=5")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should apply a merge patch and publish the change")
+    void patchProduct_shouldUpdateAndPublishChange() {
+        Product laptop = webTestClient.get().uri("/api/products/search?namePrefix=Laptop")
+                .exchange()
+                .returnResult(Product.class)
+                .getResponseBody()
+                .blockFirst();
+        Flux<ProductChangedEvent> changes = webTestClient.get().uri("/api/products/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .returnResult(ProductChangedEvent.class)
+                .getResponseBody();
+
+        StepVerifier.create(changes.take(1))
+                .then(() -> webTestClient.patch().uri("/api/products/{id}", laptop.getId())
+                        .contentType(MediaType.valueOf("application/merge-patch+json"))
+                        .bodyValue(Map.of("stock", 4))
+                        .exchange()
+                        .expectStatus().isOk()
+                        .expectBody()
+                        .jsonPath("$.stock").isEqualTo(4)
+                        .jsonPath("$.price").isEqualTo(1200.0))
+                .assertNext(event -> {
+                    assertEquals(10, event.getBefore().getStock());
+                    assertEquals(4, event.getAfter().getStock());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    @DisplayName("concurrent writes should all reach the change stream")
+    void patchProduct_concurrently_shouldPublishEveryChange() throws Exception {
+        Long id = createProduct("Monitor", 200.0, 1, electronics.getId()).getId();
+        int writes = 40;
+        Flux<ProductChangedEvent> changes = webTestClient.get().uri("/api/products/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .returnResult(ProductChangedEvent.class)
+                .getResponseBody();
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            StepVerifier.create(changes.take(writes).count())
+                    .then(() -> IntStream.range(0, writes).forEach(i -> writers.execute(() ->
+                            webTestClient.patch().uri("/api/products/{id}", id)
+                                    .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                    .bodyValue(Map.of("stock", i))
+                                    .exchange()
+                                    .expectStatus().isOk())))
+                    .expectNext((long) writes)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(20));
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("PATCH /api/products/{id} should return 400 for fields that cannot be changed")
+    void patchProduct_shouldRejectUnknownFields() {
+        Long id = createProduct("Monitor", 200.0, 1, electronics.getId()).getId();
+
+        webTestClient.patch().uri("/api/products/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("id", 99))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("POST /api/products should return 400 for an unknown category")
+    void createProduct_shouldRejectUnknownCategory() {
+        webTestClient.post().uri("/api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductController.ProductCreationRequest("Camera", "Camera", 300.0, 2, 999L))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id} should return 404 after the product is deleted")
+    void deleteProduct_shouldRemoveProduct() {
+        Long id = createProduct("Monitor", 200.0, 1, electronics.getId()).getId();
+
+        webTestClient.delete().uri("/api/products/{id}", id)
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.get().uri("/api/products/{id}", id)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("DELETE /api/categories/{id} should delete the category and its products")
+    void deleteCategory_shouldCascadeToProducts() {
+        webTestClient.delete().uri("/api/categories/{id}", electronics.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/products/category/{id}", electronics.getId())
+                .exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+        webTestClient.get().uri("/api/categories/{id}", electronics.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private Category createCategory(String name) {
+        return webTestClient.post().uri("/api/categories")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Category(null, name, name + " category"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Category.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private Product createProduct(String name, double price, int stock, Long categoryId) {
+        Product product = webTestClient.post().uri("/api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductController.ProductCreationRequest(name, name + " description", price, stock, categoryId))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Product.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(product);
+        return product;
+    }
+}
@@ -0,0 +1,112 @@
+package com.programthis.productcatalogservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programthis.productcatalogservice.service.InsufficientStockException;
+import com.programthis.productcatalogservice.service.InventoryReservationService;
+import com.programthis.productcatalogservice.service.InventoryReservationService.Availability;
+import com.programthis.productcatalogservice.service.InventoryReservationService.Reservation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReservationController.class)
+public class ReservationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private InventoryReservationService reservationService;
+
+    @Test
+    @DisplayName("POST /api/products/{id}/reservations should return the hold")
+    void reserve_shouldReturnCreatedHold() throws Exception {
+        // Given
+        Reservation reservation = new Reservation("hold-1", 1L, 2, Instant.parse("2026-01-01T10:05:00Z"));
+        when(reservationService.reserve(1L, 2)).thenReturn(Optional.of(reservation));
+
+        // When & Then
+        mockMvc.perform(post("/api/products/{id}/reservations", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new ReservationController.ReservationRequest(2))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.holdId").value("hold-1"))
+                .andExpect(jsonPath("$.quantity").value(2));
+    }
+
+    @Test
+    @DisplayName("POST /api/products/{id}/reservations should return 409 when stock runs out")
+    void reserve_shouldReturnConflictWhenStockIsInsufficient() throws Exception {
+        // Given
+        when(reservationService.reserve(1L, 50)).thenThrow(new InsufficientStockException(1L, 50, 3));
+
+        // When & Then
+        mockMvc.perform(post("/api/products/{id}/reservations", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"quantity\": 50}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("POST /api/products/{id}/reservations should return 404 for an unknown product")
+    void reserve_shouldReturnNotFoundForUnknownProduct() throws Exception {
+        // Given
+        when(reservationService.reserve(99L, 1)).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(post("/api/products/{id}/reservations", 99L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"quantity\": 1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("POST /api/products/{id}/reservations/{holdId}/confirm should return 404 for an expired hold")
+    void confirm_shouldReturnNotFoundForExpiredHold() throws Exception {
+        // Given
+        when(reservationService.confirm(1L, "expired")).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(post("/api/products/{id}/reservations/{holdId}/confirm", 1L, "expired"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("DELETE /api/products/{id}/reservations/{holdId} should release the hold")
+    void release_shouldReturnNoContent() throws Exception {
+        // Given
+        when(reservationService.release(1L, "hold-1"))
+                .thenReturn(Optional.of(new Reservation("hold-1", 1L, 2, Instant.now())));
+
+        // When & Then
+        mockMvc.perform(delete("/api/products/{id}/reservations/{holdId}", 1L, "hold-1"))
+                .andExpect(status().isNoContent());
+        verify(reservationService, times(1)).release(1L, "hold-1");
+    }
+
+    @Test
+    @DisplayName("GET /api/products/{id}/availability should return held and available units")
+    void getAvailability_shouldReturnAvailability() throws Exception {
+        // Given
+        when(reservationService.getAvailability(1L)).thenReturn(Optional.of(new Availability(1L, 10, 4, 6)));
+
+        // When & Then
+        mockMvc.perform(get("/api/products/{id}/availability", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(6));
+    }
+}
@@ -0,0 +1,255 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.programthis.productcatalogservice.repository.ProductSpecifications.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Ejecuta las consultas de búsqueda sobre H2 y comprueba con EXPLAIN que ninguna recorre toda la tabla products
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.programthis.productcatalogservice.repository.ProductRepositoryTest$SqlCapture")
+class ProductRepositoryTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Category electronics;
+
+    @BeforeEach
+    void setUp() {
+        electronics = categoryRepository.save(new Category(null, "Electronics", "Devices"));
+        Category books = categoryRepository.save(new Category(null, "Books", "Reading"));
+        for (int i = 0; i < 200; i++) {
+            Category category = i % 2 == 0 ? electronics : books;
+            productRepository.save(new Product(null, "Product " + i, "Description " + i, 10.0 + i, i % 5, category));
+        }
+        productRepository.flush();
+    }
+
+    @Test
+    @DisplayName("search filters should return matching products")
+    void search_shouldApplyAllFilters() {
+        Specification<Product> spec = Specification.where(fetchCategory())
+                .and(inCategory(electronics.getId()))
+                .and(priceAtLeast(50.0))
+                .and(priceAtMost(100.0))
+                .and(inStock())
+                .and(nameStartsWith("Product 6"));
+
+        List<Product> result = productRepository.findAll(spec, Sort.by(Sort.Direction.DESC, "price"));
+
+        assertFalse(result.isEmpty());
+        for (Product product : result) {
+            assertEquals(electronics.getId(), product.getCategory().getId());
+            assertTrue(product.getPrice() >= 50.0 && product.getPrice() <= 100.0);
+            assertTrue(product.getStock() > 0);
+            assertTrue(product.getName().startsWith("Product 6"));
+        }
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getPrice() >= result.get(i).getPrice());
+        }
+    }
+
+    @Test
+    @DisplayName("name prefix should escape LIKE wildcards")
+    void nameStartsWith_shouldEscapeWildcards() {
+        assertTrue(productRepository.findAll(nameStartsWith("%")).isEmpty());
+        assertTrue(productRepository.findAll(nameStartsWith("Product_1")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("every supported filter combination should use an index on products")
+    void everyFilterCombination_shouldUseAnIndex() {
+        // 5 filtros -> 31 combinaciones no vacías (sin filtros es un listado completo y no se comprueba)
+        for (int mask = 1; mask < 32; mask++) {
+            Specification<Product> spec = Specification.where(fetchCategory());
+            List<Object> parameters = new ArrayList<>();
+            if ((mask & 1) != 0) {
+                spec = spec.and(inCategory(electronics.getId()));
+                parameters.add(electronics.getId());
+            }
+            if ((mask & 2) != 0) {
+                spec = spec.and(priceAtLeast(50.0));
+                parameters.add(50.0);
+            }
+            if ((mask & 4) != 0) {
+                spec = spec.and(priceAtMost(100.0));
+                parameters.add(100.0);
+            }
+            if ((mask & 8) != 0) {
+                spec = spec.and(inStock());
+                parameters.add(0);
+            }
+            if ((mask & 16) != 0) {
+                spec = spec.and(nameStartsWith("Product 1"));
+                parameters.add("Product 1%");
+            }
+
+            SqlCapture.STATEMENTS.clear();
+            productRepository.findAll(spec, Sort.by("price"));
+            String sql = SqlCapture.STATEMENTS.get(0);
+
+            String plan = explain(sql, parameters);
+            assertFalse(plan.contains("PRODUCTS.tableScan"), "Filtros " + mask + " sin índice:\n" + plan);
+        }
+    }
+
+    @Test
+    @DisplayName("aggregate stats query should return one row per category")
+    void aggregateStatsByCategory_shouldReturnOneRowPerCategory() {
+        Category empty = categoryRepository.save(new Category(null, "Empty", null));
+
+        List<Object[]> rows = productRepository.aggregateStatsByCategory();
+
+        assertEquals(3, rows.size());
+        for (Object[] row : rows) {
+            if (row[0].equals(electronics.getId())) {
+                assertEquals(100L, ((Number) row[1]).longValue());
+                assertEquals(80L, ((Number) row[2]).longValue()); // stock i % 5 con i par -> 0 en uno de cada cinco
+                assertEquals(10.0, row[3]);
+                assertEquals(208.0, row[4]);
+            } else if (row[0].equals(empty.getId())) {
+                assertEquals(0L, ((Number) row[1]).longValue());
+                assertNull(row[3]);
+                assertEquals(0L, ((Number) row[5]).longValue());
+            }
+        }
+        assertEquals(10.0, productRepository.findPriceRangeByCategoryId(electronics.getId()).get(0)[0]);
+    }
+
+    @Test
+    @DisplayName("snapshot query should read the row state from the database")
+    void findSnapshotById_shouldReturnDatabaseState() {
+        Product product = productRepository.findAll(nameStartsWith("Product 10")).get(0);
+
+        assertEquals(product.getPrice(), productRepository.findSnapshotById(product.getId()).orElseThrow().getPrice());
+        assertEquals(product.getCategory().getId(), productRepository.findSnapshotById(product.getId()).orElseThrow().getCategoryId());
+    }
+
+    @Test
+    @DisplayName("findFields should only select the requested columns")
+    void findFields_shouldSelectOnlyRequestedColumns() {
+        SqlCapture.STATEMENTS.clear();
+
+        List<Map<String, Object>> rows = productRepository.findFields(List.of("id", "name", "price"),
+                inCategory(electronics.getId()), PageRequest.of(0, 5, Sort.by("price")));
+
+        assertEquals(5, rows.size());
+        assertEquals(List.of("id", "name", "price"), List.copyOf(rows.get(0).keySet()));
+        String sql = SqlCapture.STATEMENTS.get(0).toLowerCase();
+        assertFalse(sql.contains("description"), sql);
+        assertFalse(sql.contains("stock"), sql);
+        assertFalse(sql.contains("categories"), sql);
+    }
+
+    @Test
+    @DisplayName("findFields should nest joined category columns")
+    @SuppressWarnings("unchecked")
+    void findFields_shouldNestCategoryColumns() {
+        List<Map<String, Object>> rows = productRepository.findFields(List.of("id", "category.id", "category.name"),
+                nameStartsWith("Product 10"), Pageable.unpaged());
+
+        Map<String, Object> category = (Map<String, Object>) rows.get(0).get("category");
+        assertNotNull(category.get("id"));
+        assertNotNull(category.get("name"));
+    }
+
+    @Test
+    @DisplayName("adjustStock should add each delta to the stored stock")
+    void adjustStock_shouldApplyDeltasInOneBatch() {
+        List<Product> products = productRepository.findAll(nameStartsWith("Product 1"), Sort.by("id")).subList(0, 2);
+
+        productRepository.adjustStock(Map.of(products.get(0).getId(), -1, products.get(1).getId(), 5));
+
+        List<Long> ids = List.of(products.get(0).getId(), products.get(1).getId());
+        Map<Long, Integer> stock = new HashMap<>();
+        productRepository.findSnapshotsByIdIn(ids).forEach(snapshot -> stock.put(snapshot.getId(), snapshot.getStock()));
+        assertEquals(products.get(0).getStock() - 1, stock.get(products.get(0).getId()));
+        assertEquals(products.get(1).getStock() + 5, stock.get(products.get(1).getId()));
+    }
+
+    @Test
+    @DisplayName("findSnapshotsUpdatedSince should only return rows written after the given instant")
+    void findSnapshotsUpdatedSince_shouldSeeJdbcStockUpdates() {
+        jdbcTemplate.update("update products set updated_at = ?", LocalDateTime.of(2020, 1, 1, 0, 0));
+        Product product = productRepository.findAll(nameStartsWith("Product 7"), Sort.by("id")).get(0);
+
+        productRepository.adjustStock(Map.of(product.getId(), 3));
+
+        List<ProductSnapshot> changed = productRepository.findSnapshotsUpdatedSince(Instant.now().minus(Duration.ofMinutes(1)));
+        assertEquals(List.of(product.getId()), changed.stream().map(ProductSnapshot::getId).toList());
+        assertEquals(product.getStock() + 3, changed.get(0).getStock());
+        assertTrue(explain("select id from products where updated_at >= ?", List.of(LocalDateTime.of(2024, 1, 1, 0, 0)))
+                .toLowerCase().contains("idx_products_updated_at"));
+    }
+
+    @Test
+    @DisplayName("streamExportRows should walk the products in ID order, optionally only those changed since an instant")
+    void streamExportRows_shouldStreamRowsInIdOrder() {
+        List<ProductRepositoryCustom.ExportRow> all = new ArrayList<>();
+        productRepository.streamExportRows(null, all::add);
+
+        assertEquals(200, all.size());
+        assertEquals(all.stream().map(ProductRepositoryCustom.ExportRow::getId).sorted().toList(),
+                all.stream().map(ProductRepositoryCustom.ExportRow::getId).toList());
+        ProductRepositoryCustom.ExportRow first = all.get(0);
+        assertEquals("Product 0", first.getName());
+        assertEquals(electronics.getId(), first.getCategoryId());
+        assertNotNull(first.getUpdatedAt());
+
+        jdbcTemplate.update("update products set updated_at = ? where name <> 'Product 3'", LocalDateTime.of(2020, 1, 1, 0, 0));
+        List<ProductRepositoryCustom.ExportRow> changed = new ArrayList<>();
+        productRepository.streamExportRows(Instant.parse("2021-01-01T00:00:00Z"), changed::add);
+        assertEquals(List.of("Product 3"), changed.stream().map(ProductRepositoryCustom.ExportRow::getName).toList());
+    }
+
+    private String explain(String sql, List<Object> parameters) {
+        return jdbcTemplate.query("EXPLAIN " + sql, rs -> {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+            return plan.toString();
+        }, parameters.toArray());
+    }
+
+    // Guarda el SQL que genera Hibernate para poder pasarlo por EXPLAIN
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.programthis.productcatalogservice.repository;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.CategoryService;
+import com.programthis.productcatalogservice.service.CategoryShardReplicator;
+import com.programthis.productcatalogservice.service.ProductService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Perfil "sharding" con tres bases H2 en memoria: comprueba dónde acaba cada fila (con JDBC directo a cada shard)
+// y que los listados y búsquedas unen bien los resultados de todos
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "catalog.sharding.additional-shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "catalog.sharding.additional-shards[1].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "catalog.cache.snapshot.enabled=false"
+})
+@ActiveProfiles("sharding")
+class ShardedProductRepositoryTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ShardRoutingDataSource shards;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CategoryShardReplicator replicator;
+
+    @Test
+    @DisplayName("products should be stored on their category's shard with IDs from that shard's range")
+    void createProduct_shouldStoreOnCategoryShard() {
+        List<Category> categories = newCategories(3);
+        for (Category category : categories) {
+            Product product = productService.createProduct(unique("Lamp"), "Desk lamp", 20.0, 5, category.getId());
+            int shard = shards.shardFor(category.getId());
+
+            assertEquals(shard, shards.homeShard(product.getId()));
+            assertTrue(product.getId() >= ShardRoutingDataSource.firstId(shard));
+            for (int other = 0; other < shards.getShardCount(); other++) {
+                assertEquals(other == shard ? 1 : 0, countOn(other, "select count(*) from products where id = ?", product.getId()));
+            }
+            assertEquals(product.getName(), productService.getProductById(product.getId()).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    @DisplayName("categories should be replicated to every shard")
+    void saveCategory_shouldReplicateToAllShards() {
+        Category category = newCategories(1).get(0);
+        category.setName(unique("Renamed"));
+        categoryService.saveCategory(category);
+
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            assertEquals(1, countOn(shard, "select count(*) from categories where id = ? and name = ?",
+                    category.getId(), category.getName()));
+        }
+
+        categoryService.deleteCategory(category.getId());
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            assertEquals(0, countOn(shard, "select count(*) from categories where id = ?", category.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("paged search should merge the shards into one globally sorted page")
+    void searchProducts_shouldMergeShardsInOrder() {
+        List<Category> categories = newCategories(3);
+        String prefix = unique("Search");
+        List<Double> prices = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            double price = 100.0 + (i * 7) % 9;
+            prices.add(price);
+            productService.createProduct(prefix + i, "Item", price, i, categories.get(i % 3).getId());
+        }
+        prices.sort(Comparator.reverseOrder());
+
+        Pageable secondPage = PageRequest.of(1, 4, Sort.by(Sort.Direction.DESC, "price"));
+        Page<Product> page = productService.searchProducts(null, null, null, null, prefix, secondPage);
+
+        assertEquals(9, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        assertEquals(prices.subList(4, 8), page.getContent().stream().map(Product::getPrice).toList());
+
+        List<Map<String, Object>> rows = productService.searchProductFields(null, null, null, null, prefix, "name",
+                PageRequest.of(0, 3, Sort.by("price")));
+        assertEquals(List.of(prefix + "0", prefix + "4", prefix + "8"), rows.stream().map(row -> row.get("name")).toList());
+        // La columna del orden se pide a cada shard pero no se devuelve
+        assertEquals(Set.of("id", "name"), rows.get(0).keySet());
+    }
+
+    @Test
+    @DisplayName("listing all products should return every shard's products ordered by ID")
+    void getAllProducts_shouldGatherEveryShard() {
+        List<Category> categories = newCategories(3);
+        List<Long> created = new ArrayList<>();
+        for (Category category : categories) {
+            created.add(productService.createProduct(unique("All"), "Item", 1.0, 1, category.getId()).getId());
+        }
+
+        List<Long> ids = productService.getAllProducts().stream().map(Product::getId).toList();
+
+        assertTrue(ids.containsAll(created));
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    @Test
+    @DisplayName("the export cursor should walk every shard")
+    void streamExportRows_shouldReadEveryShard() {
+        List<Category> categories = newCategories(3);
+        List<Long> created = new ArrayList<>();
+        for (Category category : categories) {
+            created.add(productService.createProduct(unique("Export"), "Item", 1.0, 1, category.getId()).getId());
+        }
+
+        List<Long> exported = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                productRepository.streamExportRows(null, row -> exported.add(row.getId())));
+
+        assertTrue(exported.containsAll(created));
+        assertEquals(exported.size(), Set.copyOf(exported).size());
+    }
+
+    @Test
+    @DisplayName("changing a product's category should move it to the new shard keeping its ID")
+    void patchProduct_shouldMoveProductBetweenShards() {
+        List<Category> categories = newCategories(3);
+        Category from = categories.get(0);
+        Category to = categories.stream()
+                .filter(category -> shards.shardFor(category.getId()) != shards.shardFor(from.getId()))
+                .findFirst().orElseThrow();
+        Product product = productService.createProduct(unique("Mover"), "Item", 15.0, 3, from.getId());
+
+        Product moved = productService.patchProduct(product.getId(), Map.of("categoryId", to.getId(), "price", 17.5)).orElseThrow();
+
+        assertEquals(product.getId(), moved.getId());
+        assertEquals(0, countOn(shards.shardFor(from.getId()), "select count(*) from products where id = ?", product.getId()));
+        assertEquals(1, countOn(shards.shardFor(to.getId()),
+                "select count(*) from products where id = ? and category_id = ? and price = 17.5", product.getId(), to.getId()));
+        assertEquals(List.of(product.getId()),
+                productService.getProductsByCategoryId(to.getId()).stream().map(Product::getId).toList());
+        assertTrue(productService.getProductsByCategoryId(from.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("moving a product to a lower shard should not make that shard reuse IDs from the higher one")
+    void patchProduct_whenMovedToLowerShard_shouldKeepIdsUnique() {
+        List<Category> categories = newCategories(3);
+        Category high = categories.stream().max(Comparator.comparingInt(category -> shards.shardFor(category.getId()))).orElseThrow();
+        Category low = categories.stream().min(Comparator.comparingInt(category -> shards.shardFor(category.getId()))).orElseThrow();
+        Product moved = productService.createProduct(unique("Down"), "Item", 1.0, 1, high.getId());
+        Product sibling = productService.createProduct(unique("Sibling"), "Item", 1.0, 1, high.getId());
+        productService.patchProduct(moved.getId(), Map.of("categoryId", low.getId())).orElseThrow();
+
+        Product created = productService.createProduct(unique("After"), "Item", 1.0, 1, low.getId());
+        Product next = productService.createProduct(unique("Next"), "Item", 1.0, 1, high.getId());
+
+        assertEquals(shards.shardFor(low.getId()), shards.homeShard(created.getId()));
+        assertEquals(shards.shardFor(high.getId()), shards.homeShard(next.getId()));
+        assertEquals(4, Set.of(moved.getId(), sibling.getId(), created.getId(), next.getId()).size());
+        // Los IDs salen del asignador global del shard 0, no del contador del shard
+        assertEquals(1, countOn(0, "select count(*) from product_id_blocks where shard = ? and next_id > ?",
+                shards.shardFor(low.getId()), created.getId()));
+        for (Product product : List.of(moved, created)) {
+            assertEquals(1, countOn(shards.shardFor(low.getId()), "select count(*) from products where id = ?", product.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("a failed move should remove the copy already inserted on the new shard")
+    void patchProduct_whenDeleteFromOldShardFails_shouldUndoTheInsert() {
+        List<Category> categories = newCategories(3);
+        Category from = categories.get(0);
+        Category to = categories.stream()
+                .filter(category -> shards.shardFor(category.getId()) != shards.shardFor(from.getId()))
+                .findFirst().orElseThrow();
+        Product product = productService.createProduct(unique("Stuck"), "Item", 15.0, 3, from.getId());
+        // Una fila que referencia al producto en el shard de origen impide borrarlo de allí
+        JdbcTemplate origin = new JdbcTemplate(shards.getShard(shards.shardFor(from.getId())));
+        origin.execute("create table move_blockers (product_id bigint references products(id))");
+        try {
+            origin.update("insert into move_blockers values (?)", product.getId());
+
+            assertThrows(RuntimeException.class,
+                    () -> productService.patchProduct(product.getId(), Map.of("categoryId", to.getId())));
+
+            assertEquals(1, countOn(shards.shardFor(from.getId()), "select count(*) from products where id = ?", product.getId()));
+            assertEquals(0, countOn(shards.shardFor(to.getId()), "select count(*) from products where id = ?", product.getId()));
+        } finally {
+            origin.execute("drop table move_blockers");
+        }
+    }
+
+    @Test
+    @DisplayName("startup synchronization should move misplaced products only while no other instance holds the lock")
+    void synchronize_shouldMoveMisplacedProductsUnderTheLock() {
+        List<Category> categories = newCategories(3);
+        Category home = categories.get(0);
+        int homeShard = shards.shardFor(home.getId());
+        int wrongShard = (homeShard + 1) % shards.getShardCount();
+        Product product = productService.createProduct(unique("Misplaced"), "Item", 9.0, 4, home.getId());
+        Product placed = productService.createProduct(unique("Placed"), "Item", 9.0, 4, home.getId());
+        // Se deja el producto en un shard que no es el de su categoría, como tras añadir un shard
+        new JdbcTemplate(shards.getShard(wrongShard)).update(
+                "insert into products (id, name, description, price, stock, category_id, updated_at) values (?, ?, ?, ?, ?, ?, ?)",
+                product.getId(), product.getName(), "Item", 9.0, 4, home.getId(), LocalDateTime.now());
+        new JdbcTemplate(shards.getShard(homeShard)).update("delete from products where id = ?", product.getId());
+        JdbcTemplate shard0 = new JdbcTemplate(shards.getShard(0));
+
+        shard0.update("insert into shard_locks (name, owner, locked_until) values (?, ?, ?)",
+                "category-shard-sync", "other-instance", LocalDateTime.now().plusHours(1));
+        try {
+            replicator.synchronize();
+            assertEquals(1, countOn(wrongShard, "select count(*) from products where id = ?", product.getId()));
+        } finally {
+            shard0.update("delete from shard_locks where owner = ?", "other-instance");
+        }
+
+        replicator.synchronize();
+
+        assertEquals(0, countOn(wrongShard, "select count(*) from products where id = ?", product.getId()));
+        assertEquals(1, countOn(homeShard, "select count(*) from products where id = ? and stock = 4", product.getId()));
+        assertEquals(1, countOn(homeShard, "select count(*) from products where id = ?", placed.getId()));
+        assertEquals(0, countOn(0, "select count(*) from shard_locks"));
+    }
+
+    @Test
+    @DisplayName("stock deltas and deletes should reach products on every shard")
+    void applyStockDeltasAndDelete_shouldWorkAcrossShards() {
+        List<Category> categories = newCategories(3);
+        List<Product> products = new ArrayList<>();
+        for (Category category : categories) {
+            products.add(productService.createProduct(unique("Stock"), "Item", 5.0, 10, category.getId()));
+        }
+
+        productService.applyStockDeltas(Map.of(products.get(0).getId(), -3, products.get(1).getId(), 4, products.get(2).getId(), -10));
+
+        List<Integer> stocks = products.stream()
+                .map(product -> countOn(shards.shardFor(product.getCategory().getId()),
+                        "select stock from products where id = ?", product.getId()))
+                .toList();
+        assertEquals(List.of(7, 14, 0), stocks);
+        assertEquals(14, productService.getProductById(products.get(1).getId()).orElseThrow().getStock());
+
+        productService.deleteProduct(products.get(2).getId());
+        assertEquals(0, countOn(shards.shardFor(categories.get(2).getId()), "select count(*) from products where id = ?",
+                products.get(2).getId()));
+        assertTrue(productService.getProductById(products.get(2).getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("fluent findBy queries should run on every shard and merge like the other listings")
+    void findBy_shouldMergeFluentQueriesAcrossShards() {
+        List<Category> categories = newCategories(3);
+        String prefix = unique("Fluent");
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            created.add(productService.createProduct(prefix + i, "Item", 10.0 + i, i, categories.get(i % 3).getId()).getId());
+        }
+        Specification<Product> named = (root, query, cb) -> cb.like(root.get("name"), prefix + "%");
+        // Cada shard reparte IDs de su propio rango: sin Sort se unen en orden de ID
+        List<Long> byId = created.stream().sorted().toList();
+
+        assertEquals(byId, productRepository.findBy(named, query -> query.all()).stream().map(Product::getId).toList());
+        assertEquals(List.of(prefix + "5", prefix + "4"), productRepository.findBy(named,
+                query -> query.sortBy(Sort.by(Sort.Direction.DESC, "price")).limit(2).all()).stream().map(Product::getName).toList());
+        Page<Product> page = productRepository.findBy(named, query -> query.page(PageRequest.of(1, 4, Sort.by("price"))));
+        assertEquals(6, page.getTotalElements());
+        assertEquals(created.subList(4, 6), page.getContent().stream().map(Product::getId).toList());
+        long count = productRepository.findBy(named, query -> query.count());
+        boolean exists = productRepository.findBy(named, query -> query.exists());
+        assertEquals(6, count);
+        assertTrue(exists);
+        assertEquals(byId.get(0), productRepository.findBy(named, query -> query.firstValue()).getId());
+        assertEquals(prefix + "3", productRepository.findBy(
+                named.and((root, query, cb) -> cb.equal(root.get("stock"), 3)), query -> query.oneValue()).getName());
+    }
+
+    @Test
+    @DisplayName("a repository method without a sharding rule should be rejected at startup")
+    void checkRoutes_shouldRejectUnmergeableMethods() {
+        assertDoesNotThrow(() -> ShardedProductRepositoryInterceptor.checkRoutes(ProductRepository.class));
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> ShardedProductRepositoryInterceptor.checkRoutes(UnroutableRepository.class));
+        assertTrue(error.getMessage().contains("UnroutableRepository.averagePrice"));
+    }
+
+    interface UnroutableRepository extends ProductRepository {
+        Double averagePrice();
+    }
+
+    private List<Category> newCategories(int count) {
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            categories.add(categoryService.saveCategory(new Category(null, unique("Category"), "Test")));
+        }
+        return categories;
+    }
+
+    private int countOn(int shard, String sql, Object... arguments) {
+        return new JdbcTemplate(shards.getShard(shard)).queryForObject(sql, Integer.class, arguments);
+    }
+
+    private static String unique(String name) {
+        return name + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
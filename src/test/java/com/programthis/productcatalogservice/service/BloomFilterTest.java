@@ -0,0 +1,37 @@
+package com.programthis.productcatalogservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldHaveNoFalseNegativesAndFewFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("product-" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("product-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "Falsos positivos: " + falsePositives); // ~1 % esperado
+    }
+
+    @Test
+    void mightContain_WhenEmpty_ShouldRuleOutEverything() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+        assertFalse(filter.mightContain("Laptop"));
+        filter.add("Laptop");
+        assertTrue(filter.mightContain("Laptop"));
+        assertFalse(filter.mightContain("Mouse"));
+    }
+}
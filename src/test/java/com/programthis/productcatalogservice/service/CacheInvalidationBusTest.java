@@ -0,0 +1,316 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationBusTest {
+
+    @Mock
+    private InvalidationTransport transport;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private CacheInvalidationBus bus;
+
+    private final UUID peerId = UUID.randomUUID();
+    private Instant now = Instant.parse("2024-06-01T12:00:00Z");
+
+    @BeforeEach
+    void setUp() throws IOException {
+        setClock(now);
+        bus.start();
+    }
+
+    @Test
+    void flush_ShouldCoalesceWritesToTheSameKeyIntoOneMessage() throws IOException {
+        bus.onProductChanged(new ProductChangedEvent(null, product(1L, 10)));
+        bus.onProductChanged(new ProductChangedEvent(product(1L, 10), product(1L, 9)));
+        bus.onCategoryChanged(CategoryChangedEvent.deleted(3L));
+        bus.onProductChanged(new ProductChangedEvent(product(1L, 9), product(1L, 8)));
+
+        bus.flush();
+
+        List<InvalidationMessage> sent = sentMessages(1);
+        InvalidationMessage message = sent.get(0);
+        assertEquals(bus.getInstanceId(), message.getSenderId());
+        assertEquals(1, message.getSequence());
+        assertEquals(List.of(new InvalidationMessage.Entry(InvalidationMessage.Kind.PRODUCT, 1L, 4),
+                new InvalidationMessage.Entry(InvalidationMessage.Kind.CATEGORY, 3L, 3)), message.getEntries());
+    }
+
+    @Test
+    void flush_WithManyKeys_ShouldSplitIntoConsecutiveMessages() throws IOException {
+        LongStream.rangeClosed(1, InvalidationMessage.MAX_ENTRIES + 5)
+                .forEach(id -> bus.onProductChanged(new ProductChangedEvent(null, product(id, 1))));
+
+        bus.flush();
+
+        List<InvalidationMessage> sent = sentMessages(2);
+        assertEquals(InvalidationMessage.MAX_ENTRIES, sent.get(0).getEntries().size());
+        assertEquals(5, sent.get(1).getEntries().size());
+        assertEquals(List.of(1L, 2L), sent.stream().map(InvalidationMessage::getSequence).toList());
+    }
+
+    @Test
+    void flush_WithNothingPending_ShouldOnlySendHeartbeatsWhenDue() throws IOException {
+        bus.flush();
+        verify(transport, never()).send(any());
+
+        setClock(now.plusMillis(1250)); // max-staleness 5s / 4
+        bus.flush();
+
+        InvalidationMessage heartbeat = sentMessages(1).get(0);
+        assertTrue(heartbeat.getEntries().isEmpty());
+    }
+
+    @Test
+    void receive_ShouldRereadChangedRowsAndPublishLocalEvents() throws IOException {
+        ProductSnapshot cached = product(1L, 10);
+        ProductSnapshot current = product(1L, 7);
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.of(toProduct(cached)));
+        when(catalogCache.getProduct(2L)).thenReturn(Optional.of(toProduct(product(2L, 4))));
+        when(productRepository.findSnapshotsByIdIn(List.of(1L, 2L))).thenReturn(List.of(current));
+        // Los eventos que publica el bus llegan también a sus propios listeners
+        doAnswer(invocation -> {
+            bus.onProductChanged(invocation.getArgument(0));
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+
+        bus.receive(message(peerId, 1, productEntry(1L, 5), productEntry(2L, 6)));
+
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(cached, current));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(product(2L, 4), null)); // borrado en el otro nodo
+        bus.flush();
+        verify(transport, never()).send(any()); // no se reenvía lo recibido
+    }
+
+    @Test
+    void receive_ShouldPublishCategoryChangesBeforeProducts() {
+        when(catalogCache.getCategory(3L)).thenReturn(Optional.empty());
+        when(categoryRepository.findAllById(List.of(3L))).thenReturn(List.of(new Category(3L, "Garden", "Outdoor")));
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.empty());
+        ProductSnapshot created = new ProductSnapshot(1L, "Hose", "Garden hose", 15.0, 3, 3L);
+        when(productRepository.findSnapshotsByIdIn(List.of(1L))).thenReturn(List.of(created));
+
+        bus.receive(message(peerId, 1, productEntry(1L, 2),
+                new InvalidationMessage.Entry(InvalidationMessage.Kind.CATEGORY, 3L, 1)));
+
+        var inOrder = inOrder(eventPublisher);
+        inOrder.verify(eventPublisher).publishEvent(new CategoryChangedEvent(3L, "Garden", "Outdoor", false));
+        inOrder.verify(eventPublisher).publishEvent(new ProductChangedEvent(null, created));
+    }
+
+    @Test
+    void receive_WithOlderVersionFromSameSender_ShouldDropIt() {
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.of(toProduct(product(1L, 7))));
+        when(productRepository.findSnapshotsByIdIn(List.of(1L))).thenReturn(List.of(product(1L, 7)));
+
+        bus.receive(message(peerId, 2, productEntry(1L, 9)));
+        bus.receive(message(peerId, 1, productEntry(1L, 4))); // datagrama desordenado
+        bus.receive(message(peerId, 2, productEntry(1L, 9))); // duplicado
+
+        verify(productRepository, times(1)).findSnapshotsByIdIn(any());
+        verifyNoInteractions(eventPublisher); // la caché ya tenía el valor de la base de datos
+    }
+
+    @Test
+    void receive_ShouldIgnoreOwnMessagesAndGarbage() {
+        bus.receive(message(bus.getInstanceId(), 1, productEntry(1L, 1)));
+        bus.receive(new byte[]{1, 2, 3});
+
+        verifyNoInteractions(productRepository, eventPublisher);
+    }
+
+    @Test
+    void checkPeers_WithLostMessage_ShouldResyncFromLastConsistentPoint() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        bus.receive(message(peerId, 1));
+        Instant consistentAt = now;
+
+        setClock(now.plusSeconds(1));
+        bus.receive(message(peerId, 3)); // falta el 2
+        bus.checkPeers(now.plusSeconds(1));
+        verify(productRepository, never()).findSnapshotsUpdatedSince(any()); // aún puede llegar desordenado
+
+        setClock(now.plusSeconds(2));
+        bus.checkPeers(now.plusSeconds(2));
+
+        Instant since = consistentAt.minusSeconds(30);
+        verify(categoryRepository).findSnapshotsUpdatedSince(since);
+        verify(productRepository).findSnapshotsUpdatedSince(since);
+    }
+
+    @Test
+    void checkPeers_WithReorderedMessage_ShouldNotResync() {
+        bus.receive(message(peerId, 1));
+        bus.receive(message(peerId, 3));
+        bus.receive(message(peerId, 2));
+
+        setClock(now.plusSeconds(1));
+        bus.checkPeers(now.plusSeconds(1));
+        setClock(now.plusSeconds(2));
+        bus.checkPeers(now.plusSeconds(2));
+
+        verifyNoInteractions(productRepository, categoryRepository);
+    }
+
+    @Test
+    void checkPeers_WithSilentPeer_ShouldResyncOnceAndAgainWhenItIsForgotten() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        bus.receive(message(peerId, 1));
+
+        bus.checkPeers(now.plusSeconds(2)); // un latido perdido: aún no
+        verify(productRepository, never()).findSnapshotsUpdatedSince(any());
+
+        bus.checkPeers(now.plusSeconds(3));
+        bus.checkPeers(now.plusSeconds(4));
+        bus.checkPeers(now.plusSeconds(5));
+        verify(productRepository, times(1)).findSnapshotsUpdatedSince(now.minusSeconds(30));
+
+        bus.checkPeers(now.plusSeconds(5 * CacheInvalidationBus.PEER_EXPIRY_FACTOR + 1));
+        verify(productRepository, times(2)).findSnapshotsUpdatedSince(now.minusSeconds(30));
+        bus.checkPeers(now.plusSeconds(5 * CacheInvalidationBus.PEER_EXPIRY_FACTOR + 2));
+        verify(productRepository, times(2)).findSnapshotsUpdatedSince(any());
+    }
+
+    @Test
+    void checkPeers_WhenSilentPeerIsHeardAgainWithAGap_ShouldResyncFromWhenItWentQuiet() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        bus.receive(message(peerId, 1));
+        Instant quietSince = now;
+        bus.checkPeers(now.plusSeconds(3));
+        verify(productRepository, times(1)).findSnapshotsUpdatedSince(any());
+
+        setClock(now.plusSeconds(10));
+        bus.receive(message(peerId, 2)); // sin hueco: solo estaba callada
+        bus.checkPeers(now.plusSeconds(1));
+        setClock(now.plusSeconds(10));
+        bus.receive(message(peerId, 5)); // aislada: se perdieron el 3 y el 4
+        bus.checkPeers(now.plusSeconds(1));
+        bus.checkPeers(now.plusSeconds(2));
+
+        verify(productRepository, times(2)).findSnapshotsUpdatedSince(any());
+        verify(productRepository).findSnapshotsUpdatedSince(quietSince.plusSeconds(10).minusSeconds(30));
+    }
+
+    @Test
+    void resync_ShouldPublishUpdatedAndDeletedRows() {
+        ProductSnapshot kept = product(1L, 5);
+        ProductSnapshot deleted = product(2L, 8);
+        when(catalogCache.isLoaded()).thenReturn(true);
+        Instant since = now.minusSeconds(30);
+        when(categoryRepository.findIdsDeletedSince(since)).thenReturn(List.of(4L));
+        when(catalogCache.getCategory(4L)).thenReturn(Optional.of(new Category(4L, "Old", null)));
+        when(productRepository.findSnapshotsUpdatedSince(since)).thenReturn(List.of(product(1L, 2)));
+        when(productRepository.findIdsDeletedSince(since)).thenReturn(List.of(2L, 3L));
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.of(toProduct(kept)));
+        when(catalogCache.getProduct(2L)).thenReturn(Optional.of(toProduct(deleted)));
+        when(catalogCache.getProduct(3L)).thenReturn(Optional.empty()); // ya se había aplicado
+
+        bus.resync(now);
+
+        verify(eventPublisher).publishEvent(CategoryChangedEvent.deleted(4L));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(kept, product(1L, 2)));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(deleted, null));
+        verifyNoMoreInteractions(eventPublisher);
+        verify(productRepository, never()).findAllIds();
+        verify(categoryRepository, never()).findAllIds();
+    }
+
+    @Test
+    void udpTransport_ShouldDeliverDatagramsBetweenSocketsOnLoopback() throws Exception {
+        InetSocketAddress loopback = new InetSocketAddress("127.0.0.1", 0);
+        try (UdpInvalidationTransport receiver = new UdpInvalidationTransport(loopback, List.of())) {
+            BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(1);
+            receiver.start(received::add);
+            try (UdpInvalidationTransport sender = new UdpInvalidationTransport(loopback, List.of(receiver.getLocalAddress()))) {
+                byte[] datagram = new InvalidationMessage(peerId, 7, List.of(productEntry(42L, 3))).encode();
+                sender.send(datagram);
+
+                byte[] delivered = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(delivered);
+                InvalidationMessage message = InvalidationMessage.decode(delivered);
+                assertEquals(peerId, message.getSenderId());
+                assertEquals(7, message.getSequence());
+                assertEquals(List.of(productEntry(42L, 3)), message.getEntries());
+            }
+        }
+    }
+
+    private List<InvalidationMessage> sentMessages(int expected) throws IOException {
+        ArgumentCaptor<byte[]> datagrams = ArgumentCaptor.forClass(byte[].class);
+        verify(transport, times(expected)).send(datagrams.capture());
+        List<InvalidationMessage> messages = new ArrayList<>();
+        for (byte[] datagram : datagrams.getAllValues()) {
+            messages.add(InvalidationMessage.decode(datagram));
+        }
+        return messages;
+    }
+
+    private void setClock(Instant instant) {
+        now = instant;
+        ReflectionTestUtils.setField(bus, "clock", Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+    private static byte[] message(UUID senderId, long sequence, InvalidationMessage.Entry... entries) {
+        return new InvalidationMessage(senderId, sequence, List.of(entries)).encode();
+    }
+
+    private static InvalidationMessage.Entry productEntry(long id, long version) {
+        return new InvalidationMessage.Entry(InvalidationMessage.Kind.PRODUCT, id, version);
+    }
+
+    private static ProductSnapshot product(Long id, int stock) {
+        return new ProductSnapshot(id, "Product " + id, "Description", 10.0, stock, 1L);
+    }
+
+    private static Product toProduct(ProductSnapshot snapshot) {
+        return new Product(snapshot.getId(), snapshot.getName(), snapshot.getDescription(), snapshot.getPrice(),
+                snapshot.getStock(), new Category(snapshot.getCategoryId(), "Category", null));
+    }
+}
@@ -0,0 +1,196 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private CatalogCache catalogCache;
+
+    private Path snapshotPath;
+    private final Instant now = Instant.parse("2024-06-01T12:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        snapshotPath = tempDir.resolve("catalog.snapshot");
+        ReflectionTestUtils.setField(catalogCache, "snapshotPath", snapshotPath);
+        ReflectionTestUtils.setField(catalogCache, "clock", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void warmUp_WithoutSnapshot_ShouldLoadWholeCatalogFromDatabase() {
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(new CategorySnapshot(1L, "Electronics", null)));
+        when(productRepository.findSnapshotsAfterId(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(product(1L, 10), product(2L, 5)));
+
+        catalogCache.warmUp();
+
+        assertTrue(catalogCache.isLoaded());
+        assertEquals(2, catalogCache.getProducts().size());
+        Product laptop = catalogCache.getProduct(1L).orElseThrow();
+        assertEquals("Product 1", laptop.getName());
+        assertEquals("Electronics", laptop.getCategory().getName());
+        verify(productRepository, never()).findSnapshotsUpdatedSince(any());
+    }
+
+    @Test
+    void warmUp_WithSnapshot_ShouldOnlyQueryChangesAndReconcile() throws IOException {
+        Instant createdAt = now.minus(Duration.ofHours(1));
+        CatalogSnapshotFile.write(snapshotPath, createdAt, List.of(new CategorySnapshot(1L, "Electronics", null)),
+                List.of(product(1L, 10), product(2L, 5), product(3L, 1)));
+        Instant since = createdAt.minus(Duration.ofMinutes(1));
+        when(categoryRepository.findSnapshotsUpdatedSince(since)).thenReturn(List.of());
+        when(categoryRepository.findAllIds()).thenReturn(List.of(1L));
+        // 1 modificado, 2 borrado, 4 nuevo sin updated_at
+        when(productRepository.findSnapshotsUpdatedSince(since)).thenReturn(List.of(product(1L, 99)));
+        when(productRepository.findAllIds()).thenReturn(List.of(1L, 3L, 4L));
+        when(productRepository.findSnapshotsByIdIn(List.of(4L))).thenReturn(List.of(product(4L, 2)));
+
+        catalogCache.warmUp();
+
+        assertEquals(99, catalogCache.getProduct(1L).orElseThrow().getStock());
+        assertTrue(catalogCache.getProduct(2L).isEmpty());
+        assertEquals(1, catalogCache.getProduct(3L).orElseThrow().getStock());
+        assertEquals(2, catalogCache.getProduct(4L).orElseThrow().getStock());
+        verify(productRepository, never()).findSnapshotsAfterId(anyLong(), any());
+        verify(categoryRepository, never()).findAllSnapshots();
+    }
+
+    @Test
+    void warmUp_WhenSnapshotCorrupted_ShouldFallBackToDatabase() throws IOException {
+        Files.write(snapshotPath, new byte[]{1, 2, 3});
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(new CategorySnapshot(1L, "Electronics", null)));
+        when(productRepository.findSnapshotsAfterId(eq(0L), any(Pageable.class))).thenReturn(List.of(product(1L, 10)));
+
+        catalogCache.warmUp();
+
+        assertTrue(catalogCache.getProduct(1L).isPresent());
+    }
+
+    @Test
+    void writeSnapshotOnShutdown_ShouldPersistCurrentState() throws IOException {
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(new CategorySnapshot(1L, "Electronics", null)));
+        when(productRepository.findSnapshotsAfterId(eq(0L), any(Pageable.class))).thenReturn(List.of(product(1L, 10)));
+        catalogCache.warmUp();
+        catalogCache.onProductChanged(new ProductChangedEvent(null, product(2L, 3)));
+
+        catalogCache.writeSnapshotOnShutdown();
+
+        CatalogSnapshotFile.Contents contents = CatalogSnapshotFile.read(snapshotPath);
+        assertEquals(now, contents.getCreatedAt());
+        assertEquals(2, contents.getProducts().size());
+        assertEquals(1, contents.getCategories().size());
+    }
+
+    @Test
+    void events_ShouldKeepCacheCurrent() {
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(
+                new CategorySnapshot(1L, "Electronics", null), new CategorySnapshot(2L, "Toys", null)));
+        when(productRepository.findSnapshotsAfterId(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(product(1L, 10), new ProductSnapshot(2L, "Ball", "Red", 3.0, 1, 2L)));
+        catalogCache.warmUp();
+
+        catalogCache.onProductChanged(new ProductChangedEvent(product(1L, 10), product(1L, 4)));
+        catalogCache.onCategoryChanged(new CategoryChangedEvent(1L, "Gadgets", "New name", false));
+        assertEquals(4, catalogCache.getProduct(1L).orElseThrow().getStock());
+        assertEquals("Gadgets", catalogCache.getProduct(1L).orElseThrow().getCategory().getName());
+
+        catalogCache.onCategoryChanged(CategoryChangedEvent.deleted(2L));
+        assertTrue(catalogCache.getCategory(2L).isEmpty());
+        assertTrue(catalogCache.getProduct(2L).isEmpty());
+
+        catalogCache.onProductChanged(new ProductChangedEvent(product(1L, 4), null));
+        assertTrue(catalogCache.getProduct(1L).isEmpty());
+        assertEquals(Set.of(1L), Set.copyOf(catalogCache.getCategories().stream().map(CategorySnapshot::getId).toList()));
+    }
+
+    @Test
+    void refresh_ShouldPublishChangesAndLoggedDeletionsWithoutScanningIds() {
+        ReflectionTestUtils.setField(catalogCache, "snapshotEnabled", false);
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(
+                new CategorySnapshot(1L, "Electronics", null), new CategorySnapshot(2L, "Toys", null)));
+        when(productRepository.findSnapshotsAfterId(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(product(1L, 10), product(2L, 5)));
+        catalogCache.warmUp();
+        // Los eventos llegan a los listeners de la propia caché, como con Spring
+        doAnswer(invocation -> {
+            Object event = invocation.getArgument(0);
+            assertTrue(catalogCache.isReconciling());
+            if (event instanceof ProductChangedEvent productEvent) {
+                catalogCache.onProductChanged(productEvent);
+            } else {
+                catalogCache.onCategoryChanged((CategoryChangedEvent) event);
+            }
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+        Instant since = now.minus(Duration.ofMinutes(1));
+        when(categoryRepository.findSnapshotsUpdatedSince(since)).thenReturn(List.of(new CategorySnapshot(3L, "Garden", null)));
+        when(categoryRepository.findIdsDeletedSince(since)).thenReturn(List.of(2L));
+        ProductSnapshot created = new ProductSnapshot(3L, "Hose", "Garden hose", 15.0, 3, 3L);
+        when(productRepository.findSnapshotsUpdatedSince(since)).thenReturn(List.of(product(1L, 10), product(2L, 5), created));
+        when(productRepository.findIdsDeletedSince(since)).thenReturn(List.of(1L, 99L));
+
+        catalogCache.refresh();
+
+        // Solo lo que difiere de la caché: el producto 1 sin cambios no se publica hasta que se borra
+        verify(eventPublisher).publishEvent(new CategoryChangedEvent(3L, "Garden", null, false));
+        verify(eventPublisher).publishEvent(CategoryChangedEvent.deleted(2L));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(null, created));
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(product(1L, 10), null));
+        verifyNoMoreInteractions(eventPublisher);
+        assertEquals(Set.of(2L, 3L), Set.copyOf(catalogCache.getProducts().stream().map(ProductSnapshot::getId).toList()));
+        assertFalse(catalogCache.isReconciling());
+        verify(productRepository, never()).findAllIds();
+        verify(categoryRepository, never()).findAllIds();
+        verify(productRepository).deleteDeletionsBefore(now.minus(Duration.ofDays(1)));
+    }
+
+    private static ProductSnapshot product(Long id, int stock) {
+        return new ProductSnapshot(id, "Product " + id, "Description", 10.0 * id, stock, 1L);
+    }
+}
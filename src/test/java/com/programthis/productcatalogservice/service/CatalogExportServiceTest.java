@@ -0,0 +1,208 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.repository.ProductRepositoryCustom.ExportRow;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogExportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @InjectMocks
+    private CatalogExportService exportService;
+
+    private final Instant watermark = Instant.parse("2024-06-01T12:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(exportService, "batchRows", 2);
+        ReflectionTestUtils.setField(exportService, "clock", Clock.fixed(watermark, ZoneOffset.UTC));
+        when(categoryRepository.findAllSnapshots()).thenReturn(List.of(
+                new CategorySnapshot(10L, "Electronics", "Devices"), new CategorySnapshot(20L, "Books", "Reading")));
+    }
+
+    @Test
+    void export_ShouldWriteRowsInBatchesWithDictionaryEncodedCategoryNames() throws IOException {
+        List<ExportRow> rows = List.of(
+                row(1L, "Laptop", 10L, Instant.parse("2024-05-01T10:00:00Z")),
+                row(2L, "Novel", 20L, null),
+                row(3L, "Phone", 10L, Instant.parse("2024-05-02T10:00:00Z")),
+                row(4L, "Orphan", 99L, Instant.parse("2024-05-03T10:00:00Z"))); // categoría creada durante la exportación
+        streamRows(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CatalogExportService.ExportResult result = exportService.export(null, watermark, out);
+
+        assertEquals(4, result.getRows());
+        assertEquals(2, result.getBatches());
+        Exported exported = read(out.toByteArray());
+        assertEquals(List.of(2, 2), exported.batchSizes);
+        assertEquals(watermark.toString(), exported.metadata.get(CatalogExportService.WATERMARK_METADATA));
+        assertFalse(exported.metadata.containsKey(CatalogExportService.SINCE_METADATA));
+        assertEquals(List.of(1L, 2L, 3L, 4L), exported.column("id"));
+        assertEquals(List.of("Laptop", "Novel", "Phone", "Orphan"), exported.column("name"));
+        assertEquals(List.of(5, 5, 5, 5), exported.column("stock"));
+        assertEquals(List.of(10L, 20L, 10L, 99L), exported.column("category_id"));
+        assertEquals(List.of(0, 1, 0), exported.column("category_name").subList(0, 3)); // índices del diccionario
+        assertEquals(Arrays.asList("Electronics", "Books", "Electronics", null), exported.categoryNames);
+        assertEquals(Arrays.asList(Instant.parse("2024-05-01T10:00:00Z").toEpochMilli(), null),
+                exported.column("updated_at").subList(0, 2));
+    }
+
+    @Test
+    void export_Incremental_ShouldAskOnlyForRowsChangedSinceWatermarkMinusMargin() throws IOException {
+        Instant since = Instant.parse("2024-06-01T10:00:00Z");
+        streamRows(List.of(row(7L, "Lamp", 10L, Instant.parse("2024-06-01T11:00:00Z"))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(since, watermark, out);
+
+        verify(productRepository).streamExportRows(eq(since.minusSeconds(60)), any());
+        Exported exported = read(out.toByteArray());
+        assertEquals(since.toString(), exported.metadata.get(CatalogExportService.SINCE_METADATA));
+        assertEquals(List.of(7L), exported.column("id"));
+    }
+
+    @Test
+    void export_Incremental_ShouldAppendTombstonesForDeletionsInTheirOwnBatches() throws IOException {
+        Instant since = Instant.parse("2024-06-01T10:00:00Z");
+        streamRows(List.of(row(7L, "Lamp", 10L, Instant.parse("2024-06-01T11:00:00Z"))));
+        when(categoryRepository.findIdsDeletedSince(since.minusSeconds(60))).thenReturn(List.of(20L));
+        when(productRepository.findIdsDeletedSince(since.minusSeconds(60))).thenReturn(List.of(3L, 4L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CatalogExportService.ExportResult result = exportService.export(since, watermark, out);
+
+        assertEquals(1, result.getRows());
+        assertEquals(3, result.getDeletions());
+        Exported exported = read(out.toByteArray());
+        assertEquals(List.of(1, 2, 1), exported.batchSizes);
+        assertEquals(Arrays.asList(7L, null, 3L, 4L), exported.column("id"));
+        assertEquals(Arrays.asList(10L, 20L, null, null), exported.column("category_id")); // categoría borrada entera
+        assertEquals(List.of("false", "true", "true", "true"), exported.column("deleted"));
+        assertEquals(Arrays.asList("Lamp", null, null, null), exported.column("name"));
+    }
+
+    @Test
+    void export_WhenSinceIsOlderThanDeletionRetention_ShouldFallBackToAFullExport() throws IOException {
+        Instant since = watermark.minus(Duration.ofDays(2));
+        streamRows(List.of(row(1L, "Laptop", 10L, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CatalogExportService.ExportResult result = exportService.export(since, watermark, out);
+
+        assertNull(result.getSince());
+        verify(productRepository).streamExportRows(isNull(), any());
+        verify(productRepository, never()).findIdsDeletedSince(any());
+        Exported exported = read(out.toByteArray());
+        assertFalse(exported.metadata.containsKey(CatalogExportService.SINCE_METADATA));
+        assertEquals(List.of(1L), exported.column("id"));
+    }
+
+    @Test
+    void export_WithNoRows_ShouldStillWriteSchemaAndAnEmptyBatch() throws IOException {
+        streamRows(List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CatalogExportService.ExportResult result = exportService.export(null, watermark, out);
+
+        assertEquals(0, result.getRows());
+        Exported exported = read(out.toByteArray());
+        assertEquals(List.of(0), exported.batchSizes);
+        assertEquals(9, exported.fields.size());
+    }
+
+    private void streamRows(List<ExportRow> rows) {
+        doAnswer(invocation -> {
+            rows.forEach(invocation.<Consumer<ExportRow>>getArgument(1));
+            return null;
+        }).when(productRepository).streamExportRows(any(), any());
+    }
+
+    private static ExportRow row(long id, String name, long categoryId, Instant updatedAt) {
+        return new ExportRow(id, name, name + " description", 9.5, 5, categoryId, updatedAt);
+    }
+
+    // Lee el stream con el lector de Arrow y decodifica la columna del diccionario
+    private static Exported read(byte[] bytes) throws IOException {
+        Exported exported = new Exported();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            exported.metadata = root.getSchema().getCustomMetadata();
+            root.getSchema().getFields().forEach(field -> exported.fields.add(field.getName()));
+            while (reader.loadNextBatch()) {
+                exported.batchSizes.add(root.getRowCount());
+                for (FieldVector vector : root.getFieldVectors()) {
+                    for (int i = 0; i < root.getRowCount(); i++) {
+                        Object value = vector.getObject(i);
+                        exported.columns.computeIfAbsent(vector.getName(), name -> new ArrayList<>())
+                                .add(value != null && !(value instanceof Number) ? value.toString() : value);
+                    }
+                }
+                FieldVector indexes = root.getVector("category_name");
+                Dictionary dictionary = reader.getDictionaryVectors().get(indexes.getField().getDictionary().getId());
+                try (ValueVector decoded = DictionaryEncoder.decode(indexes, dictionary)) {
+                    for (int i = 0; i < decoded.getValueCount(); i++) {
+                        Object value = decoded.getObject(i);
+                        exported.categoryNames.add(value != null ? value.toString() : null);
+                    }
+                }
+            }
+        }
+        return exported;
+    }
+
+    private static class Exported {
+        Map<String, String> metadata;
+        final List<String> fields = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        final Map<String, List<Object>> columns = new HashMap<>();
+        final List<String> categoryNames = new ArrayList<>();
+
+        List<Object> column(String name) {
+            return columns.get(name);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.CatalogQueryService.CatalogQuery;
+import com.programthis.productcatalogservice.service.CatalogQueryService.CategorySelection;
+import com.programthis.productcatalogservice.service.CatalogQueryService.ProductSelection;
+import com.programthis.productcatalogservice.service.CatalogQueryService.ProductsOfCategory;
+import com.programthis.productcatalogservice.service.CatalogQueryService.QueryResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogQueryServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private CategoryService categoryService;
+
+    @InjectMocks
+    private CatalogQueryService catalogQueryService;
+
+    private Category electronics;
+    private Category books;
+    private Product laptop;
+    private Product mouse;
+    private Product novel;
+
+    @BeforeEach
+    void setUp() {
+        electronics = new Category(1L, "Electronics");
+        books = new Category(2L, "Books");
+        laptop = new Product(10L, "Laptop", "High-end laptop", 999.99, 10, electronics);
+        mouse = new Product(11L, "Mouse", "Wireless mouse", 25.0, 50, electronics);
+        novel = new Product(20L, "Novel", "Paperback", 12.5, 5, books);
+    }
+
+    @Test
+    void execute_WithNestedSelections_ShouldResolveEachLevelInOneBatch() {
+        when(categoryService.getCategoriesByIds(Set.of(1L, 3L))).thenReturn(Map.of(1L, electronics));
+        when(productService.getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY)).thenReturn(Map.of(1L, List.of(laptop, mouse)));
+        when(productService.getProductsByIds(Set.of(20L, 99L))).thenReturn(Map.of(20L, novel));
+        when(categoryService.getCategoriesByIds(Set.of(2L))).thenReturn(Map.of(2L, books));
+
+        // El 10 ya sale con su categoría y la categoría 1 ya está leída: ninguno se vuelve a pedir
+        QueryResult result = catalogQueryService.execute(query(List.of(1L, 3L), null, List.of(10L, 20L, 99L), true));
+
+        assertEquals(1, result.getCategories().size());
+        assertEquals(List.of(10L, 11L), result.getCategories().get(0).getProducts().stream().map(p -> p.getId()).toList());
+        assertEquals(List.of(10L, 20L), result.getProducts().stream().map(p -> p.getId()).toList());
+        assertEquals("Electronics", result.getProducts().get(0).getCategory().getName());
+        assertEquals("Books", result.getProducts().get(1).getCategory().getName());
+        assertEquals(List.of(3L), result.getMissingCategoryIds());
+        assertEquals(List.of(99L), result.getMissingProductIds());
+        verify(categoryService, times(2)).getCategoriesByIds(any());
+        verify(productService, times(1)).getProductsByCategoryIds(any(), any());
+        verify(productService, times(1)).getProductsByIds(any());
+    }
+
+    @Test
+    void execute_WhenEverythingIsAlreadyLoaded_ShouldNotQueryAgain() {
+        when(categoryService.getCategoriesByIds(Set.of(1L))).thenReturn(Map.of(1L, electronics));
+        when(productService.getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY)).thenReturn(Map.of(1L, List.of(laptop, mouse)));
+
+        QueryResult result = catalogQueryService.execute(query(List.of(1L, 1L), null, List.of(11L, 10L, 11L), true));
+
+        assertEquals(2, result.getCategories().size());
+        assertEquals(List.of(11L, 10L, 11L), result.getProducts().stream().map(p -> p.getId()).toList());
+        verify(categoryService, times(1)).getCategoriesByIds(any());
+        verify(productService, never()).getProductsByIds(any());
+    }
+
+    @Test
+    void execute_WithoutCategoryIds_ShouldListAllCategoriesAndApplyLimit() {
+        when(categoryService.getAllCategories()).thenReturn(List.of(electronics, books));
+        Map<Long, List<Product>> byCategory = new LinkedHashMap<>();
+        byCategory.put(1L, List.of(laptop));
+        when(productService.getProductsByCategoryIds(Set.of(1L, 2L), 1)).thenReturn(byCategory);
+
+        QueryResult result = catalogQueryService.execute(query(null, 1, null, false));
+
+        assertEquals(List.of(1L, 2L), result.getCategories().stream().map(c -> c.getId()).toList());
+        assertEquals(List.of(10L), result.getCategories().get(0).getProducts().stream().map(p -> p.getId()).toList());
+        assertTrue(result.getCategories().get(1).getProducts().isEmpty());
+        assertTrue(result.getProducts().isEmpty());
+        verify(categoryService, never()).getCategoriesByIds(any());
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    void execute_WithoutCategoryIds_ShouldCapProductsPerCategory() {
+        when(categoryService.getAllCategories()).thenReturn(List.of(electronics));
+        when(productService.getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY))
+                .thenReturn(Map.of(1L, List.of(laptop, mouse)));
+
+        catalogQueryService.execute(query(null, null, null, false));
+        catalogQueryService.execute(query(null, 10_000, null, false));
+
+        verify(productService, times(2))
+                .getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY);
+    }
+
+    @Test
+    void execute_WithCategoryIds_ShouldAlsoCapProductsPerCategory() {
+        when(categoryService.getCategoriesByIds(Set.of(1L))).thenReturn(Map.of(1L, electronics));
+        when(productService.getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY))
+                .thenReturn(Map.of(1L, List.of(laptop, mouse)));
+
+        catalogQueryService.execute(query(List.of(1L), null, null, false));
+        catalogQueryService.execute(query(List.of(1L), 10_000, null, false));
+
+        verify(productService, times(2))
+                .getProductsByCategoryIds(Set.of(1L), CatalogQueryService.MAX_PRODUCTS_PER_CATEGORY);
+    }
+
+    @Test
+    void execute_WithoutProductsOrCategory_ShouldOnlyReadTheRoots() {
+        when(productService.getProductsByIds(Set.of(10L))).thenReturn(Map.of(10L, laptop));
+
+        QueryResult result = catalogQueryService.execute(query(null, null, List.of(10L), false));
+
+        assertNull(result.getProducts().get(0).getCategory());
+        assertEquals(1L, result.getProducts().get(0).getCategoryId());
+        verifyNoInteractions(categoryService);
+    }
+
+    @Test
+    void execute_WithInvalidQuery_ShouldThrowException() {
+        List<Long> tooMany = LongStream.rangeClosed(1, CatalogQueryService.MAX_IDS + 1).boxed().toList();
+
+        assertThrows(IllegalArgumentException.class, () -> catalogQueryService.execute(new CatalogQuery()));
+        assertThrows(IllegalArgumentException.class, () -> catalogQueryService.execute(query(null, null, tooMany, false)));
+        assertThrows(IllegalArgumentException.class, () -> catalogQueryService.execute(query(null, -1, null, false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> catalogQueryService.execute(query(null, null, Collections.singletonList(null), false)));
+        verifyNoInteractions(productService, categoryService);
+    }
+
+    // categoryIds null sin productIds: solo categorías; limit null sin productos de la categoría salvo que se pida limit
+    private static CatalogQuery query(List<Long> categoryIds, Integer limit, List<Long> productIds, boolean withCategory) {
+        CatalogQuery query = new CatalogQuery();
+        if (categoryIds != null || limit != null || productIds == null) {
+            CategorySelection categories = new CategorySelection();
+            categories.setIds(categoryIds);
+            ProductsOfCategory products = new ProductsOfCategory();
+            products.setLimit(limit);
+            categories.setProducts(products);
+            query.setCategories(categories);
+        }
+        if (productIds != null) {
+            ProductSelection products = new ProductSelection();
+            products.setIds(productIds);
+            products.setCategory(withCategory);
+            query.setProducts(products);
+        }
+        return query;
+    }
+}
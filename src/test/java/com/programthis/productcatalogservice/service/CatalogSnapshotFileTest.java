@@ -0,0 +1,70 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Instant createdAt = Instant.parse("2024-06-01T10:15:30.123Z");
+    private final List<CategorySnapshot> categories = List.of(
+            new CategorySnapshot(1L, "Electrónica", "Móviles y portátiles"),
+            new CategorySnapshot(2L, "Sin descripción", null));
+    private final List<ProductSnapshot> products = List.of(
+            new ProductSnapshot(10L, "Laptop", "High-end laptop", 999.99, 7, 1L),
+            new ProductSnapshot(11L, "Cámara ñandú", "", 0.5, 0, 2L));
+
+    @Test
+    void writeAndRead_ShouldRoundTripCatalog() throws IOException {
+        Path path = tempDir.resolve("catalog.snapshot");
+        CatalogSnapshotFile.write(path, createdAt, categories, products);
+
+        CatalogSnapshotFile.Contents contents = CatalogSnapshotFile.read(path);
+
+        assertEquals(createdAt, contents.getCreatedAt());
+        assertEquals(categories, contents.getCategories());
+        assertEquals(products, contents.getProducts());
+        assertFalse(Files.exists(tempDir.resolve("catalog.snapshot.tmp")));
+    }
+
+    @Test
+    void read_WhenContentCorrupted_ShouldFailChecksum() throws IOException {
+        Path path = tempDir.resolve("catalog.snapshot");
+        CatalogSnapshotFile.write(path, createdAt, categories, products);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(path, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> CatalogSnapshotFile.read(path));
+        assertTrue(e.getMessage().contains("CRC"));
+    }
+
+    @Test
+    void read_WhenTruncatedOrOtherVersion_ShouldFail() throws IOException {
+        Path path = tempDir.resolve("catalog.snapshot");
+        CatalogSnapshotFile.write(path, createdAt, categories, products);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Files.write(path, Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.read(path));
+
+        ByteBuffer.wrap(bytes).putInt(4, CatalogSnapshotFile.VERSION + 1);
+        Files.write(path, bytes);
+        IOException e = assertThrows(IOException.class, () -> CatalogSnapshotFile.read(path));
+        assertTrue(e.getMessage().contains("Versión"));
+    }
+}
@@ -1,6 +1,9 @@
 package com.programthis.productcatalogservice.service;
 
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.model.CatalogDeletion;
 import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.repository.CatalogDeletionRepository;
 import com.programthis.productcatalogservice.repository.CategoryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,12 +11,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,6 +31,18 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @Mock
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @Mock
+    private CatalogDeletionRepository deletionRepository;
+
     @InjectMocks
     private CategoryService categoryService;
 
@@ -58,6 +79,17 @@ class CategoryServiceTest {
         verify(categoryRepository, times(1)).findById(1L);
     }
 
+    @Test
+    void getCategoryById_WhenCached_ShouldNotQueryRepository() {
+        ReflectionTestUtils.setField(categoryService, "serveReadsFromCache", true);
+        when(catalogCache.getCategory(1L)).thenReturn(Optional.of(category));
+
+        Optional<Category> result = categoryService.getCategoryById(1L);
+
+        assertTrue(result.isPresent());
+        verify(categoryRepository, never()).findById(1L);
+    }
+
     @Test
     void getCategoryById_WhenCategoryDoesNotExist_ShouldReturnEmpty() {
         when(categoryRepository.findById(1L)).thenReturn(Optional.empty());
@@ -80,6 +112,27 @@ class CategoryServiceTest {
         verify(categoryRepository, times(1)).save(category);
     }
 
+    @Test
+    void saveCategory_WhenNameIsTaken_ShouldThrowBeforeWriting() {
+        Category duplicate = new Category(null, "Electronics", "Copy");
+        doThrow(new DuplicateNameException("una categoría", "Electronics"))
+                .when(duplicateNameGuard).checkCategoryName("Electronics", null);
+
+        assertThrows(DuplicateNameException.class, () -> categoryService.saveCategory(duplicate));
+        verify(categoryRepository, never()).save(any(Category.class));
+    }
+
+    @Test
+    void saveCategory_WhenNameDoesNotChange_ShouldNotCheckIt() {
+        ReflectionTestUtils.setField(categoryService, "serveReadsFromCache", true);
+        when(catalogCache.getCategory(1L)).thenReturn(Optional.of(new Category(1L, "Electronics")));
+        when(categoryRepository.save(any(Category.class))).thenReturn(category);
+
+        categoryService.saveCategory(category);
+
+        verifyNoInteractions(duplicateNameGuard);
+    }
+
     // Test para deleteCategory
     @Test
     void deleteCategory_ShouldDeleteCategory() {
@@ -89,4 +142,67 @@ class CategoryServiceTest {
 
         verify(categoryRepository, times(1)).deleteById(1L);
     }
-}
\ No newline at end of file
+
+    // Test para patchCategory
+    @Test
+    void patchCategory_ShouldOnlyChangeFieldsPresentInPatch() {
+        category.setDescription("Devices");
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("description", null);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(category));
+        when(categoryRepository.save(any(Category.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Optional<Category> result = categoryService.patchCategory(1L, patch);
+
+        assertTrue(result.isPresent());
+        assertEquals("Electronics", result.get().getName());
+        assertNull(result.get().getDescription());
+    }
+
+    @Test
+    void patchCategory_WhenNameIsNull_ShouldThrowException() {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("name", null);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(category));
+
+        assertThrows(RuntimeException.class, () -> categoryService.patchCategory(1L, patch));
+        verify(categoryRepository, never()).save(any(Category.class));
+    }
+
+    // Tests de los eventos que alimentan los índices en memoria
+    @Test
+    void saveCategory_ShouldPublishEvent() {
+        when(categoryRepository.save(any(Category.class))).thenReturn(category);
+
+        categoryService.saveCategory(category);
+
+        verify(eventPublisher, times(1)).publishEvent(CategoryChangedEvent.saved(category));
+    }
+
+    @Test
+    void deleteCategory_ShouldPublishDeletedEvent() {
+        categoryService.deleteCategory(1L);
+
+        verify(eventPublisher, times(1)).publishEvent(CategoryChangedEvent.deleted(1L));
+        verify(deletionRepository).save(argThat(deletion ->
+                deletion.getKind() == CatalogDeletion.Kind.CATEGORY && deletion.getEntityId().equals(1L)));
+    }
+
+    // Tests para las lecturas con ?fields=
+    @Test
+    void getCategoryFieldsById_ShouldReturnRequestedFields() {
+        when(categoryRepository.findFields(eq(List.of("id", "name")), any(), any(Pageable.class)))
+                .thenReturn(List.of(Map.of("id", 1L, "name", "Electronics")));
+
+        Optional<Map<String, Object>> result = categoryService.getCategoryFieldsById(1L, "name");
+
+        assertTrue(result.isPresent());
+        assertEquals("Electronics", result.get().get("name"));
+    }
+
+    @Test
+    void getAllCategoryFields_WhenFieldIsUnknown_ShouldThrowException() {
+        assertThrows(RuntimeException.class, () -> categoryService.getAllCategoryFields("products"));
+        verify(categoryRepository, never()).findFields(any(), isNull(), any());
+    }
+}
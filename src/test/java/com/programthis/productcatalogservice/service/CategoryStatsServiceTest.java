@@ -0,0 +1,135 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.service.CategoryStatsService.CategoryStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryStatsServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @InjectMocks
+    private CategoryStatsService categoryStatsService;
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.aggregateStatsByCategory()).thenReturn(List.of(
+                new Object[]{1L, 2L, 1L, 10.0, 30.0, 5L},
+                new Object[]{2L, 0L, 0L, null, null, 0L}));
+        categoryStatsService.rebuild();
+    }
+
+    @Test
+    void rebuild_ShouldLoadStatsFromAggregateQuery() {
+        CategoryStats stats = categoryStatsService.getStats(1L).orElseThrow();
+
+        assertEquals(2, stats.getProductCount());
+        assertEquals(1, stats.getInStockCount());
+        assertEquals(10.0, stats.getMinPrice());
+        assertEquals(30.0, stats.getMaxPrice());
+        assertEquals(5, stats.getTotalStock());
+        assertEquals(2, categoryStatsService.getAllStats().size());
+        verify(productRepository, times(1)).aggregateStatsByCategory();
+    }
+
+    @Test
+    void rebuild_WhenCatalogCacheLoaded_ShouldAggregateInMemory() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        when(catalogCache.getCategories()).thenReturn(List.of(
+                new CategorySnapshot(1L, "Electronics", null), new CategorySnapshot(3L, "Toys", null)));
+        when(catalogCache.getProducts()).thenReturn(List.of(snapshot(1L, 10.0, 0, 1L), snapshot(2L, 30.0, 5, 1L)));
+
+        categoryStatsService.rebuild();
+
+        CategoryStats stats = categoryStatsService.getStats(1L).orElseThrow();
+        assertEquals(2, stats.getProductCount());
+        assertEquals(1, stats.getInStockCount());
+        assertEquals(10.0, stats.getMinPrice());
+        assertEquals(30.0, stats.getMaxPrice());
+        assertEquals(0, categoryStatsService.getStats(3L).orElseThrow().getProductCount());
+        assertTrue(categoryStatsService.getStats(2L).isEmpty());
+        verify(productRepository, times(1)).aggregateStatsByCategory(); // solo el rebuild de setUp
+    }
+
+    @Test
+    void onProductChanged_WhenCreated_ShouldAddToCategory() {
+        categoryStatsService.onProductChanged(new ProductChangedEvent(null, snapshot(3L, 5.0, 4, 2L)));
+
+        CategoryStats stats = categoryStatsService.getStats(2L).orElseThrow();
+        assertEquals(1, stats.getProductCount());
+        assertEquals(1, stats.getInStockCount());
+        assertEquals(5.0, stats.getMinPrice());
+        assertEquals(5.0, stats.getMaxPrice());
+        assertEquals(4, stats.getTotalStock());
+        verify(productRepository, never()).findPriceRangeByCategoryId(anyLong());
+    }
+
+    @Test
+    void onProductChanged_WhenStockChanges_ShouldUpdateCountsWithoutQuerying() {
+        categoryStatsService.onProductChanged(new ProductChangedEvent(snapshot(1L, 20.0, 5, 1L), snapshot(1L, 20.0, 0, 1L)));
+
+        CategoryStats stats = categoryStatsService.getStats(1L).orElseThrow();
+        assertEquals(2, stats.getProductCount());
+        assertEquals(0, stats.getInStockCount());
+        assertEquals(0, stats.getTotalStock());
+        verify(productRepository, never()).findPriceRangeByCategoryId(anyLong());
+    }
+
+    @Test
+    void onProductChanged_WhenMinPriceLeaves_ShouldRefreshPriceRange() {
+        when(productRepository.findPriceRangeByCategoryId(1L)).thenReturn(List.<Object[]>of(new Object[]{30.0, 30.0}));
+
+        categoryStatsService.onProductChanged(new ProductChangedEvent(snapshot(1L, 10.0, 0, 1L), null));
+
+        CategoryStats stats = categoryStatsService.getStats(1L).orElseThrow();
+        assertEquals(1, stats.getProductCount());
+        assertEquals(30.0, stats.getMinPrice());
+        assertEquals(30.0, stats.getMaxPrice());
+        verify(productRepository, times(1)).findPriceRangeByCategoryId(1L);
+    }
+
+    @Test
+    void onProductChanged_WhenCategoryChanges_ShouldMoveBetweenCategories() {
+        when(productRepository.findPriceRangeByCategoryId(1L)).thenReturn(List.<Object[]>of(new Object[]{10.0, 10.0}));
+
+        categoryStatsService.onProductChanged(new ProductChangedEvent(snapshot(2L, 30.0, 5, 1L), snapshot(2L, 30.0, 5, 2L)));
+
+        assertEquals(1, categoryStatsService.getStats(1L).orElseThrow().getProductCount());
+        assertEquals(10.0, categoryStatsService.getStats(1L).orElseThrow().getMaxPrice());
+        assertEquals(1, categoryStatsService.getStats(2L).orElseThrow().getProductCount());
+        assertEquals(5, categoryStatsService.getStats(2L).orElseThrow().getTotalStock());
+    }
+
+    @Test
+    void onCategoryChanged_ShouldTrackCreatedAndDeletedCategories() {
+        categoryStatsService.onCategoryChanged(new CategoryChangedEvent(3L, "Toys", null, false));
+        assertEquals(0, categoryStatsService.getStats(3L).orElseThrow().getProductCount());
+
+        categoryStatsService.onCategoryChanged(CategoryChangedEvent.deleted(1L));
+        assertTrue(categoryStatsService.getStats(1L).isEmpty());
+    }
+
+    private static ProductSnapshot snapshot(Long id, Double price, Integer stock, Long categoryId) {
+        return new ProductSnapshot(id, "Product " + id, "Description", price, stock, categoryId);
+    }
+}
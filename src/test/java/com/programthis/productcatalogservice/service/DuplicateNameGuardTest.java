@@ -0,0 +1,153 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.CategorySnapshot;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DuplicateNameGuardTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @InjectMocks
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @BeforeEach
+    void setUp() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        when(catalogCache.getProducts()).thenReturn(List.of(new ProductSnapshot(1L, "Laptop", "High-end laptop", 999.99, 10, 1L)));
+        when(catalogCache.getCategories()).thenReturn(List.of(new CategorySnapshot(1L, "Electronics", null)));
+        ReflectionTestUtils.setField(duplicateNameGuard, "trustFilter", true);
+        duplicateNameGuard.rebuild();
+    }
+
+    @Test
+    void checkProductName_WhenNameIsNew_ShouldNotQueryRepository() {
+        duplicateNameGuard.checkProductName("Wireless Mouse", null);
+        duplicateNameGuard.checkCategoryName("Books", null);
+        // Mismo nombre pero de otro tipo: son índices distintos
+        duplicateNameGuard.checkProductName("Electronics", null);
+
+        verifyNoInteractions(productRepository, categoryRepository);
+    }
+
+    @Test
+    void checkProductName_WhenNameExists_ShouldConfirmAndThrow() {
+        when(productRepository.existsByName("Laptop")).thenReturn(true);
+
+        assertThrows(DuplicateNameException.class, () -> duplicateNameGuard.checkProductName("Laptop", null));
+        verify(productRepository).existsByName("Laptop");
+    }
+
+    @Test
+    void checkProductName_WhenFilterMatchIsNotInDatabase_ShouldAllowIt() {
+        // "LÁPTOP " se normaliza igual que "Laptop": el filtro no lo descarta y la base de datos decide
+        when(productRepository.existsByNameAndIdNot("LÁPTOP ", 1L)).thenReturn(false);
+
+        assertDoesNotThrow(() -> duplicateNameGuard.checkProductName("LÁPTOP ", 1L));
+        verify(productRepository).existsByNameAndIdNot("LÁPTOP ", 1L);
+    }
+
+    @Test
+    void checkCategoryName_WhenNameExists_ShouldThrow() {
+        when(categoryRepository.existsByNameAndIdNot("Electronics", 2L)).thenReturn(true);
+
+        assertThrows(DuplicateNameException.class, () -> duplicateNameGuard.checkCategoryName("Electronics", 2L));
+    }
+
+    @Test
+    void onProductChanged_ShouldAddNewNamesAndKeepOldOnesUntilRebuild() {
+        ProductSnapshot mouse = new ProductSnapshot(2L, "Mouse", "Wireless mouse", 25.0, 50, 1L);
+        ProductSnapshot renamed = new ProductSnapshot(2L, "Trackball", "Wireless mouse", 25.0, 50, 1L);
+        when(productRepository.existsByName("Mouse")).thenReturn(true, false);
+        when(productRepository.existsByName("Trackball")).thenReturn(true);
+
+        duplicateNameGuard.onProductChanged(new ProductChangedEvent(null, mouse));
+        assertTrue(duplicateNameGuard.productNameExists("Mouse"));
+
+        duplicateNameGuard.onProductChanged(new ProductChangedEvent(mouse, renamed));
+        assertTrue(duplicateNameGuard.productNameExists("Trackball"));
+        // El nombre anterior sigue en el filtro: lo descarta la base de datos
+        assertFalse(duplicateNameGuard.productNameExists("Mouse"));
+        verify(productRepository, times(2)).existsByName("Mouse");
+
+        when(catalogCache.getProducts()).thenReturn(List.of());
+        duplicateNameGuard.rebuild();
+        assertFalse(duplicateNameGuard.productNameExists("Mouse"));
+        verify(productRepository, times(2)).existsByName("Mouse");
+    }
+
+    @Test
+    void onProductChanged_WhenDeleteWasNeverAdded_ShouldNotHideOtherNames() {
+        // Un borrado de un nombre que el filtro no tenía no puede quitar los de otros productos
+        when(productRepository.existsByName("Laptop")).thenReturn(true);
+
+        duplicateNameGuard.onProductChanged(new ProductChangedEvent(
+                new ProductSnapshot(3L, "Laptop", "Other laptop", 10.0, 1, 1L), null));
+
+        assertTrue(duplicateNameGuard.productNameExists("Laptop"));
+    }
+
+    @Test
+    void productNameExists_WhenFilterIsNotTrusted_ShouldAlwaysConfirm() {
+        ReflectionTestUtils.setField(duplicateNameGuard, "trustFilter", false);
+        when(productRepository.existsByName("Wireless Mouse")).thenReturn(true);
+
+        // Dado de alta en otra instancia sin bus: el filtro no lo tiene
+        assertTrue(duplicateNameGuard.productNameExists("Wireless Mouse"));
+    }
+
+    @Test
+    void onProductChanged_WhenNameDoesNotChange_ShouldKeepIt() {
+        ProductSnapshot laptop = new ProductSnapshot(1L, "Laptop", "High-end laptop", 999.99, 10, 1L);
+        when(productRepository.existsByName("Laptop")).thenReturn(true);
+
+        duplicateNameGuard.onProductChanged(new ProductChangedEvent(laptop, laptop.withStock(3)));
+
+        assertTrue(duplicateNameGuard.productNameExists("Laptop"));
+    }
+
+    @Test
+    void onCategoryChanged_ShouldAddSavedNames() {
+        duplicateNameGuard.onCategoryChanged(CategoryChangedEvent.saved(new Category(2L, "Books")));
+        when(categoryRepository.existsByName("Books")).thenReturn(true);
+
+        assertThrows(DuplicateNameException.class, () -> duplicateNameGuard.checkCategoryName("Books", null));
+    }
+
+    @Test
+    void checkProductName_BeforeFirstBuild_ShouldAlwaysConfirm() {
+        DuplicateNameGuard notBuilt = new DuplicateNameGuard();
+        ReflectionTestUtils.setField(notBuilt, "productRepository", productRepository);
+
+        assertDoesNotThrow(() -> notBuilt.checkProductName("Wireless Mouse", null));
+        verify(productRepository).existsByName("Wireless Mouse");
+        verify(productRepository, never()).existsByNameAndIdNot(any(), anyLong());
+    }
+}
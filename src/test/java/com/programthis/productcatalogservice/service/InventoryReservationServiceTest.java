@@ -0,0 +1,232 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.Category;
+import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.service.InventoryReservationService.Reservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReservationServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private StockWriteBehindBuffer stockBuffer;
+
+    @InjectMocks
+    private InventoryReservationService reservationService;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product(1L, "Laptop", "High-end laptop", 999.99, 10, new Category(1L, "Electronics"));
+    }
+
+    @Test
+    void reserve_WhenStockAvailable_ShouldHoldUnits() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+
+        Reservation reservation = reservationService.reserve(1L, 4).orElseThrow();
+
+        assertEquals(4, reservation.getQuantity());
+        assertEquals(6, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        verify(productService, times(1)).getProductById(1L);
+    }
+
+    @Test
+    void reserve_WhenNotEnoughStock_ShouldThrowException() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        reservationService.reserve(1L, 8);
+
+        assertThrows(InsufficientStockException.class, () -> reservationService.reserve(1L, 3));
+    }
+
+    @Test
+    void reserve_WhenProductDoesNotExist_ShouldReturnEmpty() {
+        when(productService.getProductById(99L)).thenReturn(Optional.empty());
+
+        assertTrue(reservationService.reserve(99L, 1).isEmpty());
+    }
+
+    @Test
+    void confirm_ShouldRecordTheSaleThroughAdjustStock() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(productService.adjustStock(eq(1L), anyInt())).thenReturn(Optional.of(product));
+        Reservation first = reservationService.reserve(1L, 2).orElseThrow();
+        Reservation second = reservationService.reserve(1L, 3).orElseThrow();
+
+        assertTrue(reservationService.confirm(1L, first.getHoldId()).isPresent());
+        assertTrue(reservationService.confirm(1L, second.getHoldId()).isPresent());
+
+        verify(productService, times(1)).adjustStock(1L, -2);
+        verify(productService, times(1)).adjustStock(1L, -3);
+        assertEquals(5, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+    }
+
+    @Test
+    void confirm_WhenSaleCannotBeRecorded_ShouldKeepTheHold() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = reservationService.reserve(1L, 2).orElseThrow();
+        when(productService.adjustStock(1L, -2))
+                .thenThrow(new RuntimeException("timeout"))
+                .thenReturn(Optional.of(product));
+
+        assertThrows(RuntimeException.class, () -> reservationService.confirm(1L, reservation.getHoldId()));
+        assertEquals(8, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+
+        assertTrue(reservationService.confirm(1L, reservation.getHoldId()).isPresent());
+        assertEquals(8, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        assertEquals(0, reservationService.getAvailability(1L).orElseThrow().getHeld());
+    }
+
+    @Test
+    void release_ShouldReturnUnitsAndOnlyWorkOnce() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = reservationService.reserve(1L, 4).orElseThrow();
+
+        assertTrue(reservationService.release(1L, reservation.getHoldId()).isPresent());
+        assertTrue(reservationService.release(1L, reservation.getHoldId()).isEmpty());
+        assertTrue(reservationService.confirm(1L, reservation.getHoldId()).isEmpty());
+        assertEquals(10, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        verify(productService, never()).adjustStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void expireHolds_ShouldReleaseHoldsPastTheirTtl() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        ReflectionTestUtils.setField(reservationService, "clock", Clock.fixed(now, ZoneOffset.UTC));
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = reservationService.reserve(1L, 4).orElseThrow();
+
+        ReflectionTestUtils.setField(reservationService, "clock",
+                Clock.fixed(now.plus(Duration.ofMinutes(6)), ZoneOffset.UTC));
+        reservationService.expireHolds();
+
+        assertEquals(10, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        assertTrue(reservationService.confirm(1L, reservation.getHoldId()).isEmpty());
+    }
+
+    @Test
+    void confirm_WhenHoldExpiredBeforeTheSweep_ShouldReturnEmpty() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        ReflectionTestUtils.setField(reservationService, "clock", Clock.fixed(now, ZoneOffset.UTC));
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = reservationService.reserve(1L, 4).orElseThrow();
+
+        ReflectionTestUtils.setField(reservationService, "clock",
+                Clock.fixed(now.plus(Duration.ofMinutes(6)), ZoneOffset.UTC));
+
+        assertTrue(reservationService.confirm(1L, reservation.getHoldId()).isEmpty());
+        assertEquals(10, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        verify(productService, never()).adjustStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void expireHolds_ShouldKeepHoldsThatHaveNotExpired() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        ReflectionTestUtils.setField(reservationService, "clock", Clock.fixed(now, ZoneOffset.UTC));
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        reservationService.reserve(1L, 4);
+        ReflectionTestUtils.setField(reservationService, "clock",
+                Clock.fixed(now.plus(Duration.ofMinutes(3)), ZoneOffset.UTC));
+        Reservation later = reservationService.reserve(1L, 2).orElseThrow();
+
+        ReflectionTestUtils.setField(reservationService, "clock",
+                Clock.fixed(now.plus(Duration.ofMinutes(6)), ZoneOffset.UTC));
+        reservationService.expireHolds();
+
+        assertEquals(8, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+        when(productService.adjustStock(1L, -2)).thenReturn(Optional.of(product));
+        assertTrue(reservationService.confirm(1L, later.getHoldId()).isPresent());
+    }
+
+    @Test
+    void confirm_WhenProductWasDeleted_ShouldReturnEmpty() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = reservationService.reserve(1L, 4).orElseThrow();
+
+        reservationService.onProductChanged(new ProductChangedEvent(ProductSnapshot.of(product), null));
+
+        assertTrue(reservationService.confirm(1L, reservation.getHoldId()).isEmpty());
+        verify(productService, never()).adjustStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void onProductChanged_ShouldRebaseStockKeepingHolds() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        reservationService.reserve(1L, 4);
+
+        ProductSnapshot before = ProductSnapshot.of(product);
+        reservationService.onProductChanged(new ProductChangedEvent(before, before.withStock(20)));
+
+        assertEquals(16, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+    }
+
+    @Test
+    void onProductChanged_ShouldCountSalesStillInTheStockJournal() {
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        reservationService.reserve(1L, 4);
+        when(stockBuffer.pendingDelta(1L)).thenReturn(-3);
+
+        ProductSnapshot before = ProductSnapshot.of(product);
+        reservationService.onProductChanged(new ProductChangedEvent(before, before.withStock(20)));
+
+        assertEquals(13, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+    }
+
+    @Test
+    void reserve_UnderConcurrency_ShouldNeverOversell() throws Exception {
+        product.setStock(100);
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    reservationService.reserve(1L, 1);
+                    granted.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    // esperado cuando se agota el stock
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(100, granted.get());
+        assertEquals(0, reservationService.getAvailability(1L).orElseThrow().getAvailable());
+    }
+}
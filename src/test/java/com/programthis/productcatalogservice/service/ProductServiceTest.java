@@ -1,22 +1,42 @@
 package com.programthis.productcatalogservice.service;
 
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.model.CatalogDeletion;
 import com.programthis.productcatalogservice.model.Category;
 import com.programthis.productcatalogservice.model.Product;
+import com.programthis.productcatalogservice.model.StockJournalCheckpoint;
+import com.programthis.productcatalogservice.repository.CatalogDeletionRepository;
 import com.programthis.productcatalogservice.repository.CategoryRepository;
 import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.repository.StockJournalCheckpointRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -29,6 +49,27 @@ class ProductServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockWriteBehindBuffer stockBuffer;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @Mock
+    private DuplicateNameGuard duplicateNameGuard;
+
+    @Mock
+    private StockJournalCheckpointRepository checkpointRepository;
+
+    @Mock
+    private CatalogDeletionRepository deletionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ProductService productService;
 
@@ -39,6 +80,7 @@ class ProductServiceTest {
     void setUp() {
         category = new Category(1L, "Electronics");
         product = new Product(1L, "Laptop", "High-end laptop", 999.99, 10, category);
+        lenient().when(stockBuffer.readWithPendingStock(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
     }
 
     // Test para getAllProducts
@@ -55,6 +97,28 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findAll();
     }
 
+    @Test
+    void getProductsByCategoryIds_WithLimit_ShouldLimitInTheQuery() {
+        Product mouse = new Product(2L, "Mouse", "Wireless mouse", 25.0, 50, category);
+        when(productRepository.findFirstIdsPerCategory(List.of(1L, 2L), 5)).thenReturn(List.of(1L, 2L));
+        when(productRepository.findByIdIn(List.of(1L, 2L))).thenReturn(List.of(mouse, product));
+
+        Map<Long, List<Product>> result = productService.getProductsByCategoryIds(List.of(1L, 2L), 5);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(result.keySet()));
+        assertEquals(List.of(product, mouse), result.get(1L));
+        assertTrue(result.get(2L).isEmpty());
+        verify(productRepository, never()).findByCategoryIdInOrderByIdAsc(any());
+    }
+
+    @Test
+    void getProductsByCategoryIds_WithZeroLimit_ShouldNotQuery() {
+        Map<Long, List<Product>> result = productService.getProductsByCategoryIds(List.of(1L), 0);
+
+        assertTrue(result.get(1L).isEmpty());
+        verifyNoInteractions(productRepository);
+    }
+
     // Test para getProductById
     @Test
     void getProductById_WhenProductExists_ShouldReturnProduct() {
@@ -67,6 +131,30 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findById(1L);
     }
 
+    @Test
+    void getProductById_WhenCached_ShouldNotQueryRepository() {
+        ReflectionTestUtils.setField(productService, "serveReadsFromCache", true);
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.of(product));
+        when(stockBuffer.pendingDelta(1L)).thenReturn(2);
+
+        Optional<Product> result = productService.getProductById(1L);
+
+        assertTrue(result.isPresent());
+        assertEquals(12, result.get().getStock());
+        verify(productRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getProductById_ByDefault_ShouldReadTheDatabaseEvenIfCached() {
+        Product current = new Product(1L, "Laptop", "High performance laptop", 1300.0, 4, category);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(current));
+
+        Optional<Product> result = productService.getProductById(1L);
+
+        assertEquals(4, result.orElseThrow().getStock());
+        verifyNoInteractions(catalogCache);
+    }
+
     @Test
     void getProductById_WhenProductDoesNotExist_ShouldReturnEmpty() {
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
@@ -117,6 +205,28 @@ class ProductServiceTest {
         verify(productRepository, never()).save(any(Product.class));
     }
 
+    @Test
+    void createProduct_WhenNameIsTaken_ShouldThrowBeforeWriting() {
+        doThrow(new DuplicateNameException("un producto", "Laptop")).when(duplicateNameGuard).checkProductName("Laptop", null);
+
+        assertThrows(DuplicateNameException.class,
+                () -> productService.createProduct("Laptop", "High-end laptop", 999.99, 10, 1L));
+
+        verifyNoInteractions(categoryRepository, productRepository, eventPublisher);
+    }
+
+    @Test
+    void patchProduct_ShouldCheckNameOnlyWhenItChanges() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        productService.patchProduct(1L, Map.of("name", "Laptop", "price", 10.0));
+        verify(duplicateNameGuard, never()).checkProductName(any(), any());
+
+        productService.patchProduct(1L, Map.of("name", "Gaming Laptop"));
+        verify(duplicateNameGuard).checkProductName("Gaming Laptop", 1L);
+    }
+
     // Test para updateProduct
     @Test
     void updateProduct_WhenProductAndCategoryExist_ShouldUpdateAndReturnProduct() {
@@ -204,4 +314,249 @@ class ProductServiceTest {
         verify(categoryRepository, times(1)).findById(1L);
         verify(productRepository, never()).findByCategory(any(Category.class));
     }
-}
\ No newline at end of file
+
+    // Test para patchProduct
+    @Test
+    void patchProduct_ShouldOnlyChangeFieldsPresentInPatch() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Optional<Product> result = productService.patchProduct(1L, Map.of("price", 899, "stock", 5));
+
+        assertTrue(result.isPresent());
+        assertEquals(899.0, result.get().getPrice());
+        assertEquals(5, result.get().getStock());
+        assertEquals("Laptop", result.get().getName());
+        assertEquals("High-end laptop", result.get().getDescription());
+        verify(categoryRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void patchProduct_WhenNullForRequiredField_ShouldThrowException() {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("description", null);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(RuntimeException.class, () -> productService.patchProduct(1L, patch));
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    void patchProduct_WhenUnknownField_ShouldThrowException() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(RuntimeException.class, () -> productService.patchProduct(1L, Map.of("id", 7)));
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    void patchProduct_WhenProductDoesNotExist_ShouldReturnEmpty() {
+        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+
+        Optional<Product> result = productService.patchProduct(1L, Map.of("price", 1.0));
+
+        assertFalse(result.isPresent());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    // Test para searchProducts
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchProducts_ShouldQueryRepositoryWithSpecification() {
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("price"));
+        when(productRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(new PageImpl<>(List.of(product)));
+
+        Page<Product> result = productService.searchProducts(1L, 100.0, 1000.0, true, "Lap", pageable);
+
+        assertEquals(1, result.getTotalElements());
+        verify(productRepository, times(1)).findAll(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchProducts_WhenSortPropertyNotAllowed_ShouldThrowException() {
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("description"));
+
+        assertThrows(RuntimeException.class,
+                () -> productService.searchProducts(null, null, null, null, null, pageable));
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchProducts_WhenPriceRangeIsInverted_ShouldThrowException() {
+        assertThrows(RuntimeException.class,
+                () -> productService.searchProducts(null, 10.0, 5.0, null, null, PageRequest.of(0, 20)));
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    // Tests de los eventos que alimentan los índices en memoria
+    @Test
+    void createProduct_ShouldPublishEventWithoutPreviousState() {
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(category));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        productService.createProduct("Laptop", "High-end laptop", 999.99, 10, 1L);
+
+        ArgumentCaptor<ProductChangedEvent> captor = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertNull(captor.getValue().getBefore());
+        assertEquals(1L, captor.getValue().getAfter().getCategoryId());
+    }
+
+    @Test
+    void updateProduct_ShouldPublishEventWithPreviousAndNewState() {
+        Product updatedDetails = new Product(null, "Laptop", "High-end laptop", 1099.99, 0, null);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        productService.updateProduct(1L, updatedDetails, null);
+
+        ArgumentCaptor<ProductChangedEvent> captor = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(999.99, captor.getValue().getBefore().getPrice());
+        assertEquals(10, captor.getValue().getBefore().getStock());
+        assertEquals(1099.99, captor.getValue().getAfter().getPrice());
+        assertEquals(0, captor.getValue().getAfter().getStock());
+    }
+
+    @Test
+    void deleteProduct_WhenProductExists_ShouldPublishEventWithoutNewState() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        productService.deleteProduct(1L);
+
+        ArgumentCaptor<ProductChangedEvent> captor = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(1L, captor.getValue().getBefore().getId());
+        assertNull(captor.getValue().getAfter());
+    }
+
+    @Test
+    void deleteProduct_ShouldLogTheDeletionOnlyWhenTheProductExists() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        productService.deleteProduct(1L);
+        productService.deleteProduct(2L);
+
+        ArgumentCaptor<CatalogDeletion> captor = ArgumentCaptor.forClass(CatalogDeletion.class);
+        verify(deletionRepository, times(1)).save(captor.capture());
+        assertEquals(CatalogDeletion.Kind.PRODUCT, captor.getValue().getKind());
+        assertEquals(1L, captor.getValue().getEntityId());
+    }
+
+    // Tests para las lecturas con ?fields=
+    @Test
+    void getAllProductFields_ShouldAlwaysIncludeIdAndExpandCategory() {
+        when(productRepository.findFields(eq(List.of("id", "price", "category.id", "category.name")), isNull(), any(Pageable.class)))
+                .thenReturn(List.of(Map.of("id", 1L, "price", 999.99)));
+
+        List<Map<String, Object>> result = productService.getAllProductFields("price, category");
+
+        assertEquals(1, result.size());
+        verify(productRepository, times(1)).findFields(eq(List.of("id", "price", "category.id", "category.name")), isNull(), any(Pageable.class));
+    }
+
+    @Test
+    void getAllProductFields_WhenFieldIsUnknown_ShouldThrowException() {
+        Exception exception = assertThrows(RuntimeException.class, () -> productService.getAllProductFields("name,secret"));
+
+        assertEquals("Campo no válido: secret", exception.getMessage());
+        verify(productRepository, never()).findFields(any(), any(), any());
+    }
+
+    // Test para applyStockDeltas
+    @Test
+    void applyStockDeltas_ShouldUpdateInOneBatchAndPublishEvents() {
+        Map<Long, Integer> deltas = Map.of(1L, -3);
+        when(productRepository.findSnapshotsByIdIn(deltas.keySet()))
+                .thenReturn(List.of(new ProductSnapshot(1L, "Laptop", "High-end laptop", 999.99, 7, 1L)));
+
+        productService.applyStockDeltas(deltas);
+
+        verify(productRepository, times(1)).adjustStock(deltas);
+        ArgumentCaptor<ProductChangedEvent> captor = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(10, captor.getValue().getBefore().getStock());
+        assertEquals(7, captor.getValue().getAfter().getStock());
+    }
+
+    @Test
+    void applyStockDeltas_WithJournalBatch_ShouldRecordTheBatch() {
+        Map<Long, Integer> deltas = Map.of(1L, -3);
+
+        productService.applyStockDeltas(deltas, "journal", 4L);
+
+        verify(productRepository, times(1)).adjustStock(deltas);
+        verify(checkpointRepository, times(1)).save(new StockJournalCheckpoint("journal", 4L));
+    }
+
+    // Tests para adjustStock y el modo write-behind
+    @Test
+    void adjustStock_WhenWriteBehindDisabled_ShouldApplyImmediately() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findSnapshotsByIdIn(Map.of(1L, 5).keySet()))
+                .thenReturn(List.of(new ProductSnapshot(1L, "Laptop", "High-end laptop", 999.99, 15, 1L)));
+
+        Optional<Product> result = productService.adjustStock(1L, 5);
+
+        assertEquals(15, result.orElseThrow().getStock());
+        verify(productRepository, times(1)).adjustStock(Map.of(1L, 5));
+        verify(stockBuffer, never()).add(anyLong(), anyInt());
+    }
+
+    @Test
+    void adjustStock_WhenWriteBehindEnabled_ShouldOnlyBufferTheDelta() {
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.of(product));
+        when(stockBuffer.isEnabled()).thenReturn(true);
+        when(stockBuffer.pendingDelta(1L)).thenReturn(-3);
+
+        Optional<Product> result = productService.adjustStock(1L, -3);
+
+        assertEquals(7, result.orElseThrow().getStock());
+        assertEquals(10, product.getStock()); // la copia de la caché no se toca
+        verify(stockBuffer, times(1)).add(1L, -3);
+        verifyNoInteractions(productRepository, transactionManager);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void adjustStock_WhenWriteBehindEnabledAndNotCached_ShouldReadTheProductOnce() {
+        when(catalogCache.getProduct(1L)).thenReturn(Optional.empty());
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(stockBuffer.isEnabled()).thenReturn(true);
+
+        assertEquals(10, productService.adjustStock(1L, 2).orElseThrow().getStock());
+        verify(stockBuffer, times(1)).add(1L, 2);
+        verify(productRepository, never()).adjustStock(any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void adjustStock_WhenProductDoesNotExist_ShouldReturnEmpty() {
+        when(productRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertTrue(productService.adjustStock(99L, 1).isEmpty());
+        verify(stockBuffer, never()).add(anyLong(), anyInt());
+    }
+
+    @Test
+    void adjustStock_WhenWriteBehindEnabledAndProductDoesNotExist_ShouldNotBuffer() {
+        when(stockBuffer.isEnabled()).thenReturn(true);
+        when(catalogCache.getProduct(99L)).thenReturn(Optional.empty());
+        when(productRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertTrue(productService.adjustStock(99L, 1).isEmpty());
+        verify(stockBuffer, never()).add(anyLong(), anyInt());
+    }
+
+    @Test
+    void getProductById_ShouldIncludePendingStock() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(stockBuffer.pendingDelta(1L)).thenReturn(4);
+
+        Optional<Product> result = productService.getProductById(1L);
+
+        assertEquals(14, result.orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,153 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.repository.CategoryRepository;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.IndexStats;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.Suggestion;
+import com.programthis.productcatalogservice.service.ProductSuggestionService.SuggestionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSuggestionServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @InjectMocks
+    private ProductSuggestionService productSuggestionService;
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAllSuggestionRows()).thenReturn(List.of(
+                new Object[]{1L, "Laptop", 1L},
+                new Object[]{2L, "Lámpara", 2L},
+                new Object[]{3L, "Mouse", 1L}));
+        when(categoryRepository.findAllSuggestionRows()).thenReturn(List.<Object[]>of(new Object[]{1L, "Laptops y tablets"}));
+        productSuggestionService.rebuild();
+    }
+
+    @Test
+    void suggest_ShouldMatchPrefixIgnoringCaseAndAccents() {
+        List<String> names = names(productSuggestionService.suggest("LAM", 10));
+
+        assertEquals(List.of("Lámpara"), names);
+    }
+
+    @Test
+    void suggest_ShouldRankByPopularity() {
+        productSuggestionService.recordProductView(2L);
+        productSuggestionService.recordProductView(2L);
+        productSuggestionService.recordCategoryView(1L);
+        assertEquals(List.of("Laptop", "Laptops y tablets", "Lámpara"), names(productSuggestionService.suggest("la", 10)));
+        productSuggestionService.rerank(); // las visitas llegan al índice al reordenar
+
+        List<Suggestion> result = productSuggestionService.suggest("la", 10);
+
+        assertEquals(List.of("Lámpara", "Laptops y tablets", "Laptop"), names(result));
+        assertEquals(SuggestionType.CATEGORY, result.get(1).getType());
+        assertEquals(2, result.get(0).getPopularity());
+    }
+
+    @Test
+    void suggest_ShouldRespectLimitAndIgnoreBlankPrefix() {
+        assertEquals(1, productSuggestionService.suggest("la", 1).size());
+        assertTrue(productSuggestionService.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_WithManyMatches_ShouldRankTheWholeRangeForShortAndLongPrefixes() {
+        LongStream.range(100, 10_100).forEach(id -> productSuggestionService.onProductChanged(
+                new ProductChangedEvent(null, snapshot(id, "Cable " + id, 1L))));
+        productSuggestionService.recordProductView(10_099L); // el último en orden alfabético
+        productSuggestionService.recordProductView(10_099L);
+        productSuggestionService.recordProductView(5_000L);
+        productSuggestionService.rerank();
+
+        assertEquals(List.of("Cable 10099", "Cable 5000", "Cable 100"), names(productSuggestionService.suggest("c", 3)));
+        assertEquals(List.of("Cable 10099", "Cable 5000"), names(productSuggestionService.suggest("cable", 2)));
+        assertEquals(List.of("Cable 10099", "Cable 100"), names(productSuggestionService.suggest("cable 10", 2)));
+        assertEquals(List.of("Cable 5000", "Cable 500"), names(productSuggestionService.suggest("cable 50", 2)));
+    }
+
+    @Test
+    void suggest_WhenLongPrefixShrinks_ShouldKeepRankingItsWholeRange() {
+        LongStream.range(100, 1_100).forEach(id -> productSuggestionService.onProductChanged(
+                new ProductChangedEvent(null, snapshot(id, "Cable " + id, 1L))));
+        productSuggestionService.recordProductView(1_099L);
+        productSuggestionService.rerank();
+        // Quedan menos de SCAN_LIMIT / 2: el prefijo pierde su índice propio y se vuelve a recorrer el rango
+        LongStream.range(100, 1_050).forEach(id -> productSuggestionService.onProductChanged(
+                new ProductChangedEvent(snapshot(id, "Cable " + id, 1L), null)));
+        LongStream.range(2_000, 2_400).forEach(id -> productSuggestionService.onProductChanged(
+                new ProductChangedEvent(null, snapshot(id, "Cable " + id, 1L))));
+        productSuggestionService.recordProductView(2_399L);
+        productSuggestionService.recordProductView(2_399L);
+        productSuggestionService.rerank();
+
+        assertEquals(List.of("Cable 2399", "Cable 1099", "Cable 1050"), names(productSuggestionService.suggest("cable", 3)));
+        assertEquals(List.of("Cable 1099", "Cable 1050"), names(productSuggestionService.suggest("cable 10", 2)));
+        assertEquals(List.of("Cable 2399", "Cable 2000"), names(productSuggestionService.suggest("cable 2", 2)));
+    }
+
+    @Test
+    void onProductChanged_ShouldFollowRenamesAndDeletes() {
+        productSuggestionService.recordProductView(1L);
+        productSuggestionService.rerank();
+        productSuggestionService.onProductChanged(new ProductChangedEvent(
+                snapshot(1L, "Laptop", 1L), snapshot(1L, "Notebook", 1L)));
+
+        assertEquals(List.of("Laptops y tablets"), names(productSuggestionService.suggest("lapt", 10)));
+        assertEquals(1, productSuggestionService.suggest("note", 10).get(0).getPopularity());
+
+        productSuggestionService.onProductChanged(new ProductChangedEvent(snapshot(3L, "Mouse", 1L), null));
+        assertTrue(productSuggestionService.suggest("mou", 10).isEmpty());
+    }
+
+    @Test
+    void onCategoryChanged_WhenDeleted_ShouldRemoveCategoryAndItsProducts() {
+        productSuggestionService.onCategoryChanged(CategoryChangedEvent.deleted(1L));
+
+        assertEquals(List.of("Lámpara"), names(productSuggestionService.suggest("l", 10)));
+        assertTrue(productSuggestionService.suggest("mouse", 10).isEmpty());
+    }
+
+    @Test
+    void getIndexStats_ShouldReportSizeAndMemory() {
+        productSuggestionService.suggest("la", 10);
+
+        IndexStats stats = productSuggestionService.getIndexStats();
+
+        assertEquals(4, stats.getEntryCount());
+        assertTrue(stats.getEstimatedMemoryBytes() > 0);
+        assertEquals(1, stats.getLookups());
+    }
+
+    private static ProductSnapshot snapshot(Long id, String name, Long categoryId) {
+        return new ProductSnapshot(id, name, "Description", 10.0, 1, categoryId);
+    }
+
+    private static List<String> names(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getName).collect(Collectors.toList());
+    }
+}
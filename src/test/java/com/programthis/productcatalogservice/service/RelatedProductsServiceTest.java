@@ -0,0 +1,143 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.event.CategoryChangedEvent;
+import com.programthis.productcatalogservice.event.ProductChangedEvent;
+import com.programthis.productcatalogservice.event.ProductSnapshot;
+import com.programthis.productcatalogservice.repository.ProductRepository;
+import com.programthis.productcatalogservice.service.RelatedProductsService.RelatedProduct;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RelatedProductsServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CatalogCache catalogCache;
+
+    @InjectMocks
+    private RelatedProductsService relatedProductsService;
+
+    private final ProductSnapshot laptop = new ProductSnapshot(1L, "Gaming laptop", "Laptop with RGB keyboard", 1200.0, 5, 1L);
+    private final ProductSnapshot ultrabook = new ProductSnapshot(2L, "Ultrabook laptop", "Thin laptop", 1100.0, 5, 1L);
+    private final ProductSnapshot keyboard = new ProductSnapshot(3L, "Mechanical keyboard", "RGB keyboard", 150.0, 5, 1L);
+    private final ProductSnapshot cable = new ProductSnapshot(4L, "USB cable", "Two meters", 5.0, 5, 1L);
+    private final ProductSnapshot novel = new ProductSnapshot(5L, "Laptop novel", "A novel about a laptop", 1200.0, 5, 2L);
+
+    @BeforeEach
+    void setUp() {
+        when(catalogCache.isLoaded()).thenReturn(true);
+        when(catalogCache.getProducts()).thenReturn(List.of(laptop, ultrabook, keyboard, cable, novel));
+        relatedProductsService.rebuild();
+    }
+
+    @Test
+    void getRelated_ShouldRankSameCategoryByTermsAndPrice() {
+        List<Long> related = ids(relatedProductsService.getRelated(1L, 10).orElseThrow());
+
+        // El libro comparte palabras y precio pero es de otra categoría
+        assertEquals(List.of(2L, 3L, 4L), related);
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void getRelated_ShouldHonourLimitAndUnknownProducts() {
+        assertEquals(1, relatedProductsService.getRelated(1L, 1).orElseThrow().size());
+        assertTrue(relatedProductsService.getRelated(1L, 0).orElseThrow().isEmpty());
+        assertTrue(relatedProductsService.getRelated(99L, 10).isEmpty());
+    }
+
+    @Test
+    void onProductChanged_ShouldAddNewProductToExistingLists() {
+        ProductSnapshot gamingLaptop = new ProductSnapshot(6L, "Gaming laptop pro", "Laptop with RGB keyboard", 1250.0, 5, 1L);
+
+        relatedProductsService.onProductChanged(new ProductChangedEvent(null, gamingLaptop));
+
+        assertEquals(6L, relatedProductsService.getRelated(1L, 10).orElseThrow().get(0).getId());
+        assertEquals(1L, relatedProductsService.getRelated(6L, 10).orElseThrow().get(0).getId());
+    }
+
+    @Test
+    void onProductChanged_ShouldMoveProductBetweenCategories() {
+        ProductSnapshot movedKeyboard = new ProductSnapshot(3L, "Mechanical keyboard", "RGB keyboard", 150.0, 5, 2L);
+
+        relatedProductsService.onProductChanged(new ProductChangedEvent(keyboard, movedKeyboard));
+
+        assertEquals(List.of(2L, 4L), ids(relatedProductsService.getRelated(1L, 10).orElseThrow()));
+        assertEquals(List.of(5L), ids(relatedProductsService.getRelated(3L, 10).orElseThrow()));
+    }
+
+    @Test
+    void onProductChanged_ShouldKeepListsOnStockOnlyChangesAndRefreshNames() {
+        relatedProductsService.onProductChanged(new ProductChangedEvent(ultrabook,
+                new ProductSnapshot(2L, "Ultrabook  LAPTOP", "Thin laptop", 1100.0, 0, 1L)));
+
+        RelatedProduct first = relatedProductsService.getRelated(1L, 10).orElseThrow().get(0);
+        assertEquals(2L, first.getId());
+        assertEquals("Ultrabook  LAPTOP", first.getName());
+    }
+
+    @Test
+    void onProductChanged_ShouldRemoveDeletedProductFromLists() {
+        relatedProductsService.onProductChanged(new ProductChangedEvent(ultrabook, null));
+
+        assertEquals(List.of(3L, 4L), ids(relatedProductsService.getRelated(1L, 10).orElseThrow()));
+        assertTrue(relatedProductsService.getRelated(2L, 10).isEmpty());
+    }
+
+    @Test
+    void onCategoryChanged_ShouldDropDeletedCategory() {
+        relatedProductsService.onCategoryChanged(new CategoryChangedEvent(1L, null, null, true));
+
+        assertTrue(relatedProductsService.getRelated(1L, 10).isEmpty());
+        assertTrue(relatedProductsService.getRelated(5L, 10).isPresent());
+    }
+
+    @Test
+    void rebuild_ShouldLoadFromRepositoryWhenCacheIsNotLoaded() {
+        when(catalogCache.isLoaded()).thenReturn(false);
+        when(productRepository.findSnapshotsAfterId(eq(0L), any())).thenReturn(List.of(laptop, ultrabook));
+
+        relatedProductsService.rebuild();
+
+        assertEquals(List.of(2L), ids(relatedProductsService.getRelated(1L, 10).orElseThrow()));
+    }
+
+    @Test
+    void rebuild_ShouldUseCandidatesBeyondSharedTermsAndPriceWindow() {
+        // Más productos que la ventana de precio: el parecido por palabras sigue encontrando al lejano
+        List<ProductSnapshot> products = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            products.add(new ProductSnapshot(id, "Item " + id, "Generic", 100.0 + id, 1, 1L));
+        }
+        products.add(new ProductSnapshot(1000L, "Telescope mirror", "Astronomy optics", 1.0, 1, 1L));
+        products.add(new ProductSnapshot(1001L, "Telescope eyepiece", "Astronomy optics", 9_000.0, 1, 1L));
+        when(catalogCache.getProducts()).thenReturn(products);
+
+        relatedProductsService.rebuild();
+
+        assertEquals(1001L, relatedProductsService.getRelated(1000L, 1).orElseThrow().get(0).getId());
+    }
+
+    @Test
+    void terms_ShouldNormalizeAndDropShortWords() {
+        assertEquals(Set.of("camara", "reflex", "objetivo"), RelatedProductsService.terms("Cámara réflex", "objetivo de 50 mm"));
+    }
+
+    private static List<Long> ids(List<RelatedProduct> related) {
+        return related.stream().map(RelatedProduct::getId).toList();
+    }
+}
@@ -0,0 +1,271 @@
+package com.programthis.productcatalogservice.service;
+
+import com.programthis.productcatalogservice.model.StockJournalCheckpoint;
+import com.programthis.productcatalogservice.repository.StockJournalCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockWriteBehindBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path journal;
+    private StockWriteBehindBuffer buffer;
+    // La tabla stock_journal_checkpoints
+    private final Map<String, Long> checkpoints = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = tempDir.resolve("stock-journal.log");
+        buffer = openBuffer();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        buffer.close();
+    }
+
+    @Test
+    void add_ShouldCoalesceDeltasPerProduct() {
+        buffer.add(1L, 5);
+        buffer.add(1L, -2);
+        buffer.add(2L, 1);
+
+        assertEquals(3, buffer.pendingDelta(1L));
+        assertEquals(1, buffer.pendingDelta(2L));
+        assertEquals(Map.of(1L, 3, 2L, 1), buffer.drain());
+    }
+
+    @Test
+    void drain_WhileBatchInFlight_ShouldReturnEmptyAndKeepReadsConsistent() {
+        buffer.add(1L, 5);
+        buffer.drain();
+        buffer.add(1L, 2);
+
+        assertTrue(buffer.drain().isEmpty());
+        assertEquals(7, buffer.pendingDelta(1L));
+
+        buffer.complete();
+        assertEquals(2, buffer.pendingDelta(1L));
+    }
+
+    @Test
+    void completeOnCommit_ShouldHoldReadsUntilTheCommittedBatchStopsCounting() throws Exception {
+        buffer.add(1L, 5);
+        buffer.drain();
+        buffer.add(1L, 2);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            buffer.completeOnCommit();
+            TransactionSynchronization commit = TransactionSynchronizationManager.getSynchronizations().get(0);
+            assertEquals(7, reader.submit(() -> buffer.readWithPendingStock(() -> buffer.pendingDelta(1L))).get());
+
+            commit.beforeCommit(false);
+            // Mientras se confirma el lote, una lectura no puede sumarlo a una fila que quizá ya lo incluye
+            Future<Integer> duringCommit = reader.submit(() -> buffer.readWithPendingStock(() -> buffer.pendingDelta(1L)));
+            assertThrows(TimeoutException.class, () -> duringCommit.get(100, TimeUnit.MILLISECONDS));
+            commit.afterCommit();
+            // Los listeners afterCommit del lote ya no lo ven como pendiente
+            assertEquals(2, buffer.pendingDelta(1L));
+            commit.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+            assertEquals(2, duringCommit.get(5, TimeUnit.SECONDS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    void completeOnCommit_WhenRolledBack_ShouldKeepTheBatchPending() {
+        buffer.add(1L, 5);
+        buffer.drain();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            buffer.completeOnCommit();
+            TransactionSynchronization commit = TransactionSynchronizationManager.getSynchronizations().get(0);
+            commit.beforeCommit(false);
+            commit.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(5, buffer.readWithPendingStock(() -> buffer.pendingDelta(1L)));
+    }
+
+    @Test
+    void restore_ShouldKeepFailedBatchForTheNextFlush() {
+        buffer.add(1L, 5);
+        buffer.drain();
+        buffer.add(1L, 1);
+
+        buffer.restore();
+
+        assertEquals(Map.of(1L, 6), buffer.drain());
+    }
+
+    @Test
+    void open_ShouldReplayJournalAfterRestart() throws IOException {
+        buffer.add(1L, 5);
+        buffer.add(2L, -1);
+        buffer.drain(); // lote sin confirmar cuando se para el proceso
+        buffer.add(1L, 2);
+        buffer.close();
+
+        buffer = openBuffer();
+
+        assertEquals(7, buffer.pendingDelta(1L));
+        assertEquals(-1, buffer.pendingDelta(2L));
+        assertEquals(3, Files.readAllLines(journal).size()); // diario compactado: cabecera y una línea por producto
+    }
+
+    @Test
+    void open_ShouldNotReplayCompletedBatches() throws IOException {
+        buffer.add(1L, 5);
+        buffer.drain();
+        buffer.complete();
+        buffer.close();
+
+        buffer = openBuffer();
+
+        assertEquals(0, buffer.pendingDelta(1L));
+    }
+
+    @Test
+    void open_ShouldNotReplayBatchAlreadyCommittedInDatabase() throws IOException {
+        buffer.add(1L, 5);
+        buffer.drain();
+        // El UPDATE del lote se confirmó, pero el proceso se para antes de complete(): el segmento sigue en disco
+        checkpoints.put(buffer.getJournalId(), buffer.getInFlightSequence());
+        buffer.add(1L, 2);
+        buffer.close();
+
+        buffer = openBuffer();
+
+        assertEquals(2, buffer.pendingDelta(1L));
+    }
+
+    @Test
+    void drain_ShouldNumberBatchesInOrderAcrossRestarts() throws IOException {
+        buffer.add(1L, 1);
+        buffer.drain();
+        long first = buffer.getInFlightSequence();
+        buffer.complete();
+        buffer.add(1L, 1);
+        buffer.close();
+
+        buffer = openBuffer();
+        buffer.drain();
+
+        assertTrue(buffer.getInFlightSequence() > first);
+    }
+
+    @Test
+    void add_WithFsyncFromManyThreads_ShouldKeepEveryDelta() throws Exception {
+        buffer.close();
+        buffer = openBuffer(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            long productId = thread % 2;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    buffer.add(productId, 1);
+                    if (i % 50 == 0) {
+                        buffer.drain();
+                        buffer.complete();
+                    }
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        buffer.close();
+
+        // Lo ya volcado se descarta con complete(); lo que queda en el diario tiene que coincidir con lo pendiente
+        Map<Long, Integer> pendingBeforeRestart = Map.of(0L, buffer.pendingDelta(0L), 1L, buffer.pendingDelta(1L));
+        buffer = openBuffer(true);
+        assertEquals(pendingBeforeRestart, Map.of(0L, buffer.pendingDelta(0L), 1L, buffer.pendingDelta(1L)));
+    }
+
+    @Test
+    void open_ShouldIgnoreTornLastRecord() throws IOException {
+        buffer.add(1L, 5);
+        buffer.close();
+        Files.writeString(journal, "2 ", StandardOpenOption.APPEND);
+
+        buffer = openBuffer();
+
+        assertEquals(5, buffer.pendingDelta(1L));
+        assertEquals(0, buffer.pendingDelta(2L));
+    }
+
+    @Test
+    void add_WhenThresholdReached_ShouldTriggerFlush() {
+        AtomicInteger triggered = new AtomicInteger();
+        ReflectionTestUtils.setField(buffer, "flushThreshold", 3);
+        buffer.setFlushTrigger(triggered::incrementAndGet);
+
+        buffer.add(1L, 1);
+        buffer.add(2L, 1);
+        assertEquals(0, triggered.get());
+        buffer.add(1L, 1);
+
+        assertEquals(1, triggered.get());
+    }
+
+    private StockWriteBehindBuffer openBuffer() throws IOException {
+        return openBuffer(false);
+    }
+
+    private StockWriteBehindBuffer openBuffer(boolean fsync) throws IOException {
+        StockWriteBehindBuffer newBuffer = new StockWriteBehindBuffer();
+        ReflectionTestUtils.setField(newBuffer, "enabled", true);
+        ReflectionTestUtils.setField(newBuffer, "journalPath", journal);
+        ReflectionTestUtils.setField(newBuffer, "fsync", fsync);
+        ReflectionTestUtils.setField(newBuffer, "checkpointRepository", checkpointRepository());
+        newBuffer.open();
+        return newBuffer;
+    }
+
+    private StockJournalCheckpointRepository checkpointRepository() {
+        StockJournalCheckpointRepository repository = mock(StockJournalCheckpointRepository.class);
+        when(repository.findById(anyString())).thenAnswer(invocation -> {
+            String journalId = invocation.getArgument(0);
+            return Optional.ofNullable(checkpoints.get(journalId))
+                    .map(sequence -> new StockJournalCheckpoint(journalId, sequence));
+        });
+        return repository;
+    }
+}
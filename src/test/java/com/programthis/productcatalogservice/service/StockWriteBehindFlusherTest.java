@@ -0,0 +1,65 @@
+package com.programthis.productcatalogservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockWriteBehindFlusherTest {
+
+    @Mock
+    private StockWriteBehindBuffer stockBuffer;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @InjectMocks
+    private StockWriteBehindFlusher flusher;
+
+    @Test
+    void flush_ShouldApplyDrainedDeltasAsOneBatch() {
+        when(stockBuffer.isEnabled()).thenReturn(true);
+        when(stockBuffer.drain()).thenReturn(Map.of(1L, 3, 2L, -1));
+        when(stockBuffer.getJournalId()).thenReturn("journal");
+        when(stockBuffer.getInFlightSequence()).thenReturn(7L);
+
+        flusher.flush();
+
+        verify(productService, times(1)).applyStockDeltas(Map.of(1L, 3, 2L, -1), "journal", 7L);
+        verify(stockBuffer, times(1)).complete();
+        verify(stockBuffer, never()).restore();
+    }
+
+    @Test
+    void flush_WhenDatabaseFails_ShouldRestoreTheBatch() {
+        when(stockBuffer.isEnabled()).thenReturn(true);
+        when(stockBuffer.drain()).thenReturn(Map.of(1L, 3));
+        doThrow(new RuntimeException("timeout")).when(productService).applyStockDeltas(anyMap(), any(), anyLong());
+
+        flusher.flush();
+
+        verify(stockBuffer, times(1)).restore();
+        verify(stockBuffer, never()).complete();
+    }
+
+    @Test
+    void flush_WhenDisabled_ShouldDoNothing() {
+        flusher.flush();
+
+        verify(stockBuffer, never()).drain();
+        verifyNoInteractions(productService);
+    }
+}
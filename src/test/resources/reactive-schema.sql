@@ -0,0 +1,17 @@
+-- Esquema para los tests del perfil reactive sobre H2 (en producción lo crea la edición JPA)
+create table if not exists categories (
+    id bigint auto_increment primary key,
+    name varchar(255) not null unique,
+    description varchar(255),
+    updated_at timestamp(6)
+);
+
+create table if not exists products (
+    id bigint auto_increment primary key,
+    name varchar(255) not null unique,
+    description varchar(255) not null,
+    price double precision not null,
+    stock integer not null,
+    category_id bigint not null references categories (id),
+    updated_at timestamp(6)
+);